@@ -0,0 +1,78 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBooleanSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares setting several elements one by one with setValues, as several keys changing in the same tick do.
+ * Each invocation sets one batch in an integer tree and a boolean tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchUpdateBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    public int size;
+
+    @Param({"4", "16", "64"})
+    public int batchSize;
+
+    private static final int BATCHES = 1024;
+
+    private FixedSizeIntegerSegmentTree integerTree;
+
+    private FixedSizeBooleanSegmentTree booleanTree;
+
+    private int[][] indexes;
+
+    private long[][] longValues;
+
+    private boolean[][] booleanValues;
+
+    private int batch;
+
+    @Setup
+    public void setup() {
+        integerTree = new FixedSizeIntegerSegmentTree(Long::sum, new long[size]);
+        booleanTree = new FixedSizeBooleanSegmentTree((left, right) -> left || right, new boolean[size]);
+        Random random = new Random(0);
+        indexes = new int[BATCHES][batchSize];
+        longValues = new long[BATCHES][batchSize];
+        booleanValues = new boolean[BATCHES][batchSize];
+        for (int i = 0; i < BATCHES; i++) {
+            for (int j = 0; j < batchSize; j++) {
+                indexes[i][j] = random.nextInt(size);
+                longValues[i][j] = random.nextInt(16);
+                booleanValues[i][j] = random.nextBoolean();
+            }
+        }
+    }
+
+    @Benchmark
+    public long oneByOne() {
+        int i = batch++ & (BATCHES - 1);
+        int[] batchIndexes = indexes[i];
+        long[] batchLongValues = longValues[i];
+        boolean[] batchBooleanValues = booleanValues[i];
+        long sink = 0;
+        for (int j = 0; j < batchSize; j++) {
+            sink += integerTree.setValueAndGetCombination(batchIndexes[j], batchLongValues[j]);
+            sink += booleanTree.setValueAndGetCombination(batchIndexes[j], batchBooleanValues[j]) ? 1 : 0;
+        }
+        return sink;
+    }
+
+    @Benchmark
+    public long setValues() {
+        int i = batch++ & (BATCHES - 1);
+        return integerTree.setValues(indexes[i], longValues[i]) + (booleanTree.setValues(indexes[i], booleanValues[i]) ? 1 : 0);
+    }
+}
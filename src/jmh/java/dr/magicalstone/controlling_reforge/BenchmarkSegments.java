@@ -0,0 +1,36 @@
+package dr.magicalstone.controlling_reforge;
+
+import java.util.Random;
+
+/**
+ * Pre-generated random indexes and segments shared by the benchmarks, so that no benchmark pays for generating them.
+ */
+final class BenchmarkSegments {
+
+    /**
+     * How many indexes and segments are generated. It is a power of 2 so that a cursor can wrap around by a mask.
+     */
+    static final int COUNT = 1024;
+
+    final int[] indexes = new int[COUNT];
+
+    final int[] rightBorders = new int[COUNT];
+
+    private int cursor;
+
+    BenchmarkSegments(int size) {
+        Random random = new Random(size);
+        for (int i = 0; i < COUNT; i++) {
+            indexes[i] = random.nextInt(size);
+            rightBorders[i] = indexes[i] + 1 + random.nextInt(size - indexes[i]);
+        }
+    }
+
+    /**
+     * Move to the next index and segment.
+     * @return position of the next index and segment in {@link BenchmarkSegments#indexes} and {@link BenchmarkSegments#rightBorders}
+     */
+    int next() {
+        return cursor = (cursor + 1) & (COUNT - 1);
+    }
+}
@@ -0,0 +1,100 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBooleanSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeSegmentTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link FixedSizeBooleanSegmentTree} with or, through both its primitive methods and its boxed {@link FixedSizeSegmentTree} methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BooleanSegmentTreeBenchmark {
+
+    @Param({"2", "64", "1024", "65536", "1048576"})
+    public int size;
+
+    private boolean[] allElements;
+
+    private boolean[] container;
+
+    private FixedSizeBooleanSegmentTree tree;
+
+    private FixedSizeSegmentTree<Boolean> boxedTree;
+
+    private FixedSizeBooleanSegmentTree subList;
+
+    private BenchmarkSegments segments;
+
+    @Setup
+    public void setup() {
+        allElements = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            allElements[i] = (i % 3) == 0;
+        }
+        container = new boolean[size];
+        tree = new FixedSizeBooleanSegmentTree((left, right) -> left || right, allElements);
+        boxedTree = tree;
+        subList = tree.subList(size / 4, Math.max(size / 4 + 1, size * 3 / 4));
+        segments = new BenchmarkSegments(size);
+    }
+
+    @Benchmark
+    public FixedSizeBooleanSegmentTree construct() {
+        return new FixedSizeBooleanSegmentTree((left, right) -> left || right, allElements);
+    }
+
+    @Benchmark
+    public boolean pointUpdatePrimitive() {
+        int i = segments.next();
+        return tree.setValueAndGetCombination(segments.indexes[i], (i & 1) == 0);
+    }
+
+    @Benchmark
+    public Boolean pointUpdateBoxed() {
+        int i = segments.next();
+        return boxedTree.setValueAndGetCombination(segments.indexes[i], (i & 1) == 0);
+    }
+
+    @Benchmark
+    public Boolean fullCombination() {
+        return tree.getCombination();
+    }
+
+    @Benchmark
+    public Boolean partialCombination() {
+        int i = segments.next();
+        return tree.getCombination(segments.indexes[i], segments.rightBorders[i]);
+    }
+
+    @Benchmark
+    public void iterateBoxed(Blackhole blackhole) {
+        for (Boolean element : tree) {
+            blackhole.consume(element);
+        }
+    }
+
+    @Benchmark
+    public boolean[] iteratePrimitive() {
+        return tree.toArray(container);
+    }
+
+    @Benchmark
+    public Boolean subListCombination() {
+        return subList.getCombination();
+    }
+
+    @Benchmark
+    public void subListIterate(Blackhole blackhole) {
+        for (Boolean element : subList) {
+            blackhole.consume(element);
+        }
+    }
+}
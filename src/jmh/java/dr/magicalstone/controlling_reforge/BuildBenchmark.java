@@ -0,0 +1,59 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeSegmentTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Compares building a tree by the array constructor with building it by {@link FixedSizeIntegerSegmentTree.Builder}
+ * in one thread (from an iterator), in parallel (from an index function) and into a reused backing array.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BuildBenchmark {
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    public int size;
+
+    private long[] allElements;
+
+    private long[] backingArray;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        allElements = new long[size];
+        for (int i = 0; i < size; i++) {
+            allElements[i] = random.nextInt(1 << 20);
+        }
+        backingArray = new long[FixedSizeSegmentTree.elementsLengthOf(size)];
+    }
+
+    @Benchmark
+    public FixedSizeIntegerSegmentTree constructor() {
+        return new FixedSizeIntegerSegmentTree(Long::sum, allElements);
+    }
+
+    @Benchmark
+    public FixedSizeIntegerSegmentTree sequentialIterator() {
+        return new FixedSizeIntegerSegmentTree.Builder(Long::sum).pool(null).build(size, LongStream.of(allElements).iterator());
+    }
+
+    @Benchmark
+    public FixedSizeIntegerSegmentTree parallel() {
+        return new FixedSizeIntegerSegmentTree.Builder(Long::sum).build(size, index -> allElements[index]);
+    }
+
+    @Benchmark
+    public FixedSizeIntegerSegmentTree parallelIntoBackingArray() {
+        return new FixedSizeIntegerSegmentTree.Builder(Long::sum).backingArray(backingArray).build(size, index -> allElements[index]);
+    }
+}
@@ -0,0 +1,96 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.BindingEngine;
+import dr.magicalstone.controlling_reforge.core.binding.BindingListener;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpressionCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a profile of 600 bindings with key combination expressions into a {@link BindingEngine},
+ * with a new {@link KeyExpressionCompiler} (every expression is compiled) and with a compiler which has compiled the profile before (reloading).
+ * A third of the expressions are single keys, a third are small "and"s with a modifier and the rest are nested groups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompileBenchmark implements BindingListener {
+
+    private static final int BINDING_COUNT = 600;
+
+    private static final String[] MODIFIERS = {"LCONTROL", "LSHIFT", "LMENU"};
+
+    private String[] profile;
+
+    private KeyExpressionCompiler cachedCompiler;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        profile = new String[BINDING_COUNT];
+        for (int binding = 0; binding < BINDING_COUNT; binding++) {
+            String key = "#" + (2 + random.nextInt(200));
+            String modifier = MODIFIERS[random.nextInt(MODIFIERS.length)];
+            switch (binding % 3) {
+                case 0:
+                    profile[binding] = key;
+                    break;
+                case 1:
+                    profile[binding] = modifier + " & " + key;
+                    break;
+                default:
+                    profile[binding] = "(" + modifier + " | BUTTON" + random.nextInt(5) + ") & (" + key + " | 2 of ("
+                            + "#" + (2 + random.nextInt(200)) + ", #" + (2 + random.nextInt(200)) + ", !#" + (2 + random.nextInt(200)) + "))";
+            }
+        }
+        cachedCompiler = newCompiler();
+        load(cachedCompiler);
+    }
+
+    private static KeyExpressionCompiler newCompiler() {
+        return new KeyExpressionCompiler(name -> {
+            switch (name) {
+                case "LCONTROL":
+                    return 29;
+                case "LSHIFT":
+                    return 42;
+                case "LMENU":
+                    return 56;
+                default:
+                    return name.startsWith("BUTTON") ? Integer.parseInt(name.substring(6)) - 100 : 0;
+            }
+        });
+    }
+
+    private BindingEngine load(KeyExpressionCompiler compiler) {
+        BindingEngine engine = new BindingEngine(this);
+        for (String expression : profile) {
+            engine.addBinding(compiler.compile(expression));
+        }
+        engine.build();
+        return engine;
+    }
+
+    @Benchmark
+    public BindingEngine compile() {
+        return load(newCompiler());
+    }
+
+    @Benchmark
+    public BindingEngine reload() {
+        return load(cachedCompiler);
+    }
+
+    @Override
+    public void onBindingStateChanged(int binding, boolean pressed) {
+    }
+
+    @Override
+    public void onBindingTicked(int binding) {
+    }
+}
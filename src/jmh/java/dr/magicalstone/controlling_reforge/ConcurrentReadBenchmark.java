@@ -0,0 +1,66 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.ConcurrentIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link ConcurrentIntegerSegmentTree} with 1 writer and 4 readers in the group readWrite,
+ * against the writer alone in writeOnly. Run with -tg 1,N to measure other counts of readers.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentReadBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private ConcurrentIntegerSegmentTree tree;
+
+    @Setup
+    public void setup() {
+        tree = new ConcurrentIntegerSegmentTree(new FixedSizeIntegerSegmentTree(Long::sum, new long[SIZE]));
+    }
+
+    /**
+     * Indexes and segments of one thread, so that threads don't share a cursor.
+     */
+    @State(Scope.Thread)
+    public static class ThreadSegments {
+
+        private BenchmarkSegments segments;
+
+        @Setup
+        public void setup() {
+            segments = new BenchmarkSegments(SIZE);
+        }
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public long write(ThreadSegments threadSegments) {
+        int i = threadSegments.segments.next();
+        return tree.setValueAndGetCombination(threadSegments.segments.indexes[i], (long) (i & 127));
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(4)
+    public long read(ThreadSegments threadSegments) {
+        int i = threadSegments.segments.next();
+        return tree.getCombination(threadSegments.segments.indexes[i], threadSegments.segments.rightBorders[i]);
+    }
+
+    @Benchmark
+    @Group("writeOnly")
+    @GroupThreads(1)
+    public long writeAlone(ThreadSegments threadSegments) {
+        return write(threadSegments);
+    }
+}
@@ -0,0 +1,74 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.DeferredBooleanSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBooleanSegmentTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a burst of key events per tick and reads the combination once a tick,
+ * by setting every event eagerly against setting them by {@link DeferredBooleanSegmentTree} which recalculates once per tick.
+ * Events of a burst are clustered on a few keys, like key repeat events and a press and a release in the same poll.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeferredBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int size;
+
+    @Param({"1", "8", "64"})
+    public int eventsPerTick;
+
+    private static final int TICKS = 1024;
+
+    private FixedSizeBooleanSegmentTree tree;
+
+    private DeferredBooleanSegmentTree deferredTree;
+
+    private int[] eventIndexes;
+
+    private boolean[] eventValues;
+
+    private int tick;
+
+    @Setup
+    public void setup() {
+        tree = new FixedSizeBooleanSegmentTree((left, right) -> left || right, new boolean[size]);
+        deferredTree = new DeferredBooleanSegmentTree(new FixedSizeBooleanSegmentTree((left, right) -> left || right, new boolean[size]));
+        Random random = new Random(0);
+        eventIndexes = new int[TICKS * eventsPerTick];
+        eventValues = new boolean[eventIndexes.length];
+        for (int t = 0; t < TICKS; t++) {
+            int[] keys = {random.nextInt(size), random.nextInt(size), random.nextInt(size)};
+            for (int e = 0; e < eventsPerTick; e++) {
+                eventIndexes[t * eventsPerTick + e] = keys[random.nextInt(keys.length)];
+                eventValues[t * eventsPerTick + e] = random.nextBoolean();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean eager() {
+        int from = (tick++ & (TICKS - 1)) * eventsPerTick;
+        for (int e = from; e < from + eventsPerTick; e++) {
+            tree.setValueAndGetCombination(eventIndexes[e], eventValues[e]);
+        }
+        return tree.getCombinationAsBoolean();
+    }
+
+    @Benchmark
+    public boolean deferred() {
+        int from = (tick++ & (TICKS - 1)) * eventsPerTick;
+        for (int e = from; e < from + eventsPerTick; e++) {
+            deferredTree.setValue(eventIndexes[e], eventValues[e]);
+        }
+        return deferredTree.getCombinationAsBoolean();
+    }
+}
@@ -0,0 +1,103 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.BindingEngine;
+import dr.magicalstone.controlling_reforge.core.binding.BindingListener;
+import dr.magicalstone.controlling_reforge.core.binding.KeyCountCondition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares dispatching a key event by {@link BindingEngine} with scanning all bindings for the key, at 50, 500 and 5000 bindings.
+ * Each binding has 1 to 3 keys. Key codes are drawn from keyboard codes, mouse buttons and codes of modded inputs,
+ * and their range grows with the number of bindings like a modpack which adds keys with its bindings, so each key is referenced by a few bindings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark implements BindingListener {
+
+    @Param({"50", "500", "5000"})
+    public int bindingCount;
+
+    private BindingEngine engine;
+
+    private int[][] bindingKeyCodes;
+
+    private KeyCountCondition[] conditions;
+
+    private boolean[] pressed;
+
+    private int[] eventKeys;
+
+    private int cursor;
+
+    private int changes;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        int keyCodeCount = Math.max(256, bindingCount);
+        engine = new BindingEngine(this);
+        bindingKeyCodes = new int[bindingCount][];
+        conditions = new KeyCountCondition[bindingCount];
+        pressed = new boolean[bindingCount];
+        for (int binding = 0; binding < bindingCount; binding++) {
+            int[] keyCodes = new int[1 + random.nextInt(3)];
+            for (int slot = 0; slot < keyCodes.length; slot++) {
+                int keyCode = 1 + random.nextInt(keyCodeCount);
+                // Codes past the keyboard stand for mouse buttons (from -100) and modded inputs.
+                keyCodes[slot] = keyCode < 256 ? keyCode : keyCode < 272 ? keyCode - 356 : keyCode + 1000;
+            }
+            bindingKeyCodes[binding] = keyCodes;
+            conditions[binding] = KeyCountCondition.anyOf(keyCodes.length);
+            engine.addBinding(KeyCountCondition.anyOf(keyCodes.length), keyCodes);
+        }
+        engine.build();
+        eventKeys = new int[1024];
+        for (int i = 0; i < eventKeys.length; i++) {
+            int[] keyCodes = bindingKeyCodes[random.nextInt(bindingCount)];
+            eventKeys[i] = keyCodes[random.nextInt(keyCodes.length)];
+        }
+    }
+
+    @Benchmark
+    public int indexed() {
+        int event = cursor++ & (eventKeys.length - 1);
+        engine.setKeyState(eventKeys[event], (event & 1) == 0);
+        return changes;
+    }
+
+    @Benchmark
+    public int scan() {
+        int event = cursor++ & (eventKeys.length - 1);
+        int keyCode = eventKeys[event];
+        boolean keyPressed = (event & 1) == 0;
+        for (int binding = 0; binding < bindingCount; binding++) {
+            int[] keyCodes = bindingKeyCodes[binding];
+            for (int slot = 0; slot < keyCodes.length; slot++) {
+                if (keyCodes[slot] == keyCode) {
+                    boolean satisfied = conditions[binding].setTerm(slot, keyPressed);
+                    if (satisfied != pressed[binding]) {
+                        pressed[binding] = satisfied;
+                        onBindingStateChanged(binding, satisfied);
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void onBindingStateChanged(int binding, boolean pressed) {
+        changes++;
+    }
+
+    @Override
+    public void onBindingTicked(int binding) {
+    }
+}
@@ -0,0 +1,55 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeFenwickIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.LongRepeatOperator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link FixedSizeFenwickIntegerSegmentTree} with {@link FixedSizeIntegerSegmentTree} on press count statistics:
+ * counting presses of each key and summing the counts of a range of keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FenwickBenchmark {
+
+    @Param({"256", "4096", "65536", "1048576"})
+    public int size;
+
+    @Param({"segment", "fenwick"})
+    public String layout;
+
+    private FixedSizeIntegerSegmentTree pressCounts;
+
+    private BenchmarkSegments segments;
+
+    @Setup
+    public void setup() {
+        long[] allElements = new long[size];
+        pressCounts = layout.equals("fenwick") ? FixedSizeFenwickIntegerSegmentTree.sum(allElements) : new FixedSizeIntegerSegmentTree(Long::sum, LongRepeatOperator.SUM, allElements);
+        segments = new BenchmarkSegments(size);
+    }
+
+    @Benchmark
+    public long press() {
+        int index = segments.indexes[segments.next()];
+        return pressCounts.setValueAndGetCombination(index, pressCounts.getCombinationAsLong(index, index + 1) + 1);
+    }
+
+    @Benchmark
+    public long rangeCount() {
+        int i = segments.next();
+        return pressCounts.getCombinationAsLong(segments.indexes[i], segments.rightBorders[i]);
+    }
+
+    @Benchmark
+    public long prefixCount() {
+        return pressCounts.getCombinationAsLong(0, segments.rightBorders[segments.next()]);
+    }
+}
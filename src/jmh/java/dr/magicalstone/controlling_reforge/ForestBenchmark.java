@@ -0,0 +1,101 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBooleanSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.SegmentTreeForest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares separate {@link FixedSizeBooleanSegmentTree}s with one {@link SegmentTreeForest} for many small trees of key bindings,
+ * where a key event sets an element in several trees and reads their combinations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForestBenchmark {
+
+    @Param({"64", "600", "5000"})
+    public int treeCount;
+
+    /**
+     * How many trees a key event touches.
+     */
+    @Param({"4"})
+    public int treesPerEvent;
+
+    private FixedSizeBooleanSegmentTree[] trees;
+
+    private SegmentTreeForest forest;
+
+    private int[] eventTrees;
+
+    private int[] eventIndexes;
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        trees = new FixedSizeBooleanSegmentTree[treeCount];
+        forest = new SegmentTreeForest();
+        for (int tree = 0; tree < treeCount; tree++) {
+            boolean[] allElements = new boolean[2 + random.nextInt(7)];
+            trees[tree] = new FixedSizeBooleanSegmentTree((left, right) -> left && right, allElements);
+            forest.add((left, right) -> left && right, true, allElements);
+        }
+        forest.trimToSize();
+        eventTrees = new int[1 << 16];
+        eventIndexes = new int[eventTrees.length];
+        for (int i = 0; i < eventTrees.length; i++) {
+            eventTrees[i] = random.nextInt(treeCount);
+            eventIndexes[i] = random.nextInt(trees[eventTrees[i]].size());
+        }
+    }
+
+    @Benchmark
+    public int separateTrees() {
+        int pressed = 0;
+        for (int i = 0; i < treesPerEvent; i++) {
+            int event = cursor++ & (eventTrees.length - 1);
+            if (trees[eventTrees[event]].setValueAndGetCombination(eventIndexes[event], (event & 2) == 0)) {
+                pressed++;
+            }
+        }
+        return pressed;
+    }
+
+    @Benchmark
+    public int forest() {
+        int pressed = 0;
+        for (int i = 0; i < treesPerEvent; i++) {
+            int event = cursor++ & (eventTrees.length - 1);
+            if (forest.setValueAndGetCombination(eventTrees[event], eventIndexes[event], (event & 2) == 0)) {
+                pressed++;
+            }
+        }
+        return pressed;
+    }
+
+    @Benchmark
+    public FixedSizeBooleanSegmentTree[] buildSeparateTrees() {
+        FixedSizeBooleanSegmentTree[] built = new FixedSizeBooleanSegmentTree[treeCount];
+        for (int tree = 0; tree < treeCount; tree++) {
+            built[tree] = new FixedSizeBooleanSegmentTree((left, right) -> left && right, new boolean[trees[tree].size()]);
+        }
+        return built;
+    }
+
+    @Benchmark
+    public SegmentTreeForest buildForest() {
+        SegmentTreeForest built = new SegmentTreeForest();
+        for (int tree = 0; tree < treeCount; tree++) {
+            built.add((left, right) -> left && right, true, new boolean[trees[tree].size()]);
+        }
+        return built;
+    }
+}
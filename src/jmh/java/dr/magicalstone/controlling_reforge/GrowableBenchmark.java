@@ -0,0 +1,71 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.GrowableSegmentTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares inserting and removing an element of {@link GrowableSegmentTree} with rebuilding a {@link FixedSizeSegmentTree} from scratch,
+ * as registering a binding at runtime does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrowableBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int size;
+
+    private GrowableSegmentTree<Long> growableTree;
+
+    private Long[] elements;
+
+    private Long[] grownElements;
+
+    /**
+     * Indexes from 0 to size, where an element can be inserted and, once inserted, removed.
+     */
+    private BenchmarkSegments segments;
+
+    private long round;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        Long[] allElements = new Long[size];
+        for (int i = 0; i < size; i++) {
+            allElements[i] = (long) random.nextInt(100);
+        }
+        growableTree = new GrowableSegmentTree<>(Long::sum, allElements);
+        elements = allElements.clone();
+        grownElements = new Long[size + 1];
+        segments = new BenchmarkSegments(size + 1);
+    }
+
+    @Benchmark
+    public Long growable() {
+        growableTree.add(segments.indexes[segments.next()], round++);
+        Long combination = growableTree.getCombination();
+        growableTree.remove(segments.indexes[segments.next()]);
+        return combination;
+    }
+
+    @Benchmark
+    public long rebuild() {
+        int index = segments.indexes[segments.next()];
+        System.arraycopy(elements, 0, grownElements, 0, index);
+        grownElements[index] = round++;
+        System.arraycopy(elements, index, grownElements, index + 1, size - index);
+        long combination = new FixedSizeSegmentTree<>(Long::sum, grownElements).getCombination();
+        int removedIndex = segments.indexes[segments.next()];
+        System.arraycopy(grownElements, 0, elements, 0, removedIndex);
+        System.arraycopy(grownElements, removedIndex + 1, elements, removedIndex, size - removedIndex);
+        return combination + new FixedSizeSegmentTree<>(Long::sum, elements).getCombination();
+    }
+}
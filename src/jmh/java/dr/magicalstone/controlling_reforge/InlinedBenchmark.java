@@ -0,0 +1,78 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.SegmentTreeSpecializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+
+/**
+ * Compares {@link FixedSizeSegmentTree} with trees specialized for their operators by {@link SegmentTreeSpecializer}
+ * when the same code updates and queries trees of 1 (monomorphic), 2 (bimorphic) or 4 (megamorphic) different operators.
+ * Each fork only sees the operators of its own parameters, so the call sites of {@link FixedSizeSegmentTree} are as polluted as the parameter says.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InlinedBenchmark {
+
+    private static final BinaryOperator<Long> SUM = Long::sum;
+
+    private static final BinaryOperator<Long> MAX = Math::max;
+
+    private static final BinaryOperator<Long> MIN = Math::min;
+
+    private static final BinaryOperator<Long> XOR = (left, right) -> left ^ right;
+
+    @Param({"1", "2", "4"})
+    public int operatorCount;
+
+    @Param({"interpreted", "inlined"})
+    public String layout;
+
+    @Param({"1024"})
+    public int size;
+
+    private List<FixedSizeSegmentTree<Long>> trees;
+
+    private BenchmarkSegments segments;
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        List<BinaryOperator<Long>> operators = Arrays.asList(SUM, MAX, MIN, XOR);
+        trees = new ArrayList<>(operatorCount);
+        for (int i = 0; i < operatorCount; i++) {
+            Long[] allElements = new Long[size];
+            for (int j = 0; j < size; j++) {
+                allElements[j] = (long) j;
+            }
+            trees.add("inlined".equals(layout)
+                    ? SegmentTreeSpecializer.create(operators.get(i), allElements)
+                    : new FixedSizeSegmentTree<>(operators.get(i), allElements));
+        }
+        segments = new BenchmarkSegments(size);
+    }
+
+    @Benchmark
+    public Long pointUpdate() {
+        FixedSizeSegmentTree<Long> tree = trees.get(cursor++ % operatorCount);
+        int i = segments.next();
+        return tree.setValueAndGetCombination(segments.indexes[i], (long) i);
+    }
+
+    @Benchmark
+    public Long rangeQuery() {
+        FixedSizeSegmentTree<Long> tree = trees.get(cursor++ % operatorCount);
+        int i = segments.next();
+        return tree.getCombination(segments.indexes[i], segments.rightBorders[i]);
+    }
+}
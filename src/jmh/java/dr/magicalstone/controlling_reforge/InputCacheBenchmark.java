@@ -0,0 +1,112 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.InputFrameCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a frame of key polling in a pack of 300 mods, each polling the keys of its bindings and modifiers (ctrl, shift or alt, two keys each)
+ * pollsPerMod times per frame, with and without {@link InputFrameCache}.
+ * The library is polled like LWJGL 2 {@code Keyboard.isKeyDown}, which takes a global lock and reads a buffer.
+ * The counter libraryPolls is how many times the library is polled per frame, so the polls avoided per frame are
+ * libraryPolls of live minus libraryPolls of cached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputCacheBenchmark {
+
+    private static final int[][] MODIFIERS = {{29, 157}, {42, 54}, {56, 184}};
+
+    @Param({"300"})
+    public int modCount;
+
+    @Param({"1", "4"})
+    public int pollsPerMod;
+
+    private final Object lock = new Object();
+
+    private final ByteBuffer keyDownBuffer = ByteBuffer.allocate(256);
+
+    private InputFrameCache cache;
+
+    /**
+     * Polls of a frame, a key code or -1 - modifier for a modifier.
+     */
+    private int[] frame;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Polls {
+
+        public long libraryPolls;
+
+        public long queries;
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        cache = new InputFrameCache(this::pollLibrary);
+        keyDownBuffer.put(17, (byte) 1).put(42, (byte) 1);
+        frame = new int[modCount * pollsPerMod];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = random.nextInt(5) < 2 ? -1 - random.nextInt(MODIFIERS.length) : 1 + random.nextInt(120);
+        }
+    }
+
+    private boolean pollLibrary(int keyCode) {
+        synchronized (lock) {
+            return keyDownBuffer.get(keyCode) != 0;
+        }
+    }
+
+    @Benchmark
+    public int live(Polls polls) {
+        int held = 0;
+        for (int query : frame) {
+            boolean down;
+            if (query < 0) {
+                int[] modifier = MODIFIERS[-1 - query];
+                polls.libraryPolls++;
+                down = pollLibrary(modifier[0]);
+                if (!down) {
+                    polls.libraryPolls++;
+                    down = pollLibrary(modifier[1]);
+                }
+            } else {
+                polls.libraryPolls++;
+                down = pollLibrary(query);
+            }
+            held += down ? 1 : 0;
+        }
+        polls.queries += frame.length;
+        return held;
+    }
+
+    @Benchmark
+    public int cached(Polls polls) {
+        long livePollCount = cache.getLivePollCount();
+        cache.newFrame();
+        int held = 0;
+        for (int query : frame) {
+            boolean down;
+            if (query < 0) {
+                int[] modifier = MODIFIERS[-1 - query];
+                down = cache.isKeyDown(modifier[0]) || cache.isKeyDown(modifier[1]);
+            } else {
+                down = cache.isKeyDown(query);
+            }
+            held += down ? 1 : 0;
+        }
+        polls.libraryPolls += cache.getLivePollCount() - livePollCount;
+        polls.queries += frame.length;
+        return held;
+    }
+}
@@ -0,0 +1,100 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeSegmentTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link FixedSizeIntegerSegmentTree} with sum, through both its primitive methods and its boxed {@link FixedSizeSegmentTree} methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntegerSegmentTreeBenchmark {
+
+    @Param({"2", "64", "1024", "65536", "1048576"})
+    public int size;
+
+    private long[] allElements;
+
+    private long[] container;
+
+    private FixedSizeIntegerSegmentTree tree;
+
+    private FixedSizeSegmentTree<Long> boxedTree;
+
+    private FixedSizeIntegerSegmentTree subList;
+
+    private BenchmarkSegments segments;
+
+    @Setup
+    public void setup() {
+        allElements = new long[size];
+        for (int i = 0; i < size; i++) {
+            allElements[i] = i * 31L;
+        }
+        container = new long[size];
+        tree = new FixedSizeIntegerSegmentTree(Long::sum, allElements);
+        boxedTree = tree;
+        subList = tree.subList(size / 4, Math.max(size / 4 + 1, size * 3 / 4));
+        segments = new BenchmarkSegments(size);
+    }
+
+    @Benchmark
+    public FixedSizeIntegerSegmentTree construct() {
+        return new FixedSizeIntegerSegmentTree(Long::sum, allElements);
+    }
+
+    @Benchmark
+    public long pointUpdatePrimitive() {
+        int i = segments.next();
+        return tree.setValueAndGetCombination(segments.indexes[i], i * 1000L);
+    }
+
+    @Benchmark
+    public Long pointUpdateBoxed() {
+        int i = segments.next();
+        return boxedTree.setValueAndGetCombination(segments.indexes[i], i * 1000L);
+    }
+
+    @Benchmark
+    public Long fullCombination() {
+        return tree.getCombination();
+    }
+
+    @Benchmark
+    public Long partialCombination() {
+        int i = segments.next();
+        return tree.getCombination(segments.indexes[i], segments.rightBorders[i]);
+    }
+
+    @Benchmark
+    public void iterateBoxed(Blackhole blackhole) {
+        for (Long element : tree) {
+            blackhole.consume(element);
+        }
+    }
+
+    @Benchmark
+    public long[] iteratePrimitive() {
+        return tree.toArray(container);
+    }
+
+    @Benchmark
+    public Long subListCombination() {
+        return subList.getCombination();
+    }
+
+    @Benchmark
+    public void subListIterate(Blackhole blackhole) {
+        for (Long element : subList) {
+            blackhole.consume(element);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBottomUpIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the midpoint split layout of {@link FixedSizeIntegerSegmentTree} with the bottom-up layout of {@link FixedSizeBottomUpIntegerSegmentTree}
+ * for point updates, range queries and iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+
+    @Param({"100", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"midpoint", "bottomUp"})
+    public String layout;
+
+    private FixedSizeIntegerSegmentTree tree;
+
+    private BenchmarkSegments segments;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        long[] allElements = new long[size];
+        for (int i = 0; i < size; i++) {
+            allElements[i] = random.nextInt(100);
+        }
+        tree = layout.equals("bottomUp") ? new FixedSizeBottomUpIntegerSegmentTree(Long::sum, 0, allElements) : new FixedSizeIntegerSegmentTree(Long::sum, allElements);
+        segments = new BenchmarkSegments(size);
+    }
+
+    @Benchmark
+    public long update() {
+        int i = segments.next();
+        return tree.setValueAndGetCombination(segments.indexes[i], i & 127);
+    }
+
+    @Benchmark
+    public long query() {
+        int i = segments.next();
+        return tree.getCombinationAsLong(segments.indexes[i], segments.rightBorders[i]);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (long element : tree) {
+            blackhole.consume(element);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeMappedIntegerSegmentTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap tree {@link FixedSizeIntegerSegmentTree} with the off heap tree {@link FixedSizeMappedIntegerSegmentTree}
+ * of a long input trace: recording a key press, counting presses in a range of ticks,
+ * and getting the tree back after a restart (rebuilding the heap tree against reopening the mapped file).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MappedBenchmark {
+
+    @Param({"1048576", "100000000"})
+    public int size;
+
+    @Param({"heap", "mapped"})
+    public String layout;
+
+    private FixedSizeIntegerSegmentTree tree;
+
+    private Path file;
+
+    private int[] indexes;
+
+    private int cursor;
+
+    /**
+     * Presses in the trace, a tick has a press if a simple hash of it is odd.
+     */
+    private static long pressesAt(int tick) {
+        return ((tick * 0x9E3779B9) >>> 31) & 1;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if ("heap".equals(layout)) {
+            tree = new FixedSizeIntegerSegmentTree.Builder(Long::sum).build(size, MappedBenchmark::pressesAt);
+        } else {
+            file = Files.createTempFile("mapped-benchmark", ".tree");
+            tree = FixedSizeMappedIntegerSegmentTree.create(file, Long::sum, 0, size, MappedBenchmark::pressesAt);
+        }
+        Random random = new Random(0);
+        indexes = new int[1 << 16];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = random.nextInt(size);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (tree instanceof FixedSizeMappedIntegerSegmentTree) {
+            ((FixedSizeMappedIntegerSegmentTree) tree).close();
+            Files.delete(file);
+        }
+        tree = null;
+    }
+
+    private int nextIndex() {
+        return indexes[cursor++ & (indexes.length - 1)];
+    }
+
+    @Benchmark
+    public long press() {
+        int index = nextIndex();
+        return tree.setValueAndGetCombination(index, tree.getAsLong(index) + 1);
+    }
+
+    @Benchmark
+    public long countPresses() {
+        int left = nextIndex();
+        int right = nextIndex();
+        return tree.getCombinationAsLong(Math.min(left, right), Math.max(left, right) + 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public long restart() throws IOException {
+        if (tree instanceof FixedSizeMappedIntegerSegmentTree) {
+            try (FixedSizeMappedIntegerSegmentTree reopened = FixedSizeMappedIntegerSegmentTree.open(file, Long::sum)) {
+                return reopened.getCombinationAsLong();
+            }
+        }
+        return new FixedSizeIntegerSegmentTree.Builder(Long::sum).build(size, MappedBenchmark::pressesAt).getCombinationAsLong();
+    }
+}
@@ -0,0 +1,75 @@
+package dr.magicalstone.controlling_reforge;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The baseline of {@link IntegerSegmentTreeBenchmark}: a plain long array whose combinations are calculated by loops.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NaiveArrayBenchmark {
+
+    @Param({"2", "64", "1024", "65536", "1048576"})
+    public int size;
+
+    private long[] allElements;
+
+    private long[] elements;
+
+    private BenchmarkSegments segments;
+
+    @Setup
+    public void setup() {
+        allElements = new long[size];
+        for (int i = 0; i < size; i++) {
+            allElements[i] = i * 31L;
+        }
+        elements = allElements.clone();
+        segments = new BenchmarkSegments(size);
+    }
+
+    private long combine(int segmentLeftBorder, int segmentRightBorder) {
+        long combination = 0;
+        for (int i = segmentLeftBorder; i < segmentRightBorder; i++) {
+            combination += elements[i];
+        }
+        return combination;
+    }
+
+    @Benchmark
+    public long[] construct() {
+        return allElements.clone();
+    }
+
+    @Benchmark
+    public long pointUpdate() {
+        int i = segments.next();
+        elements[segments.indexes[i]] = i * 1000L;
+        return combine(0, size);
+    }
+
+    @Benchmark
+    public long fullCombination() {
+        return combine(0, size);
+    }
+
+    @Benchmark
+    public long partialCombination() {
+        int i = segments.next();
+        return combine(segments.indexes[i], segments.rightBorders[i]);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (long element : elements) {
+            blackhole.consume(element);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.BindingEngine;
+import dr.magicalstone.controlling_reforge.core.binding.BindingListener;
+import dr.magicalstone.controlling_reforge.core.binding.InputSnapshot;
+import dr.magicalstone.controlling_reforge.core.binding.KeyCountCondition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares resynchronizing a {@link BindingEngine} with sampled input by {@link BindingEngine#resync(InputSnapshot)}
+ * with a rescan like vanilla {@code KeyBinding.updateKeyBindState}, which polls and dispatches every key of every binding.
+ * Each invocation switches between two samples which differ in changedKeyCount keys. Polling reads the sample instead of calling LWJGL,
+ * so the rescan is cheaper here than in the game.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResyncBenchmark implements BindingListener {
+
+    @Param({"50", "500", "5000"})
+    public int bindingCount;
+
+    @Param({"0", "4"})
+    public int changedKeyCount;
+
+    private BindingEngine engine;
+
+    private int[][] bindingKeyCodes;
+
+    private InputSnapshot[] samples;
+
+    private int cursor;
+
+    private int changes;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        engine = new BindingEngine(this);
+        bindingKeyCodes = new int[bindingCount][];
+        for (int binding = 0; binding < bindingCount; binding++) {
+            int[] keyCodes = new int[1 + random.nextInt(3)];
+            for (int slot = 0; slot < keyCodes.length; slot++) {
+                keyCodes[slot] = InputSnapshot.keyCodeOf(1 + random.nextInt(InputSnapshot.SIZE - 1));
+            }
+            bindingKeyCodes[binding] = keyCodes;
+            engine.addBinding(KeyCountCondition.allOf(keyCodes.length), keyCodes);
+        }
+        engine.build();
+        samples = new InputSnapshot[]{new InputSnapshot(), new InputSnapshot()};
+        for (int held = 0; held < 6; held++) {
+            int keyCode = InputSnapshot.keyCodeOf(1 + random.nextInt(InputSnapshot.SIZE - 1));
+            samples[0].setKeyDown(keyCode, true);
+            samples[1].setKeyDown(keyCode, true);
+        }
+        for (int changed = 0; changed < changedKeyCount; changed++) {
+            int keyCode = InputSnapshot.keyCodeOf(1 + random.nextInt(InputSnapshot.SIZE - 1));
+            samples[1].setKeyDown(keyCode, !samples[0].isKeyDown(keyCode));
+        }
+        engine.resync(samples[0]);
+    }
+
+    @Benchmark
+    public int incremental() {
+        engine.resync(samples[++cursor & 1]);
+        return changes;
+    }
+
+    @Benchmark
+    public int rescan() {
+        InputSnapshot sample = samples[++cursor & 1];
+        for (int binding = 0; binding < bindingCount; binding++) {
+            for (int keyCode : bindingKeyCodes[binding]) {
+                engine.setKeyState(keyCode, sample.isKeyDown(keyCode));
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void onBindingStateChanged(int binding, boolean pressed) {
+        changes++;
+    }
+
+    @Override
+    public void onBindingTicked(int binding) {
+    }
+}
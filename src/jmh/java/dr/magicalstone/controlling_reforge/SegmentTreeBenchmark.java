@@ -0,0 +1,82 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeSegmentTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link FixedSizeSegmentTree} of boxed {@link Long} with sum.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentTreeBenchmark {
+
+    @Param({"2", "64", "1024", "65536", "1048576"})
+    public int size;
+
+    private Long[] allElements;
+
+    private FixedSizeSegmentTree<Long> tree;
+
+    private FixedSizeSegmentTree<Long> subList;
+
+    private BenchmarkSegments segments;
+
+    @Setup
+    public void setup() {
+        allElements = new Long[size];
+        for (int i = 0; i < size; i++) {
+            allElements[i] = (long) (i & 127);
+        }
+        tree = new FixedSizeSegmentTree<>(Long::sum, allElements);
+        subList = tree.subList(size / 4, Math.max(size / 4 + 1, size * 3 / 4));
+        segments = new BenchmarkSegments(size);
+    }
+
+    @Benchmark
+    public FixedSizeSegmentTree<Long> construct() {
+        return new FixedSizeSegmentTree<>(Long::sum, allElements);
+    }
+
+    @Benchmark
+    public Long pointUpdate() {
+        int i = segments.next();
+        return tree.setValueAndGetCombination(segments.indexes[i], (long) (i & 127));
+    }
+
+    @Benchmark
+    public Long fullCombination() {
+        return tree.getCombination();
+    }
+
+    @Benchmark
+    public Long partialCombination() {
+        int i = segments.next();
+        return tree.getCombination(segments.indexes[i], segments.rightBorders[i]);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Long element : tree) {
+            blackhole.consume(element);
+        }
+    }
+
+    @Benchmark
+    public Long subListCombination() {
+        return subList.getCombination();
+    }
+
+    @Benchmark
+    public void subListIterate(Blackhole blackhole) {
+        for (Long element : subList) {
+            blackhole.consume(element);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBooleanSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.SparseBooleanSegmentTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SparseBooleanSegmentTree} keyed by key codes with a dense {@link FixedSizeBooleanSegmentTree} of the used keys
+ * plus a table (an array over all codes, or a hash map) from key codes to indexes of the dense tree.
+ * Used keys are keyboard codes, the mouse buttons at -100 to -96 and a few codes of modded inputs far from them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SparseKeyBenchmark {
+
+    private static final int KEY_LEFT_BORDER = -128;
+
+    private static final int KEY_RIGHT_BORDER = 1 << 16;
+
+    private static final int MOUSE_LEFT_BORDER = -100;
+
+    private static final int MOUSE_RIGHT_BORDER = -84;
+
+    @Param({"sparse", "denseArray", "denseHash"})
+    public String layout;
+
+    private int[] eventKeys;
+
+    private SparseBooleanSegmentTree sparseTree;
+
+    private FixedSizeBooleanSegmentTree denseTree;
+
+    private int[] indexTable;
+
+    private Map<Integer, Integer> indexMap;
+
+    private int mouseIndexLeftBorder;
+
+    private int mouseIndexRightBorder;
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        int[] usedKeys = new int[64];
+        for (int i = 0; i < 5; i++) {
+            usedKeys[i] = MOUSE_LEFT_BORDER + i;
+        }
+        for (int i = 5; i < 60; i++) {
+            usedKeys[i] = 1 + random.nextInt(220);
+        }
+        for (int i = 60; i < usedKeys.length; i++) {
+            usedKeys[i] = 1000 + random.nextInt(KEY_RIGHT_BORDER - 1000);
+        }
+        usedKeys = Arrays.stream(usedKeys).sorted().distinct().toArray();
+        sparseTree = new SparseBooleanSegmentTree((left, right) -> left || right, false, KEY_LEFT_BORDER, KEY_RIGHT_BORDER);
+        denseTree = new FixedSizeBooleanSegmentTree((left, right) -> left || right, new boolean[usedKeys.length]);
+        indexTable = new int[KEY_RIGHT_BORDER - KEY_LEFT_BORDER];
+        indexMap = new HashMap<>();
+        for (int index = 0; index < usedKeys.length; index++) {
+            indexTable[usedKeys[index] - KEY_LEFT_BORDER] = index;
+            indexMap.put(usedKeys[index], index);
+        }
+        mouseIndexLeftBorder = 0;
+        mouseIndexRightBorder = 5;
+        eventKeys = new int[1024];
+        for (int i = 0; i < eventKeys.length; i++) {
+            eventKeys[i] = usedKeys[random.nextInt(usedKeys.length)];
+        }
+    }
+
+    @Benchmark
+    public boolean keyEvent() {
+        int event = cursor++ & (eventKeys.length - 1);
+        boolean pressed = (event & 1) == 0;
+        switch (layout) {
+            case "sparse":
+                return sparseTree.setValueAndGetCombination(eventKeys[event], pressed);
+            case "denseArray":
+                return denseTree.setValueAndGetCombination(indexTable[eventKeys[event] - KEY_LEFT_BORDER], pressed);
+            default:
+                return denseTree.setValueAndGetCombination((int) indexMap.get(eventKeys[event]), pressed);
+        }
+    }
+
+    @Benchmark
+    public boolean anyMouseButtonHeld() {
+        if ("sparse".equals(layout)) {
+            return sparseTree.getCombinationAsBoolean(MOUSE_LEFT_BORDER, MOUSE_RIGHT_BORDER);
+        }
+        return denseTree.getCombinationAsBoolean(mouseIndexLeftBorder, mouseIndexRightBorder);
+    }
+}
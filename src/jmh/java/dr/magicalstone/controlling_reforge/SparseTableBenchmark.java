@@ -0,0 +1,58 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeSparseTableIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.LongRepeatOperator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link FixedSizeSparseTableIntegerSegmentTree} with {@link FixedSizeIntegerSegmentTree} on min queries,
+ * with one point update every updateInterval queries, to show where the sparse table stops paying for its rebuilds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SparseTableBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    public int size;
+
+    @Param({"segment", "sparse"})
+    public String layout;
+
+    @Param({"0", "16", "1024"})
+    public int updateInterval;
+
+    private FixedSizeIntegerSegmentTree tree;
+
+    private BenchmarkSegments segments;
+
+    private int queryCount;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        long[] allElements = new long[size];
+        for (int i = 0; i < size; i++) {
+            allElements[i] = random.nextInt(1 << 20);
+        }
+        tree = layout.equals("sparse") ? new FixedSizeSparseTableIntegerSegmentTree(Math::min, allElements) : new FixedSizeIntegerSegmentTree(Math::min, LongRepeatOperator.IDEMPOTENT, allElements);
+        segments = new BenchmarkSegments(size);
+    }
+
+    @Benchmark
+    public long query() {
+        int i = segments.next();
+        if (updateInterval != 0 && ++queryCount == updateInterval) {
+            queryCount = 0;
+            tree.setValueAndGetCombination(segments.indexes[i], i);
+        }
+        return tree.getCombinationAsLong(segments.indexes[i], segments.rightBorders[i]);
+    }
+}
@@ -0,0 +1,87 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.BindingEngine;
+import dr.magicalstone.controlling_reforge.core.binding.BindingListener;
+import dr.magicalstone.controlling_reforge.core.binding.KeyCountCondition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares releasing all bindings by {@link BindingEngine#releaseAll()}, which only resets bindings with held keys,
+ * with vanilla {@code KeyBinding.unPressAllKeys}, which clears every binding in {@code KEYBIND_ARRAY} (a hash map), at 50, 500 and 5000 bindings.
+ * Both press 3 keys before releasing, like a player holding keys while opening the inventory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnPressBenchmark implements BindingListener {
+
+    @Param({"50", "500", "5000"})
+    public int bindingCount;
+
+    private BindingEngine engine;
+
+    private Map<String, VanillaBinding> vanillaBindings;
+
+    private int[] heldKeys;
+
+    private int changes;
+
+    /**
+     * Fields of a vanilla binding which {@code unPressAllKeys} clears.
+     */
+    private static class VanillaBinding {
+        boolean pressed;
+        int pressTime;
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        engine = new BindingEngine(this);
+        vanillaBindings = new HashMap<>();
+        for (int binding = 0; binding < bindingCount; binding++) {
+            engine.addBinding(KeyCountCondition.anyOf(1), new int[]{1 + random.nextInt(255)});
+            vanillaBindings.put("key.binding" + binding, new VanillaBinding());
+        }
+        engine.build();
+        heldKeys = new int[]{17, 30, 42};
+    }
+
+    @Benchmark
+    public int tracked() {
+        for (int keyCode : heldKeys) {
+            engine.setKeyState(keyCode, true);
+        }
+        engine.releaseAll();
+        return changes;
+    }
+
+    @Benchmark
+    public int vanilla() {
+        for (int keyCode : heldKeys) {
+            engine.setKeyState(keyCode, true);
+        }
+        for (VanillaBinding binding : vanillaBindings.values()) {
+            binding.pressed = false;
+            binding.pressTime = 0;
+        }
+        return changes;
+    }
+
+    @Override
+    public void onBindingStateChanged(int binding, boolean pressed) {
+        changes++;
+    }
+
+    @Override
+    public void onBindingTicked(int binding) {
+    }
+}
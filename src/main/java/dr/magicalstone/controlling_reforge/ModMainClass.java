@@ -1,5 +1,6 @@
 package dr.magicalstone.controlling_reforge;
 
+import dr.magicalstone.controlling_reforge.core.KeyBindingDispatcher;
 import dr.magicalstone.controlling_reforge.core.ModInfo;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.settings.KeyBinding;
@@ -13,9 +14,13 @@ import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.InputEvent;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
 /**
  * The main class of this mod (Controlling Reforge) who tells FML modid, name and other information of this mod.
- * The main class also contains a logger for this mod.
+ * The main class also contains a logger for this mod, and loads the profile of key combination expressions from the config directory.
  */
 @Mod(modid = ModInfo.MOD_ID, name = ModInfo.NAME, clientSideOnly = true, useMetadata = true)
 public class ModMainClass {
@@ -27,6 +32,20 @@ public class ModMainClass {
         logger = event.getModLog();
     }
 
+    /**
+     * Load key combination expressions of bindings from config/controlling_reforge_expressions.properties.
+     */
+    @Mod.EventHandler
+    public void loadExpressionProfile(FMLPreInitializationEvent event) {
+        File file = new File(event.getModConfigurationDirectory(), ModInfo.MOD_ID + "_expressions.properties");
+        try {
+            Map<String, String> errors = KeyBindingDispatcher.INSTANCE.loadProfile(file);
+            errors.forEach((description, message) -> event.getModLog().warn("Invalid key combination expression of " + description + " in " + file + ": " + message));
+        } catch (IOException e) {
+            event.getModLog().error("Failed to load key combination expressions from " + file, e);
+        }
+    }
+
     public static Logger getLogger() {
         return logger;
     }
@@ -8,4 +8,65 @@ public interface BooleanBinaryOperator {
 
     boolean applyAsBoolean(boolean left, boolean right);
 
+    /**
+     * Get the truth table of an operator. Because there are only 4 possible inputs, a truth table fully describes a boolean operator.
+     * Bit (left * 2 + right) of the truth table is the result of operator.applyAsBoolean(left, right), so (and only so) the lowest 4 bits can be set.
+     * @param operator the operator to evaluate
+     * @return the truth table of the operator
+     */
+    static int truthTableOf(BooleanBinaryOperator operator) {
+        int truthTable = 0;
+        for (int input = 0; input < 4; input++) {
+            if (operator.applyAsBoolean((input & 0b10) != 0, (input & 0b01) != 0)) {
+                truthTable |= 1 << input;
+            }
+        }
+        return truthTable;
+    }
+
+    /**
+     * Apply an operator described by its truth table. See {@link BooleanBinaryOperator#truthTableOf(BooleanBinaryOperator)}.
+     * @param truthTable the truth table of the operator
+     * @param left left operand
+     * @param right right operand
+     * @return the result of the operator
+     */
+    static boolean applyTruthTable(int truthTable, boolean left, boolean right) {
+        return ((truthTable >>> ((left ? 2 : 0) + (right ? 1 : 0))) & 1) != 0;
+    }
+
+    /**
+     * Check if an operator described by its truth table is associative which is required by all segment trees.
+     * Only 8 of the 16 truth tables are associative: false, and, left, right, xor, or, xnor, true.
+     * @param truthTable the truth table of the operator
+     * @return true if (a op b) op c == a op (b op c) for all a, b and c
+     */
+    static boolean isAssociative(int truthTable) {
+        for (int input = 0; input < 8; input++) {
+            boolean a = (input & 0b100) != 0;
+            boolean b = (input & 0b010) != 0;
+            boolean c = (input & 0b001) != 0;
+            if (applyTruthTable(truthTable, applyTruthTable(truthTable, a, b), c) != applyTruthTable(truthTable, a, applyTruthTable(truthTable, b, c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if a value is the identity of an operator described by its truth table, which is required by layouts padding leaves with the identity.
+     * Operators like left and right have no identity.
+     * @param truthTable the truth table of the operator
+     * @param identity the value to check
+     * @return true if identity op x == x op identity == x for both x
+     */
+    static boolean isIdentity(int truthTable, boolean identity) {
+        for (int input = 0; input < 2; input++) {
+            boolean x = input != 0;
+            if (applyTruthTable(truthTable, identity, x) != x || applyTruthTable(truthTable, x, identity) != x) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
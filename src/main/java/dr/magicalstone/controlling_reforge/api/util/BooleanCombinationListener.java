@@ -0,0 +1,15 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+/**
+ * Listener of a watched segment of a {@link WatchedBooleanSegmentTree}, called only when the combination of the segment really changes.
+ */
+@FunctionalInterface
+public interface BooleanCombinationListener {
+
+    /**
+     * Called after the combination of the watched segment changed from !combination to combination.
+     * @param watch id of the watched segment, returned by {@link WatchedBooleanSegmentTree#watch(int, int, BooleanCombinationListener)}
+     * @param combination the new combination of the segment
+     */
+    void onCombinationChanged(int watch, boolean combination);
+}
@@ -0,0 +1,111 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+/**
+ * A thread safe view {@link ConcurrentSegmentTree} of a segment tree {@link FixedSizeBooleanSegmentTree}.
+ * All methods work in the same way as {@link ConcurrentSegmentTree}.
+ */
+public class ConcurrentBooleanSegmentTree extends ConcurrentSegmentTree<Boolean> {
+
+    protected final FixedSizeBooleanSegmentTree tree;
+
+    public ConcurrentBooleanSegmentTree(FixedSizeBooleanSegmentTree tree) {
+        super(tree);
+        this.tree = tree;
+    }
+
+    public boolean setValueAndGetCombination(int index, boolean value) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.setValueAndGetCombination(index, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean setValues(int[] indexes, boolean[] values) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.setValues(indexes, values);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > tree.size()) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        int[] indexes = new int[segmentRightBorder - segmentLeftBorder];
+        boolean[] values = new boolean[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = segmentLeftBorder + i;
+            values[i] = value;
+        }
+        return setValues(indexes, values);
+    }
+
+    @Override
+    public Boolean setRange(int segmentLeftBorder, int segmentRightBorder, Boolean value) {
+        return setRange(segmentLeftBorder, segmentRightBorder, (boolean) value);
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getAsBoolean(int)}.
+     */
+    public boolean getAsBoolean(int index) {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                boolean element = tree.getAsBoolean(index);
+                if (lock.validate(stamp)) {
+                    return element;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getCombinationAsBoolean()}.
+     */
+    public boolean getCombinationAsBoolean() {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                boolean combination = tree.getCombinationAsBoolean();
+                if (lock.validate(stamp)) {
+                    return combination;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getCombinationAsBoolean(int, int)}.
+     */
+    public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                boolean combination = tree.getCombinationAsBoolean(segmentLeftBorder, segmentRightBorder);
+                if (lock.validate(stamp)) {
+                    return combination;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+/**
+ * A thread safe view {@link ConcurrentSegmentTree} of a segment tree {@link FixedSizeIntegerSegmentTree}.
+ * All methods work in the same way as {@link ConcurrentSegmentTree}.
+ */
+public class ConcurrentIntegerSegmentTree extends ConcurrentSegmentTree<Long> {
+
+    protected final FixedSizeIntegerSegmentTree tree;
+
+    public ConcurrentIntegerSegmentTree(FixedSizeIntegerSegmentTree tree) {
+        super(tree);
+        this.tree = tree;
+    }
+
+    public long setValueAndGetCombination(int index, long value) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.setValueAndGetCombination(index, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long setValues(int[] indexes, long[] values) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.setValues(indexes, values);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long setRange(int segmentLeftBorder, int segmentRightBorder, long value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > tree.size()) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        int[] indexes = new int[segmentRightBorder - segmentLeftBorder];
+        long[] values = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = segmentLeftBorder + i;
+            values[i] = value;
+        }
+        return setValues(indexes, values);
+    }
+
+    @Override
+    public Long setRange(int segmentLeftBorder, int segmentRightBorder, Long value) {
+        return setRange(segmentLeftBorder, segmentRightBorder, (long) value);
+    }
+
+    /**
+     * See {@link FixedSizeIntegerSegmentTree#getAsLong(int)}.
+     */
+    public long getAsLong(int index) {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                long element = tree.getAsLong(index);
+                if (lock.validate(stamp)) {
+                    return element;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * See {@link FixedSizeIntegerSegmentTree#getCombinationAsLong()}.
+     */
+    public long getCombinationAsLong() {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                long combination = tree.getCombinationAsLong();
+                if (lock.validate(stamp)) {
+                    return combination;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * See {@link FixedSizeIntegerSegmentTree#getCombinationAsLong(int, int)}.
+     */
+    public long getCombinationAsLong(int segmentLeftBorder, int segmentRightBorder) {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                long combination = tree.getCombinationAsLong(segmentLeftBorder, segmentRightBorder);
+                if (lock.validate(stamp)) {
+                    return combination;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Array;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread safe view of a segment tree {@link FixedSizeSegmentTree} for one writer and many readers.
+ * It works like a sequence lock: the writer modifies the tree in a write lock of a {@link StampedLock},
+ * and readers read the tree without any lock by {@link StampedLock#tryOptimisticRead()}, then read again if the tree was modified during reading.
+ * So readers never block the writer and always get values of the tree between two modifications.
+ * The tree should only be modified by this view after the view is created.
+ * Because readers can't push lazy tags down, {@link ConcurrentSegmentTree#setRange(int, int, Object)} sets elements eagerly.
+ * Readers must not write anything, so trees whose queries modify the trees, like {@link FixedSizeSparseTableSegmentTree}
+ * and {@link FixedSizeSparseTableIntegerSegmentTree} which rebuild their sparse tables in queries, can't be viewed.
+ * @param <Type> type of elements
+ */
+public class ConcurrentSegmentTree<Type> {
+
+    /**
+     * How many times a reader retries before yielding its thread.
+     */
+    protected static final int SPINS_BEFORE_YIELD = 64;
+
+    /**
+     * The tree to read and modify.
+     */
+    protected final FixedSizeSegmentTree<Type> tree;
+
+    /**
+     * The lock used as a sequence lock.
+     */
+    protected final StampedLock lock = new StampedLock();
+
+    /**
+     * @param tree the tree to view
+     * @throws IllegalArgumentException if queries of the tree modify the tree
+     */
+    public ConcurrentSegmentTree(FixedSizeSegmentTree<Type> tree) {
+        if (tree instanceof FixedSizeSparseTableSegmentTree || tree instanceof FixedSizeSparseTableIntegerSegmentTree) {
+            throw new IllegalArgumentException("Queries of sparse table trees rebuild their sparse tables, so they can't be read concurrently.");
+        }
+        this.tree = tree;
+        tree.pushAllLazyTags();
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#setValueAndGetCombination(int, Object)}.
+     */
+    public Type setValueAndGetCombination(int index, @Nonnull Type value) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.setValueAndGetCombination(index, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#setValues(int[], Object[])}. Readers see either none or all of the new values.
+     */
+    public Type setValues(int[] indexes, Type[] values) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.setValues(indexes, values);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#setRange(int, int, Object)}, but elements are set eagerly by {@link FixedSizeSegmentTree#setValues(int[], Object[])}
+     * so it takes O((segmentRightBorder - segmentLeftBorder) * log(n)).
+     */
+    public Type setRange(int segmentLeftBorder, int segmentRightBorder, @Nonnull Type value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > tree.size()) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        int[] indexes = new int[segmentRightBorder - segmentLeftBorder];
+        Type[] values = (Type[]) Array.newInstance(value.getClass(), indexes.length);
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = segmentLeftBorder + i;
+            values[i] = value;
+        }
+        return setValues(indexes, values);
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#get(int)}.
+     */
+    public Type get(int index) {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                Type element = tree.get(index);
+                if (lock.validate(stamp)) {
+                    return element;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#getCombination()}.
+     */
+    public Type getCombination() {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                Type combination = tree.getCombination();
+                if (lock.validate(stamp)) {
+                    return combination;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#getCombination(int, int)}.
+     */
+    public Type getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        for (int attempt = 1; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                Type combination = tree.getCombination(segmentLeftBorder, segmentRightBorder);
+                if (lock.validate(stamp)) {
+                    return combination;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Get {@link FixedSizeSegmentTree#size} of the tree.
+     * @return {@link FixedSizeSegmentTree#size}
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * Called by readers after a failed read.
+     * @param attempt how many times the reader has tried
+     */
+    protected static void backOff(int attempt) {
+        if (attempt % SPINS_BEFORE_YIELD == 0) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.Arrays;
+
+/**
+ * A deferred view {@link DeferredSegmentTree} of a segment tree {@link FixedSizeBooleanSegmentTree}, with primitive methods which don't box elements.
+ * All methods work in the same way as {@link DeferredSegmentTree}.
+ */
+public class DeferredBooleanSegmentTree extends DeferredSegmentTree<Boolean> {
+
+    protected final FixedSizeBooleanSegmentTree tree;
+
+    private boolean[] pendingBooleans = new boolean[pendingIndexes.length];
+
+    public DeferredBooleanSegmentTree(FixedSizeBooleanSegmentTree tree) {
+        super(tree);
+        this.tree = tree;
+    }
+
+    public void setValue(int index, boolean value) {
+        int slot = slotOf(index);
+        if (pendingBooleans.length < pendingIndexes.length) {
+            pendingBooleans = Arrays.copyOf(pendingBooleans, pendingIndexes.length);
+        }
+        pendingBooleans[slot] = value;
+    }
+
+    @Override
+    public void setValue(int index, Boolean value) {
+        setValue(index, (boolean) value);
+    }
+
+    @Override
+    public void flush() {
+        if (pendingCount == 0) {
+            return;
+        }
+        boolean[] values = Arrays.copyOf(pendingBooleans, pendingCount);
+        tree.setValues(takePendingIndexes(), values);
+    }
+
+    @Override
+    public Boolean get(int index) {
+        return getAsBoolean(index);
+    }
+
+    /**
+     * See {@link DeferredSegmentTree#get(int)}.
+     */
+    public boolean getAsBoolean(int index) {
+        if (index >= 0 && index < pendingSlots.length && pendingSlots[index] != 0) {
+            return pendingBooleans[pendingSlots[index] - 1];
+        }
+        return tree.getAsBoolean(index);
+    }
+
+    /**
+     * See {@link DeferredSegmentTree#getCombination()}.
+     */
+    public boolean getCombinationAsBoolean() {
+        flush();
+        return tree.getCombinationAsBoolean();
+    }
+
+    /**
+     * See {@link DeferredSegmentTree#getCombination(int, int)}.
+     */
+    public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
+        flush();
+        return tree.getCombinationAsBoolean(segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * See {@link DeferredSegmentTree#getStaleCombination()}.
+     */
+    public boolean getStaleCombinationAsBoolean() {
+        return tree.getCombinationAsBoolean();
+    }
+}
@@ -0,0 +1,79 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.Arrays;
+
+/**
+ * A deferred view {@link DeferredSegmentTree} of a segment tree {@link FixedSizeIntegerSegmentTree}, with primitive methods which don't box elements.
+ * All methods work in the same way as {@link DeferredSegmentTree}.
+ */
+public class DeferredIntegerSegmentTree extends DeferredSegmentTree<Long> {
+
+    protected final FixedSizeIntegerSegmentTree tree;
+
+    private long[] pendingLongs = new long[pendingIndexes.length];
+
+    public DeferredIntegerSegmentTree(FixedSizeIntegerSegmentTree tree) {
+        super(tree);
+        this.tree = tree;
+    }
+
+    public void setValue(int index, long value) {
+        int slot = slotOf(index);
+        if (pendingLongs.length < pendingIndexes.length) {
+            pendingLongs = Arrays.copyOf(pendingLongs, pendingIndexes.length);
+        }
+        pendingLongs[slot] = value;
+    }
+
+    @Override
+    public void setValue(int index, Long value) {
+        setValue(index, (long) value);
+    }
+
+    @Override
+    public void flush() {
+        if (pendingCount == 0) {
+            return;
+        }
+        long[] values = Arrays.copyOf(pendingLongs, pendingCount);
+        tree.setValues(takePendingIndexes(), values);
+    }
+
+    @Override
+    public Long get(int index) {
+        return getAsLong(index);
+    }
+
+    /**
+     * See {@link DeferredSegmentTree#get(int)}.
+     */
+    public long getAsLong(int index) {
+        if (index >= 0 && index < pendingSlots.length && pendingSlots[index] != 0) {
+            return pendingLongs[pendingSlots[index] - 1];
+        }
+        return tree.getAsLong(index);
+    }
+
+    /**
+     * See {@link DeferredSegmentTree#getCombination()}.
+     */
+    public long getCombinationAsLong() {
+        flush();
+        return tree.getCombinationAsLong();
+    }
+
+    /**
+     * See {@link DeferredSegmentTree#getCombination(int, int)}.
+     */
+    public long getCombinationAsLong(int segmentLeftBorder, int segmentRightBorder) {
+        flush();
+        return tree.getCombinationAsLong(segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * See {@link DeferredSegmentTree#getStaleCombination()}.
+     */
+    public long getStaleCombinationAsLong() {
+        return tree.getCombinationAsLong();
+    }
+}
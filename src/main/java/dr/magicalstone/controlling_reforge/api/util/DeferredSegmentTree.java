@@ -0,0 +1,163 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A view of a segment tree {@link FixedSizeSegmentTree} which defers recalculating combinations, for elements changed many times between two reads,
+ * like keys flipped several times in one tick by key repeat events or a press and a release in the same poll.
+ * {@link DeferredSegmentTree#setValue(int, Object)} only marks the element dirty and keeps its new value in O(1),
+ * then {@link DeferredSegmentTree#flush()}, usually called once a tick, sets all dirty elements by {@link FixedSizeSegmentTree#setValues(int[], Object[])},
+ * so every combination on the union of their paths to the root is recalculated only once.
+ * Reading combinations flushes automatically, except {@link DeferredSegmentTree#getStaleCombination()} which returns the combination of the last flush.
+ * The tree should only be modified by this view after the view is created.
+ * @param <Type> type of elements
+ */
+public class DeferredSegmentTree<Type> {
+
+    /**
+     * The tree to read and modify.
+     */
+    protected final FixedSizeSegmentTree<Type> tree;
+
+    /**
+     * Indexes of dirty elements in the order they were first set, each index appears only once.
+     */
+    protected int[] pendingIndexes;
+
+    /**
+     * How many elements are dirty.
+     */
+    protected int pendingCount;
+
+    /**
+     * pendingSlots[index] - 1 is the position of index in {@link DeferredSegmentTree#pendingIndexes}, or 0 if the element isn't dirty.
+     */
+    protected final int[] pendingSlots;
+
+    /**
+     * New values of dirty elements, pendingValues[i] is the new value of the element at pendingIndexes[i]. Created by the first value set.
+     */
+    private Type[] pendingValues;
+
+    public DeferredSegmentTree(FixedSizeSegmentTree<Type> tree) {
+        this.tree = tree;
+        this.pendingSlots = new int[tree.size()];
+        this.pendingIndexes = new int[Math.min(tree.size(), 16)];
+    }
+
+    /**
+     * Set the element at index without recalculating any combination in O(1). If the element is set again before flushing, the last value is kept.
+     * @param index index of the element to set
+     * @param value new value of the element
+     */
+    public void setValue(int index, @Nonnull Type value) {
+        Objects.requireNonNull(value);
+        int slot = slotOf(index);
+        if (pendingValues == null) {
+            pendingValues = (Type[]) Array.newInstance(value.getClass(), pendingIndexes.length);
+        } else if (pendingValues.length < pendingIndexes.length) {
+            pendingValues = Arrays.copyOf(pendingValues, pendingIndexes.length);
+        }
+        pendingValues[slot] = value;
+    }
+
+    /**
+     * Mark the element at index dirty.
+     * @param index index of the element
+     * @return position of the new value of the element in the arrays of pending values, {@link DeferredSegmentTree#pendingIndexes} may be grown for it
+     */
+    protected int slotOf(int index) {
+        if (index < 0 || index >= pendingSlots.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + pendingSlots.length);
+        }
+        int slot = pendingSlots[index] - 1;
+        if (slot < 0) {
+            if (pendingCount == pendingIndexes.length) {
+                pendingIndexes = Arrays.copyOf(pendingIndexes, Math.min(pendingSlots.length, pendingCount * 2));
+            }
+            slot = pendingCount++;
+            pendingIndexes[slot] = index;
+            pendingSlots[index] = slot + 1;
+        }
+        return slot;
+    }
+
+    /**
+     * Unmark all dirty elements.
+     * @return indexes of the elements which were dirty, in the order of their pending values
+     */
+    protected int[] takePendingIndexes() {
+        int[] indexes = Arrays.copyOf(pendingIndexes, pendingCount);
+        for (int index : indexes) {
+            pendingSlots[index] = 0;
+        }
+        pendingCount = 0;
+        return indexes;
+    }
+
+    /**
+     * Set all dirty elements to their new values and recalculate the union of their paths to the root once.
+     */
+    public void flush() {
+        if (pendingCount == 0) {
+            return;
+        }
+        int count = pendingCount;
+        Type[] values = Arrays.copyOf(pendingValues, count);
+        Arrays.fill(pendingValues, 0, count, null);
+        tree.setValues(takePendingIndexes(), values);
+    }
+
+    /**
+     * Check if any element was set after the last flush.
+     * @return true if {@link DeferredSegmentTree#flush()} has anything to do
+     */
+    public boolean isDirty() {
+        return pendingCount != 0;
+    }
+
+    /**
+     * Get the element at the index, including a value not flushed yet. It doesn't flush.
+     */
+    public Type get(int index) {
+        if (index >= 0 && index < pendingSlots.length && pendingSlots[index] != 0) {
+            return pendingValues[pendingSlots[index] - 1];
+        }
+        return tree.get(index);
+    }
+
+    /**
+     * Flush, then see {@link FixedSizeSegmentTree#getCombination()}.
+     */
+    public Type getCombination() {
+        flush();
+        return tree.getCombination();
+    }
+
+    /**
+     * Flush, then see {@link FixedSizeSegmentTree#getCombination(int, int)}.
+     */
+    public Type getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        flush();
+        return tree.getCombination(segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * Get combination of all elements as of the last flush, without flushing. Elements set after the last flush are ignored.
+     * @return combination of all elements as of the last flush
+     */
+    public Type getStaleCombination() {
+        return tree.getCombination();
+    }
+
+    /**
+     * Get {@link FixedSizeSegmentTree#size} of the tree.
+     * @return {@link FixedSizeSegmentTree#size}
+     */
+    public int size() {
+        return pendingSlots.length;
+    }
+}
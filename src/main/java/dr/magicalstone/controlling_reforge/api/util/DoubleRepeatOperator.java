@@ -0,0 +1,53 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Functional repeat operator for double. Primitive version of {@link RepeatOperator}.
+ */
+@FunctionalInterface
+public interface DoubleRepeatOperator {
+
+    /**
+     * The repeat operator of sum.
+     */
+    DoubleRepeatOperator SUM = (value, count) -> value * count;
+
+    /**
+     * The repeat operator of an idempotent operator such as min, max.
+     */
+    DoubleRepeatOperator IDEMPOTENT = (value, count) -> value;
+
+    /**
+     * See {@link RepeatOperator#repeat(Object, int)}.
+     * @param value the value to combine
+     * @param count how many values are combined, always at least 1
+     * @return the combination of count values
+     */
+    double repeatAsDouble(double value, int count);
+
+    /**
+     * See {@link RepeatOperator#byDoubling(java.util.function.BinaryOperator)}.
+     * @param operator the operator to combine values
+     * @return a repeat operator of the operator
+     */
+    static DoubleRepeatOperator byDoubling(DoubleBinaryOperator operator) {
+        return (value, count) -> {
+            double combination = value;
+            double power = value;
+            boolean empty = true;
+            while (true) {
+                if ((count & 1) != 0) {
+                    combination = empty ? power : operator.applyAsDouble(combination, power);
+                    empty = false;
+                }
+                count >>>= 1;
+                if (count == 0) {
+                    return combination;
+                }
+                power = operator.applyAsDouble(power, power);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,805 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A segment tree {@link FixedSizeBooleanSegmentTree} which stores its elements and their combinations as bits in a {@link long} array.
+ * All methods work in the same way as {@link FixedSizeBooleanSegmentTree}.
+ * Instead of a binary tree, this tree is a tree with 64 children per node: 64 bits of a level are stored in a word and
+ * the combination of a word is a single bit in the next level, until the top level which only has 1 bit, the combination of all elements.
+ * Combinations of bits in a word are calculated by masks and {@link Long#bitCount(long)} according to the operator's truth table
+ * (see {@link BooleanBinaryOperator#truthTableOf(BooleanBinaryOperator)}), so the operator must be associative.
+ * This tree needs about size / 8 bytes while {@link FixedSizeBooleanSegmentTree} needs about size * 6 bytes.
+ */
+public class FixedSizeBitPackedBooleanSegmentTree extends FixedSizeBooleanSegmentTree {
+
+    protected static final int FALSE = 0b0000;
+    protected static final int AND = 0b1000;
+    protected static final int LEFT = 0b1100;
+    protected static final int RIGHT = 0b1010;
+    protected static final int XOR = 0b0110;
+    protected static final int OR = 0b1110;
+    protected static final int XNOR = 0b1001;
+    protected static final int TRUE = 0b1111;
+
+    /**
+     * The truth table of {@link FixedSizeBooleanSegmentTree#operator}.
+     */
+    protected final int truthTable;
+
+    /**
+     * All levels of this tree. Level 0 are the elements of this tree, bit (index % 64) of word (index / 64) is the element at index.
+     * Bit i of level k + 1 is the combination of all bits in word i of level k.
+     */
+    protected final long[] words;
+
+    /**
+     * Index of the first word of each level in {@link FixedSizeBitPackedBooleanSegmentTree#words}.
+     */
+    protected final int[] levelOffsets;
+
+    /**
+     * How many bits are in each level.
+     */
+    protected final int[] levelSizes;
+
+    public FixedSizeBitPackedBooleanSegmentTree(BooleanBinaryOperator operator, boolean[] allElements) {
+        this(operator, allElements, false);
+    }
+
+    /**
+     * Initialize a tree and set its operator and all element's value.
+     * @param operator the operator to combine elements
+     * @param allElements all elements which will be put in this tree
+     * @param elementsOnly if true, only level 0 is built and a subclass should combine elements itself
+     */
+    protected FixedSizeBitPackedBooleanSegmentTree(BooleanBinaryOperator operator, boolean[] allElements, boolean elementsOnly) {
+        super(allElements.length, operator, null, null);
+        if (size == 0) {
+            throw new IllegalArgumentException("A segment tree should contain at least 1 element.");
+        }
+        this.truthTable = BooleanBinaryOperator.truthTableOf(operator);
+        if (!BooleanBinaryOperator.isAssociative(truthTable)) {
+            throw new IllegalArgumentException("The operator of a segment tree should be associative.");
+        }
+        int levelCount = 1;
+        int wordCount = 0;
+        for (int levelSize = size; ; levelSize = (levelSize + 63) >>> 6) {
+            wordCount += (levelSize + 63) >>> 6;
+            if (levelSize == 1 || elementsOnly) {
+                break;
+            }
+            levelCount++;
+        }
+        this.words = new long[wordCount];
+        this.levelOffsets = new int[levelCount];
+        this.levelSizes = new int[levelCount];
+        for (int level = 0, levelSize = size, levelOffset = 0; level < levelCount; level++) {
+            levelOffsets[level] = levelOffset;
+            levelSizes[level] = levelSize;
+            levelOffset += (levelSize + 63) >>> 6;
+            levelSize = (levelSize + 63) >>> 6;
+        }
+        for (int index = 0; index < size; index++) {
+            if (allElements[index]) {
+                words[index >>> 6] |= 1L << index;
+            }
+        }
+        for (int level = 0; level < levelCount - 1; level++) {
+            int levelOffset = levelOffsets[level];
+            int levelSize = levelSizes[level];
+            int parentLevelOffset = levelOffsets[level + 1];
+            for (int wordIndex = 0; wordIndex << 6 < levelSize; wordIndex++) {
+                if (combineBits(words[levelOffset + wordIndex], 0, Math.min(64, levelSize - (wordIndex << 6)))) {
+                    words[parentLevelOffset + (wordIndex >>> 6)] |= 1L << wordIndex;
+                }
+            }
+        }
+    }
+
+    /**
+     * For {@link FixedSizeBitPackedBooleanSegmentTree.SubList}.
+     * @param size size of the sub list
+     * @param tree the tree to share bits with
+     */
+    protected FixedSizeBitPackedBooleanSegmentTree(int size, FixedSizeBitPackedBooleanSegmentTree tree) {
+        super(size, tree.operator, null, null);
+        this.truthTable = tree.truthTable;
+        this.words = tree.words;
+        this.levelOffsets = tree.levelOffsets;
+        this.levelSizes = tree.levelSizes;
+    }
+
+    /**
+     * Combine bits [fromBit, toBit) of a word.
+     * @param word the word contains bits to combine
+     * @param fromBit the first bit to combine
+     * @param toBit the bit after the last bit to combine, should larger than fromBit and not larger than 64
+     * @return combination of the bits
+     */
+    protected boolean combineBits(long word, int fromBit, int toBit) {
+        long mask = (-1L >>> (64 - (toBit - fromBit))) << fromBit;
+        switch (truthTable) {
+            case AND:
+                return (word & mask) == mask;
+            case OR:
+                return (word & mask) != 0;
+            case XOR:
+                return (Long.bitCount(word & mask) & 1) != 0;
+            case XNOR:
+                return ((Long.bitCount(word & mask) + toBit - fromBit - 1) & 1) != 0;
+            case LEFT:
+                return (word & (1L << fromBit)) != 0;
+            case RIGHT:
+                return (word & (1L << (toBit - 1))) != 0;
+            case TRUE:
+                return toBit - fromBit > 1 || (word & mask) != 0;
+            default:
+                return toBit - fromBit == 1 && (word & mask) != 0;
+        }
+    }
+
+    protected boolean getBit(int level, int bitIndex) {
+        return (words[levelOffsets[level] + (bitIndex >>> 6)] & (1L << bitIndex)) != 0;
+    }
+
+    @Override
+    public boolean setValueAndGetCombination(int index, boolean value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int topLevel = levelOffsets.length - 1;
+        int bitIndex = index;
+        for (int level = 0; level < topLevel; level++) {
+            int wordIndex = levelOffsets[level] + (bitIndex >>> 6);
+            long word = words[wordIndex];
+            long newWord = value ? word | (1L << bitIndex) : word & ~(1L << bitIndex);
+            if (newWord == word) {
+                return getCombinationAsBoolean();
+            }
+            words[wordIndex] = newWord;
+            int wordLeftBorder = bitIndex & ~63;
+            value = combineBits(newWord, 0, Math.min(64, levelSizes[level] - wordLeftBorder));
+            bitIndex >>>= 6;
+        }
+        int topWordIndex = levelOffsets[topLevel];
+        words[topWordIndex] = value ? 1L : 0L;
+        return value;
+    }
+
+    @Override
+    public boolean setValues(int[] indexes, boolean[] values) {
+        checkIndexes(indexes, values.length);
+        int[] dirtyBitIndexes = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            if (values[i]) {
+                words[index >>> 6] |= 1L << index;
+            } else {
+                words[index >>> 6] &= ~(1L << index);
+            }
+            dirtyBitIndexes[i] = index >>> 6;
+        }
+        Arrays.sort(dirtyBitIndexes);
+        int dirtyCount = dirtyBitIndexes.length;
+        for (int level = 0; level < levelOffsets.length - 1; level++) {
+            int levelOffset = levelOffsets[level];
+            int levelSize = levelSizes[level];
+            int parentLevelOffset = levelOffsets[level + 1];
+            int parentDirtyCount = 0;
+            for (int i = 0, lastWordIndex = -1; i < dirtyCount; i++) {
+                int wordIndex = dirtyBitIndexes[i];
+                if (wordIndex == lastWordIndex) {
+                    continue;
+                }
+                lastWordIndex = wordIndex;
+                if (combineBits(words[levelOffset + wordIndex], 0, Math.min(64, levelSize - (wordIndex << 6)))) {
+                    words[parentLevelOffset + (wordIndex >>> 6)] |= 1L << wordIndex;
+                } else {
+                    words[parentLevelOffset + (wordIndex >>> 6)] &= ~(1L << wordIndex);
+                }
+                dirtyBitIndexes[parentDirtyCount++] = wordIndex >>> 6;
+            }
+            dirtyCount = parentDirtyCount;
+        }
+        return getCombinationAsBoolean();
+    }
+
+    /**
+     * Set all elements in segment [segmentLeftBorder, segmentRightBorder) to the same value.
+     * Instead of lazy tags, the bits are filled directly because a word already contains 64 elements,
+     * so it takes O((segmentRightBorder - segmentLeftBorder) / 64 + log(n)).
+     */
+    @Override
+    public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        fillBits(levelOffsets[0], segmentLeftBorder, segmentRightBorder, value);
+        int dirtyLeftWordIndex = segmentLeftBorder >>> 6;
+        int dirtyRightWordIndex = (segmentRightBorder - 1) >>> 6;
+        for (int level = 0; level < levelOffsets.length - 1; level++) {
+            int levelOffset = levelOffsets[level];
+            int levelSize = levelSizes[level];
+            int parentLevelOffset = levelOffsets[level + 1];
+            for (int wordIndex = dirtyLeftWordIndex; wordIndex <= dirtyRightWordIndex; wordIndex++) {
+                if (combineBits(words[levelOffset + wordIndex], 0, Math.min(64, levelSize - (wordIndex << 6)))) {
+                    words[parentLevelOffset + (wordIndex >>> 6)] |= 1L << wordIndex;
+                } else {
+                    words[parentLevelOffset + (wordIndex >>> 6)] &= ~(1L << wordIndex);
+                }
+            }
+            dirtyLeftWordIndex >>>= 6;
+            dirtyRightWordIndex >>>= 6;
+        }
+        return getCombinationAsBoolean();
+    }
+
+    protected void fillBits(int levelOffset, int fromBit, int toBit, boolean value) {
+        int leftWordIndex = levelOffset + (fromBit >>> 6);
+        int rightWordIndex = levelOffset + ((toBit - 1) >>> 6);
+        long leftMask = -1L << fromBit;
+        long rightMask = -1L >>> (63 - ((toBit - 1) & 63));
+        if (leftWordIndex == rightWordIndex) {
+            leftMask &= rightMask;
+        } else {
+            Arrays.fill(words, leftWordIndex + 1, rightWordIndex, value ? -1L : 0L);
+            words[rightWordIndex] = value ? words[rightWordIndex] | rightMask : words[rightWordIndex] & ~rightMask;
+        }
+        words[leftWordIndex] = value ? words[leftWordIndex] | leftMask : words[leftWordIndex] & ~leftMask;
+    }
+
+    @Override
+    public boolean set(int index, boolean element) {
+        boolean lastValue = getAsBoolean(index);
+        setValueAndGetCombination(index, element);
+        return lastValue;
+    }
+
+    @Override
+    public Boolean setValueAndGetCombination(int index, @Nonnull Boolean value) {
+        return setValueAndGetCombination(index, (boolean) value);
+    }
+
+    @Override
+    public boolean getAsBoolean(int index) {
+        return getBit(0, index);
+    }
+
+    @Override
+    public boolean getCombinationAsBoolean() {
+        return words[words.length - 1] != 0;
+    }
+
+    @Override
+    public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        return getCombination(0, segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * Combine bits [segmentLeftBorder, segmentRightBorder) of a level.
+     * Whole words between the first and the last word are combined by the next level.
+     */
+    private boolean getCombination(int level, int segmentLeftBorder, int segmentRightBorder) {
+        int levelOffset = levelOffsets[level];
+        int leftWordIndex = segmentLeftBorder >>> 6;
+        int rightWordIndex = (segmentRightBorder - 1) >>> 6;
+        if (leftWordIndex == rightWordIndex) {
+            return combineBits(words[levelOffset + leftWordIndex], segmentLeftBorder & 63, ((segmentRightBorder - 1) & 63) + 1);
+        }
+        boolean combination = combineBits(words[levelOffset + leftWordIndex], segmentLeftBorder & 63, 64);
+        if (rightWordIndex - leftWordIndex > 1) {
+            combination = BooleanBinaryOperator.applyTruthTable(truthTable, combination, getCombination(level + 1, leftWordIndex + 1, rightWordIndex));
+        }
+        return BooleanBinaryOperator.applyTruthTable(truthTable, combination, combineBits(words[levelOffset + rightWordIndex], 0, ((segmentRightBorder - 1) & 63) + 1));
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#maxRight(int, Predicate)}.
+     * Whole words are combined by the bits of the next level while the predicate is satisfied,
+     * then the border is found in the first unsatisfied word by binary search with {@link FixedSizeBitPackedBooleanSegmentTree#combineBits(long, int, int)}
+     * and the search descends into the child word of the unsatisfied bit, so it takes O(log(n)).
+     */
+    @Override
+    public int maxRight(int segmentLeftBorder, Predicate<Boolean> predicate) {
+        if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+        }
+        return findMaxRight(segmentLeftBorder, size, predicate);
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#minLeft(int, Predicate)}. The mirror of {@link FixedSizeBitPackedBooleanSegmentTree#maxRight(int, Predicate)}.
+     */
+    @Override
+    public int minLeft(int segmentRightBorder, Predicate<Boolean> predicate) {
+        if (segmentRightBorder < 0 || segmentRightBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+        }
+        return findMinLeft(0, segmentRightBorder, predicate);
+    }
+
+    /**
+     * Find the largest segmentRightBorder not larger than rightLimit that bits [segmentLeftBorder, segmentRightBorder) of level 0 satisfy the predicate.
+     * A bit of level k covers 64^k bits of level 0, so it is only used if all of them are before rightLimit.
+     */
+    private int findMaxRight(int segmentLeftBorder, int rightLimit, Predicate<Boolean> predicate) {
+        int level = 0;
+        int bitIndex = segmentLeftBorder;
+        boolean combination = false;
+        boolean combined = false;
+        while (true) {
+            int levelLimit = (int) ((long) rightLimit >>> (6 * level));
+            if (bitIndex == levelLimit) {
+                if (level == 0) {
+                    return rightLimit;
+                }
+                level--;
+                bitIndex <<= 6;
+                continue;
+            }
+            int wordRightBorder = Math.min((bitIndex | 63) + 1, levelLimit);
+            boolean bits = combineBits(words[levelOffsets[level] + (bitIndex >>> 6)], bitIndex & 63, ((wordRightBorder - 1) & 63) + 1);
+            boolean newCombination = combined ? BooleanBinaryOperator.applyTruthTable(truthTable, combination, bits) : bits;
+            if (!predicate.test(newCombination)) {
+                break;
+            }
+            combination = newCombination;
+            combined = true;
+            bitIndex = wordRightBorder;
+            if (bitIndex != levelLimit && level + 1 < levelOffsets.length) {
+                level++;
+                bitIndex >>>= 6;
+            }
+        }
+        while (true) {
+            long word = words[levelOffsets[level] + (bitIndex >>> 6)];
+            int fromBit = bitIndex & 63;
+            int satisfied = fromBit;
+            int unsatisfied = Math.min(64, (int) ((long) rightLimit >>> (6 * level)) - (bitIndex & ~63));
+            while (unsatisfied - satisfied > 1) {
+                int middle = (satisfied + unsatisfied) >>> 1;
+                boolean bits = combineBits(word, fromBit, middle);
+                if (predicate.test(combined ? BooleanBinaryOperator.applyTruthTable(truthTable, combination, bits) : bits)) {
+                    satisfied = middle;
+                } else {
+                    unsatisfied = middle;
+                }
+            }
+            if (satisfied != fromBit) {
+                boolean bits = combineBits(word, fromBit, satisfied);
+                combination = combined ? BooleanBinaryOperator.applyTruthTable(truthTable, combination, bits) : bits;
+                combined = true;
+            }
+            bitIndex = (bitIndex & ~63) + satisfied;
+            if (level == 0) {
+                return bitIndex;
+            }
+            level--;
+            bitIndex <<= 6;
+        }
+    }
+
+    /**
+     * Find the smallest segmentLeftBorder not smaller than leftLimit that bits [segmentLeftBorder, segmentRightBorder) of level 0 satisfy the predicate.
+     * A bit of level k covers 64^k bits of level 0, so it is only used if none of them is before leftLimit.
+     */
+    private int findMinLeft(int leftLimit, int segmentRightBorder, Predicate<Boolean> predicate) {
+        int level = 0;
+        int bitIndex = segmentRightBorder;
+        boolean combination = false;
+        boolean combined = false;
+        while (true) {
+            int levelLimit = (int) (((long) leftLimit + (1L << (6 * level)) - 1) >>> (6 * level));
+            if (bitIndex == levelLimit) {
+                if (level == 0) {
+                    return leftLimit;
+                }
+                level--;
+                bitIndex <<= 6;
+                continue;
+            }
+            int wordLeftBorder = Math.max((bitIndex - 1) & ~63, levelLimit);
+            boolean bits = combineBits(words[levelOffsets[level] + ((bitIndex - 1) >>> 6)], wordLeftBorder & 63, ((bitIndex - 1) & 63) + 1);
+            boolean newCombination = combined ? BooleanBinaryOperator.applyTruthTable(truthTable, bits, combination) : bits;
+            if (!predicate.test(newCombination)) {
+                break;
+            }
+            combination = newCombination;
+            combined = true;
+            bitIndex = wordLeftBorder;
+            if (bitIndex != levelLimit && level + 1 < levelOffsets.length) {
+                level++;
+                bitIndex >>>= 6;
+            }
+        }
+        while (true) {
+            int wordLeftBorder = (bitIndex - 1) & ~63;
+            long word = words[levelOffsets[level] + (wordLeftBorder >>> 6)];
+            int toBit = ((bitIndex - 1) & 63) + 1;
+            int satisfied = toBit;
+            int unsatisfied = Math.max(0, (int) (((long) leftLimit + (1L << (6 * level)) - 1) >>> (6 * level)) - wordLeftBorder);
+            while (satisfied - unsatisfied > 1) {
+                int middle = (satisfied + unsatisfied) >> 1;
+                boolean bits = combineBits(word, middle, toBit);
+                if (predicate.test(combined ? BooleanBinaryOperator.applyTruthTable(truthTable, bits, combination) : bits)) {
+                    satisfied = middle;
+                } else {
+                    unsatisfied = middle;
+                }
+            }
+            if (satisfied != toBit) {
+                boolean bits = combineBits(word, satisfied, toBit);
+                combination = combined ? BooleanBinaryOperator.applyTruthTable(truthTable, bits, combination) : bits;
+                combined = true;
+            }
+            bitIndex = wordLeftBorder + satisfied;
+            if (level == 0) {
+                return bitIndex;
+            }
+            level--;
+            bitIndex <<= 6;
+        }
+    }
+
+    @Override
+    public ListIterator<Boolean> listIterator() {
+        return new FixedSizeBitPackedBooleanSegmentTree.Iter(0, 0, size);
+    }
+
+    @Override
+    public ListIterator<Boolean> listIterator(int index) {
+        return new FixedSizeBitPackedBooleanSegmentTree.Iter(index, 0, size);
+    }
+
+    @Override
+    public FixedSizeBitPackedBooleanSegmentTree subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex >= toIndex) {
+            throw new IndexOutOfBoundsException("FromIndex: " + fromIndex + ", ToIndex: " + toIndex + ", Size: " + size);
+        }
+        return new FixedSizeBitPackedBooleanSegmentTree.SubList(fromIndex, toIndex - fromIndex);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Boolean)) {
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (getBit(0, i) == (Boolean) o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if (!(o instanceof Boolean)) {
+            return -1;
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            if (getBit(0, i) == (Boolean) o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] copy = new Boolean[size];
+        for(int i = 0; i < size; i++) {
+            copy[i] = getBit(0, i);
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean[] toArrayPrimary() {
+        boolean[] copy = new boolean[size];
+        for(int i = 0; i < size; i++) {
+            copy[i] = getBit(0, i);
+        }
+        return copy;
+    }
+
+    @Override
+    public <ArrayType> ArrayType[] toArray(ArrayType[] container) {
+        if (!container.getClass().getComponentType().equals(Boolean.class)) {
+            throw new ClassCastException("The only type of container can be accessed is Boolean[].");
+        }
+        Boolean[] array;
+        if (container.length < size) {
+            array = (Boolean[]) Array.newInstance(container.getClass().getComponentType(), size);
+        } else {
+            array = (Boolean[]) container;
+        }
+        for(int i = 0; i < size; i++) {
+            array[i] = getBit(0, i);
+        }
+        return (ArrayType[]) array;
+    }
+
+    @Override
+    public boolean[] toArray(boolean[] container) {
+        boolean[] array;
+        if (container.length < size) {
+            array = new boolean[size];
+        } else {
+            array = container;
+        }
+        for(int i = 0; i < size; i++) {
+            array[i] = getBit(0, i);
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder(Math.max(16, size * 7));
+        stringBuilder.append("packed boolean: {").append(getCombination()).append(" = {");
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(getBit(0, i));
+        }
+        stringBuilder.append("}}");
+        return stringBuilder.toString();
+    }
+
+    protected class Iter implements ListIterator<Boolean> {
+        private int nextElementIndex;
+        private int lastElementIndex = -1;
+
+        private final int leftBorder;
+
+        private final int rightBorder;
+
+        Iter(int nextElementIndex, int leftBorder, int rightBorder) {
+            this.nextElementIndex = nextElementIndex;
+            this.leftBorder = leftBorder;
+            this.rightBorder = rightBorder;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextElementIndex < rightBorder;
+        }
+
+        @Override
+        public Boolean next() {
+            if (nextElementIndex >= rightBorder) {
+                throw new NoSuchElementException();
+            }
+            lastElementIndex = nextElementIndex++;
+            return getBit(0, lastElementIndex);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextElementIndex > leftBorder;
+        }
+
+        @Override
+        public Boolean previous() {
+            if (nextElementIndex <= leftBorder) {
+                throw new NoSuchElementException();
+            }
+            lastElementIndex = --nextElementIndex;
+            return getBit(0, lastElementIndex);
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextElementIndex - leftBorder;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextElementIndex - leftBorder - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(Boolean value) {
+            if (lastElementIndex < 0) {
+                throw new IllegalStateException();
+            }
+            FixedSizeBitPackedBooleanSegmentTree.this.setValueAndGetCombination(lastElementIndex, (boolean) value);
+        }
+
+        @Override
+        public void add(Boolean type) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    protected class SubList extends FixedSizeBitPackedBooleanSegmentTree {
+
+        private final int indexOffset;
+
+        SubList(int indexOffset, int size) {
+            super(size, FixedSizeBitPackedBooleanSegmentTree.this);
+            this.indexOffset = indexOffset;
+        }
+
+        @Override
+        public boolean setValueAndGetCombination(int index, boolean value) {
+            checkIndex(index);
+            FixedSizeBitPackedBooleanSegmentTree.this.setValueAndGetCombination(index + indexOffset, value);
+            return getCombinationAsBoolean();
+        }
+
+        @Override
+        public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+            if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+                throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+            }
+            FixedSizeBitPackedBooleanSegmentTree.this.setRange(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset, value);
+            return getCombinationAsBoolean();
+        }
+
+        @Override
+        public boolean setValues(int[] indexes, boolean[] values) {
+            checkIndexes(indexes, values.length);
+            int[] outerIndexes = new int[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                outerIndexes[i] = indexes[i] + indexOffset;
+            }
+            FixedSizeBitPackedBooleanSegmentTree.this.setValues(outerIndexes, values);
+            return getCombinationAsBoolean();
+        }
+
+        @Override
+        public boolean getAsBoolean(int index) {
+            checkIndex(index);
+            return FixedSizeBitPackedBooleanSegmentTree.this.getAsBoolean(index + indexOffset);
+        }
+
+        @Override
+        public boolean getCombinationAsBoolean() {
+            return FixedSizeBitPackedBooleanSegmentTree.this.getCombinationAsBoolean(indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
+            if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+                throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+            }
+            return FixedSizeBitPackedBooleanSegmentTree.this.getCombinationAsBoolean(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset);
+        }
+
+        @Override
+        public int maxRight(int segmentLeftBorder, Predicate<Boolean> predicate) {
+            if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+            }
+            return findMaxRight(segmentLeftBorder + indexOffset, indexOffset + size, predicate) - indexOffset;
+        }
+
+        @Override
+        public int minLeft(int segmentRightBorder, Predicate<Boolean> predicate) {
+            if (segmentRightBorder < 0 || segmentRightBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+            }
+            return findMinLeft(indexOffset, segmentRightBorder + indexOffset, predicate) - indexOffset;
+        }
+
+        @Override
+        public ListIterator<Boolean> listIterator() {
+            return FixedSizeBitPackedBooleanSegmentTree.this.new Iter(indexOffset, indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public ListIterator<Boolean> listIterator(int index) {
+            return FixedSizeBitPackedBooleanSegmentTree.this.new Iter(indexOffset + index, indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public FixedSizeBitPackedBooleanSegmentTree subList(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > size || fromIndex >= toIndex) {
+                throw new IndexOutOfBoundsException("FromIndex: " + fromIndex + ", ToIndex: " + toIndex + ", Size: " + size);
+            }
+            return FixedSizeBitPackedBooleanSegmentTree.this.subList(indexOffset + fromIndex, indexOffset + toIndex);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            if (!(o instanceof Boolean)) {
+                return -1;
+            }
+            for (int i = 0; i < size; i++) {
+                if (FixedSizeBitPackedBooleanSegmentTree.this.get(i + indexOffset).equals(o)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            if (!(o instanceof Boolean)) {
+                return -1;
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                if (FixedSizeBitPackedBooleanSegmentTree.this.get(i + indexOffset).equals(o)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object[] toArray() {
+            Object[] copy = new Boolean[size];
+            for(int i = 0; i < size; i++) {
+                copy[i] = FixedSizeBitPackedBooleanSegmentTree.this.get(i + indexOffset);
+            }
+            return copy;
+        }
+
+        @Override
+        public boolean[] toArray(boolean[] container) {
+            boolean[] array;
+            if (container.length < size) {
+                array = new boolean[size];
+            } else {
+                array = container;
+            }
+            for(int i = 0; i < size; i++) {
+                array[i] = FixedSizeBitPackedBooleanSegmentTree.this.getAsBoolean(i + indexOffset);
+            }
+            return array;
+        }
+
+        @Override
+        public boolean[] toArrayPrimary() {
+            return toArray(new boolean[size]);
+        }
+
+        @Override
+        public <ArrayType> ArrayType[] toArray(ArrayType[] container) {
+            if (!container.getClass().getComponentType().equals(Boolean.class)) {
+                throw new ClassCastException("The only type of container can be accessed is Boolean[].");
+            }
+            Boolean[] array;
+            if (container.length < size) {
+                array = (Boolean[]) Array.newInstance(container.getClass().getComponentType(), size);
+            } else {
+                array = (Boolean[]) container;
+            }
+            for(int i = 0; i < size; i++) {
+                array[i] = FixedSizeBitPackedBooleanSegmentTree.this.get(i + indexOffset);
+            }
+            return (ArrayType[]) array;
+        }
+
+        @Override
+        public String toString() {
+            return "section [" + indexOffset + ", " + (indexOffset + size) + ") of " + FixedSizeBitPackedBooleanSegmentTree.this;
+        }
+
+        private void checkIndex(int index) throws IndexOutOfBoundsException {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+    }
+}
@@ -3,17 +3,23 @@ package dr.magicalstone.controlling_reforge.api.util;
 import javax.annotation.Nonnull;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * A segment tree {@link FixedSizeSegmentTree} whose element Type is primitive {@link boolean}.
  * All methods work in the same way as {@link FixedSizeSegmentTree}.
- * There will be other primitive segment trees of {@link double}, but no for {@link byte}, {@link short}, {@link int}, {@link float}, {@link char}.
+ * Primitive segment trees are of {@link boolean}, {@link long} and {@link double}, but no for {@link byte}, {@link short}, {@link int}, {@link float}, {@link char}.
  */
 public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
 
     protected final BooleanBinaryOperator operator;
     protected final boolean[] elements;
 
+    /**
+     * The values of the lazy tags. See {@link FixedSizeSegmentTree#lazyTagged}.
+     */
+    protected boolean[] lazyValues;
+
     public FixedSizeBooleanSegmentTree(BooleanBinaryOperator operator, boolean[] allElements) {
         super(allElements.length, null, (Boolean[]) null);
         this.operator = operator;
@@ -56,13 +62,38 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         }
     }
 
+    /**
+     * Create a boolean segment tree and choose its engine by the operator.
+     * If the operator is and, or, xor or xnor, the combination of all elements only depends on the count of true elements,
+     * so a {@link FixedSizeCountingBooleanSegmentTree} is created which sets an element and gets the combination in O(1).
+     * Otherwise a {@link FixedSizeBooleanSegmentTree} is created.
+     * @param operator the operator to combine elements
+     * @param allElements all elements which will be put in the tree
+     * @return a tree which works in the same way as {@link FixedSizeBooleanSegmentTree}
+     */
+    public static FixedSizeBooleanSegmentTree of(BooleanBinaryOperator operator, boolean[] allElements) {
+        if (allElements.length != 0 && FixedSizeCountingBooleanSegmentTree.isCountable(BooleanBinaryOperator.truthTableOf(operator))) {
+            return new FixedSizeCountingBooleanSegmentTree(operator, allElements);
+        }
+        return new FixedSizeBooleanSegmentTree(operator, allElements);
+    }
+
     protected FixedSizeBooleanSegmentTree(int size, BooleanBinaryOperator operator, boolean[] elements) {
         super(size, null, (Boolean[]) null);
         this.operator = operator;
         this.elements = elements;
     }
 
+    protected FixedSizeBooleanSegmentTree(int size, BooleanBinaryOperator operator, boolean[] elements, int[] realIndexIndex) {
+        super(size, null, null, realIndexIndex);
+        this.operator = operator;
+        this.elements = elements;
+    }
+
     public boolean setValueAndGetCombination(int index, boolean value) {
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
         int elementRealIndex = realIndexIndex[index];
         elements[elementRealIndex] = value;
         boolean leftChild;
@@ -87,8 +118,35 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         return rightChild;
     }
 
+    public boolean setValues(int[] indexes, boolean[] values) {
+        checkIndexes(indexes, values.length);
+        int[] leafRealIndexes = new int[indexes.length];
+        for (int i = 0; lazyTagCount != 0 && i < indexes.length; i++) {
+            pushLazyTagsTo(indexes[i]);
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            int elementRealIndex = realIndexIndex[indexes[i]];
+            elements[elementRealIndex] = values[i];
+            leafRealIndexes[i] = elementRealIndex;
+        }
+        int[] dirtyRealIndexes = collectDirtyRealIndexes(leafRealIndexes, elements.length / 2);
+        for (int i = 0, elementRealIndex; i < dirtyRealIndexes.length && (elementRealIndex = dirtyRealIndexes[i]) != 0; i++) {
+            elements[elementRealIndex] = operator.applyAsBoolean(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+        return elements[1];
+    }
+
+    @Override
+    public Boolean setValues(int[] indexes, Boolean[] values) {
+        boolean[] primaryValues = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            primaryValues[i] = values[i];
+        }
+        return setValues(indexes, primaryValues);
+    }
+
     public boolean set(int index, boolean element) {
-        boolean lastValue = get(index);
+        boolean lastValue = getAsBoolean(index);
         setValueAndGetCombination(index, element);
         return lastValue;
     }
@@ -100,16 +158,107 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
 
     @Override
     public Boolean get(int index) {
+        return getAsBoolean(index);
+    }
+
+    /**
+     * The same as {@link FixedSizeBooleanSegmentTree#get(int)}, but returns primitive {@link boolean} without unboxing.
+     * @param index index of the element to return
+     * @return the element at the index
+     */
+    public boolean getAsBoolean(int index) {
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
         return elements[realIndexIndex[index]];
     }
 
+    public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        if (lazyTagged == null) {
+            lazyTagged = new boolean[elements.length / 2];
+            lazyValues = new boolean[elements.length / 2];
+        }
+        setRange(segmentLeftBorder, segmentRightBorder, value, 0, size, 1);
+        return elements[1];
+    }
+
+    @Override
+    public Boolean setRange(int segmentLeftBorder, int segmentRightBorder, @Nonnull Boolean value) {
+        return setRange(segmentLeftBorder, segmentRightBorder, (boolean) value);
+    }
+
+    private void setRange(int segmentLeftBorder, int segmentRightBorder, boolean value, int leftBorder, int rightBorder, int elementRealIndex) {
+        if (segmentLeftBorder <= leftBorder && rightBorder <= segmentRightBorder) {
+            setLazyTag(elementRealIndex, rightBorder - leftBorder, value);
+            return;
+        }
+        pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        if (segmentLeftBorder < childElementMiddleBorder) {
+            setRange(segmentLeftBorder, segmentRightBorder, value, leftBorder, childElementMiddleBorder, elementRealIndex * 2);
+        }
+        if (segmentRightBorder > childElementMiddleBorder) {
+            setRange(segmentLeftBorder, segmentRightBorder, value, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1);
+        }
+        elements[elementRealIndex] = operator.applyAsBoolean(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+    }
+
+    protected void setLazyTag(int elementRealIndex, int segmentSize, boolean value) {
+        if (segmentSize == 1) {
+            elements[elementRealIndex] = value;
+            return;
+        }
+        boolean twoValues = operator.applyAsBoolean(value, value);
+        // For boolean, value op ... op value (n values) is always the same for all even n (and for all odd n larger than 1).
+        elements[elementRealIndex] = (segmentSize & 1) == 0 ? twoValues : operator.applyAsBoolean(twoValues, value);
+        if (!lazyTagged[elementRealIndex]) {
+            lazyTagged[elementRealIndex] = true;
+            lazyTagCount++;
+        }
+        lazyValues[elementRealIndex] = value;
+    }
+
+    @Override
+    protected void pushLazyTag(int elementRealIndex, int leftBorder, int rightBorder) {
+        if (lazyTagCount == 0 || !lazyTagged[elementRealIndex]) {
+            return;
+        }
+        lazyTagged[elementRealIndex] = false;
+        lazyTagCount--;
+        boolean value = lazyValues[elementRealIndex];
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        setLazyTag(elementRealIndex * 2, childElementMiddleBorder - leftBorder, value);
+        setLazyTag(elementRealIndex * 2 + 1, rightBorder - childElementMiddleBorder, value);
+    }
+
     @Override
     public Boolean getCombination() {
+        return getCombinationAsBoolean();
+    }
+
+    /**
+     * The same as {@link FixedSizeBooleanSegmentTree#getCombination()}, but returns primitive {@link boolean} without unboxing.
+     * @return combination of all elements
+     */
+    public boolean getCombinationAsBoolean() {
         return elements[1];
     }
 
     @Override
     public Boolean getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        return getCombinationAsBoolean(segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * The same as {@link FixedSizeBooleanSegmentTree#getCombination(int, int)}, but returns primitive {@link boolean} without unboxing.
+     * @param segmentLeftBorder left border of the segment of element's combination
+     * @param segmentRightBorder right border of the segment of element's combination
+     * @return combination of all elements (elements in segment [segmentLeftBorder, segmentRightBorder) )
+     */
+    public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
         if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
             throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
         }
@@ -134,6 +283,9 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         int currentElementRealIndex = elementRealIndex;
         boolean combination = false;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentRightBorder < currentChildElementMiddleBorder) {
                 currentRightBorder = currentChildElementMiddleBorder;
@@ -159,6 +311,9 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         int currentElementRealIndex = elementRealIndex;
         boolean combination = false;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentLeftBorder > currentChildElementMiddleBorder) {
                 currentLeftBorder = currentChildElementMiddleBorder;
@@ -183,6 +338,9 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         int currentRightBorder = size;
         int currentElementRealIndex = 1;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentRightBorder == currentChildElementMiddleBorder) {
                 return getCombinationLInROut(segmentLeftBorder, currentLeftBorder, currentChildElementMiddleBorder, currentElementRealIndex * 2);
@@ -206,6 +364,74 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         }
     }
 
+    @Override
+    public int maxRight(int segmentLeftBorder, Predicate<Boolean> predicate) {
+        if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+        }
+        if (segmentLeftBorder == size) {
+            return size;
+        }
+        int segmentRightBorder = maxRight(segmentLeftBorder, predicate, 0, size, 1, new boolean[1]);
+        return segmentRightBorder < 0 ? size : segmentRightBorder;
+    }
+
+    private int maxRight(int segmentLeftBorder, Predicate<Boolean> predicate, int leftBorder, int rightBorder, int elementRealIndex, boolean[] combination) {
+        if (rightBorder <= segmentLeftBorder) {
+            return -1;
+        }
+        if (segmentLeftBorder <= leftBorder) {
+            boolean newCombination = leftBorder == segmentLeftBorder ? elements[elementRealIndex] : operator.applyAsBoolean(combination[0], elements[elementRealIndex]);
+            if (predicate.test(newCombination)) {
+                combination[0] = newCombination;
+                return -1;
+            }
+            if (rightBorder - leftBorder == 1) {
+                return leftBorder;
+            }
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        int index = maxRight(segmentLeftBorder, predicate, leftBorder, childElementMiddleBorder, elementRealIndex * 2, combination);
+        return index >= 0 ? index : maxRight(segmentLeftBorder, predicate, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1, combination);
+    }
+
+    @Override
+    public int minLeft(int segmentRightBorder, Predicate<Boolean> predicate) {
+        if (segmentRightBorder < 0 || segmentRightBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+        }
+        if (segmentRightBorder == 0) {
+            return 0;
+        }
+        int segmentLeftBorder = minLeft(segmentRightBorder, predicate, 0, size, 1, new boolean[1]);
+        return segmentLeftBorder < 0 ? 0 : segmentLeftBorder;
+    }
+
+    private int minLeft(int segmentRightBorder, Predicate<Boolean> predicate, int leftBorder, int rightBorder, int elementRealIndex, boolean[] combination) {
+        if (leftBorder >= segmentRightBorder) {
+            return -1;
+        }
+        if (rightBorder <= segmentRightBorder) {
+            boolean newCombination = rightBorder == segmentRightBorder ? elements[elementRealIndex] : operator.applyAsBoolean(elements[elementRealIndex], combination[0]);
+            if (predicate.test(newCombination)) {
+                combination[0] = newCombination;
+                return -1;
+            }
+            if (rightBorder - leftBorder == 1) {
+                return rightBorder;
+            }
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        int index = minLeft(segmentRightBorder, predicate, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1, combination);
+        return index >= 0 ? index : minLeft(segmentRightBorder, predicate, leftBorder, childElementMiddleBorder, elementRealIndex * 2, combination);
+    }
+
     @Override
     public ListIterator<Boolean> listIterator() {
         return new FixedSizeBooleanSegmentTree.Iter();
@@ -216,6 +442,17 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         return new FixedSizeBooleanSegmentTree.Iter(index);
     }
 
+    /**
+     * Get an {@link ListIterator} of elements in segment [leftBorder, rightBorder), for sub lists.
+     * @param index index of the first element to be returned by {@link ListIterator#next next}
+     * @param leftBorder left border of the segment
+     * @param rightBorder right border of the segment
+     * @return an {@link ListIterator} of elements in the segment
+     */
+    protected ListIterator<Boolean> listIterator(int index, int leftBorder, int rightBorder) {
+        return new Iter(index, leftBorder, rightBorder);
+    }
+
     @Override
     public FixedSizeBooleanSegmentTree subList(int fromIndex, int toIndex) {
         return new FixedSizeBooleanSegmentTree.SubList(fromIndex, toIndex - fromIndex);
@@ -224,6 +461,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
     @Override
     public Object[] toArray() {
         Object[] copy = new Boolean[size];
+        pushAllLazyTags();
         for(int i = 0; i < size; i++) {
             copy[i] = elements[realIndexIndex[i]];
         }
@@ -232,6 +470,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
 
     public boolean[] toArrayPrimary() {
         boolean[] copy = new boolean[size];
+        pushAllLazyTags();
         for(int i = 0; i < size; i++) {
             copy[i] = elements[realIndexIndex[i]];
         }
@@ -249,6 +488,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         } else {
             array = (Boolean[]) container;
         }
+        pushAllLazyTags();
         for(int i = 0; i < size; i++) {
             array[i] = elements[realIndexIndex[i]];
         }
@@ -262,6 +502,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         } else {
             array = container;
         }
+        pushAllLazyTags();
         for(int i = 0; i < size; i++) {
             array[i] = elements[realIndexIndex[i]];
         }
@@ -270,6 +511,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
 
     @Override
     public String toString() {
+        pushAllLazyTags();
         StringBuilder stringBuilder = new StringBuilder(Math.max(16, size * 4 - 1));
         stringBuilder.append("boolean").append(": {");
         partToString(0, size, 1, stringBuilder);
@@ -326,6 +568,9 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         @Override
         public Boolean next() {
             currentElementIndex++;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(currentElementIndex);
+            }
             return elements[realIndexIndex[currentElementIndex]];
         }
 
@@ -337,6 +582,9 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         @Override
         public Boolean previous() {
             currentElementIndex--;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(currentElementIndex);
+            }
             return elements[realIndexIndex[currentElementIndex]];
         }
 
@@ -372,11 +620,9 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
 
         private final int size;
 
-        private final boolean[] elements = FixedSizeBooleanSegmentTree.this.elements;
-        private final int[] realIndexIndex = FixedSizeBooleanSegmentTree.this.realIndexIndex;
 
         SubList(int indexOffset, int size) {
-            super(size, null, FixedSizeBooleanSegmentTree.this.elements);
+            super(size, null, FixedSizeBooleanSegmentTree.this.elements, FixedSizeBooleanSegmentTree.this.realIndexIndex);
             this.indexOffset = indexOffset;
             this.size = size;
         }
@@ -390,25 +636,66 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         @Override
         public boolean setValueAndGetCombination(int index, boolean value) {
             checkIndex(index);
-            return FixedSizeBooleanSegmentTree.this.setValueAndGetCombination(index + indexOffset, value);
+            FixedSizeBooleanSegmentTree.this.setValueAndGetCombination(index + indexOffset, value);
+            return getCombinationAsBoolean();
+        }
+
+        @Override
+        public boolean setValues(int[] indexes, boolean[] values) {
+            checkIndexes(indexes, values.length);
+            int[] outerIndexes = new int[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                outerIndexes[i] = indexes[i] + indexOffset;
+            }
+            FixedSizeBooleanSegmentTree.this.setValues(outerIndexes, values);
+            return getCombinationAsBoolean();
+        }
+
+        @Override
+        public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+            checkRange(segmentLeftBorder, segmentRightBorder);
+            FixedSizeBooleanSegmentTree.this.setRange(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset, value);
+            return getCombinationAsBoolean();
         }
 
         @Override
-        public Boolean getCombination() {
-            return FixedSizeBooleanSegmentTree.this.getCombination(indexOffset, indexOffset + size);
+        public boolean getCombinationAsBoolean() {
+            return FixedSizeBooleanSegmentTree.this.getCombinationAsBoolean(indexOffset, indexOffset + size);
         }
 
         @Override
-        public Boolean getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
             checkRange(segmentLeftBorder, segmentRightBorder);
-            return FixedSizeBooleanSegmentTree.this.getCombination(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset);
+            return FixedSizeBooleanSegmentTree.this.getCombinationAsBoolean(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset);
+        }
+
+        @Override
+        public int maxRight(int segmentLeftBorder, Predicate<Boolean> predicate) {
+            if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+            }
+            if (segmentLeftBorder == size) {
+                return size;
+            }
+            return Math.min(FixedSizeBooleanSegmentTree.this.maxRight(segmentLeftBorder + indexOffset, predicate), indexOffset + size) - indexOffset;
+        }
+
+        @Override
+        public int minLeft(int segmentRightBorder, Predicate<Boolean> predicate) {
+            if (segmentRightBorder < 0 || segmentRightBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+            }
+            if (segmentRightBorder == 0) {
+                return 0;
+            }
+            return Math.max(FixedSizeBooleanSegmentTree.this.minLeft(segmentRightBorder + indexOffset, predicate), indexOffset) - indexOffset;
         }
 
         @Override
         public int indexOf(Object o) {
             for (int i = indexOffset; i < size + indexOffset; i++) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
-                    return indexOffset;
+                if (Objects.equals(FixedSizeBooleanSegmentTree.this.get(i), o)) {
+                    return i - indexOffset;
                 }
             }
             return -1;
@@ -417,8 +704,8 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         @Override
         public int lastIndexOf(Object o) {
             for (int i = size + indexOffset - 1; i >= indexOffset; i--) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
-                    return indexOffset;
+                if (Objects.equals(FixedSizeBooleanSegmentTree.this.get(i), o)) {
+                    return i - indexOffset;
                 }
             }
             return -1;
@@ -426,12 +713,12 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
 
         @Override
         public ListIterator<Boolean> listIterator() {
-            return new FixedSizeBooleanSegmentTree.Iter(indexOffset, indexOffset, indexOffset + size);
+            return FixedSizeBooleanSegmentTree.this.listIterator(indexOffset, indexOffset, indexOffset + size);
         }
 
         @Override
         public ListIterator<Boolean> listIterator(int index) {
-            return new FixedSizeBooleanSegmentTree.Iter(indexOffset + index, indexOffset, indexOffset + size);
+            return FixedSizeBooleanSegmentTree.this.listIterator(indexOffset + index, indexOffset, indexOffset + size);
         }
 
         @Override
@@ -443,7 +730,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         @Override
         public boolean contains(Object o) {
             for (int i = indexOffset; i < size + indexOffset; i++) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
+                if (Objects.equals(FixedSizeBooleanSegmentTree.this.get(i), o)) {
                     return true;
                 }
             }
@@ -454,7 +741,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         public Object[] toArray() {
             Object[] copy = new Object[size];
             for(int i = indexOffset; i < size + indexOffset; i++) {
-                copy[i] = elements[realIndexIndex[i]];
+                copy[i - indexOffset] = FixedSizeBooleanSegmentTree.this.get(i);
             }
             return copy;
         }
@@ -462,7 +749,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
         public boolean[] toArrayPrimary() {
             boolean[] copy = new boolean[size];
             for(int i = indexOffset; i < size + indexOffset; i++) {
-                copy[i] = elements[realIndexIndex[i]];
+                copy[i - indexOffset] = FixedSizeBooleanSegmentTree.this.getAsBoolean(i);
             }
             return copy;
         }
@@ -479,15 +766,29 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
                 array = (Boolean[]) container;
             }
             for(int i = indexOffset; i < size + indexOffset; i++) {
-                array[i] = elements[realIndexIndex[i]];
+                array[i - indexOffset] = FixedSizeBooleanSegmentTree.this.get(i);
             }
             return (ArrayType[]) array;
         }
 
         @Override
-        public Boolean get(int index) {
+        public boolean[] toArray(boolean[] container) {
+            boolean[] array;
+            if (container.length < size) {
+                array = new boolean[size];
+            } else {
+                array = container;
+            }
+            for(int i = indexOffset; i < size + indexOffset; i++) {
+                array[i - indexOffset] = FixedSizeBooleanSegmentTree.this.getAsBoolean(i);
+            }
+            return array;
+        }
+
+        @Override
+        public boolean getAsBoolean(int index) {
             checkIndex(index);
-            return FixedSizeBooleanSegmentTree.this.get(index + indexOffset);
+            return FixedSizeBooleanSegmentTree.this.getAsBoolean(index + indexOffset);
         }
 
         @Override
@@ -497,11 +798,11 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
 
         @Override
         public String toString() {
-            return "section [" + indexOffset + ", " + indexOffset + size + ") of " + FixedSizeBooleanSegmentTree.this;
+            return "section [" + indexOffset + ", " + (indexOffset + size) + ") of " + FixedSizeBooleanSegmentTree.this;
         }
 
         private void checkIndex(int index) throws IndexOutOfBoundsException {
-            if (index + indexOffset >= size) {
+            if (index < 0 || index >= size) {
                 throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
             }
         }
@@ -513,7 +814,7 @@ public class FixedSizeBooleanSegmentTree extends FixedSizeSegmentTree<Boolean> {
             if (segmentLeftBorder < 0) {
                 throw new IndexOutOfBoundsException("SegmentLeftBorder: " + segmentLeftBorder);
             }
-            if (segmentRightBorder + indexOffset >= size) {
+            if (segmentRightBorder > size) {
                 throw new IndexOutOfBoundsException("SegmentRightBorder: " + segmentRightBorder + ", Size: " + size);
             }
         }
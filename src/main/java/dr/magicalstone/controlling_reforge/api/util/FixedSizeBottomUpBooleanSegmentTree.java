@@ -0,0 +1,434 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A segment tree {@link FixedSizeBooleanSegmentTree} with the bottom-up layout of {@link FixedSizeBottomUpSegmentTree}.
+ * All methods work in the same way as {@link FixedSizeBooleanSegmentTree}.
+ */
+public class FixedSizeBottomUpBooleanSegmentTree extends FixedSizeBooleanSegmentTree {
+
+    /**
+     * How many leaves this tree has, the smallest power of two which is not less than {@link FixedSizeSegmentTree#size}.
+     * The element at index is always at real index leafCapacity + index.
+     */
+    protected final int leafCapacity;
+
+    /**
+     * leafCapacity == 1 &lt;&lt; height.
+     */
+    protected final int height;
+
+    /**
+     * The identity of the operator (identity op x == x op identity == x), the value of leaves after the last element.
+     */
+    protected final boolean identity;
+
+    /**
+     * Initialize a segment tree and set its operator, the identity of the operator and all element's value.
+     * @param operator the operator to combine elements
+     * @param identity the identity of the operator, which pads the leaves after the last element
+     * @param allElements all elements which will be put in this tree. This tree's {@link FixedSizeSegmentTree#size} will be set to this array's length
+     * @throws IllegalArgumentException if identity op x == x op identity == x doesn't hold for both x
+     */
+    public FixedSizeBottomUpBooleanSegmentTree(BooleanBinaryOperator operator, boolean identity, boolean[] allElements) {
+        super(allElements.length, checkIdentity(operator, identity), new boolean[leafCapacityOf(allElements.length) * 2], null);
+        this.leafCapacity = elements.length / 2;
+        this.height = Integer.numberOfTrailingZeros(leafCapacity);
+        this.identity = identity;
+        System.arraycopy(allElements, 0, elements, leafCapacity, size);
+        Arrays.fill(elements, leafCapacity + size, leafCapacity * 2, identity);
+        for (int elementRealIndex = leafCapacity - 1; elementRealIndex >= 1; elementRealIndex--) {
+            elements[elementRealIndex] = operator.applyAsBoolean(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+    }
+
+    private static BooleanBinaryOperator checkIdentity(BooleanBinaryOperator operator, boolean identity) {
+        if (!BooleanBinaryOperator.isIdentity(BooleanBinaryOperator.truthTableOf(operator), identity)) {
+            throw new IllegalArgumentException(identity + " is not the identity of the operator of the segment tree.");
+        }
+        return operator;
+    }
+
+    private static int leafCapacityOf(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    @Override
+    public boolean setValueAndGetCombination(int index, boolean value) {
+        checkIndex(index);
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
+        int elementRealIndex = leafCapacity + index;
+        elements[elementRealIndex] = value;
+        for (elementRealIndex >>>= 1; elementRealIndex >= 1; elementRealIndex >>>= 1) {
+            elements[elementRealIndex] = operator.applyAsBoolean(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+        return elements[1];
+    }
+
+    @Override
+    public boolean setValues(int[] indexes, boolean[] values) {
+        checkIndexes(indexes, values.length);
+        int[] leafRealIndexes = new int[indexes.length];
+        for (int i = 0; lazyTagCount != 0 && i < indexes.length; i++) {
+            pushLazyTagsTo(indexes[i]);
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            int elementRealIndex = leafCapacity + indexes[i];
+            elements[elementRealIndex] = values[i];
+            leafRealIndexes[i] = elementRealIndex;
+        }
+        int[] dirtyRealIndexes = collectDirtyRealIndexes(leafRealIndexes, leafCapacity);
+        for (int i = 0, elementRealIndex; i < dirtyRealIndexes.length && (elementRealIndex = dirtyRealIndexes[i]) != 0; i++) {
+            elements[elementRealIndex] = operator.applyAsBoolean(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+        return elements[1];
+    }
+
+    @Override
+    public boolean getAsBoolean(int index) {
+        checkIndex(index);
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
+        return elements[leafCapacity + index];
+    }
+
+    @Override
+    public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+        checkSegment(segmentLeftBorder, segmentRightBorder);
+        if (lazyTagged == null) {
+            lazyTagged = new boolean[leafCapacity];
+            lazyValues = new boolean[leafCapacity];
+        }
+        int leftRealIndex = segmentLeftBorder + leafCapacity;
+        int rightRealIndex = segmentRightBorder + leafCapacity;
+        if (lazyTagCount != 0) {
+            pushLazyTagsAround(leftRealIndex, rightRealIndex);
+        }
+        for (int left = leftRealIndex, right = rightRealIndex, segmentSize = 1; left < right; left >>>= 1, right >>>= 1, segmentSize <<= 1) {
+            if ((left & 1) != 0) {
+                setLazyTag(left++, segmentSize, value);
+            }
+            if ((right & 1) != 0) {
+                setLazyTag(--right, segmentSize, value);
+            }
+        }
+        for (int nodeHeight = 1; nodeHeight <= height; nodeHeight++) {
+            if (((leftRealIndex >>> nodeHeight) << nodeHeight) != leftRealIndex) {
+                int elementRealIndex = leftRealIndex >>> nodeHeight;
+                elements[elementRealIndex] = operator.applyAsBoolean(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+            }
+            if (((rightRealIndex >>> nodeHeight) << nodeHeight) != rightRealIndex) {
+                int elementRealIndex = (rightRealIndex - 1) >>> nodeHeight;
+                elements[elementRealIndex] = operator.applyAsBoolean(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+            }
+        }
+        return elements[1];
+    }
+
+    /**
+     * Push the lazy tag of a node down, the borders of its segment are calculated from its real index and height.
+     */
+    private void pushLazyTagAt(int elementRealIndex, int nodeHeight) {
+        int leftBorder = (elementRealIndex << nodeHeight) - leafCapacity;
+        pushLazyTag(elementRealIndex, leftBorder, leftBorder + (1 << nodeHeight));
+    }
+
+    /**
+     * Push the lazy tags of all nodes which partly cover the segment [leftRealIndex - leafCapacity, rightRealIndex - leafCapacity) down.
+     */
+    private void pushLazyTagsAround(int leftRealIndex, int rightRealIndex) {
+        for (int nodeHeight = height; nodeHeight >= 1; nodeHeight--) {
+            if (((leftRealIndex >>> nodeHeight) << nodeHeight) != leftRealIndex) {
+                pushLazyTagAt(leftRealIndex >>> nodeHeight, nodeHeight);
+            }
+            if (((rightRealIndex >>> nodeHeight) << nodeHeight) != rightRealIndex) {
+                pushLazyTagAt((rightRealIndex - 1) >>> nodeHeight, nodeHeight);
+            }
+        }
+    }
+
+    @Override
+    protected void pushLazyTagsTo(int index) {
+        int elementRealIndex = leafCapacity + index;
+        for (int nodeHeight = height; nodeHeight >= 1 && lazyTagCount != 0; nodeHeight--) {
+            pushLazyTagAt(elementRealIndex >>> nodeHeight, nodeHeight);
+        }
+    }
+
+    @Override
+    protected void pushAllLazyTags() {
+        for (int elementRealIndex = 1; elementRealIndex < leafCapacity && lazyTagCount != 0; elementRealIndex++) {
+            pushLazyTagAt(elementRealIndex, height - (31 - Integer.numberOfLeadingZeros(elementRealIndex)));
+        }
+    }
+
+    @Override
+    public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
+        checkSegment(segmentLeftBorder, segmentRightBorder);
+        int left = segmentLeftBorder + leafCapacity;
+        int right = segmentRightBorder + leafCapacity;
+        if (lazyTagCount != 0) {
+            pushLazyTagsAround(left, right);
+        }
+        boolean leftCombination = identity;
+        boolean rightCombination = identity;
+        for (; left < right; left >>>= 1, right >>>= 1) {
+            if ((left & 1) != 0) {
+                leftCombination = operator.applyAsBoolean(leftCombination, elements[left++]);
+            }
+            if ((right & 1) != 0) {
+                rightCombination = operator.applyAsBoolean(elements[--right], rightCombination);
+            }
+        }
+        return operator.applyAsBoolean(leftCombination, rightCombination);
+    }
+
+    @Override
+    public int maxRight(int segmentLeftBorder, Predicate<Boolean> predicate) {
+        if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+        }
+        if (segmentLeftBorder == size) {
+            return size;
+        }
+        int elementRealIndex = segmentLeftBorder + leafCapacity;
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(segmentLeftBorder);
+        }
+        boolean combination = identity;
+        do {
+            while ((elementRealIndex & 1) == 0) {
+                elementRealIndex >>>= 1;
+            }
+            boolean newCombination = operator.applyAsBoolean(combination, elements[elementRealIndex]);
+            if (!predicate.test(newCombination)) {
+                while (elementRealIndex < leafCapacity) {
+                    if (lazyTagCount != 0) {
+                        pushLazyTagAt(elementRealIndex, height - (31 - Integer.numberOfLeadingZeros(elementRealIndex)));
+                    }
+                    elementRealIndex *= 2;
+                    newCombination = operator.applyAsBoolean(combination, elements[elementRealIndex]);
+                    if (predicate.test(newCombination)) {
+                        combination = newCombination;
+                        elementRealIndex++;
+                    }
+                }
+                return elementRealIndex - leafCapacity;
+            }
+            combination = newCombination;
+            elementRealIndex++;
+        } while ((elementRealIndex & -elementRealIndex) != elementRealIndex);
+        return size;
+    }
+
+    @Override
+    public int minLeft(int segmentRightBorder, Predicate<Boolean> predicate) {
+        if (segmentRightBorder < 0 || segmentRightBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+        }
+        if (segmentRightBorder == 0) {
+            return 0;
+        }
+        int elementRealIndex = segmentRightBorder + leafCapacity;
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(segmentRightBorder - 1);
+        }
+        boolean combination = identity;
+        do {
+            elementRealIndex--;
+            while (elementRealIndex > 1 && (elementRealIndex & 1) != 0) {
+                elementRealIndex >>>= 1;
+            }
+            boolean newCombination = operator.applyAsBoolean(elements[elementRealIndex], combination);
+            if (!predicate.test(newCombination)) {
+                while (elementRealIndex < leafCapacity) {
+                    if (lazyTagCount != 0) {
+                        pushLazyTagAt(elementRealIndex, height - (31 - Integer.numberOfLeadingZeros(elementRealIndex)));
+                    }
+                    elementRealIndex = elementRealIndex * 2 + 1;
+                    newCombination = operator.applyAsBoolean(elements[elementRealIndex], combination);
+                    if (predicate.test(newCombination)) {
+                        combination = newCombination;
+                        elementRealIndex--;
+                    }
+                }
+                return elementRealIndex + 1 - leafCapacity;
+            }
+            combination = newCombination;
+        } while ((elementRealIndex & -elementRealIndex) != elementRealIndex);
+        return 0;
+    }
+
+    @Override
+    public ListIterator<Boolean> listIterator() {
+        return new Iter(0, 0, size);
+    }
+
+    @Override
+    public ListIterator<Boolean> listIterator(int index) {
+        return new Iter(index, 0, size);
+    }
+
+    @Override
+    protected ListIterator<Boolean> listIterator(int index, int leftBorder, int rightBorder) {
+        return new Iter(index, leftBorder, rightBorder);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        pushAllLazyTags();
+        Object[] copy = new Boolean[size];
+        for(int i = 0; i < size; i++) {
+            copy[i] = elements[leafCapacity + i];
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean[] toArrayPrimary() {
+        return toArray(new boolean[size]);
+    }
+
+    @Override
+    public boolean[] toArray(boolean[] container) {
+        pushAllLazyTags();
+        boolean[] array;
+        if (container.length < size) {
+            array = new boolean[size];
+        } else {
+            array = container;
+        }
+        System.arraycopy(elements, leafCapacity, array, 0, size);
+        return array;
+    }
+
+    @Override
+    public <ArrayType> ArrayType[] toArray(ArrayType[] container) {
+        if (!container.getClass().getComponentType().equals(Boolean.class)) {
+            throw new ClassCastException("The only type of container can be accessed is Boolean[].");
+        }
+        pushAllLazyTags();
+        ArrayType[] array;
+        if (container.length < size) {
+            array = (ArrayType[]) Array.newInstance(container.getClass().getComponentType(), size);
+        } else {
+            array = container;
+        }
+        for(int i = 0; i < size; i++) {
+            array[i] = (ArrayType) (Boolean) elements[leafCapacity + i];
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        pushAllLazyTags();
+        StringBuilder stringBuilder = new StringBuilder(Math.max(16, leafCapacity * 4 - 1));
+        stringBuilder.append("boolean").append(": {");
+        partToString(0, leafCapacity, 1, stringBuilder);
+        stringBuilder.append("}");
+        return stringBuilder.toString();
+    }
+
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void checkSegment(int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+    }
+
+    protected class Iter implements ListIterator<Boolean> {
+        private int nextElementIndex;
+        private int lastElementIndex = -1;
+        private final boolean[] elements = FixedSizeBottomUpBooleanSegmentTree.this.elements;
+        private final int leafCapacity = FixedSizeBottomUpBooleanSegmentTree.this.leafCapacity;
+
+        private final int leftBorder;
+
+        private final int rightBorder;
+
+        Iter(int nextElementIndex, int leftBorder, int rightBorder) {
+            this.nextElementIndex = nextElementIndex;
+            this.leftBorder = leftBorder;
+            this.rightBorder = rightBorder;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextElementIndex < rightBorder;
+        }
+
+        @Override
+        public Boolean next() {
+            if (nextElementIndex >= rightBorder) {
+                throw new NoSuchElementException();
+            }
+            lastElementIndex = nextElementIndex++;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(lastElementIndex);
+            }
+            return elements[leafCapacity + lastElementIndex];
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextElementIndex > leftBorder;
+        }
+
+        @Override
+        public Boolean previous() {
+            if (nextElementIndex <= leftBorder) {
+                throw new NoSuchElementException();
+            }
+            lastElementIndex = --nextElementIndex;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(lastElementIndex);
+            }
+            return elements[leafCapacity + lastElementIndex];
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextElementIndex - leftBorder;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextElementIndex - leftBorder - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(Boolean value) {
+            if (lastElementIndex < 0) {
+                throw new IllegalStateException();
+            }
+            setValueAndGetCombination(lastElementIndex, value);
+        }
+
+        @Override
+        public void add(Boolean type) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+/**
+ * A boolean segment tree {@link FixedSizeBooleanSegmentTree} for and, or, xor and xnor, which keeps how many elements are true instead of combinations.
+ * The combination of all elements only depends on the count of true elements: and is true if all elements are true, or is true if any element is true,
+ * xor is the parity of the count and xnor is the parity of the count plus size - 1.
+ * So setting an element and getting the combination of all elements take O(1) instead of O(log(n)).
+ * Elements are stored as bits like {@link FixedSizeBitPackedBooleanSegmentTree} but without the upper levels,
+ * the combination of a segment is calculated by counting bits in O((segmentRightBorder - segmentLeftBorder) / 64).
+ * Use {@link FixedSizeBooleanSegmentTree#of(BooleanBinaryOperator, boolean[])} to choose this tree when the operator allows.
+ */
+public class FixedSizeCountingBooleanSegmentTree extends FixedSizeBitPackedBooleanSegmentTree {
+
+    /**
+     * How many elements are true.
+     */
+    protected int trueCount;
+
+    public FixedSizeCountingBooleanSegmentTree(BooleanBinaryOperator operator, boolean[] allElements) {
+        super(operator, allElements, true);
+        if (!isCountable(truthTable)) {
+            throw new IllegalArgumentException("The operator of a counting segment tree should be and, or, xor or xnor.");
+        }
+        for (long word : words) {
+            trueCount += Long.bitCount(word);
+        }
+    }
+
+    /**
+     * Check if the combination of elements by an operator only depends on the count of true elements.
+     * @param truthTable the truth table of the operator, see {@link BooleanBinaryOperator#truthTableOf(BooleanBinaryOperator)}
+     * @return true if the operator is and, or, xor or xnor
+     */
+    public static boolean isCountable(int truthTable) {
+        return truthTable == AND || truthTable == OR || truthTable == XOR || truthTable == XNOR;
+    }
+
+    /**
+     * Get the combination of a segment of elements by how many of them are true.
+     * @param count how many elements in the segment are true
+     * @param segmentSize how many elements in the segment
+     * @return combination of the segment
+     */
+    protected boolean combineCount(int count, int segmentSize) {
+        switch (truthTable) {
+            case AND:
+                return count == segmentSize;
+            case OR:
+                return count != 0;
+            case XOR:
+                return (count & 1) != 0;
+            default:
+                return ((count + segmentSize - 1) & 1) != 0;
+        }
+    }
+
+    /**
+     * Count true elements in segment [segmentLeftBorder, segmentRightBorder).
+     */
+    private int countTrue(int segmentLeftBorder, int segmentRightBorder) {
+        int leftWordIndex = segmentLeftBorder >>> 6;
+        int rightWordIndex = (segmentRightBorder - 1) >>> 6;
+        long leftMask = -1L << segmentLeftBorder;
+        long rightMask = -1L >>> (63 - ((segmentRightBorder - 1) & 63));
+        if (leftWordIndex == rightWordIndex) {
+            return Long.bitCount(words[leftWordIndex] & leftMask & rightMask);
+        }
+        int count = Long.bitCount(words[leftWordIndex] & leftMask) + Long.bitCount(words[rightWordIndex] & rightMask);
+        for (int wordIndex = leftWordIndex + 1; wordIndex < rightWordIndex; wordIndex++) {
+            count += Long.bitCount(words[wordIndex]);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean setValueAndGetCombination(int index, boolean value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        setBit(index, value);
+        return combineCount(trueCount, size);
+    }
+
+    private void setBit(int index, boolean value) {
+        long word = words[index >>> 6];
+        long newWord = value ? word | (1L << index) : word & ~(1L << index);
+        if (newWord != word) {
+            words[index >>> 6] = newWord;
+            trueCount += value ? 1 : -1;
+        }
+    }
+
+    @Override
+    public boolean setValues(int[] indexes, boolean[] values) {
+        checkIndexes(indexes, values.length);
+        for (int i = 0; i < indexes.length; i++) {
+            setBit(indexes[i], values[i]);
+        }
+        return combineCount(trueCount, size);
+    }
+
+    /**
+     * Set all elements in segment [segmentLeftBorder, segmentRightBorder) to the same value.
+     * The bits are filled directly, so it takes O((segmentRightBorder - segmentLeftBorder) / 64).
+     */
+    @Override
+    public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        trueCount -= countTrue(segmentLeftBorder, segmentRightBorder);
+        fillBits(0, segmentLeftBorder, segmentRightBorder, value);
+        if (value) {
+            trueCount += segmentRightBorder - segmentLeftBorder;
+        }
+        return combineCount(trueCount, size);
+    }
+
+    @Override
+    public boolean getCombinationAsBoolean() {
+        return combineCount(trueCount, size);
+    }
+
+    @Override
+    public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        if (segmentLeftBorder == 0 && segmentRightBorder == size) {
+            return combineCount(trueCount, size);
+        }
+        return combineCount(countTrue(segmentLeftBorder, segmentRightBorder), segmentRightBorder - segmentLeftBorder);
+    }
+
+    @Override
+    public String toString() {
+        return "counting " + super.toString();
+    }
+}
@@ -0,0 +1,1043 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.Predicate;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * A segment tree {@link FixedSizeSegmentTree} whose element Type is primitive {@link double}.
+ * All methods work in the same way as {@link FixedSizeSegmentTree}.
+ * Primitive segment trees are of {@link boolean}, {@link long} and {@link double}, but no for {@link byte}, {@link short}, {@link int}, {@link float}, {@link char}.
+ */
+public class FixedSizeDoubleSegmentTree extends FixedSizeSegmentTree<Double> {
+
+    /**
+     * The operator of sum. Trees with this operator add elements directly instead of calling the operator.
+     */
+    public static final DoubleBinaryOperator SUM = Double::sum;
+
+    /**
+     * The operator of min. Trees with this operator compare elements directly instead of calling the operator.
+     */
+    public static final DoubleBinaryOperator MIN = Math::min;
+
+    /**
+     * The operator of max. Trees with this operator compare elements directly instead of calling the operator.
+     */
+    public static final DoubleBinaryOperator MAX = Math::max;
+
+    private static final int OTHER_OPERATOR = 0;
+    private static final int SUM_OPERATOR = 1;
+    private static final int MIN_OPERATOR = 2;
+    private static final int MAX_OPERATOR = 3;
+
+    protected final DoubleBinaryOperator operator;
+    protected final double[] elements;
+
+    /**
+     * See {@link FixedSizeSegmentTree#repeatOperator}.
+     */
+    protected final DoubleRepeatOperator repeatOperator;
+
+    /**
+     * The values of the lazy tags. See {@link FixedSizeSegmentTree#lazyTagged}.
+     */
+    protected double[] lazyValues;
+
+    /**
+     * Which of {@link FixedSizeDoubleSegmentTree#SUM}, {@link FixedSizeDoubleSegmentTree#MIN} and {@link FixedSizeDoubleSegmentTree#MAX} the operator is,
+     * or {@link FixedSizeDoubleSegmentTree#OTHER_OPERATOR}.
+     */
+    private final int operatorKind;
+
+    public FixedSizeDoubleSegmentTree(DoubleBinaryOperator operator, double[] allElements) {
+        this(operator, DoubleRepeatOperator.byDoubling(operator), allElements);
+    }
+
+    public FixedSizeDoubleSegmentTree(DoubleBinaryOperator operator, DoubleRepeatOperator repeatOperator, double[] allElements) {
+        super(allElements.length, null, (Double[]) null);
+        this.operator = operator;
+        this.operatorKind = operatorKindOf(operator);
+        this.repeatOperator = repeatOperator;
+        int leafCapacity;
+        if(size == 1) {
+            leafCapacity = 1;
+        } else {
+            leafCapacity = (Integer.highestOneBit(size - 1) << 1);
+        }
+        this.elements = new double[leafCapacity * 2];
+        indexIterate:
+        for (int index = 0; index < size; index ++) {
+            int elementRealIndex = 1;
+            for (int elementLeftBorder = 0, elementRightBorder = size; elementRightBorder - elementLeftBorder > 1;) {
+                if (elementRealIndex >= (leafCapacity / 2)) {
+                    double leftChild = allElements[index];
+                    double rightChild = allElements[index + 1];
+                    elements[elementRealIndex * 2] = leftChild;
+                    elements[elementRealIndex * 2 + 1] = rightChild;
+                    elements[elementRealIndex] = combine(leftChild, rightChild);
+                    realIndexIndex[index] = elementRealIndex * 2;
+                    realIndexIndex[index + 1] = elementRealIndex * 2 + 1;
+                    index = index + 1;
+                    continue indexIterate;
+                }
+                int childElementMiddleBorder = (elementLeftBorder + elementRightBorder) / 2;
+                if (index < childElementMiddleBorder) {
+                    elementRightBorder = childElementMiddleBorder;
+                    elementRealIndex = elementRealIndex * 2;
+                } else {
+                    elementLeftBorder = childElementMiddleBorder;
+                    elementRealIndex = elementRealIndex * 2 + 1;
+                }
+            }
+            realIndexIndex[index] = elementRealIndex;
+            elements[elementRealIndex] = allElements[index];
+        }
+        for (int elementRealIndex = (leafCapacity / 2) - 1; elementRealIndex >= 1; elementRealIndex--) {
+            elements[elementRealIndex] = combine(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+    }
+
+    protected FixedSizeDoubleSegmentTree(int size, DoubleBinaryOperator operator, double[] elements) {
+        super(size, null, (Double[]) null);
+        this.operator = operator;
+        this.operatorKind = operatorKindOf(operator);
+        this.repeatOperator = operator == null ? null : DoubleRepeatOperator.byDoubling(operator);
+        this.elements = elements;
+    }
+
+    protected FixedSizeDoubleSegmentTree(int size, DoubleBinaryOperator operator, double[] elements, int[] realIndexIndex) {
+        this(size, operator, operator == null ? null : DoubleRepeatOperator.byDoubling(operator), elements, realIndexIndex);
+    }
+
+    protected FixedSizeDoubleSegmentTree(int size, DoubleBinaryOperator operator, DoubleRepeatOperator repeatOperator, double[] elements, int[] realIndexIndex) {
+        super(size, null, null, realIndexIndex);
+        this.operator = operator;
+        this.operatorKind = operatorKindOf(operator);
+        this.repeatOperator = repeatOperator;
+        this.elements = elements;
+    }
+
+    /**
+     * Create a tree of sum of elements, whose combinations are calculated without calling an operator.
+     * @param allElements all elements which will be put in the tree
+     * @return a tree with operator {@link FixedSizeDoubleSegmentTree#SUM}
+     */
+    public static FixedSizeDoubleSegmentTree sum(double[] allElements) {
+        return new FixedSizeDoubleSegmentTree(SUM, DoubleRepeatOperator.SUM, allElements);
+    }
+
+    /**
+     * Create a tree of min of elements, whose combinations are calculated without calling an operator.
+     * @param allElements all elements which will be put in the tree
+     * @return a tree with operator {@link FixedSizeDoubleSegmentTree#MIN}
+     */
+    public static FixedSizeDoubleSegmentTree min(double[] allElements) {
+        return new FixedSizeDoubleSegmentTree(MIN, DoubleRepeatOperator.IDEMPOTENT, allElements);
+    }
+
+    /**
+     * Create a tree of max of elements, whose combinations are calculated without calling an operator.
+     * @param allElements all elements which will be put in the tree
+     * @return a tree with operator {@link FixedSizeDoubleSegmentTree#MAX}
+     */
+    public static FixedSizeDoubleSegmentTree max(double[] allElements) {
+        return new FixedSizeDoubleSegmentTree(MAX, DoubleRepeatOperator.IDEMPOTENT, allElements);
+    }
+
+    private static int operatorKindOf(DoubleBinaryOperator operator) {
+        if (operator == SUM) {
+            return SUM_OPERATOR;
+        } else if (operator == MIN) {
+            return MIN_OPERATOR;
+        } else if (operator == MAX) {
+            return MAX_OPERATOR;
+        }
+        return OTHER_OPERATOR;
+    }
+
+    /**
+     * Combine two elements. Sum, min and max are calculated directly so that the call is always inlined.
+     * @param left the left element
+     * @param right the right element
+     * @return combination of the two elements
+     */
+    private double combine(double left, double right) {
+        switch (operatorKind) {
+            case SUM_OPERATOR:
+                return left + right;
+            case MIN_OPERATOR:
+                return Math.min(left, right);
+            case MAX_OPERATOR:
+                return Math.max(left, right);
+            default:
+                return operator.applyAsDouble(left, right);
+        }
+    }
+
+    public double setValueAndGetCombination(int index, double value) {
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
+        int elementRealIndex = realIndexIndex[index];
+        elements[elementRealIndex] = value;
+        double leftChild;
+        double rightChild;
+        if ((elementRealIndex & 1) == 0) {
+            leftChild = value;
+            rightChild = elements[elementRealIndex + 1];
+        } else {
+            rightChild = value;
+            leftChild = elements[elementRealIndex - 1];
+        }
+        while (elementRealIndex > 1) {
+            elementRealIndex /= 2;
+            if ((elementRealIndex & 1) == 0) {
+                leftChild = elements[elementRealIndex] = combine(leftChild, rightChild);
+                rightChild = elements[elementRealIndex + 1];
+            } else {
+                rightChild = elements[elementRealIndex] = combine(leftChild, rightChild);
+                leftChild = elements[elementRealIndex - 1];
+            }
+        }
+        return rightChild;
+    }
+
+    public double setValues(int[] indexes, double[] values) {
+        checkIndexes(indexes, values.length);
+        int[] leafRealIndexes = new int[indexes.length];
+        for (int i = 0; lazyTagCount != 0 && i < indexes.length; i++) {
+            pushLazyTagsTo(indexes[i]);
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            int elementRealIndex = realIndexIndex[indexes[i]];
+            elements[elementRealIndex] = values[i];
+            leafRealIndexes[i] = elementRealIndex;
+        }
+        int[] dirtyRealIndexes = collectDirtyRealIndexes(leafRealIndexes, elements.length / 2);
+        for (int i = 0, elementRealIndex; i < dirtyRealIndexes.length && (elementRealIndex = dirtyRealIndexes[i]) != 0; i++) {
+            elements[elementRealIndex] = combine(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+        return elements[1];
+    }
+
+    @Override
+    public Double setValues(int[] indexes, Double[] values) {
+        double[] primaryValues = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            primaryValues[i] = values[i];
+        }
+        return setValues(indexes, primaryValues);
+    }
+
+    public double set(int index, double element) {
+        double lastValue = getAsDouble(index);
+        setValueAndGetCombination(index, element);
+        return lastValue;
+    }
+
+    @Override
+    public Double setValueAndGetCombination(int index, @Nonnull Double value) {
+        return setValueAndGetCombination(index, (double) value);
+    }
+
+    @Override
+    public Double get(int index) {
+        return getAsDouble(index);
+    }
+
+    /**
+     * The same as {@link FixedSizeDoubleSegmentTree#get(int)}, but returns primitive {@link double} without boxing.
+     * @param index index of the element to return
+     * @return the element at the index
+     */
+    public double getAsDouble(int index) {
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
+        return elements[realIndexIndex[index]];
+    }
+
+    public double setRange(int segmentLeftBorder, int segmentRightBorder, double value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        if (lazyTagged == null) {
+            lazyTagged = new boolean[elements.length / 2];
+            lazyValues = new double[elements.length / 2];
+        }
+        setRange(segmentLeftBorder, segmentRightBorder, value, 0, size, 1);
+        return elements[1];
+    }
+
+    @Override
+    public Double setRange(int segmentLeftBorder, int segmentRightBorder, @Nonnull Double value) {
+        return setRange(segmentLeftBorder, segmentRightBorder, (double) value);
+    }
+
+    private void setRange(int segmentLeftBorder, int segmentRightBorder, double value, int leftBorder, int rightBorder, int elementRealIndex) {
+        if (segmentLeftBorder <= leftBorder && rightBorder <= segmentRightBorder) {
+            setLazyTag(elementRealIndex, rightBorder - leftBorder, value);
+            return;
+        }
+        pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        if (segmentLeftBorder < childElementMiddleBorder) {
+            setRange(segmentLeftBorder, segmentRightBorder, value, leftBorder, childElementMiddleBorder, elementRealIndex * 2);
+        }
+        if (segmentRightBorder > childElementMiddleBorder) {
+            setRange(segmentLeftBorder, segmentRightBorder, value, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1);
+        }
+        elements[elementRealIndex] = combine(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+    }
+
+    protected void setLazyTag(int elementRealIndex, int segmentSize, double value) {
+        if (segmentSize == 1) {
+            elements[elementRealIndex] = value;
+            return;
+        }
+        elements[elementRealIndex] = repeatOperator.repeatAsDouble(value, segmentSize);
+        if (!lazyTagged[elementRealIndex]) {
+            lazyTagged[elementRealIndex] = true;
+            lazyTagCount++;
+        }
+        lazyValues[elementRealIndex] = value;
+    }
+
+    @Override
+    protected void pushLazyTag(int elementRealIndex, int leftBorder, int rightBorder) {
+        if (lazyTagCount == 0 || !lazyTagged[elementRealIndex]) {
+            return;
+        }
+        lazyTagged[elementRealIndex] = false;
+        lazyTagCount--;
+        double value = lazyValues[elementRealIndex];
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        setLazyTag(elementRealIndex * 2, childElementMiddleBorder - leftBorder, value);
+        setLazyTag(elementRealIndex * 2 + 1, rightBorder - childElementMiddleBorder, value);
+    }
+
+    @Override
+    public Double getCombination() {
+        return getCombinationAsDouble();
+    }
+
+    /**
+     * The same as {@link FixedSizeDoubleSegmentTree#getCombination()}, but returns primitive {@link double} without boxing.
+     * @return combination of all elements
+     */
+    public double getCombinationAsDouble() {
+        return elements[1];
+    }
+
+    @Override
+    public Double getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        return getCombinationAsDouble(segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * The same as {@link FixedSizeDoubleSegmentTree#getCombination(int, int)}, but returns primitive {@link double} without boxing.
+     * @param segmentLeftBorder left border of the segment of element's combination
+     * @param segmentRightBorder right border of the segment of element's combination
+     * @return combination of all elements (elements in segment [segmentLeftBorder, segmentRightBorder) )
+     */
+    public double getCombinationAsDouble(int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        if (segmentLeftBorder == 0) {
+            if (segmentRightBorder == size) {
+                return elements[1];
+            } else {
+                return getCombinationLOutRIn(segmentRightBorder, 0, size, 1);
+            }
+        } else {
+            if (segmentRightBorder == size) {
+                return getCombinationLInROut(segmentLeftBorder, 0, size, 1);
+            } else {
+                return getCombinationLInRIn(segmentLeftBorder, segmentRightBorder);
+            }
+        }
+    }
+
+    private double getCombinationLOutRIn(int segmentRightBorder, int leftBorder, int rightBorder, int elementRealIndex) {
+        int currentLeftBorder = leftBorder;
+        int currentRightBorder = rightBorder;
+        int currentElementRealIndex = elementRealIndex;
+        double combination = 0;
+        while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
+            int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
+            if (segmentRightBorder < currentChildElementMiddleBorder) {
+                currentRightBorder = currentChildElementMiddleBorder;
+                currentElementRealIndex = 2 * currentElementRealIndex;
+                continue;
+            }
+            if (currentLeftBorder == leftBorder) {
+                combination = elements[2 * currentElementRealIndex];
+            } else {
+                combination = combine(combination, elements[2 * currentElementRealIndex]);
+            }
+            if (segmentRightBorder == currentChildElementMiddleBorder) {
+                return combination;
+            }
+            currentLeftBorder = currentChildElementMiddleBorder;
+            currentElementRealIndex = 2 * currentElementRealIndex + 1;
+        }
+    }
+
+    private double getCombinationLInROut(int segmentLeftBorder, int leftBorder, int rightBorder, int elementRealIndex) {
+        int currentLeftBorder = leftBorder;
+        int currentRightBorder = rightBorder;
+        int currentElementRealIndex = elementRealIndex;
+        double combination = 0;
+        while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
+            int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
+            if (segmentLeftBorder > currentChildElementMiddleBorder) {
+                currentLeftBorder = currentChildElementMiddleBorder;
+                currentElementRealIndex = 2 * currentElementRealIndex + 1;
+                continue;
+            }
+            if (currentRightBorder == rightBorder) {
+                combination = elements[2 * currentElementRealIndex + 1];
+            } else {
+                combination = combine(elements[2 * currentElementRealIndex + 1], combination);
+            }
+            if (segmentLeftBorder >= currentChildElementMiddleBorder) {
+                return combination;
+            }
+            currentRightBorder = currentChildElementMiddleBorder;
+            currentElementRealIndex = 2 * currentElementRealIndex;
+        }
+    }
+
+    private double getCombinationLInRIn(int segmentLeftBorder, int segmentRightBorder) {
+        int currentLeftBorder = 0;
+        int currentRightBorder = size;
+        int currentElementRealIndex = 1;
+        while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
+            int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
+            if (segmentRightBorder == currentChildElementMiddleBorder) {
+                return getCombinationLInROut(segmentLeftBorder, currentLeftBorder, currentChildElementMiddleBorder, currentElementRealIndex * 2);
+            }
+            if (segmentRightBorder < currentChildElementMiddleBorder) {
+                currentRightBorder = currentChildElementMiddleBorder;
+                currentElementRealIndex = currentElementRealIndex * 2;
+                continue;
+            }
+            if (segmentLeftBorder == currentChildElementMiddleBorder) {
+                return getCombinationLOutRIn(segmentRightBorder, currentChildElementMiddleBorder, currentRightBorder, currentElementRealIndex * 2 + 1);
+            }
+            if (segmentLeftBorder > currentChildElementMiddleBorder) {
+                currentLeftBorder = currentChildElementMiddleBorder;
+                currentElementRealIndex = currentElementRealIndex * 2 + 1;
+                continue;
+            }
+            double leftChild = getCombinationLInROut(segmentLeftBorder, currentLeftBorder, currentChildElementMiddleBorder, currentElementRealIndex * 2);
+            double rightChild = getCombinationLOutRIn(segmentRightBorder, currentChildElementMiddleBorder, currentRightBorder, currentElementRealIndex * 2 + 1);
+            return combine(leftChild, rightChild);
+        }
+    }
+
+    @Override
+    public int maxRight(int segmentLeftBorder, Predicate<Double> predicate) {
+        if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+        }
+        if (segmentLeftBorder == size) {
+            return size;
+        }
+        int segmentRightBorder = maxRight(segmentLeftBorder, predicate, 0, size, 1, new double[1]);
+        return segmentRightBorder < 0 ? size : segmentRightBorder;
+    }
+
+    private int maxRight(int segmentLeftBorder, Predicate<Double> predicate, int leftBorder, int rightBorder, int elementRealIndex, double[] combination) {
+        if (rightBorder <= segmentLeftBorder) {
+            return -1;
+        }
+        if (segmentLeftBorder <= leftBorder) {
+            double newCombination = leftBorder == segmentLeftBorder ? elements[elementRealIndex] : combine(combination[0], elements[elementRealIndex]);
+            if (predicate.test(newCombination)) {
+                combination[0] = newCombination;
+                return -1;
+            }
+            if (rightBorder - leftBorder == 1) {
+                return leftBorder;
+            }
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        int index = maxRight(segmentLeftBorder, predicate, leftBorder, childElementMiddleBorder, elementRealIndex * 2, combination);
+        return index >= 0 ? index : maxRight(segmentLeftBorder, predicate, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1, combination);
+    }
+
+    @Override
+    public int minLeft(int segmentRightBorder, Predicate<Double> predicate) {
+        if (segmentRightBorder < 0 || segmentRightBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+        }
+        if (segmentRightBorder == 0) {
+            return 0;
+        }
+        int segmentLeftBorder = minLeft(segmentRightBorder, predicate, 0, size, 1, new double[1]);
+        return segmentLeftBorder < 0 ? 0 : segmentLeftBorder;
+    }
+
+    private int minLeft(int segmentRightBorder, Predicate<Double> predicate, int leftBorder, int rightBorder, int elementRealIndex, double[] combination) {
+        if (leftBorder >= segmentRightBorder) {
+            return -1;
+        }
+        if (rightBorder <= segmentRightBorder) {
+            double newCombination = rightBorder == segmentRightBorder ? elements[elementRealIndex] : combine(elements[elementRealIndex], combination[0]);
+            if (predicate.test(newCombination)) {
+                combination[0] = newCombination;
+                return -1;
+            }
+            if (rightBorder - leftBorder == 1) {
+                return rightBorder;
+            }
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        int index = minLeft(segmentRightBorder, predicate, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1, combination);
+        return index >= 0 ? index : minLeft(segmentRightBorder, predicate, leftBorder, childElementMiddleBorder, elementRealIndex * 2, combination);
+    }
+
+    /**
+     * Find the index of the first largest element in segment [segmentLeftBorder, segmentRightBorder) in O(log(n)),
+     * such as the binding with the highest priority among active ones.
+     * The operator of this tree must be max such as {@link Math#max(double, double)}.
+     * @param segmentLeftBorder left border of the segment
+     * @param segmentRightBorder right border of the segment
+     * @return index of the first largest element in the segment
+     */
+    public int argmax(int segmentLeftBorder, int segmentRightBorder) {
+        double max = getCombinationAsDouble(segmentLeftBorder, segmentRightBorder);
+        return maxRight(segmentLeftBorder, combination -> combination < max);
+    }
+
+    /**
+     * Find the index of the first smallest element in segment [segmentLeftBorder, segmentRightBorder) in O(log(n)).
+     * The operator of this tree must be min such as {@link Math#min(double, double)}.
+     * @param segmentLeftBorder left border of the segment
+     * @param segmentRightBorder right border of the segment
+     * @return index of the first smallest element in the segment
+     */
+    public int argmin(int segmentLeftBorder, int segmentRightBorder) {
+        double min = getCombinationAsDouble(segmentLeftBorder, segmentRightBorder);
+        return maxRight(segmentLeftBorder, combination -> combination > min);
+    }
+
+    @Override
+    public ListIterator<Double> listIterator() {
+        return new Iter();
+    }
+
+    @Override
+    public ListIterator<Double> listIterator(int index) {
+        return new Iter(index);
+    }
+
+    /**
+     * Get an {@link ListIterator} of elements in segment [leftBorder, rightBorder), for sub lists.
+     * @param index index of the first element to be returned by {@link ListIterator#next next}
+     * @param leftBorder left border of the segment
+     * @param rightBorder right border of the segment
+     * @return an {@link ListIterator} of elements in the segment
+     */
+    protected ListIterator<Double> listIterator(int index, int leftBorder, int rightBorder) {
+        return new Iter(index, leftBorder, rightBorder);
+    }
+
+    @Override
+    public FixedSizeDoubleSegmentTree subList(int fromIndex, int toIndex) {
+        return new FixedSizeDoubleSegmentTree.SubList(fromIndex, toIndex - fromIndex);
+    }
+
+    /**
+     * Get an iterator of all elements which returns primitive {@link double} by {@link PrimitiveIterator.OfDouble#nextDouble()} without boxing.
+     * @return an iterator of all elements
+     */
+    public PrimitiveIterator.OfDouble doubleIterator() {
+        return (PrimitiveIterator.OfDouble) listIterator();
+    }
+
+    /**
+     * The same as {@link FixedSizeDoubleSegmentTree#forEach(java.util.function.Consumer)}, but the action accepts primitive {@link double} without boxing.
+     * @param action the action to be performed for each element
+     */
+    public void forEachDouble(DoubleConsumer action) {
+        spliterator().forEachRemaining(action);
+    }
+
+    /**
+     * Get a {@link Spliterator.OfDouble} of all elements. All lazy tags are pushed down when it is created,
+     * so reading elements by it doesn't modify the tree and it can be split for parallel streams as long as the tree isn't modified.
+     * @return a spliterator of all elements
+     */
+    @Override
+    public Spliterator.OfDouble spliterator() {
+        pushAllLazyTags();
+        return new DoubleSpliter(0, size);
+    }
+
+    /**
+     * Get a sequential {@link DoubleStream} of all elements, call {@link DoubleStream#parallel()} for a parallel one.
+     * @return a stream of all elements
+     */
+    public DoubleStream doubleStream() {
+        return StreamSupport.doubleStream(spliterator(), false);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] copy = new Double[size];
+        pushAllLazyTags();
+        for(int i = 0; i < size; i++) {
+            copy[i] = elements[realIndexIndex[i]];
+        }
+        return copy;
+    }
+
+    public double[] toArrayPrimary() {
+        double[] copy = new double[size];
+        pushAllLazyTags();
+        for(int i = 0; i < size; i++) {
+            copy[i] = elements[realIndexIndex[i]];
+        }
+        return copy;
+    }
+
+    @Override
+    public <ArrayType> ArrayType[] toArray(ArrayType[] container) {
+        if (!container.getClass().getComponentType().equals(Double.class)) {
+            throw new ClassCastException("The only type of container can be accessed is Double[].");
+        }
+        Double[] array;
+        if (container.length < size) {
+            array = (Double[]) Array.newInstance(container.getClass().getComponentType(), size);
+        } else {
+            array = (Double[]) container;
+        }
+        pushAllLazyTags();
+        for(int i = 0; i < size; i++) {
+            array[i] = elements[realIndexIndex[i]];
+        }
+        return (ArrayType[]) array;
+    }
+
+    public double[] toArray(double[] container) {
+        double[] array;
+        if (container.length < size) {
+            array = new double[size];
+        } else {
+            array = container;
+        }
+        pushAllLazyTags();
+        for(int i = 0; i < size; i++) {
+            array[i] = elements[realIndexIndex[i]];
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        pushAllLazyTags();
+        StringBuilder stringBuilder = new StringBuilder(Math.max(16, size * 4 - 1));
+        stringBuilder.append("double").append(": {");
+        partToString(0, size, 1, stringBuilder);
+        stringBuilder.append("}");
+        return stringBuilder.toString();
+    }
+
+    @Override
+    protected void partToString(int currentLeftBorder, int currentRightBorder, int currentElementRealIndex, StringBuilder stringBuilder) {
+        if (currentRightBorder - currentLeftBorder == 1) {
+            stringBuilder.append(elements[currentElementRealIndex]);
+        } else {
+            int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
+            stringBuilder.append(elements[currentElementRealIndex]).append(" = {");
+            partToString(currentLeftBorder, currentChildElementMiddleBorder, currentElementRealIndex * 2, stringBuilder);
+            stringBuilder.append(", ");
+            partToString(currentChildElementMiddleBorder, currentRightBorder, currentElementRealIndex * 2 + 1, stringBuilder);
+            stringBuilder.append("}");
+        }
+    }
+
+    protected class Iter implements ListIterator<Double>, PrimitiveIterator.OfDouble {
+        private int currentElementIndex;
+        private final double[] elements = FixedSizeDoubleSegmentTree.this.elements;
+        private final int[] realIndexIndex = FixedSizeDoubleSegmentTree.this.realIndexIndex;
+
+        private final int leftBorder;
+
+        private final int rightBorderMinus1;
+
+        Iter() {
+            currentElementIndex = -1;
+            leftBorder = 0;
+            rightBorderMinus1 = FixedSizeDoubleSegmentTree.this.size - 1;
+        }
+
+        Iter(int currentElementIndex) {
+            this.currentElementIndex = currentElementIndex - 1;
+            leftBorder = 0;
+            rightBorderMinus1 = FixedSizeDoubleSegmentTree.this.size - 1;
+        }
+
+        Iter(int currentElementIndex, int leftBorder, int rightBorder) {
+            this.currentElementIndex = currentElementIndex - 1;
+            this.leftBorder = leftBorder;
+            this.rightBorderMinus1 = rightBorder - 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return currentElementIndex < rightBorderMinus1;
+        }
+
+        @Override
+        public Double next() {
+            return nextDouble();
+        }
+
+        @Override
+        public double nextDouble() {
+            currentElementIndex++;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(currentElementIndex);
+            }
+            return elements[realIndexIndex[currentElementIndex]];
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return currentElementIndex > leftBorder;
+        }
+
+        @Override
+        public Double previous() {
+            return previousDouble();
+        }
+
+        /**
+         * The same as {@link ListIterator#previous()}, but returns primitive {@link double} without boxing.
+         * @return the previous element
+         */
+        public double previousDouble() {
+            currentElementIndex--;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(currentElementIndex);
+            }
+            return elements[realIndexIndex[currentElementIndex]];
+        }
+
+        @Override
+        public int nextIndex() {
+            return currentElementIndex + 1;
+        }
+
+        @Override
+        public int previousIndex() {
+            return currentElementIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(Double value) {
+            setValueAndGetCombination(currentElementIndex, value);
+        }
+
+        @Override
+        public void add(Double type) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A spliterator of elements in segment [index, fence) which reads elements by {@link FixedSizeDoubleSegmentTree#getAsDouble(int)}.
+     */
+    protected class DoubleSpliter implements Spliterator.OfDouble {
+        private int index;
+
+        private final int fence;
+
+        DoubleSpliter(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(getAsDouble(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            int fence = this.fence;
+            for (int i = index; i < fence; i++) {
+                action.accept(getAsDouble(i));
+            }
+            index = fence;
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            int middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            DoubleSpliter prefix = new DoubleSpliter(index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    protected class SubList extends FixedSizeDoubleSegmentTree {
+
+        private final int indexOffset;
+
+        private final int size;
+
+
+        SubList(int indexOffset, int size) {
+            super(size, null, FixedSizeDoubleSegmentTree.this.elements, FixedSizeDoubleSegmentTree.this.realIndexIndex);
+            this.indexOffset = indexOffset;
+            this.size = size;
+        }
+
+        @Override
+        public double set(int index, double element) {
+            checkIndex(index);
+            return FixedSizeDoubleSegmentTree.this.set(index + indexOffset, element);
+        }
+
+        @Override
+        public double setValueAndGetCombination(int index, double value) {
+            checkIndex(index);
+            FixedSizeDoubleSegmentTree.this.setValueAndGetCombination(index + indexOffset, value);
+            return getCombinationAsDouble();
+        }
+
+        @Override
+        public double setValues(int[] indexes, double[] values) {
+            checkIndexes(indexes, values.length);
+            int[] outerIndexes = new int[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                outerIndexes[i] = indexes[i] + indexOffset;
+            }
+            FixedSizeDoubleSegmentTree.this.setValues(outerIndexes, values);
+            return getCombinationAsDouble();
+        }
+
+        @Override
+        public double setRange(int segmentLeftBorder, int segmentRightBorder, double value) {
+            checkRange(segmentLeftBorder, segmentRightBorder);
+            FixedSizeDoubleSegmentTree.this.setRange(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset, value);
+            return getCombinationAsDouble();
+        }
+
+        @Override
+        public double getCombinationAsDouble() {
+            return FixedSizeDoubleSegmentTree.this.getCombinationAsDouble(indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public double getCombinationAsDouble(int segmentLeftBorder, int segmentRightBorder) {
+            checkRange(segmentLeftBorder, segmentRightBorder);
+            return FixedSizeDoubleSegmentTree.this.getCombinationAsDouble(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset);
+        }
+
+        @Override
+        public int maxRight(int segmentLeftBorder, Predicate<Double> predicate) {
+            if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+            }
+            if (segmentLeftBorder == size) {
+                return size;
+            }
+            return Math.min(FixedSizeDoubleSegmentTree.this.maxRight(segmentLeftBorder + indexOffset, predicate), indexOffset + size) - indexOffset;
+        }
+
+        @Override
+        public int minLeft(int segmentRightBorder, Predicate<Double> predicate) {
+            if (segmentRightBorder < 0 || segmentRightBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+            }
+            if (segmentRightBorder == 0) {
+                return 0;
+            }
+            return Math.max(FixedSizeDoubleSegmentTree.this.minLeft(segmentRightBorder + indexOffset, predicate), indexOffset) - indexOffset;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            for (int i = indexOffset; i < size + indexOffset; i++) {
+                if (Objects.equals(FixedSizeDoubleSegmentTree.this.get(i), o)) {
+                    return i - indexOffset;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            for (int i = size + indexOffset - 1; i >= indexOffset; i--) {
+                if (Objects.equals(FixedSizeDoubleSegmentTree.this.get(i), o)) {
+                    return i - indexOffset;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public ListIterator<Double> listIterator() {
+            return FixedSizeDoubleSegmentTree.this.listIterator(indexOffset, indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public ListIterator<Double> listIterator(int index) {
+            return FixedSizeDoubleSegmentTree.this.listIterator(indexOffset + index, indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public Spliterator.OfDouble spliterator() {
+            FixedSizeDoubleSegmentTree.this.pushAllLazyTags();
+            return FixedSizeDoubleSegmentTree.this.new DoubleSpliter(indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public FixedSizeDoubleSegmentTree subList(int fromIndex, int toIndex) {
+            checkRange(fromIndex, toIndex);
+            return new FixedSizeDoubleSegmentTree.SubList(indexOffset + fromIndex, toIndex - fromIndex);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (int i = indexOffset; i < size + indexOffset; i++) {
+                if (Objects.equals(FixedSizeDoubleSegmentTree.this.get(i), o)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Object[] toArray() {
+            Object[] copy = new Object[size];
+            for(int i = indexOffset; i < size + indexOffset; i++) {
+                copy[i - indexOffset] = FixedSizeDoubleSegmentTree.this.get(i);
+            }
+            return copy;
+        }
+
+        public double[] toArrayPrimary() {
+            double[] copy = new double[size];
+            for(int i = indexOffset; i < size + indexOffset; i++) {
+                copy[i - indexOffset] = FixedSizeDoubleSegmentTree.this.getAsDouble(i);
+            }
+            return copy;
+        }
+
+        @Override
+        public <ArrayType> ArrayType[] toArray(ArrayType[] container) {
+            if (!container.getClass().getComponentType().equals(Double.class)) {
+                throw new ClassCastException("The only type of container can be accessed is Double[].");
+            }
+            Double[] array;
+            if (container.length < size) {
+                array = (Double[]) Array.newInstance(container.getClass().getComponentType(), size);
+            } else {
+                array = (Double[]) container;
+            }
+            for(int i = indexOffset; i < size + indexOffset; i++) {
+                array[i - indexOffset] = FixedSizeDoubleSegmentTree.this.get(i);
+            }
+            return (ArrayType[]) array;
+        }
+
+        @Override
+        public double[] toArray(double[] container) {
+            double[] array;
+            if (container.length < size) {
+                array = new double[size];
+            } else {
+                array = container;
+            }
+            for(int i = indexOffset; i < size + indexOffset; i++) {
+                array[i - indexOffset] = FixedSizeDoubleSegmentTree.this.getAsDouble(i);
+            }
+            return array;
+        }
+
+        @Override
+        public double getAsDouble(int index) {
+            checkIndex(index);
+            return FixedSizeDoubleSegmentTree.this.getAsDouble(index + indexOffset);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "section [" + indexOffset + ", " + (indexOffset + size) + ") of " + FixedSizeDoubleSegmentTree.this;
+        }
+
+        private void checkIndex(int index) throws IndexOutOfBoundsException {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+
+        private void checkRange(int segmentLeftBorder, int segmentRightBorder) throws IndexOutOfBoundsException {
+            if (segmentLeftBorder >= segmentRightBorder) {
+                throw new IndexOutOfBoundsException("SegmentLeftBorder: " + segmentLeftBorder + "SegmentRightBorder: " + segmentRightBorder + " Illegal Segment.");
+            }
+            if (segmentLeftBorder < 0) {
+                throw new IndexOutOfBoundsException("SegmentLeftBorder: " + segmentLeftBorder);
+            }
+            if (segmentRightBorder > size) {
+                throw new IndexOutOfBoundsException("SegmentRightBorder: " + segmentRightBorder + ", Size: " + size);
+            }
+        }
+    }
+}
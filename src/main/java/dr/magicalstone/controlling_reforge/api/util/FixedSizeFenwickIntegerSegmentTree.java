@@ -0,0 +1,397 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * A segment tree {@link FixedSizeIntegerSegmentTree} stored as a Fenwick tree (binary indexed tree), for invertible operators such as sum and xor.
+ * All methods work in the same way as {@link FixedSizeIntegerSegmentTree}.
+ * Node i (from 1) of a Fenwick tree is the combination of elements in segment [i - lowbit(i), i), so every prefix is a combination of O(log(n)) nodes
+ * and the combination of segment [segmentLeftBorder, segmentRightBorder) is the prefix to segmentRightBorder with the prefix to segmentLeftBorder removed by the inverse operator.
+ * It needs size + 1 longs instead of 2 * leafCapacity longs and its loops are tighter, but the operator must be commutative and invertible,
+ * and getting an element or setting a segment is slower: O(log(n)) and O((segmentRightBorder - segmentLeftBorder) * log(n)).
+ */
+public class FixedSizeFenwickIntegerSegmentTree extends FixedSizeIntegerSegmentTree {
+
+    /**
+     * The inverse operator of {@link FixedSizeFenwickIntegerSegmentTree#operator}: inverse(operator(a, b), a) == b.
+     */
+    protected final LongBinaryOperator inverse;
+
+    /**
+     * The identity of the operator, inverse(a, a).
+     */
+    protected final long identity;
+
+    /**
+     * Combination of all elements, kept so that {@link FixedSizeFenwickIntegerSegmentTree#getCombination()} takes O(1).
+     */
+    protected long combination;
+
+    /**
+     * Initialize a tree and set its operator, the inverse operator and all element's value in O(n).
+     * @param operator the operator to combine elements, must be commutative
+     * @param inverse the inverse operator: inverse(operator(a, b), a) == b
+     * @param allElements all elements which will be put in this tree
+     */
+    public FixedSizeFenwickIntegerSegmentTree(LongBinaryOperator operator, LongBinaryOperator inverse, long[] allElements) {
+        super(allElements.length, operator, LongRepeatOperator.byDoubling(operator), new long[allElements.length + 1], null);
+        this.inverse = inverse;
+        this.identity = inverse.applyAsLong(0, 0);
+        System.arraycopy(allElements, 0, elements, 1, size);
+        for (int nodeIndex = 1; nodeIndex <= size; nodeIndex++) {
+            int parentIndex = nodeIndex + (nodeIndex & -nodeIndex);
+            if (parentIndex <= size) {
+                elements[parentIndex] = operator.applyAsLong(elements[parentIndex], elements[nodeIndex]);
+            }
+        }
+        this.combination = prefix(size);
+    }
+
+    /**
+     * Create a Fenwick tree of sum of elements.
+     * @param allElements all elements which will be put in the tree
+     * @return a tree of sum
+     */
+    public static FixedSizeFenwickIntegerSegmentTree sum(long[] allElements) {
+        return new FixedSizeFenwickIntegerSegmentTree(Long::sum, (left, right) -> left - right, allElements);
+    }
+
+    /**
+     * Create a Fenwick tree of xor of elements.
+     * @param allElements all elements which will be put in the tree
+     * @return a tree of xor
+     */
+    public static FixedSizeFenwickIntegerSegmentTree xor(long[] allElements) {
+        return new FixedSizeFenwickIntegerSegmentTree((left, right) -> left ^ right, (left, right) -> left ^ right, allElements);
+    }
+
+    /**
+     * Get combination of elements in segment [0, segmentRightBorder).
+     */
+    private long prefix(int segmentRightBorder) {
+        long prefix = identity;
+        for (int nodeIndex = segmentRightBorder; nodeIndex > 0; nodeIndex &= nodeIndex - 1) {
+            prefix = operator.applyAsLong(prefix, elements[nodeIndex]);
+        }
+        return prefix;
+    }
+
+    /**
+     * Combine a value into all nodes which contain the element at index.
+     */
+    private void add(int index, long value) {
+        for (int nodeIndex = index + 1; nodeIndex <= size; nodeIndex += nodeIndex & -nodeIndex) {
+            elements[nodeIndex] = operator.applyAsLong(elements[nodeIndex], value);
+        }
+        combination = operator.applyAsLong(combination, value);
+    }
+
+    private long getAndSet(int index, long value) {
+        checkIndex(index);
+        long lastValue = getCombinationAsLong(index, index + 1);
+        add(index, inverse.applyAsLong(value, lastValue));
+        return lastValue;
+    }
+
+    @Override
+    public long setValueAndGetCombination(int index, long value) {
+        getAndSet(index, value);
+        return combination;
+    }
+
+    @Override
+    public long set(int index, long element) {
+        return getAndSet(index, element);
+    }
+
+    @Override
+    public Long set(int index, Long element) {
+        return getAndSet(index, element);
+    }
+
+    @Override
+    public long setValues(int[] indexes, long[] values) {
+        checkIndexes(indexes, values.length);
+        for (int i = 0; i < indexes.length; i++) {
+            getAndSet(indexes[i], values[i]);
+        }
+        return combination;
+    }
+
+    /**
+     * Set all elements in segment [segmentLeftBorder, segmentRightBorder) to the same value.
+     * A Fenwick tree can't keep lazy tags, so elements are set one by one in O((segmentRightBorder - segmentLeftBorder) * log(n)).
+     */
+    @Override
+    public long setRange(int segmentLeftBorder, int segmentRightBorder, long value) {
+        checkSegment(segmentLeftBorder, segmentRightBorder);
+        for (int index = segmentLeftBorder; index < segmentRightBorder; index++) {
+            getAndSet(index, value);
+        }
+        return combination;
+    }
+
+    @Override
+    public long getAsLong(int index) {
+        checkIndex(index);
+        return getCombinationAsLong(index, index + 1);
+    }
+
+    @Override
+    public long getCombinationAsLong() {
+        return combination;
+    }
+
+    @Override
+    public long getCombinationAsLong(int segmentLeftBorder, int segmentRightBorder) {
+        checkSegment(segmentLeftBorder, segmentRightBorder);
+        long rightPrefix = identity;
+        long leftPrefix = identity;
+        int rightNodeIndex = segmentRightBorder;
+        int leftNodeIndex = segmentLeftBorder;
+        // Nodes shared by both prefixes are skipped instead of being combined and removed.
+        while (rightNodeIndex != leftNodeIndex) {
+            if (rightNodeIndex > leftNodeIndex) {
+                rightPrefix = operator.applyAsLong(rightPrefix, elements[rightNodeIndex]);
+                rightNodeIndex &= rightNodeIndex - 1;
+            } else {
+                leftPrefix = operator.applyAsLong(leftPrefix, elements[leftNodeIndex]);
+                leftNodeIndex &= leftNodeIndex - 1;
+            }
+        }
+        return inverse.applyAsLong(rightPrefix, leftPrefix);
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#maxRight(int, Predicate)}. The border is found by binary lifting on prefixes in O(log(n)).
+     */
+    @Override
+    public int maxRight(int segmentLeftBorder, Predicate<Long> predicate) {
+        if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+        }
+        long leftPrefix = prefix(segmentLeftBorder);
+        int nodeIndex = 0;
+        long prefix = identity;
+        for (int step = Integer.highestOneBit(Math.max(size, 1)); step > 0; step >>>= 1) {
+            int nextNodeIndex = nodeIndex + step;
+            if (nextNodeIndex > size) {
+                continue;
+            }
+            long nextPrefix = operator.applyAsLong(prefix, elements[nextNodeIndex]);
+            if (nextNodeIndex <= segmentLeftBorder || predicate.test(inverse.applyAsLong(nextPrefix, leftPrefix))) {
+                nodeIndex = nextNodeIndex;
+                prefix = nextPrefix;
+            }
+        }
+        return nodeIndex;
+    }
+
+    /**
+     * See {@link FixedSizeSegmentTree#minLeft(int, Predicate)}. The border is found by binary lifting on prefixes in O(log(n)).
+     */
+    @Override
+    public int minLeft(int segmentRightBorder, Predicate<Long> predicate) {
+        if (segmentRightBorder < 0 || segmentRightBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+        }
+        long rightPrefix = prefix(segmentRightBorder);
+        if (segmentRightBorder == 0 || predicate.test(rightPrefix)) {
+            return 0;
+        }
+        // Find the last left border which doesn't satisfy the predicate.
+        int nodeIndex = 0;
+        long prefix = identity;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>>= 1) {
+            int nextNodeIndex = nodeIndex + step;
+            if (nextNodeIndex >= segmentRightBorder) {
+                continue;
+            }
+            long nextPrefix = operator.applyAsLong(prefix, elements[nextNodeIndex]);
+            if (!predicate.test(inverse.applyAsLong(rightPrefix, nextPrefix))) {
+                nodeIndex = nextNodeIndex;
+                prefix = nextPrefix;
+            }
+        }
+        return nodeIndex + 1;
+    }
+
+    @Override
+    public ListIterator<Long> listIterator() {
+        return new FixedSizeFenwickIntegerSegmentTree.Iter(0, 0, size);
+    }
+
+    @Override
+    public ListIterator<Long> listIterator(int index) {
+        return new FixedSizeFenwickIntegerSegmentTree.Iter(index, 0, size);
+    }
+
+    @Override
+    protected ListIterator<Long> listIterator(int index, int leftBorder, int rightBorder) {
+        return new FixedSizeFenwickIntegerSegmentTree.Iter(index, leftBorder, rightBorder);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] copy = new Long[size];
+        long[] primaryCopy = toArrayPrimary();
+        for (int i = 0; i < size; i++) {
+            copy[i] = primaryCopy[i];
+        }
+        return copy;
+    }
+
+    /**
+     * Get all elements in O(n) by removing the children of each node from it, from the last node to the first one.
+     */
+    @Override
+    public long[] toArrayPrimary() {
+        return toArray(new long[size]);
+    }
+
+    @Override
+    public <ArrayType> ArrayType[] toArray(ArrayType[] container) {
+        if (!container.getClass().getComponentType().equals(Long.class)) {
+            throw new ClassCastException("The only type of container can be accessed is Long[].");
+        }
+        Long[] array;
+        if (container.length < size) {
+            array = (Long[]) Array.newInstance(container.getClass().getComponentType(), size);
+        } else {
+            array = (Long[]) container;
+        }
+        long[] primaryCopy = toArrayPrimary();
+        for (int i = 0; i < size; i++) {
+            array[i] = primaryCopy[i];
+        }
+        return (ArrayType[]) array;
+    }
+
+    @Override
+    public long[] toArray(long[] container) {
+        long[] array;
+        if (container.length < size) {
+            array = new long[size];
+        } else {
+            array = container;
+        }
+        System.arraycopy(elements, 1, array, 0, size);
+        for (int nodeIndex = size; nodeIndex >= 1; nodeIndex--) {
+            int parentIndex = nodeIndex + (nodeIndex & -nodeIndex);
+            if (parentIndex <= size) {
+                array[parentIndex - 1] = inverse.applyAsLong(array[parentIndex - 1], elements[nodeIndex]);
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return "fenwick long: {" + combination + " = " + Arrays.toString(toArrayPrimary()) + "}";
+    }
+
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void checkSegment(int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+    }
+
+    protected class Iter implements ListIterator<Long>, PrimitiveIterator.OfLong {
+        private int nextElementIndex;
+        private int lastElementIndex = -1;
+
+        private final int leftBorder;
+
+        private final int rightBorder;
+
+        Iter(int nextElementIndex, int leftBorder, int rightBorder) {
+            this.nextElementIndex = nextElementIndex;
+            this.leftBorder = leftBorder;
+            this.rightBorder = rightBorder;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextElementIndex < rightBorder;
+        }
+
+        @Override
+        public Long next() {
+            return nextLong();
+        }
+
+        @Override
+        public long nextLong() {
+            if (nextElementIndex >= rightBorder) {
+                throw new NoSuchElementException();
+            }
+            lastElementIndex = nextElementIndex++;
+            return getCombinationAsLong(lastElementIndex, lastElementIndex + 1);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextElementIndex > leftBorder;
+        }
+
+        @Override
+        public Long previous() {
+            return previousLong();
+        }
+
+        /**
+         * The same as {@link ListIterator#previous()}, but returns primitive {@link long} without boxing.
+         * @return the previous element
+         */
+        public long previousLong() {
+            if (nextElementIndex <= leftBorder) {
+                throw new NoSuchElementException();
+            }
+            lastElementIndex = --nextElementIndex;
+            return getCombinationAsLong(lastElementIndex, lastElementIndex + 1);
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextElementIndex - leftBorder;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextElementIndex - leftBorder - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(Long value) {
+            if (lastElementIndex < 0) {
+                throw new IllegalStateException();
+            }
+            FixedSizeFenwickIntegerSegmentTree.this.setValueAndGetCombination(lastElementIndex, (long) value);
+        }
+
+        @Override
+        public void add(Long type) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
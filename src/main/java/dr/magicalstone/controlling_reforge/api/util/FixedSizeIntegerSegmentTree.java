@@ -3,68 +3,89 @@ package dr.magicalstone.controlling_reforge.api.util;
 import javax.annotation.Nonnull;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToLongFunction;
 import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 
 /**
  * A segment tree {@link FixedSizeSegmentTree} whose element Type is primitive {@link long}.
  * All methods work in the same way as {@link FixedSizeSegmentTree}.
- * There will be other primitive segment trees of {@link double}, but no for {@link byte}, {@link short}, {@link int}, {@link float}, {@link char}.
+ * Primitive segment trees are of {@link boolean}, {@link long} and {@link double}, but no for {@link byte}, {@link short}, {@link int}, {@link float}, {@link char}.
  */
 public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
 
     protected final LongBinaryOperator operator;
     protected final long[] elements;
 
+    /**
+     * See {@link FixedSizeSegmentTree#repeatOperator}.
+     */
+    protected final LongRepeatOperator repeatOperator;
+
+    /**
+     * The values of the lazy tags. See {@link FixedSizeSegmentTree#lazyTagged}.
+     */
+    protected long[] lazyValues;
+
     public FixedSizeIntegerSegmentTree(LongBinaryOperator operator, long[] allElements) {
+        this(operator, LongRepeatOperator.byDoubling(operator), allElements);
+    }
+
+    public FixedSizeIntegerSegmentTree(LongBinaryOperator operator, LongRepeatOperator repeatOperator, long[] allElements) {
         super(allElements.length, null, (Long[]) null);
         this.operator = operator;
-        int leafCapacity;
-        if(size == 1) {
-            leafCapacity = 1;
-        } else {
-            leafCapacity = (Integer.highestOneBit(size - 1) << 1);
-        }
-        this.elements = new long[leafCapacity * 2];
-        indexIterate:
-        for (int index = 0; index < size; index ++) {
-            int elementRealIndex = 1;
-            for (int elementLeftBorder = 0, elementRightBorder = size; elementRightBorder - elementLeftBorder > 1;) {
-                if (elementRealIndex >= (leafCapacity / 2)) {
-                    long leftChild = allElements[index];
-                    long rightChild = allElements[index + 1];
-                    elements[elementRealIndex * 2] = leftChild;
-                    elements[elementRealIndex * 2 + 1] = rightChild;
-                    elements[elementRealIndex] = operator.applyAsLong(leftChild, rightChild);
-                    realIndexIndex[index] = elementRealIndex * 2;
-                    realIndexIndex[index + 1] = elementRealIndex * 2 + 1;
-                    index = index + 1;
-                    continue indexIterate;
-                }
-                int childElementMiddleBorder = (elementLeftBorder + elementRightBorder) / 2;
-                if (index < childElementMiddleBorder) {
-                    elementRightBorder = childElementMiddleBorder;
-                    elementRealIndex = elementRealIndex * 2;
-                } else {
-                    elementLeftBorder = childElementMiddleBorder;
-                    elementRealIndex = elementRealIndex * 2 + 1;
-                }
-            }
-            realIndexIndex[index] = elementRealIndex;
-            elements[elementRealIndex] = allElements[index];
-        }
-        for (int elementRealIndex = (leafCapacity / 2) - 1; elementRealIndex >= 1; elementRealIndex--) {
-            elements[elementRealIndex] = operator.applyAsLong(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        this.repeatOperator = repeatOperator;
+        this.elements = new long[elementsLengthOf(size)];
+        if (size != 0) {
+            build(elements, realIndexIndex, operator, index -> allElements[index], 1, 0, size);
         }
     }
 
     protected FixedSizeIntegerSegmentTree(int size, LongBinaryOperator operator, long[] elements) {
         super(size, null, (Long[]) null);
         this.operator = operator;
+        this.repeatOperator = operator == null ? null : LongRepeatOperator.byDoubling(operator);
+        this.elements = elements;
+    }
+
+    protected FixedSizeIntegerSegmentTree(int size, LongBinaryOperator operator, long[] elements, int[] realIndexIndex) {
+        this(size, operator, operator == null ? null : LongRepeatOperator.byDoubling(operator), elements, realIndexIndex);
+    }
+
+    protected FixedSizeIntegerSegmentTree(int size, LongBinaryOperator operator, LongRepeatOperator repeatOperator, long[] elements, int[] realIndexIndex) {
+        super(size, null, null, realIndexIndex);
+        this.operator = operator;
+        this.repeatOperator = repeatOperator;
         this.elements = elements;
     }
 
+    /**
+     * Put elements in segment [leftBorder, rightBorder) into the subtree of a node and calculate the combinations of the subtree in O(rightBorder - leftBorder).
+     * Elements are got from left to right, so elementAt can be backed by an iterator.
+     */
+    private static void build(long[] elements, int[] realIndexIndex, LongBinaryOperator operator, IntToLongFunction elementAt,
+                              int elementRealIndex, int leftBorder, int rightBorder) {
+        if (rightBorder - leftBorder == 1) {
+            realIndexIndex[leftBorder] = elementRealIndex;
+            elements[elementRealIndex] = elementAt.applyAsLong(leftBorder);
+            return;
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        build(elements, realIndexIndex, operator, elementAt, elementRealIndex * 2, leftBorder, childElementMiddleBorder);
+        build(elements, realIndexIndex, operator, elementAt, elementRealIndex * 2 + 1, childElementMiddleBorder, rightBorder);
+        elements[elementRealIndex] = operator.applyAsLong(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+    }
+
     public long setValueAndGetCombination(int index, long value) {
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
         int elementRealIndex = realIndexIndex[index];
         elements[elementRealIndex] = value;
         long leftChild;
@@ -89,8 +110,35 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         return rightChild;
     }
 
+    public long setValues(int[] indexes, long[] values) {
+        checkIndexes(indexes, values.length);
+        int[] leafRealIndexes = new int[indexes.length];
+        for (int i = 0; lazyTagCount != 0 && i < indexes.length; i++) {
+            pushLazyTagsTo(indexes[i]);
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            int elementRealIndex = realIndexIndex[indexes[i]];
+            elements[elementRealIndex] = values[i];
+            leafRealIndexes[i] = elementRealIndex;
+        }
+        int[] dirtyRealIndexes = collectDirtyRealIndexes(leafRealIndexes, elements.length / 2);
+        for (int i = 0, elementRealIndex; i < dirtyRealIndexes.length && (elementRealIndex = dirtyRealIndexes[i]) != 0; i++) {
+            elements[elementRealIndex] = operator.applyAsLong(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+        return elements[1];
+    }
+
+    @Override
+    public Long setValues(int[] indexes, Long[] values) {
+        long[] primaryValues = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            primaryValues[i] = values[i];
+        }
+        return setValues(indexes, primaryValues);
+    }
+
     public long set(int index, long element) {
-        long lastValue = get(index);
+        long lastValue = getAsLong(index);
         setValueAndGetCombination(index, element);
         return lastValue;
     }
@@ -102,16 +150,105 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
 
     @Override
     public Long get(int index) {
+        return getAsLong(index);
+    }
+
+    /**
+     * The same as {@link FixedSizeIntegerSegmentTree#get(int)}, but returns primitive {@link long} without boxing.
+     * @param index index of the element to return
+     * @return the element at the index
+     */
+    public long getAsLong(int index) {
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
         return elements[realIndexIndex[index]];
     }
 
+    public long setRange(int segmentLeftBorder, int segmentRightBorder, long value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        if (lazyTagged == null) {
+            lazyTagged = new boolean[elements.length / 2];
+            lazyValues = new long[elements.length / 2];
+        }
+        setRange(segmentLeftBorder, segmentRightBorder, value, 0, size, 1);
+        return elements[1];
+    }
+
+    @Override
+    public Long setRange(int segmentLeftBorder, int segmentRightBorder, @Nonnull Long value) {
+        return setRange(segmentLeftBorder, segmentRightBorder, (long) value);
+    }
+
+    private void setRange(int segmentLeftBorder, int segmentRightBorder, long value, int leftBorder, int rightBorder, int elementRealIndex) {
+        if (segmentLeftBorder <= leftBorder && rightBorder <= segmentRightBorder) {
+            setLazyTag(elementRealIndex, rightBorder - leftBorder, value);
+            return;
+        }
+        pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        if (segmentLeftBorder < childElementMiddleBorder) {
+            setRange(segmentLeftBorder, segmentRightBorder, value, leftBorder, childElementMiddleBorder, elementRealIndex * 2);
+        }
+        if (segmentRightBorder > childElementMiddleBorder) {
+            setRange(segmentLeftBorder, segmentRightBorder, value, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1);
+        }
+        elements[elementRealIndex] = operator.applyAsLong(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+    }
+
+    protected void setLazyTag(int elementRealIndex, int segmentSize, long value) {
+        if (segmentSize == 1) {
+            elements[elementRealIndex] = value;
+            return;
+        }
+        elements[elementRealIndex] = repeatOperator.repeatAsLong(value, segmentSize);
+        if (!lazyTagged[elementRealIndex]) {
+            lazyTagged[elementRealIndex] = true;
+            lazyTagCount++;
+        }
+        lazyValues[elementRealIndex] = value;
+    }
+
+    @Override
+    protected void pushLazyTag(int elementRealIndex, int leftBorder, int rightBorder) {
+        if (lazyTagCount == 0 || !lazyTagged[elementRealIndex]) {
+            return;
+        }
+        lazyTagged[elementRealIndex] = false;
+        lazyTagCount--;
+        long value = lazyValues[elementRealIndex];
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        setLazyTag(elementRealIndex * 2, childElementMiddleBorder - leftBorder, value);
+        setLazyTag(elementRealIndex * 2 + 1, rightBorder - childElementMiddleBorder, value);
+    }
+
     @Override
     public Long getCombination() {
+        return getCombinationAsLong();
+    }
+
+    /**
+     * The same as {@link FixedSizeIntegerSegmentTree#getCombination()}, but returns primitive {@link long} without boxing.
+     * @return combination of all elements
+     */
+    public long getCombinationAsLong() {
         return elements[1];
     }
 
     @Override
     public Long getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        return getCombinationAsLong(segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * The same as {@link FixedSizeIntegerSegmentTree#getCombination(int, int)}, but returns primitive {@link long} without boxing.
+     * @param segmentLeftBorder left border of the segment of element's combination
+     * @param segmentRightBorder right border of the segment of element's combination
+     * @return combination of all elements (elements in segment [segmentLeftBorder, segmentRightBorder) )
+     */
+    public long getCombinationAsLong(int segmentLeftBorder, int segmentRightBorder) {
         if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
             throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
         }
@@ -136,6 +273,9 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         int currentElementRealIndex = elementRealIndex;
         long combination = 0;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentRightBorder < currentChildElementMiddleBorder) {
                 currentRightBorder = currentChildElementMiddleBorder;
@@ -161,6 +301,9 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         int currentElementRealIndex = elementRealIndex;
         long combination = 0;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentLeftBorder > currentChildElementMiddleBorder) {
                 currentLeftBorder = currentChildElementMiddleBorder;
@@ -185,6 +328,9 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         int currentRightBorder = size;
         int currentElementRealIndex = 1;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentRightBorder == currentChildElementMiddleBorder) {
                 return getCombinationLInROut(segmentLeftBorder, currentLeftBorder, currentChildElementMiddleBorder, currentElementRealIndex * 2);
@@ -208,6 +354,99 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         }
     }
 
+    @Override
+    public int maxRight(int segmentLeftBorder, Predicate<Long> predicate) {
+        if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+        }
+        if (segmentLeftBorder == size) {
+            return size;
+        }
+        int segmentRightBorder = maxRight(segmentLeftBorder, predicate, 0, size, 1, new long[1]);
+        return segmentRightBorder < 0 ? size : segmentRightBorder;
+    }
+
+    private int maxRight(int segmentLeftBorder, Predicate<Long> predicate, int leftBorder, int rightBorder, int elementRealIndex, long[] combination) {
+        if (rightBorder <= segmentLeftBorder) {
+            return -1;
+        }
+        if (segmentLeftBorder <= leftBorder) {
+            long newCombination = leftBorder == segmentLeftBorder ? elements[elementRealIndex] : operator.applyAsLong(combination[0], elements[elementRealIndex]);
+            if (predicate.test(newCombination)) {
+                combination[0] = newCombination;
+                return -1;
+            }
+            if (rightBorder - leftBorder == 1) {
+                return leftBorder;
+            }
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        int index = maxRight(segmentLeftBorder, predicate, leftBorder, childElementMiddleBorder, elementRealIndex * 2, combination);
+        return index >= 0 ? index : maxRight(segmentLeftBorder, predicate, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1, combination);
+    }
+
+    @Override
+    public int minLeft(int segmentRightBorder, Predicate<Long> predicate) {
+        if (segmentRightBorder < 0 || segmentRightBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+        }
+        if (segmentRightBorder == 0) {
+            return 0;
+        }
+        int segmentLeftBorder = minLeft(segmentRightBorder, predicate, 0, size, 1, new long[1]);
+        return segmentLeftBorder < 0 ? 0 : segmentLeftBorder;
+    }
+
+    private int minLeft(int segmentRightBorder, Predicate<Long> predicate, int leftBorder, int rightBorder, int elementRealIndex, long[] combination) {
+        if (leftBorder >= segmentRightBorder) {
+            return -1;
+        }
+        if (rightBorder <= segmentRightBorder) {
+            long newCombination = rightBorder == segmentRightBorder ? elements[elementRealIndex] : operator.applyAsLong(elements[elementRealIndex], combination[0]);
+            if (predicate.test(newCombination)) {
+                combination[0] = newCombination;
+                return -1;
+            }
+            if (rightBorder - leftBorder == 1) {
+                return rightBorder;
+            }
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        int index = minLeft(segmentRightBorder, predicate, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1, combination);
+        return index >= 0 ? index : minLeft(segmentRightBorder, predicate, leftBorder, childElementMiddleBorder, elementRealIndex * 2, combination);
+    }
+
+    /**
+     * Find the index of the first largest element in segment [segmentLeftBorder, segmentRightBorder) in O(log(n)),
+     * such as the binding with the highest priority among active ones.
+     * The operator of this tree must be max such as {@link Math#max(long, long)}.
+     * @param segmentLeftBorder left border of the segment
+     * @param segmentRightBorder right border of the segment
+     * @return index of the first largest element in the segment
+     */
+    public int argmax(int segmentLeftBorder, int segmentRightBorder) {
+        long max = getCombinationAsLong(segmentLeftBorder, segmentRightBorder);
+        return maxRight(segmentLeftBorder, combination -> combination < max);
+    }
+
+    /**
+     * Find the index of the first smallest element in segment [segmentLeftBorder, segmentRightBorder) in O(log(n)).
+     * The operator of this tree must be min such as {@link Math#min(long, long)}.
+     * @param segmentLeftBorder left border of the segment
+     * @param segmentRightBorder right border of the segment
+     * @return index of the first smallest element in the segment
+     */
+    public int argmin(int segmentLeftBorder, int segmentRightBorder) {
+        long min = getCombinationAsLong(segmentLeftBorder, segmentRightBorder);
+        return maxRight(segmentLeftBorder, combination -> combination > min);
+    }
+
     @Override
     public ListIterator<Long> listIterator() {
         return new Iter();
@@ -218,14 +457,61 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         return new Iter(index);
     }
 
+    /**
+     * Get an {@link ListIterator} of elements in segment [leftBorder, rightBorder), for sub lists.
+     * @param index index of the first element to be returned by {@link ListIterator#next next}
+     * @param leftBorder left border of the segment
+     * @param rightBorder right border of the segment
+     * @return an {@link ListIterator} of elements in the segment
+     */
+    protected ListIterator<Long> listIterator(int index, int leftBorder, int rightBorder) {
+        return new Iter(index, leftBorder, rightBorder);
+    }
+
     @Override
     public FixedSizeIntegerSegmentTree subList(int fromIndex, int toIndex) {
         return new FixedSizeIntegerSegmentTree.SubList(fromIndex, toIndex - fromIndex);
     }
 
+    /**
+     * Get an iterator of all elements which returns primitive {@link long} by {@link PrimitiveIterator.OfLong#nextLong()} without boxing.
+     * @return an iterator of all elements
+     */
+    public PrimitiveIterator.OfLong longIterator() {
+        return (PrimitiveIterator.OfLong) listIterator();
+    }
+
+    /**
+     * The same as {@link FixedSizeIntegerSegmentTree#forEach(java.util.function.Consumer)}, but the action accepts primitive {@link long} without boxing.
+     * @param action the action to be performed for each element
+     */
+    public void forEachLong(LongConsumer action) {
+        spliterator().forEachRemaining(action);
+    }
+
+    /**
+     * Get a {@link Spliterator.OfLong} of all elements. All lazy tags are pushed down when it is created,
+     * so reading elements by it doesn't modify the tree and it can be split for parallel streams as long as the tree isn't modified.
+     * @return a spliterator of all elements
+     */
+    @Override
+    public Spliterator.OfLong spliterator() {
+        pushAllLazyTags();
+        return new LongSpliter(0, size);
+    }
+
+    /**
+     * Get a sequential {@link LongStream} of all elements, call {@link LongStream#parallel()} for a parallel one.
+     * @return a stream of all elements
+     */
+    public LongStream longStream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
     @Override
     public Object[] toArray() {
         Object[] copy = new Long[size];
+        pushAllLazyTags();
         for(int i = 0; i < size; i++) {
             copy[i] = elements[realIndexIndex[i]];
         }
@@ -234,6 +520,7 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
 
     public long[] toArrayPrimary() {
         long[] copy = new long[size];
+        pushAllLazyTags();
         for(int i = 0; i < size; i++) {
             copy[i] = elements[realIndexIndex[i]];
         }
@@ -251,6 +538,7 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         } else {
             array = (Long[]) container;
         }
+        pushAllLazyTags();
         for(int i = 0; i < size; i++) {
             array[i] = elements[realIndexIndex[i]];
         }
@@ -264,6 +552,7 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         } else {
             array = container;
         }
+        pushAllLazyTags();
         for(int i = 0; i < size; i++) {
             array[i] = elements[realIndexIndex[i]];
         }
@@ -272,6 +561,7 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
 
     @Override
     public String toString() {
+        pushAllLazyTags();
         StringBuilder stringBuilder = new StringBuilder(Math.max(16, size * 4 - 1));
         stringBuilder.append("long").append(": {");
         partToString(0, size, 1, stringBuilder);
@@ -293,7 +583,172 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         }
     }
 
-    protected class Iter implements ListIterator<Long> {
+    /**
+     * Builds a {@link FixedSizeIntegerSegmentTree} in O(n) like {@link FixedSizeSegmentTree.Builder}.
+     */
+    public static class Builder {
+
+        protected final LongBinaryOperator operator;
+
+        protected LongRepeatOperator repeatOperator;
+
+        /**
+         * See {@link FixedSizeSegmentTree.Builder#backingArray}.
+         */
+        protected long[] backingArray;
+
+        /**
+         * See {@link FixedSizeSegmentTree.Builder#pool}.
+         */
+        protected ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        /**
+         * See {@link FixedSizeSegmentTree.Builder#parallelThreshold}.
+         */
+        protected int parallelThreshold = FixedSizeSegmentTree.Builder.DEFAULT_PARALLEL_THRESHOLD;
+
+        /**
+         * @param operator the operator to combine elements
+         */
+        public Builder(LongBinaryOperator operator) {
+            this.operator = operator;
+            this.repeatOperator = LongRepeatOperator.byDoubling(operator);
+        }
+
+        /**
+         * @param repeatOperator see {@link FixedSizeIntegerSegmentTree#repeatOperator}
+         * @return this builder
+         */
+        public Builder repeatOperator(LongRepeatOperator repeatOperator) {
+            this.repeatOperator = repeatOperator;
+            return this;
+        }
+
+        /**
+         * See {@link FixedSizeSegmentTree.Builder#backingArray(Object[])}.
+         * @param backingArray the array to reuse
+         * @return this builder
+         */
+        public Builder backingArray(long[] backingArray) {
+            this.backingArray = backingArray;
+            return this;
+        }
+
+        /**
+         * @param pool the pool to build large trees, null to always build in the calling thread
+         * @return this builder
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * @param parallelThreshold trees and subtrees with fewer elements are built in one thread
+         * @return this builder
+         */
+        public Builder parallelThreshold(int parallelThreshold) {
+            this.parallelThreshold = Math.max(2, parallelThreshold);
+            return this;
+        }
+
+        /**
+         * Build a tree whose element at index i is elementAt.applyAsLong(i).
+         * @param size size of the tree
+         * @param elementAt function from index to element, called once for each index. It must be thread safe if the tree is built in parallel
+         * @return the tree
+         */
+        public FixedSizeIntegerSegmentTree build(int size, IntToLongFunction elementAt) {
+            return build(size, elementAt, pool != null && size >= parallelThreshold);
+        }
+
+        /**
+         * Build a tree of the first size elements of an iterator, in the calling thread.
+         * @param size size of the tree
+         * @param iterator iterator of elements, must have at least size elements
+         * @return the tree
+         */
+        public FixedSizeIntegerSegmentTree build(int size, PrimitiveIterator.OfLong iterator) {
+            return build(size, index -> iterator.nextLong(), false);
+        }
+
+        /**
+         * Build a tree of all elements of a stream. If the size of the stream is unknown, elements are collected into an array first.
+         * @param stream stream of elements
+         * @return the tree
+         */
+        public FixedSizeIntegerSegmentTree build(LongStream stream) {
+            Spliterator.OfLong spliterator = stream.spliterator();
+            long exactSize = spliterator.getExactSizeIfKnown();
+            if (exactSize >= 0) {
+                return build(Math.toIntExact(exactSize), Spliterators.iterator(spliterator));
+            }
+            long[] allElements = StreamSupport.longStream(spliterator, false).toArray();
+            return build(allElements.length, index -> allElements[index]);
+        }
+
+        private FixedSizeIntegerSegmentTree build(int size, IntToLongFunction elementAt, boolean parallel) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Size should not be negative: " + size);
+            }
+            int length = elementsLengthOf(size);
+            long[] elements = backingArray;
+            backingArray = null;
+            if (elements == null) {
+                elements = new long[length];
+            } else if (elements.length < length) {
+                throw new IllegalArgumentException("The backing array should be at least " + length + " long for size " + size + ", but it is " + elements.length + " long.");
+            }
+            int[] realIndexIndex = new int[size];
+            if (parallel) {
+                pool.invoke(new BuildTask(elements, realIndexIndex, operator, elementAt, parallelThreshold, 1, 0, size));
+            } else if (size != 0) {
+                FixedSizeIntegerSegmentTree.build(elements, realIndexIndex, operator, elementAt, 1, 0, size);
+            }
+            return new FixedSizeIntegerSegmentTree(size, operator, repeatOperator, elements, realIndexIndex);
+        }
+    }
+
+    /**
+     * Builds the subtree of a node, and builds the two subtrees of the children in parallel if the segment has at least parallelThreshold elements.
+     */
+    @SuppressWarnings("serial")
+    private static class BuildTask extends RecursiveAction {
+        private final long[] elements;
+        private final int[] realIndexIndex;
+        private final LongBinaryOperator operator;
+        private final IntToLongFunction elementAt;
+        private final int parallelThreshold;
+        private final int elementRealIndex;
+        private final int leftBorder;
+        private final int rightBorder;
+
+        BuildTask(long[] elements, int[] realIndexIndex, LongBinaryOperator operator, IntToLongFunction elementAt,
+                  int parallelThreshold, int elementRealIndex, int leftBorder, int rightBorder) {
+            this.elements = elements;
+            this.realIndexIndex = realIndexIndex;
+            this.operator = operator;
+            this.elementAt = elementAt;
+            this.parallelThreshold = parallelThreshold;
+            this.elementRealIndex = elementRealIndex;
+            this.leftBorder = leftBorder;
+            this.rightBorder = rightBorder;
+        }
+
+        @Override
+        protected void compute() {
+            if (rightBorder - leftBorder < parallelThreshold) {
+                build(elements, realIndexIndex, operator, elementAt, elementRealIndex, leftBorder, rightBorder);
+                return;
+            }
+            int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+            invokeAll(new BuildTask(elements, realIndexIndex, operator, elementAt, parallelThreshold, elementRealIndex * 2, leftBorder, childElementMiddleBorder),
+                    new BuildTask(elements, realIndexIndex, operator, elementAt, parallelThreshold, elementRealIndex * 2 + 1, childElementMiddleBorder, rightBorder));
+            elements[elementRealIndex] = operator.applyAsLong(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+    }
+
+    protected class Iter implements ListIterator<Long>, PrimitiveIterator.OfLong {
         private int currentElementIndex;
         private final long[] elements = FixedSizeIntegerSegmentTree.this.elements;
         private final int[] realIndexIndex = FixedSizeIntegerSegmentTree.this.realIndexIndex;
@@ -327,7 +782,15 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
 
         @Override
         public Long next() {
+            return nextLong();
+        }
+
+        @Override
+        public long nextLong() {
             currentElementIndex++;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(currentElementIndex);
+            }
             return elements[realIndexIndex[currentElementIndex]];
         }
 
@@ -338,7 +801,18 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
 
         @Override
         public Long previous() {
+            return previousLong();
+        }
+
+        /**
+         * The same as {@link ListIterator#previous()}, but returns primitive {@link long} without boxing.
+         * @return the previous element
+         */
+        public long previousLong() {
             currentElementIndex--;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(currentElementIndex);
+            }
             return elements[realIndexIndex[currentElementIndex]];
         }
 
@@ -368,17 +842,68 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         }
     }
 
+    /**
+     * A spliterator of elements in segment [index, fence) which reads elements by {@link FixedSizeIntegerSegmentTree#getAsLong(int)}.
+     */
+    protected class LongSpliter implements Spliterator.OfLong {
+        private int index;
+
+        private final int fence;
+
+        LongSpliter(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(getAsLong(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            int fence = this.fence;
+            for (int i = index; i < fence; i++) {
+                action.accept(getAsLong(i));
+            }
+            index = fence;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            int middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            LongSpliter prefix = new LongSpliter(index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     protected class SubList extends FixedSizeIntegerSegmentTree {
 
         private final int indexOffset;
 
         private final int size;
 
-        private final long[] elements = FixedSizeIntegerSegmentTree.this.elements;
-        private final int[] realIndexIndex = FixedSizeIntegerSegmentTree.this.realIndexIndex;
 
         SubList(int indexOffset, int size) {
-            super(size, null, FixedSizeIntegerSegmentTree.this.elements);
+            super(size, null, FixedSizeIntegerSegmentTree.this.elements, FixedSizeIntegerSegmentTree.this.realIndexIndex);
             this.indexOffset = indexOffset;
             this.size = size;
         }
@@ -392,25 +917,66 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         @Override
         public long setValueAndGetCombination(int index, long value) {
             checkIndex(index);
-            return FixedSizeIntegerSegmentTree.this.setValueAndGetCombination(index + indexOffset, value);
+            FixedSizeIntegerSegmentTree.this.setValueAndGetCombination(index + indexOffset, value);
+            return getCombinationAsLong();
         }
 
         @Override
-        public Long getCombination() {
-            return FixedSizeIntegerSegmentTree.this.getCombination(indexOffset, indexOffset + size);
+        public long setValues(int[] indexes, long[] values) {
+            checkIndexes(indexes, values.length);
+            int[] outerIndexes = new int[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                outerIndexes[i] = indexes[i] + indexOffset;
+            }
+            FixedSizeIntegerSegmentTree.this.setValues(outerIndexes, values);
+            return getCombinationAsLong();
         }
 
         @Override
-        public Long getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        public long setRange(int segmentLeftBorder, int segmentRightBorder, long value) {
             checkRange(segmentLeftBorder, segmentRightBorder);
-            return FixedSizeIntegerSegmentTree.this.getCombination(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset);
+            FixedSizeIntegerSegmentTree.this.setRange(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset, value);
+            return getCombinationAsLong();
+        }
+
+        @Override
+        public long getCombinationAsLong() {
+            return FixedSizeIntegerSegmentTree.this.getCombinationAsLong(indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public long getCombinationAsLong(int segmentLeftBorder, int segmentRightBorder) {
+            checkRange(segmentLeftBorder, segmentRightBorder);
+            return FixedSizeIntegerSegmentTree.this.getCombinationAsLong(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset);
+        }
+
+        @Override
+        public int maxRight(int segmentLeftBorder, Predicate<Long> predicate) {
+            if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+            }
+            if (segmentLeftBorder == size) {
+                return size;
+            }
+            return Math.min(FixedSizeIntegerSegmentTree.this.maxRight(segmentLeftBorder + indexOffset, predicate), indexOffset + size) - indexOffset;
+        }
+
+        @Override
+        public int minLeft(int segmentRightBorder, Predicate<Long> predicate) {
+            if (segmentRightBorder < 0 || segmentRightBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+            }
+            if (segmentRightBorder == 0) {
+                return 0;
+            }
+            return Math.max(FixedSizeIntegerSegmentTree.this.minLeft(segmentRightBorder + indexOffset, predicate), indexOffset) - indexOffset;
         }
 
         @Override
         public int indexOf(Object o) {
             for (int i = indexOffset; i < size + indexOffset; i++) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
-                    return indexOffset;
+                if (Objects.equals(FixedSizeIntegerSegmentTree.this.get(i), o)) {
+                    return i - indexOffset;
                 }
             }
             return -1;
@@ -419,8 +985,8 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         @Override
         public int lastIndexOf(Object o) {
             for (int i = size + indexOffset - 1; i >= indexOffset; i--) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
-                    return indexOffset;
+                if (Objects.equals(FixedSizeIntegerSegmentTree.this.get(i), o)) {
+                    return i - indexOffset;
                 }
             }
             return -1;
@@ -428,12 +994,18 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
 
         @Override
         public ListIterator<Long> listIterator() {
-            return new FixedSizeIntegerSegmentTree.Iter(indexOffset, indexOffset, indexOffset + size);
+            return FixedSizeIntegerSegmentTree.this.listIterator(indexOffset, indexOffset, indexOffset + size);
         }
 
         @Override
         public ListIterator<Long> listIterator(int index) {
-            return new FixedSizeIntegerSegmentTree.Iter(indexOffset + index, indexOffset, indexOffset + size);
+            return FixedSizeIntegerSegmentTree.this.listIterator(indexOffset + index, indexOffset, indexOffset + size);
+        }
+
+        @Override
+        public Spliterator.OfLong spliterator() {
+            FixedSizeIntegerSegmentTree.this.pushAllLazyTags();
+            return FixedSizeIntegerSegmentTree.this.new LongSpliter(indexOffset, indexOffset + size);
         }
 
         @Override
@@ -445,7 +1017,7 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         @Override
         public boolean contains(Object o) {
             for (int i = indexOffset; i < size + indexOffset; i++) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
+                if (Objects.equals(FixedSizeIntegerSegmentTree.this.get(i), o)) {
                     return true;
                 }
             }
@@ -456,7 +1028,7 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         public Object[] toArray() {
             Object[] copy = new Object[size];
             for(int i = indexOffset; i < size + indexOffset; i++) {
-                copy[i] = elements[realIndexIndex[i]];
+                copy[i - indexOffset] = FixedSizeIntegerSegmentTree.this.get(i);
             }
             return copy;
         }
@@ -464,7 +1036,7 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
         public long[] toArrayPrimary() {
             long[] copy = new long[size];
             for(int i = indexOffset; i < size + indexOffset; i++) {
-                copy[i] = elements[realIndexIndex[i]];
+                copy[i - indexOffset] = FixedSizeIntegerSegmentTree.this.getAsLong(i);
             }
             return copy;
         }
@@ -481,15 +1053,29 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
                 array = (Long[]) container;
             }
             for(int i = indexOffset; i < size + indexOffset; i++) {
-                array[i] = elements[realIndexIndex[i]];
+                array[i - indexOffset] = FixedSizeIntegerSegmentTree.this.get(i);
             }
             return (ArrayType[]) array;
         }
 
         @Override
-        public Long get(int index) {
+        public long[] toArray(long[] container) {
+            long[] array;
+            if (container.length < size) {
+                array = new long[size];
+            } else {
+                array = container;
+            }
+            for(int i = indexOffset; i < size + indexOffset; i++) {
+                array[i - indexOffset] = FixedSizeIntegerSegmentTree.this.getAsLong(i);
+            }
+            return array;
+        }
+
+        @Override
+        public long getAsLong(int index) {
             checkIndex(index);
-            return FixedSizeIntegerSegmentTree.this.get(index + indexOffset);
+            return FixedSizeIntegerSegmentTree.this.getAsLong(index + indexOffset);
         }
 
         @Override
@@ -499,11 +1085,11 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
 
         @Override
         public String toString() {
-            return "section [" + indexOffset + ", " + indexOffset + size + ") of " + FixedSizeIntegerSegmentTree.this;
+            return "section [" + indexOffset + ", " + (indexOffset + size) + ") of " + FixedSizeIntegerSegmentTree.this;
         }
 
         private void checkIndex(int index) throws IndexOutOfBoundsException {
-            if (index + indexOffset >= size) {
+            if (index < 0 || index >= size) {
                 throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
             }
         }
@@ -515,7 +1101,7 @@ public class FixedSizeIntegerSegmentTree extends FixedSizeSegmentTree<Long> {
             if (segmentLeftBorder < 0) {
                 throw new IndexOutOfBoundsException("SegmentLeftBorder: " + segmentLeftBorder);
             }
-            if (segmentRightBorder + indexOffset >= size) {
+            if (segmentRightBorder > size) {
                 throw new IndexOutOfBoundsException("SegmentRightBorder: " + segmentRightBorder + ", Size: " + size);
             }
         }
@@ -0,0 +1,499 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * A segment tree {@link FixedSizeIntegerSegmentTree} whose nodes are stored off heap in a file by {@link MappedByteBuffer}s,
+ * for trees too large for the heap such as statistics of input traces of long sessions.
+ * Nodes are in the bottom-up layout of {@link FixedSizeBottomUpIntegerSegmentTree}, so no index table is kept on heap.
+ * The file persists across restarts: {@link FixedSizeMappedIntegerSegmentTree#open(Path, LongBinaryOperator)} maps an existing file in O(1) without rebuilding.
+ * All methods work in the same way as {@link FixedSizeIntegerSegmentTree} except {@link FixedSizeMappedIntegerSegmentTree#setRange(int, int, long)},
+ * which sets elements eagerly in O(segmentRightBorder - segmentLeftBorder + log(n)) because lazy tags would be on heap.
+ * Modifications reach the file when the operating system writes mapped pages back, call {@link FixedSizeMappedIntegerSegmentTree#force()} to write them at once.
+ */
+public class FixedSizeMappedIntegerSegmentTree extends FixedSizeIntegerSegmentTree implements Closeable {
+
+    /**
+     * The first long of the file.
+     */
+    public static final long MAGIC = 0x4d53545245453031L;
+
+    /**
+     * The file starts with a header of {@link FixedSizeMappedIntegerSegmentTree#MAGIC}, size, identity and leaf capacity, then nodes by real index.
+     */
+    protected static final int HEADER_BYTES = 4 * Long.BYTES;
+
+    /**
+     * Nodes are mapped in chunks of 1 &lt;&lt; CHUNK_SHIFT nodes, because a {@link MappedByteBuffer} can't be larger than 2GB.
+     */
+    protected static final int CHUNK_SHIFT = 27;
+
+    protected static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    /**
+     * The largest size of a mapped tree, so that real indexes of nodes are still int.
+     */
+    public static final int MAX_SIZE = 1 << 29;
+
+    /**
+     * See {@link FixedSizeBottomUpIntegerSegmentTree#leafCapacity}.
+     */
+    protected final int leafCapacity;
+
+    /**
+     * See {@link FixedSizeBottomUpIntegerSegmentTree#identity}.
+     */
+    protected final long identity;
+
+    protected final FileChannel channel;
+
+    /**
+     * Mapped chunks of nodes. The node at real index i is chunks[i &gt;&gt;&gt; CHUNK_SHIFT].get(i &amp; CHUNK_MASK).
+     */
+    protected final LongBuffer[] chunks;
+
+    private final MappedByteBuffer[] mappedBuffers;
+
+    private FixedSizeMappedIntegerSegmentTree(FileChannel channel, MappedByteBuffer header, LongBinaryOperator operator, int size, long identity, int leafCapacity) throws IOException {
+        super(size, operator, null, null);
+        this.channel = channel;
+        this.identity = identity;
+        this.leafCapacity = leafCapacity;
+        long nodeCount = leafCapacity * 2L;
+        int chunkCount = (int) ((nodeCount - 1) >>> CHUNK_SHIFT) + 1;
+        this.chunks = new LongBuffer[chunkCount];
+        this.mappedBuffers = new MappedByteBuffer[chunkCount + 1];
+        mappedBuffers[chunkCount] = header;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            long chunkNodeCount = Math.min(1L << CHUNK_SHIFT, nodeCount - ((long) chunk << CHUNK_SHIFT));
+            mappedBuffers[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + ((long) chunk << CHUNK_SHIFT) * Long.BYTES, chunkNodeCount * Long.BYTES);
+            chunks[chunk] = mappedBuffers[chunk].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+    }
+
+    /**
+     * Create a file for a tree, or overwrite the file if it exists, and build the tree in it in O(n).
+     * @param file the file to store the tree
+     * @param operator the operator to combine elements
+     * @param identity the identity of the operator (identity op x == x op identity == x)
+     * @param size size of the tree
+     * @param elementAt function from index to element, called once for each index in order
+     * @return the tree
+     * @throws IOException if the file can't be created or mapped
+     */
+    public static FixedSizeMappedIntegerSegmentTree create(Path file, LongBinaryOperator operator, long identity, int size, IntToLongFunction elementAt) throws IOException {
+        if (size < 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Size should be in [0, " + MAX_SIZE + "]: " + size);
+        }
+        int leafCapacity = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            LongBuffer headerLongs = header.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            headerLongs.put(1, size).put(2, identity).put(3, leafCapacity);
+            FixedSizeMappedIntegerSegmentTree tree = new FixedSizeMappedIntegerSegmentTree(channel, header, operator, size, identity, leafCapacity);
+            for (int index = 0; index < leafCapacity; index++) {
+                tree.setNode(leafCapacity + index, index < size ? elementAt.applyAsLong(index) : identity);
+            }
+            for (int elementRealIndex = leafCapacity - 1; elementRealIndex >= 1; elementRealIndex--) {
+                tree.combineChildren(elementRealIndex);
+            }
+            // The magic is written last, so a file whose creation was interrupted can't be opened.
+            headerLongs.put(0, MAGIC);
+            return tree;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create a file for a tree whose elements are all identity. See {@link FixedSizeMappedIntegerSegmentTree#create(Path, LongBinaryOperator, long, int, IntToLongFunction)}.
+     */
+    public static FixedSizeMappedIntegerSegmentTree create(Path file, LongBinaryOperator operator, long identity, int size) throws IOException {
+        return create(file, operator, identity, size, index -> identity);
+    }
+
+    /**
+     * Open a tree created by {@link FixedSizeMappedIntegerSegmentTree#create(Path, LongBinaryOperator, long, int, IntToLongFunction)} in O(1).
+     * Nodes are read from the file when they are used.
+     * @param file the file of the tree
+     * @param operator the operator to combine elements, must be the same as the operator when the tree was created
+     * @return the tree
+     * @throws IOException if the file can't be opened or mapped, or it isn't a file of a tree
+     */
+    public static FixedSizeMappedIntegerSegmentTree open(Path file, LongBinaryOperator operator) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a file of a mapped segment tree: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            LongBuffer headerLongs = header.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            long size = headerLongs.get(1);
+            long leafCapacity = headerLongs.get(3);
+            if (headerLongs.get(0) != MAGIC || size < 0 || size > MAX_SIZE || leafCapacity != (size <= 1 ? 1 : Long.highestOneBit(size - 1) << 1)
+                    || channel.size() < HEADER_BYTES + leafCapacity * 2 * Long.BYTES) {
+                throw new IOException("Not a file of a mapped segment tree or the file is broken: " + file);
+            }
+            return new FixedSizeMappedIntegerSegmentTree(channel, header, operator, (int) size, headerLongs.get(2), (int) leafCapacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    protected final long node(int elementRealIndex) {
+        return chunks[elementRealIndex >>> CHUNK_SHIFT].get(elementRealIndex & CHUNK_MASK);
+    }
+
+    protected final void setNode(int elementRealIndex, long value) {
+        chunks[elementRealIndex >>> CHUNK_SHIFT].put(elementRealIndex & CHUNK_MASK, value);
+    }
+
+    private void combineChildren(int elementRealIndex) {
+        setNode(elementRealIndex, operator.applyAsLong(node(elementRealIndex * 2), node(elementRealIndex * 2 + 1)));
+    }
+
+    /**
+     * Write all modifications to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer mappedBuffer : mappedBuffers) {
+            mappedBuffer.force();
+        }
+    }
+
+    /**
+     * Write all modifications to the file and close it. The tree should not be used after it is closed.
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    @Override
+    public long setValueAndGetCombination(int index, long value) {
+        checkIndex(index);
+        int elementRealIndex = leafCapacity + index;
+        setNode(elementRealIndex, value);
+        for (elementRealIndex >>>= 1; elementRealIndex >= 1; elementRealIndex >>>= 1) {
+            combineChildren(elementRealIndex);
+        }
+        return node(1);
+    }
+
+    @Override
+    public long setValues(int[] indexes, long[] values) {
+        checkIndexes(indexes, values.length);
+        int[] leafRealIndexes = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            int elementRealIndex = leafCapacity + indexes[i];
+            setNode(elementRealIndex, values[i]);
+            leafRealIndexes[i] = elementRealIndex;
+        }
+        int[] dirtyRealIndexes = collectDirtyRealIndexes(leafRealIndexes, leafCapacity);
+        for (int i = 0, elementRealIndex; i < dirtyRealIndexes.length && (elementRealIndex = dirtyRealIndexes[i]) != 0; i++) {
+            combineChildren(elementRealIndex);
+        }
+        return node(1);
+    }
+
+    /**
+     * Set all elements in segment [segmentLeftBorder, segmentRightBorder) to the same value eagerly,
+     * then recalculate their ancestors level by level in O(segmentRightBorder - segmentLeftBorder + log(n)).
+     */
+    @Override
+    public long setRange(int segmentLeftBorder, int segmentRightBorder, long value) {
+        checkSegment(segmentLeftBorder, segmentRightBorder);
+        int left = segmentLeftBorder + leafCapacity;
+        int right = segmentRightBorder + leafCapacity - 1;
+        for (int elementRealIndex = left; elementRealIndex <= right; elementRealIndex++) {
+            setNode(elementRealIndex, value);
+        }
+        for (left >>>= 1, right >>>= 1; left >= 1; left >>>= 1, right >>>= 1) {
+            for (int elementRealIndex = left; elementRealIndex <= right; elementRealIndex++) {
+                combineChildren(elementRealIndex);
+            }
+        }
+        return node(1);
+    }
+
+    @Override
+    public long getAsLong(int index) {
+        checkIndex(index);
+        return node(leafCapacity + index);
+    }
+
+    @Override
+    public long getCombinationAsLong() {
+        return node(1);
+    }
+
+    @Override
+    public long getCombinationAsLong(int segmentLeftBorder, int segmentRightBorder) {
+        checkSegment(segmentLeftBorder, segmentRightBorder);
+        long leftCombination = identity;
+        long rightCombination = identity;
+        for (int left = segmentLeftBorder + leafCapacity, right = segmentRightBorder + leafCapacity; left < right; left >>>= 1, right >>>= 1) {
+            if ((left & 1) != 0) {
+                leftCombination = operator.applyAsLong(leftCombination, node(left++));
+            }
+            if ((right & 1) != 0) {
+                rightCombination = operator.applyAsLong(node(--right), rightCombination);
+            }
+        }
+        return operator.applyAsLong(leftCombination, rightCombination);
+    }
+
+    @Override
+    public int maxRight(int segmentLeftBorder, Predicate<Long> predicate) {
+        if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+        }
+        if (segmentLeftBorder == size) {
+            return size;
+        }
+        int elementRealIndex = segmentLeftBorder + leafCapacity;
+        long combination = identity;
+        do {
+            while ((elementRealIndex & 1) == 0) {
+                elementRealIndex >>>= 1;
+            }
+            long newCombination = operator.applyAsLong(combination, node(elementRealIndex));
+            if (!predicate.test(newCombination)) {
+                while (elementRealIndex < leafCapacity) {
+                    elementRealIndex *= 2;
+                    newCombination = operator.applyAsLong(combination, node(elementRealIndex));
+                    if (predicate.test(newCombination)) {
+                        combination = newCombination;
+                        elementRealIndex++;
+                    }
+                }
+                return elementRealIndex - leafCapacity;
+            }
+            combination = newCombination;
+            elementRealIndex++;
+        } while ((elementRealIndex & -elementRealIndex) != elementRealIndex);
+        return size;
+    }
+
+    @Override
+    public int minLeft(int segmentRightBorder, Predicate<Long> predicate) {
+        if (segmentRightBorder < 0 || segmentRightBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+        }
+        if (segmentRightBorder == 0) {
+            return 0;
+        }
+        int elementRealIndex = segmentRightBorder + leafCapacity;
+        long combination = identity;
+        do {
+            elementRealIndex--;
+            while (elementRealIndex > 1 && (elementRealIndex & 1) != 0) {
+                elementRealIndex >>>= 1;
+            }
+            long newCombination = operator.applyAsLong(node(elementRealIndex), combination);
+            if (!predicate.test(newCombination)) {
+                while (elementRealIndex < leafCapacity) {
+                    elementRealIndex = elementRealIndex * 2 + 1;
+                    newCombination = operator.applyAsLong(node(elementRealIndex), combination);
+                    if (predicate.test(newCombination)) {
+                        combination = newCombination;
+                        elementRealIndex--;
+                    }
+                }
+                return elementRealIndex + 1 - leafCapacity;
+            }
+            combination = newCombination;
+        } while ((elementRealIndex & -elementRealIndex) != elementRealIndex);
+        return 0;
+    }
+
+    @Override
+    public ListIterator<Long> listIterator() {
+        return new FixedSizeMappedIntegerSegmentTree.Iter(0, 0, size);
+    }
+
+    @Override
+    public ListIterator<Long> listIterator(int index) {
+        return new FixedSizeMappedIntegerSegmentTree.Iter(index, 0, size);
+    }
+
+    @Override
+    protected ListIterator<Long> listIterator(int index, int leftBorder, int rightBorder) {
+        return new FixedSizeMappedIntegerSegmentTree.Iter(index, leftBorder, rightBorder);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] copy = new Long[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = node(leafCapacity + i);
+        }
+        return copy;
+    }
+
+    @Override
+    public long[] toArrayPrimary() {
+        return toArray(new long[size]);
+    }
+
+    @Override
+    public <ArrayType> ArrayType[] toArray(ArrayType[] container) {
+        if (!container.getClass().getComponentType().equals(Long.class)) {
+            throw new ClassCastException("The only type of container can be accessed is Long[].");
+        }
+        ArrayType[] array;
+        if (container.length < size) {
+            array = (ArrayType[]) Array.newInstance(container.getClass().getComponentType(), size);
+        } else {
+            array = container;
+        }
+        for (int i = 0; i < size; i++) {
+            array[i] = (ArrayType) (Long) node(leafCapacity + i);
+        }
+        return array;
+    }
+
+    @Override
+    public long[] toArray(long[] container) {
+        long[] array;
+        if (container.length < size) {
+            array = new long[size];
+        } else {
+            array = container;
+        }
+        for (int i = 0; i < size; i++) {
+            array[i] = node(leafCapacity + i);
+        }
+        return array;
+    }
+
+    /**
+     * Only the combination and the first elements are shown, because a mapped tree is usually too large to be shown.
+     */
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("mapped long: {").append(node(1)).append(" = [");
+        for (int i = 0; i < Math.min(size, 16); i++) {
+            stringBuilder.append(i == 0 ? "" : ", ").append(node(leafCapacity + i));
+        }
+        return stringBuilder.append(size > 16 ? ", ...]}" : "]}").toString();
+    }
+
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void checkSegment(int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+    }
+
+    protected class Iter implements ListIterator<Long>, PrimitiveIterator.OfLong {
+        private int nextElementIndex;
+        private int lastElementIndex = -1;
+
+        private final int leftBorder;
+
+        private final int rightBorder;
+
+        Iter(int nextElementIndex, int leftBorder, int rightBorder) {
+            this.nextElementIndex = nextElementIndex;
+            this.leftBorder = leftBorder;
+            this.rightBorder = rightBorder;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextElementIndex < rightBorder;
+        }
+
+        @Override
+        public Long next() {
+            return nextLong();
+        }
+
+        @Override
+        public long nextLong() {
+            if (nextElementIndex >= rightBorder) {
+                throw new NoSuchElementException();
+            }
+            lastElementIndex = nextElementIndex++;
+            return node(leafCapacity + lastElementIndex);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextElementIndex > leftBorder;
+        }
+
+        @Override
+        public Long previous() {
+            return previousLong();
+        }
+
+        /**
+         * The same as {@link ListIterator#previous()}, but returns primitive {@link long} without boxing.
+         * @return the previous element
+         */
+        public long previousLong() {
+            if (nextElementIndex <= leftBorder) {
+                throw new NoSuchElementException();
+            }
+            lastElementIndex = --nextElementIndex;
+            return node(leafCapacity + lastElementIndex);
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextElementIndex - leftBorder;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextElementIndex - leftBorder - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(Long value) {
+            if (lastElementIndex < 0) {
+                throw new IllegalStateException();
+            }
+            FixedSizeMappedIntegerSegmentTree.this.setValueAndGetCombination(lastElementIndex, (long) value);
+        }
+
+        @Override
+        public void add(Long type) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
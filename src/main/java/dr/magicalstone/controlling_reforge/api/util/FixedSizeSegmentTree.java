@@ -3,7 +3,12 @@ package dr.magicalstone.controlling_reforge.api.util;
 import javax.annotation.Nonnull;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * An implement of segment tree.
@@ -39,51 +44,51 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
      */
     protected final int[] realIndexIndex;
 
+    /**
+     * The operator to get the combination of a segment whose elements are set to the same value by {@link FixedSizeSegmentTree#setRange(int, int, Object)}.
+     */
+    protected final RepeatOperator<Type> repeatOperator;
+
+    /**
+     * Whether a non-leaf node (by its real index) has a lazy tag: all elements in its segment are set to the same value
+     * but the value has not been pushed down to its children yet.
+     * It is null until {@link FixedSizeSegmentTree#setRange(int, int, Object)} is called first time.
+     */
+    protected boolean[] lazyTagged;
+
+    /**
+     * How many nodes have lazy tags. If it is 0, nothing needs to be pushed down.
+     */
+    protected int lazyTagCount;
+
+    /**
+     * The values of the lazy tags. See {@link FixedSizeSegmentTree#lazyTagged}.
+     */
+    protected Type[] lazyValues;
+
     /**
      * Initialize a segment tree and set its operator and all element's value.
      * @param operator the operator to combine elements
      * @param allElements all elements which will be put in this tree. This tree's {@link FixedSizeSegmentTree#size} will be set to this array's length
      */
     public FixedSizeSegmentTree(BinaryOperator<Type> operator, Type[] allElements) {
+        this(operator, RepeatOperator.byDoubling(operator), allElements);
+    }
+
+    /**
+     * Initialize a segment tree and set its operator, repeat operator and all element's value.
+     * @param operator the operator to combine elements
+     * @param repeatOperator the operator to combine an element with itself, see {@link RepeatOperator}
+     * @param allElements all elements which will be put in this tree. This tree's {@link FixedSizeSegmentTree#size} will be set to this array's length
+     */
+    public FixedSizeSegmentTree(BinaryOperator<Type> operator, RepeatOperator<Type> repeatOperator, Type[] allElements) {
         this.size = allElements.length;
         this.operator = operator;
-        int leafCapacity;
-        if(size == 1) {
-            leafCapacity = 1;
-        } else {
-            leafCapacity = (Integer.highestOneBit(size - 1) << 1);
-        }
-        this.elements = (Type[]) Array.newInstance(allElements.getClass().getComponentType(), leafCapacity * 2);
+        this.repeatOperator = repeatOperator;
+        this.elements = (Type[]) Array.newInstance(allElements.getClass().getComponentType(), elementsLengthOf(size));
         realIndexIndex = new int[size];
-        indexIterate:
-        for (int index = 0; index < size; index ++) {
-            int elementRealIndex = 1;
-            for (int elementLeftBorder = 0, elementRightBorder = size; elementRightBorder - elementLeftBorder > 1;) {
-                if (elementRealIndex >= (leafCapacity / 2)) {
-                    Type leftChild = allElements[index];
-                    Type rightChild = allElements[index + 1];
-                    elements[elementRealIndex * 2] = leftChild;
-                    elements[elementRealIndex * 2 + 1] = rightChild;
-                    elements[elementRealIndex] = operator.apply(leftChild, rightChild);
-                    realIndexIndex[index] = elementRealIndex * 2;
-                    realIndexIndex[index + 1] = elementRealIndex * 2 + 1;
-                    index = index + 1;
-                    continue indexIterate;
-                }
-                int childElementMiddleBorder = (elementLeftBorder + elementRightBorder) / 2;
-                if (index < childElementMiddleBorder) {
-                    elementRightBorder = childElementMiddleBorder;
-                    elementRealIndex = elementRealIndex * 2;
-                } else {
-                    elementLeftBorder = childElementMiddleBorder;
-                    elementRealIndex = elementRealIndex * 2 + 1;
-                }
-            }
-            realIndexIndex[index] = elementRealIndex;
-            elements[elementRealIndex] = allElements[index];
-        }
-        for (int elementRealIndex = (leafCapacity / 2) - 1; elementRealIndex >= 1; elementRealIndex--) {
-            elements[elementRealIndex] = operator.apply(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        if (size != 0) {
+            build(elements, realIndexIndex, operator, index -> allElements[index], 1, 0, size);
         }
     }
 
@@ -96,10 +101,71 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
     protected FixedSizeSegmentTree(int size, BinaryOperator<Type> operator, Type[] elements) {
         this.size = size;
         this.operator = operator;
+        this.repeatOperator = operator == null ? null : RepeatOperator.byDoubling(operator);
         this.elements = elements;
         realIndexIndex = new int[size];
     }
 
+    /**
+     * For child classes which share {@link FixedSizeSegmentTree#realIndexIndex} with another tree or don't use it at all.
+     * @param size {@link FixedSizeSegmentTree#size}
+     * @param operator {@link FixedSizeSegmentTree#operator}
+     * @param elements {@link FixedSizeSegmentTree#elements}
+     * @param realIndexIndex {@link FixedSizeSegmentTree#realIndexIndex}, null if the child class doesn't use it
+     */
+    protected FixedSizeSegmentTree(int size, BinaryOperator<Type> operator, Type[] elements, int[] realIndexIndex) {
+        this(size, operator, operator == null ? null : RepeatOperator.byDoubling(operator), elements, realIndexIndex);
+    }
+
+    /**
+     * For child classes which share {@link FixedSizeSegmentTree#realIndexIndex} with another tree or don't use it at all.
+     * @param size {@link FixedSizeSegmentTree#size}
+     * @param operator {@link FixedSizeSegmentTree#operator}
+     * @param repeatOperator {@link FixedSizeSegmentTree#repeatOperator}
+     * @param elements {@link FixedSizeSegmentTree#elements}
+     * @param realIndexIndex {@link FixedSizeSegmentTree#realIndexIndex}, null if the child class doesn't use it
+     */
+    protected FixedSizeSegmentTree(int size, BinaryOperator<Type> operator, RepeatOperator<Type> repeatOperator, Type[] elements, int[] realIndexIndex) {
+        this.size = size;
+        this.operator = operator;
+        this.repeatOperator = repeatOperator;
+        this.elements = elements;
+        this.realIndexIndex = realIndexIndex;
+    }
+
+
+    /**
+     * Get the length of {@link FixedSizeSegmentTree#elements} of a tree of a size, which is twice the smallest power of 2 not less than the size.
+     * @param size size of the tree
+     * @return length of elements of the tree
+     */
+    public static int elementsLengthOf(int size) {
+        return size <= 1 ? size * 2 : Integer.highestOneBit(size - 1) << 2;
+    }
+
+    /**
+     * Put elements in segment [leftBorder, rightBorder) into the subtree of a node and calculate the combinations of the subtree in O(rightBorder - leftBorder).
+     * Elements are got from left to right, so elementAt can be backed by an iterator.
+     * @param elements {@link FixedSizeSegmentTree#elements} to fill
+     * @param realIndexIndex {@link FixedSizeSegmentTree#realIndexIndex} to fill
+     * @param operator the operator to combine elements
+     * @param elementAt function from index to element
+     * @param elementRealIndex real index of the node
+     * @param leftBorder left border of the segment of the node
+     * @param rightBorder right border of the segment of the node
+     */
+    private static <Type> void build(Type[] elements, int[] realIndexIndex, BinaryOperator<Type> operator, IntFunction<? extends Type> elementAt,
+                                     int elementRealIndex, int leftBorder, int rightBorder) {
+        if (rightBorder - leftBorder == 1) {
+            realIndexIndex[leftBorder] = elementRealIndex;
+            elements[elementRealIndex] = elementAt.apply(leftBorder);
+            return;
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        build(elements, realIndexIndex, operator, elementAt, elementRealIndex * 2, leftBorder, childElementMiddleBorder);
+        build(elements, realIndexIndex, operator, elementAt, elementRealIndex * 2 + 1, childElementMiddleBorder, rightBorder);
+        elements[elementRealIndex] = operator.apply(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+    }
 
     /**
      * Set the element at index and get combination of all elements (elements in segment [0, size) ).
@@ -111,6 +177,9 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         if (index >= size) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
         }
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
         int elementRealIndex = realIndexIndex[index];
         elements[elementRealIndex] = value;
         Type leftChild;
@@ -135,6 +204,83 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         return rightChild;
     }
 
+    /**
+     * Set elements at several indexes and get combination of all elements (elements in segment [0, size) ).
+     * Unlike calling {@link FixedSizeSegmentTree#setValueAndGetCombination(int, Object)} for each index,
+     * every combination which depends on the changed elements is recalculated only once.
+     * If an index appears more than once, the last value of it is kept.
+     * @param indexes indexes of the elements to set
+     * @param values new values of the elements, values[i] is the new value of the element at indexes[i]
+     * @return combination of all elements
+     */
+    public Type setValues(int[] indexes, Type[] values) {
+        checkIndexes(indexes, values.length);
+        int[] leafRealIndexes = new int[indexes.length];
+        for (int i = 0; lazyTagCount != 0 && i < indexes.length; i++) {
+            pushLazyTagsTo(indexes[i]);
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            int elementRealIndex = realIndexIndex[indexes[i]];
+            elements[elementRealIndex] = values[i];
+            leafRealIndexes[i] = elementRealIndex;
+        }
+        int[] dirtyRealIndexes = collectDirtyRealIndexes(leafRealIndexes, elements.length / 2);
+        for (int i = 0, elementRealIndex; i < dirtyRealIndexes.length && (elementRealIndex = dirtyRealIndexes[i]) != 0; i++) {
+            elements[elementRealIndex] = operator.apply(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+        return elements[1];
+    }
+
+    /**
+     * Check the indexes for {@link FixedSizeSegmentTree#setValues(int[], Object[])}.
+     * @param indexes indexes of the elements to set
+     * @param valueCount length of the values array
+     */
+    protected void checkIndexes(int[] indexes, int valueCount) {
+        if (indexes.length != valueCount) {
+            throw new IllegalArgumentException("Indexes and values should have the same length. Indexes: " + indexes.length + ", Values: " + valueCount);
+        }
+        for (int index : indexes) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+    }
+
+    /**
+     * Find all non-leaf nodes whose combination should be recalculated after the leaves are changed.
+     * Because a node's real index is always larger than its parent's, recalculating the nodes in descending order of their real index
+     * guarantees that both children of a node are recalculated before the node.
+     * @param leafRealIndexes real indexes of the changed leaves, will be sorted
+     * @param leafCapacity half of the length of {@link FixedSizeSegmentTree#elements}, all non-leaf nodes have smaller real indexes than it
+     * @return real indexes of the nodes to recalculate in descending order, the array is terminated by 0 if it is not full
+     */
+    protected static int[] collectDirtyRealIndexes(int[] leafRealIndexes, int leafCapacity) {
+        Arrays.sort(leafRealIndexes);
+        int depth = 32 - Integer.numberOfLeadingZeros(leafCapacity);
+        int[] dirtyRealIndexes = new int[Math.min(leafCapacity, leafRealIndexes.length * depth)];
+        int dirtyCount = 0;
+        int leafCursor = leafRealIndexes.length - 1;
+        int parentCursor = 0;
+        while (true) {
+            int fromLeaf = leafCursor >= 0 ? leafRealIndexes[leafCursor] / 2 : 0;
+            int fromParent = parentCursor < dirtyCount ? dirtyRealIndexes[parentCursor] / 2 : 0;
+            int next = Math.max(fromLeaf, fromParent);
+            if (next == 0) {
+                return dirtyRealIndexes;
+            }
+            if (fromLeaf == next) {
+                leafCursor--;
+            }
+            if (fromParent == next) {
+                parentCursor++;
+            }
+            if (dirtyCount == 0 || dirtyRealIndexes[dirtyCount - 1] != next) {
+                dirtyRealIndexes[dirtyCount++] = next;
+            }
+        }
+    }
+
     /**
      * Get the element at the index.
      * @param index index of the element to return
@@ -142,9 +288,124 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
      */
     @Override
     public Type get(int index) {
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
         return elements[realIndexIndex[index]];
     }
 
+    /**
+     * Set all elements in segment [segmentLeftBorder, segmentRightBorder) to the same value and get combination of all elements (elements in segment [0, size) ).
+     * The segment is split into O(log(n)) nodes like {@link FixedSizeSegmentTree#getCombination(int, int)} does,
+     * their combinations are calculated by {@link FixedSizeSegmentTree#repeatOperator} and
+     * the value is kept as a lazy tag which is pushed down to the children of a node only when they are visited.
+     * @param segmentLeftBorder left border of the segment to set
+     * @param segmentRightBorder right border of the segment to set
+     * @param value new value of the elements
+     * @return combination of all elements
+     */
+    public Type setRange(int segmentLeftBorder, int segmentRightBorder, @Nonnull Type value) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        if (lazyTagged == null) {
+            lazyTagged = new boolean[elements.length / 2];
+            lazyValues = (Type[]) Array.newInstance(elements.getClass().getComponentType(), elements.length / 2);
+        }
+        setRange(segmentLeftBorder, segmentRightBorder, value, 0, size, 1);
+        return elements[1];
+    }
+
+    private void setRange(int segmentLeftBorder, int segmentRightBorder, Type value, int leftBorder, int rightBorder, int elementRealIndex) {
+        if (segmentLeftBorder <= leftBorder && rightBorder <= segmentRightBorder) {
+            setLazyTag(elementRealIndex, rightBorder - leftBorder, value);
+            return;
+        }
+        pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        if (segmentLeftBorder < childElementMiddleBorder) {
+            setRange(segmentLeftBorder, segmentRightBorder, value, leftBorder, childElementMiddleBorder, elementRealIndex * 2);
+        }
+        if (segmentRightBorder > childElementMiddleBorder) {
+            setRange(segmentLeftBorder, segmentRightBorder, value, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1);
+        }
+        elements[elementRealIndex] = operator.apply(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+    }
+
+    /**
+     * Set the combination of a node whose elements are all set to the same value, and set a lazy tag on it if it is not a leaf.
+     * @param elementRealIndex real index of the node
+     * @param segmentSize how many elements are in the node's segment
+     * @param value new value of the elements
+     */
+    protected void setLazyTag(int elementRealIndex, int segmentSize, Type value) {
+        if (segmentSize == 1) {
+            elements[elementRealIndex] = value;
+            return;
+        }
+        elements[elementRealIndex] = repeatOperator.repeat(value, segmentSize);
+        if (!lazyTagged[elementRealIndex]) {
+            lazyTagged[elementRealIndex] = true;
+            lazyTagCount++;
+        }
+        lazyValues[elementRealIndex] = value;
+    }
+
+    /**
+     * Push the lazy tag of a node (if it has) down to its children.
+     * @param elementRealIndex real index of the node
+     * @param leftBorder left border of the node's segment
+     * @param rightBorder right border of the node's segment
+     */
+    protected void pushLazyTag(int elementRealIndex, int leftBorder, int rightBorder) {
+        if (lazyTagCount == 0 || !lazyTagged[elementRealIndex]) {
+            return;
+        }
+        lazyTagged[elementRealIndex] = false;
+        lazyTagCount--;
+        Type value = lazyValues[elementRealIndex];
+        lazyValues[elementRealIndex] = null;
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        setLazyTag(elementRealIndex * 2, childElementMiddleBorder - leftBorder, value);
+        setLazyTag(elementRealIndex * 2 + 1, rightBorder - childElementMiddleBorder, value);
+    }
+
+    /**
+     * Push all lazy tags on the path from the root to the element at index down, so the element is up to date.
+     * @param index index of the element
+     */
+    protected void pushLazyTagsTo(int index) {
+        for (int leftBorder = 0, rightBorder = size, elementRealIndex = 1; rightBorder - leftBorder > 1 && lazyTagCount != 0;) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+            int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+            if (index < childElementMiddleBorder) {
+                rightBorder = childElementMiddleBorder;
+                elementRealIndex = elementRealIndex * 2;
+            } else {
+                leftBorder = childElementMiddleBorder;
+                elementRealIndex = elementRealIndex * 2 + 1;
+            }
+        }
+    }
+
+    /**
+     * Push all lazy tags down to the leaves, so all elements are up to date. It takes O(n) but only when there are lazy tags.
+     */
+    protected void pushAllLazyTags() {
+        if (lazyTagCount != 0) {
+            pushAllLazyTags(0, size, 1);
+        }
+    }
+
+    private void pushAllLazyTags(int leftBorder, int rightBorder, int elementRealIndex) {
+        if (rightBorder - leftBorder > 1 && lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+            int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+            pushAllLazyTags(leftBorder, childElementMiddleBorder, elementRealIndex * 2);
+            pushAllLazyTags(childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1);
+        }
+    }
+
     /**
      * Get combination of all elements (elements in segment [0, size) ).
      * @return combination of all elements
@@ -184,6 +445,9 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         int currentElementRealIndex = elementRealIndex;
         Type combination = null;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentRightBorder < currentChildElementMiddleBorder) {
                 currentRightBorder = currentChildElementMiddleBorder;
@@ -209,6 +473,9 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         int currentElementRealIndex = elementRealIndex;
         Type combination = null;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentLeftBorder > currentChildElementMiddleBorder) {
                 currentLeftBorder = currentChildElementMiddleBorder;
@@ -233,6 +500,9 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         int currentRightBorder = size;
         int currentElementRealIndex = 1;
         while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
             int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
             if (segmentRightBorder == currentChildElementMiddleBorder) {
                 return getCombinationLInROut(segmentLeftBorder, currentLeftBorder, currentChildElementMiddleBorder, currentElementRealIndex * 2);
@@ -256,6 +526,122 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         }
     }
 
+    /**
+     * Find the largest segmentRightBorder that the combination of segment [segmentLeftBorder, segmentRightBorder) satisfies the predicate
+     * by descending the tree in O(log(n)), like max_right of AtCoder Library.
+     * The predicate must be monotone: if it is satisfied by a segment, it is satisfied by all shorter segments with the same left border.
+     * The predicate is never tested with an empty segment which is regarded as satisfying.
+     * @param segmentLeftBorder left border of the segments, from 0 to {@link FixedSizeSegmentTree#size}
+     * @param predicate the predicate to test combinations
+     * @return the largest segmentRightBorder, or segmentLeftBorder if even the element at segmentLeftBorder doesn't satisfy the predicate
+     */
+    public int maxRight(int segmentLeftBorder, Predicate<Type> predicate) {
+        if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+        }
+        if (segmentLeftBorder == size) {
+            return size;
+        }
+        int segmentRightBorder = maxRight(segmentLeftBorder, predicate, 0, size, 1, new Object[1]);
+        return segmentRightBorder < 0 ? size : segmentRightBorder;
+    }
+
+    /**
+     * Combine all nodes of a subtree in segment [segmentLeftBorder, size) into combination[0] from left to right, until the predicate is not satisfied.
+     * @return the index of the element which makes the predicate not satisfied, or -1 if the whole subtree is combined
+     */
+    private int maxRight(int segmentLeftBorder, Predicate<Type> predicate, int leftBorder, int rightBorder, int elementRealIndex, Object[] combination) {
+        if (rightBorder <= segmentLeftBorder) {
+            return -1;
+        }
+        if (segmentLeftBorder <= leftBorder) {
+            Type newCombination = leftBorder == segmentLeftBorder ? elements[elementRealIndex] : operator.apply((Type) combination[0], elements[elementRealIndex]);
+            if (predicate.test(newCombination)) {
+                combination[0] = newCombination;
+                return -1;
+            }
+            if (rightBorder - leftBorder == 1) {
+                return leftBorder;
+            }
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        int index = maxRight(segmentLeftBorder, predicate, leftBorder, childElementMiddleBorder, elementRealIndex * 2, combination);
+        return index >= 0 ? index : maxRight(segmentLeftBorder, predicate, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1, combination);
+    }
+
+    /**
+     * Find the smallest segmentLeftBorder that the combination of segment [segmentLeftBorder, segmentRightBorder) satisfies the predicate
+     * by descending the tree in O(log(n)), like min_left of AtCoder Library.
+     * The predicate must be monotone: if it is satisfied by a segment, it is satisfied by all shorter segments with the same right border.
+     * The predicate is never tested with an empty segment which is regarded as satisfying.
+     * @param segmentRightBorder right border of the segments, from 0 to {@link FixedSizeSegmentTree#size}
+     * @param predicate the predicate to test combinations
+     * @return the smallest segmentLeftBorder, or segmentRightBorder if even the element at segmentRightBorder - 1 doesn't satisfy the predicate
+     */
+    public int minLeft(int segmentRightBorder, Predicate<Type> predicate) {
+        if (segmentRightBorder < 0 || segmentRightBorder > size) {
+            throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+        }
+        if (segmentRightBorder == 0) {
+            return 0;
+        }
+        int segmentLeftBorder = minLeft(segmentRightBorder, predicate, 0, size, 1, new Object[1]);
+        return segmentLeftBorder < 0 ? 0 : segmentLeftBorder;
+    }
+
+    /**
+     * Combine all nodes of a subtree in segment [0, segmentRightBorder) into combination[0] from right to left, until the predicate is not satisfied.
+     * @return the index after the element which makes the predicate not satisfied, or -1 if the whole subtree is combined
+     */
+    private int minLeft(int segmentRightBorder, Predicate<Type> predicate, int leftBorder, int rightBorder, int elementRealIndex, Object[] combination) {
+        if (leftBorder >= segmentRightBorder) {
+            return -1;
+        }
+        if (rightBorder <= segmentRightBorder) {
+            Type newCombination = rightBorder == segmentRightBorder ? elements[elementRealIndex] : operator.apply(elements[elementRealIndex], (Type) combination[0]);
+            if (predicate.test(newCombination)) {
+                combination[0] = newCombination;
+                return -1;
+            }
+            if (rightBorder - leftBorder == 1) {
+                return rightBorder;
+            }
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTag(elementRealIndex, leftBorder, rightBorder);
+        }
+        int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+        int index = minLeft(segmentRightBorder, predicate, childElementMiddleBorder, rightBorder, elementRealIndex * 2 + 1, combination);
+        return index >= 0 ? index : minLeft(segmentRightBorder, predicate, leftBorder, childElementMiddleBorder, elementRealIndex * 2, combination);
+    }
+
+    /**
+     * Find the first index that the combination of segment [segmentLeftBorder, index + 1) satisfies the predicate in O(log(n)),
+     * such as the first element which completes a chord.
+     * The predicate must be monotone: if it is satisfied by a segment, it is satisfied by all longer segments with the same left border.
+     * @param segmentLeftBorder left border of the segments
+     * @param predicate the predicate to test combinations
+     * @return the first index, or -1 if no segment satisfies the predicate
+     */
+    public int findFirst(int segmentLeftBorder, Predicate<Type> predicate) {
+        int index = maxRight(segmentLeftBorder, predicate.negate());
+        return index == size() ? -1 : index;
+    }
+
+    /**
+     * Find the last index that the combination of segment [index, segmentRightBorder) satisfies the predicate in O(log(n)).
+     * The predicate must be monotone: if it is satisfied by a segment, it is satisfied by all longer segments with the same right border.
+     * @param segmentRightBorder right border of the segments
+     * @param predicate the predicate to test combinations
+     * @return the last index, or -1 if no segment satisfies the predicate
+     */
+    public int findLast(int segmentRightBorder, Predicate<Type> predicate) {
+        return minLeft(segmentRightBorder, predicate.negate()) - 1;
+    }
+
     /**
      * Get {@link FixedSizeSegmentTree#size} of this segment tree.
      * @return {@link FixedSizeSegmentTree#size}
@@ -269,6 +655,7 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
      * @return an {@link Object} array with all elements in this segment tree
      */
     public Object[] toArray() {
+        pushAllLazyTags();
         Object[] copy = new Object[size];
         for(int i = 0; i < size; i++) {
             copy[i] = elements[realIndexIndex[i]];
@@ -278,6 +665,7 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
 
     @Override
     public <ArrayType> ArrayType[] toArray(ArrayType[] container) {
+        pushAllLazyTags();
         ArrayType[] array;
         if (container.length < size) {
             array = (ArrayType[]) Array.newInstance(container.getClass().getComponentType(), size);
@@ -408,6 +796,7 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
      */
     @Override
     public boolean contains(Object o) {
+        pushAllLazyTags();
         for (int i = 0; i < size; i++) {
             if (Objects.equals(elements[realIndexIndex[i]], o)) {
                 return true;
@@ -447,6 +836,17 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         return new Iter(index);
     }
 
+    /**
+     * Get an {@link ListIterator} of elements in segment [leftBorder, rightBorder), for sub lists.
+     * @param index index of the first element to be returned by {@link ListIterator#next next}
+     * @param leftBorder left border of the segment
+     * @param rightBorder right border of the segment
+     * @return an {@link ListIterator} of elements in the segment
+     */
+    protected ListIterator<Type> listIterator(int index, int leftBorder, int rightBorder) {
+        return new Iter(index, leftBorder, rightBorder);
+    }
+
     /**
      * This segment tree is also a {@link List}. Get a sub list of this list.
      * See {@link AbstractList#subList(int, int)}.
@@ -461,6 +861,7 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
 
     @Override
     public String toString() {
+        pushAllLazyTags();
         StringBuilder stringBuilder = new StringBuilder(Math.max(16, size * 4 - 1));
         stringBuilder.append(getClass().getSimpleName()).append(": {");
         partToString(0, size, 1, stringBuilder);
@@ -481,6 +882,184 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         }
     }
 
+    /**
+     * Builds a {@link FixedSizeSegmentTree} in O(n) from elements which are not in an array, such as a recorded input trace.
+     * Elements can come from an {@link IntFunction}, an {@link Iterator} or a {@link Stream}.
+     * Subtrees are built independently, so a tree built from an {@link IntFunction} with at least {@link Builder#parallelThreshold} elements
+     * is built by a {@link ForkJoinPool} and the function must be thread safe.
+     * @param <Type> type of elements
+     */
+    public static class Builder<Type> {
+
+        /**
+         * Default value of {@link Builder#parallelThreshold}.
+         */
+        public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+        protected final BinaryOperator<Type> operator;
+
+        protected RepeatOperator<Type> repeatOperator;
+
+        /**
+         * The array to be used as {@link FixedSizeSegmentTree#elements} of the next tree, null to allocate a new one.
+         */
+        protected Type[] backingArray;
+
+        /**
+         * The pool to build large trees, null to always build in the calling thread.
+         */
+        protected ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        /**
+         * Trees and subtrees with fewer elements are built in one thread.
+         */
+        protected int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+        /**
+         * @param operator the operator to combine elements
+         */
+        public Builder(BinaryOperator<Type> operator) {
+            this.operator = operator;
+            this.repeatOperator = RepeatOperator.byDoubling(operator);
+        }
+
+        /**
+         * @param repeatOperator see {@link FixedSizeSegmentTree#repeatOperator}
+         * @return this builder
+         */
+        public Builder<Type> repeatOperator(RepeatOperator<Type> repeatOperator) {
+            this.repeatOperator = repeatOperator;
+            return this;
+        }
+
+        /**
+         * Use an array instead of allocating one for the next built tree, which then owns the array.
+         * Its length must be at least {@link FixedSizeSegmentTree#elementsLengthOf(int)}.
+         * @param backingArray the array to reuse
+         * @return this builder
+         */
+        public Builder<Type> backingArray(Type[] backingArray) {
+            this.backingArray = backingArray;
+            return this;
+        }
+
+        /**
+         * @param pool the pool to build large trees, null to always build in the calling thread
+         * @return this builder
+         */
+        public Builder<Type> pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * @param parallelThreshold trees and subtrees with fewer elements are built in one thread
+         * @return this builder
+         */
+        public Builder<Type> parallelThreshold(int parallelThreshold) {
+            this.parallelThreshold = Math.max(2, parallelThreshold);
+            return this;
+        }
+
+        /**
+         * Build a tree whose element at index i is elementAt.apply(i).
+         * @param size size of the tree
+         * @param elementAt function from index to element, called once for each index. It must be thread safe if the tree is built in parallel
+         * @return the tree
+         */
+        public FixedSizeSegmentTree<Type> build(int size, IntFunction<? extends Type> elementAt) {
+            return build(size, elementAt, pool != null && size >= parallelThreshold);
+        }
+
+        /**
+         * Build a tree of the first size elements of an iterator, in the calling thread.
+         * @param size size of the tree
+         * @param iterator iterator of elements, must have at least size elements
+         * @return the tree
+         */
+        public FixedSizeSegmentTree<Type> build(int size, Iterator<? extends Type> iterator) {
+            return build(size, index -> iterator.next(), false);
+        }
+
+        /**
+         * Build a tree of all elements of a stream. If the size of the stream is unknown, elements are collected into a list first.
+         * @param stream stream of elements
+         * @return the tree
+         */
+        public FixedSizeSegmentTree<Type> build(Stream<? extends Type> stream) {
+            Spliterator<? extends Type> spliterator = stream.spliterator();
+            long exactSize = spliterator.getExactSizeIfKnown();
+            if (exactSize >= 0) {
+                return build(Math.toIntExact(exactSize), Spliterators.iterator(spliterator));
+            }
+            List<Type> allElements = new ArrayList<>();
+            spliterator.forEachRemaining(allElements::add);
+            return build(allElements.size(), allElements::get);
+        }
+
+        @SuppressWarnings("unchecked")
+        private FixedSizeSegmentTree<Type> build(int size, IntFunction<? extends Type> elementAt, boolean parallel) {
+            if (size < 0) {
+                throw new IllegalArgumentException("Size should not be negative: " + size);
+            }
+            int length = elementsLengthOf(size);
+            Type[] elements = backingArray;
+            backingArray = null;
+            if (elements == null) {
+                elements = (Type[]) new Object[length];
+            } else if (elements.length < length) {
+                throw new IllegalArgumentException("The backing array should be at least " + length + " long for size " + size + ", but it is " + elements.length + " long.");
+            }
+            int[] realIndexIndex = new int[size];
+            if (parallel) {
+                pool.invoke(new BuildTask<>(elements, realIndexIndex, operator, elementAt, parallelThreshold, 1, 0, size));
+            } else if (size != 0) {
+                FixedSizeSegmentTree.build(elements, realIndexIndex, operator, elementAt, 1, 0, size);
+            }
+            return new FixedSizeSegmentTree<>(size, operator, repeatOperator, elements, realIndexIndex);
+        }
+    }
+
+    /**
+     * Builds the subtree of a node like {@link FixedSizeSegmentTree#build(Object[], int[], BinaryOperator, IntFunction, int, int, int)},
+     * but builds the two subtrees of the children in parallel if the segment has at least parallelThreshold elements.
+     */
+    @SuppressWarnings("serial")
+    private static class BuildTask<Type> extends RecursiveAction {
+        private final Type[] elements;
+        private final int[] realIndexIndex;
+        private final BinaryOperator<Type> operator;
+        private final IntFunction<? extends Type> elementAt;
+        private final int parallelThreshold;
+        private final int elementRealIndex;
+        private final int leftBorder;
+        private final int rightBorder;
+
+        BuildTask(Type[] elements, int[] realIndexIndex, BinaryOperator<Type> operator, IntFunction<? extends Type> elementAt,
+                  int parallelThreshold, int elementRealIndex, int leftBorder, int rightBorder) {
+            this.elements = elements;
+            this.realIndexIndex = realIndexIndex;
+            this.operator = operator;
+            this.elementAt = elementAt;
+            this.parallelThreshold = parallelThreshold;
+            this.elementRealIndex = elementRealIndex;
+            this.leftBorder = leftBorder;
+            this.rightBorder = rightBorder;
+        }
+
+        @Override
+        protected void compute() {
+            if (rightBorder - leftBorder < parallelThreshold) {
+                build(elements, realIndexIndex, operator, elementAt, elementRealIndex, leftBorder, rightBorder);
+                return;
+            }
+            int childElementMiddleBorder = (leftBorder + rightBorder) / 2;
+            invokeAll(new BuildTask<>(elements, realIndexIndex, operator, elementAt, parallelThreshold, elementRealIndex * 2, leftBorder, childElementMiddleBorder),
+                    new BuildTask<>(elements, realIndexIndex, operator, elementAt, parallelThreshold, elementRealIndex * 2 + 1, childElementMiddleBorder, rightBorder));
+            elements[elementRealIndex] = operator.apply(elements[elementRealIndex * 2], elements[elementRealIndex * 2 + 1]);
+        }
+    }
+
     protected class Iter implements ListIterator<Type> {
         private int currentElementIndex;
         private final Type[] elements = FixedSizeSegmentTree.this.elements;
@@ -516,6 +1095,9 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         @Override
         public Type next() {
             currentElementIndex++;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(currentElementIndex);
+            }
             return elements[realIndexIndex[currentElementIndex]];
         }
 
@@ -527,6 +1109,9 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         @Override
         public Type previous() {
             currentElementIndex--;
+            if (lazyTagCount != 0) {
+                pushLazyTagsTo(currentElementIndex);
+            }
             return elements[realIndexIndex[currentElementIndex]];
         }
 
@@ -562,11 +1147,9 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
 
         private final int size;
 
-        private final Type[] elements = FixedSizeSegmentTree.this.elements;
-        private final int[] realIndexIndex = FixedSizeSegmentTree.this.realIndexIndex;
 
         SubList(int indexOffset, int size) {
-            super(size, null, FixedSizeSegmentTree.this.elements);
+            super(size, null, FixedSizeSegmentTree.this.elements, FixedSizeSegmentTree.this.realIndexIndex);
             this.indexOffset = indexOffset;
             this.size = size;
         }
@@ -580,7 +1163,26 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         @Override
         public Type setValueAndGetCombination(int index, @Nonnull Type value) {
             checkIndex(index);
-            return FixedSizeSegmentTree.this.setValueAndGetCombination(index + indexOffset, value);
+            FixedSizeSegmentTree.this.setValueAndGetCombination(index + indexOffset, value);
+            return getCombination();
+        }
+
+        @Override
+        public Type setValues(int[] indexes, Type[] values) {
+            checkIndexes(indexes, values.length);
+            int[] outerIndexes = new int[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                outerIndexes[i] = indexes[i] + indexOffset;
+            }
+            FixedSizeSegmentTree.this.setValues(outerIndexes, values);
+            return getCombination();
+        }
+
+        @Override
+        public Type setRange(int segmentLeftBorder, int segmentRightBorder, @Nonnull Type value) {
+            checkRange(segmentLeftBorder, segmentRightBorder);
+            FixedSizeSegmentTree.this.setRange(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset, value);
+            return getCombination();
         }
 
         @Override
@@ -594,11 +1196,33 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
             return FixedSizeSegmentTree.this.getCombination(segmentLeftBorder + indexOffset, segmentRightBorder + indexOffset);
         }
 
+        @Override
+        public int maxRight(int segmentLeftBorder, Predicate<Type> predicate) {
+            if (segmentLeftBorder < 0 || segmentLeftBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentLeftBorder + ", Size: " + size);
+            }
+            if (segmentLeftBorder == size) {
+                return size;
+            }
+            return Math.min(FixedSizeSegmentTree.this.maxRight(segmentLeftBorder + indexOffset, predicate), indexOffset + size) - indexOffset;
+        }
+
+        @Override
+        public int minLeft(int segmentRightBorder, Predicate<Type> predicate) {
+            if (segmentRightBorder < 0 || segmentRightBorder > size) {
+                throw new IndexOutOfBoundsException("Index: " + segmentRightBorder + ", Size: " + size);
+            }
+            if (segmentRightBorder == 0) {
+                return 0;
+            }
+            return Math.max(FixedSizeSegmentTree.this.minLeft(segmentRightBorder + indexOffset, predicate), indexOffset) - indexOffset;
+        }
+
         @Override
         public int indexOf(Object o) {
             for (int i = indexOffset; i < size + indexOffset; i++) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
-                    return indexOffset;
+                if (Objects.equals(FixedSizeSegmentTree.this.get(i), o)) {
+                    return i - indexOffset;
                 }
             }
             return -1;
@@ -607,8 +1231,8 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         @Override
         public int lastIndexOf(Object o) {
             for (int i = size + indexOffset - 1; i >= indexOffset; i--) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
-                    return indexOffset;
+                if (Objects.equals(FixedSizeSegmentTree.this.get(i), o)) {
+                    return i - indexOffset;
                 }
             }
             return -1;
@@ -616,12 +1240,12 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
 
         @Override
         public ListIterator<Type> listIterator() {
-            return new Iter(indexOffset, indexOffset, indexOffset + size);
+            return FixedSizeSegmentTree.this.listIterator(indexOffset, indexOffset, indexOffset + size);
         }
 
         @Override
         public ListIterator<Type> listIterator(int index) {
-            return new Iter(indexOffset + index, indexOffset, indexOffset + size);
+            return FixedSizeSegmentTree.this.listIterator(indexOffset + index, indexOffset, indexOffset + size);
         }
 
         @Override
@@ -633,7 +1257,7 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         @Override
         public boolean contains(Object o) {
             for (int i = indexOffset; i < size + indexOffset; i++) {
-                if (Objects.equals(elements[realIndexIndex[i]], o)) {
+                if (Objects.equals(FixedSizeSegmentTree.this.get(i), o)) {
                     return true;
                 }
             }
@@ -644,7 +1268,7 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
         public Object[] toArray() {
             Object[] copy = new Object[size];
             for(int i = indexOffset; i < size + indexOffset; i++) {
-                copy[i] = elements[realIndexIndex[i]];
+                copy[i - indexOffset] = FixedSizeSegmentTree.this.get(i);
             }
             return copy;
         }
@@ -658,9 +1282,9 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
                 array = container;
             }
             for(int i = indexOffset; i < size + indexOffset; i++) {
-                array[i] = (ArrayType) elements[realIndexIndex[i]];
+                array[i - indexOffset] = (ArrayType) FixedSizeSegmentTree.this.get(i);
             }
-            return container;
+            return array;
         }
 
         @Override
@@ -674,8 +1298,13 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
             return size;
         }
 
+        @Override
+        public String toString() {
+            return "section [" + indexOffset + ", " + (indexOffset + size) + ") of " + FixedSizeSegmentTree.this;
+        }
+
         private void checkIndex(int index) throws IndexOutOfBoundsException {
-            if (index + indexOffset >= size) {
+            if (index < 0 || index >= size) {
                 throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
             }
         }
@@ -687,7 +1316,7 @@ public class FixedSizeSegmentTree<Type> extends AbstractList<Type> implements Ra
             if (segmentLeftBorder < 0) {
                 throw new IndexOutOfBoundsException("SegmentLeftBorder: " + segmentLeftBorder);
             }
-            if (segmentRightBorder + indexOffset >= size) {
+            if (segmentRightBorder > size) {
                 throw new IndexOutOfBoundsException("SegmentRightBorder: " + segmentRightBorder + ", Size: " + size);
             }
         }
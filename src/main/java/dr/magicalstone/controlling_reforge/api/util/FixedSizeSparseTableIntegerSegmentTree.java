@@ -0,0 +1,103 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A segment tree {@link FixedSizeIntegerSegmentTree} with a sparse table for read-mostly elements whose operator is idempotent, such as and, or, min, max, gcd.
+ * All methods work in the same way as {@link FixedSizeSparseTableSegmentTree}, and it can't be viewed by {@link ConcurrentIntegerSegmentTree} either.
+ */
+public class FixedSizeSparseTableIntegerSegmentTree extends FixedSizeIntegerSegmentTree {
+
+    /**
+     * The sparse table. sparseTable[k][i] is the combination of segment [i, i + 2^k).
+     */
+    protected final long[][] sparseTable;
+
+    /**
+     * See {@link FixedSizeSparseTableSegmentTree#stale}.
+     */
+    protected boolean stale;
+
+    /**
+     * See {@link FixedSizeSparseTableSegmentTree#staleQueryCount}.
+     */
+    protected int staleQueryCount;
+
+    /**
+     * Initialize a tree and set its operator and all element's value.
+     * @param operator the operator to combine elements, must be idempotent
+     * @param allElements all elements which will be put in this tree
+     */
+    public FixedSizeSparseTableIntegerSegmentTree(LongBinaryOperator operator, long[] allElements) {
+        super(operator, LongRepeatOperator.IDEMPOTENT, allElements);
+        int levelCount = size == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(size);
+        this.sparseTable = new long[levelCount][];
+        for (int level = 0; level < levelCount; level++) {
+            sparseTable[level] = new long[size - (1 << level) + 1];
+        }
+        if (levelCount != 0) {
+            System.arraycopy(allElements, 0, sparseTable[0], 0, size);
+            buildSparseTable();
+        }
+    }
+
+    private void buildSparseTable() {
+        for (int level = 1; level < sparseTable.length; level++) {
+            long[] lastLevel = sparseTable[level - 1];
+            long[] currentLevel = sparseTable[level];
+            int halfLength = 1 << (level - 1);
+            for (int i = 0; i < currentLevel.length; i++) {
+                currentLevel[i] = operator.applyAsLong(lastLevel[i], lastLevel[i + halfLength]);
+            }
+        }
+        stale = false;
+        staleQueryCount = 0;
+    }
+
+    /**
+     * Rebuild the sparse table from the segment tree.
+     */
+    protected void rebuildSparseTable() {
+        toArray(sparseTable[0]);
+        buildSparseTable();
+    }
+
+    @Override
+    public long setValueAndGetCombination(int index, long value) {
+        stale = true;
+        return super.setValueAndGetCombination(index, value);
+    }
+
+    @Override
+    public long setValues(int[] indexes, long[] values) {
+        stale = true;
+        return super.setValues(indexes, values);
+    }
+
+    @Override
+    public long setRange(int segmentLeftBorder, int segmentRightBorder, long value) {
+        stale = true;
+        return super.setRange(segmentLeftBorder, segmentRightBorder, value);
+    }
+
+    @Override
+    public long getCombinationAsLong(int segmentLeftBorder, int segmentRightBorder) {
+        if (stale) {
+            if (++staleQueryCount < size) {
+                return super.getCombinationAsLong(segmentLeftBorder, segmentRightBorder);
+            }
+            rebuildSparseTable();
+        }
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        int level = 31 - Integer.numberOfLeadingZeros(segmentRightBorder - segmentLeftBorder);
+        long[] currentLevel = sparseTable[level];
+        return operator.applyAsLong(currentLevel[segmentLeftBorder], currentLevel[segmentRightBorder - (1 << level)]);
+    }
+
+    @Override
+    public String toString() {
+        return "sparse table " + super.toString();
+    }
+}
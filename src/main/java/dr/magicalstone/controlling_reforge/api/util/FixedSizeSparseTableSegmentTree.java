@@ -0,0 +1,119 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Array;
+import java.util.function.BinaryOperator;
+
+/**
+ * A segment tree {@link FixedSizeSegmentTree} for read-mostly elements whose operator is idempotent (value op value == value), such as and, or, min, max, gcd.
+ * All methods work in the same way as {@link FixedSizeSegmentTree}.
+ * Besides the segment tree, it keeps a sparse table: level k contains combinations of all segments of length 2^k,
+ * so the combination of any segment is the combination of two overlapping segments of the same level, which takes O(1).
+ * Building the sparse table takes O(n * log(n)). When elements are modified, the sparse table becomes stale and
+ * {@link FixedSizeSparseTableSegmentTree#getCombination(int, int)} falls back to the segment tree, until it has been called {@link FixedSizeSegmentTree#size} times,
+ * then the sparse table is rebuilt. So a query costs at most about twice as much as the cheaper one of both in the long run.
+ * Because queries rebuild the sparse table, it can't be viewed by {@link ConcurrentSegmentTree} whose readers must not write.
+ * @param <Type> type of elements
+ */
+public class FixedSizeSparseTableSegmentTree<Type> extends FixedSizeSegmentTree<Type> {
+
+    /**
+     * The sparse table. sparseTable[k][i] is the combination of segment [i, i + 2^k).
+     */
+    protected final Type[][] sparseTable;
+
+    /**
+     * Whether elements were modified after the sparse table was built.
+     */
+    protected boolean stale;
+
+    /**
+     * How many times {@link FixedSizeSparseTableSegmentTree#getCombination(int, int)} fell back to the segment tree since the sparse table became stale.
+     */
+    protected int staleQueryCount;
+
+    /**
+     * Initialize a tree and set its operator and all element's value.
+     * @param operator the operator to combine elements, must be idempotent
+     * @param allElements all elements which will be put in this tree
+     */
+    @SuppressWarnings("unchecked")
+    public FixedSizeSparseTableSegmentTree(BinaryOperator<Type> operator, Type[] allElements) {
+        super(operator, RepeatOperator.idempotent(), allElements);
+        int levelCount = size == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(size);
+        this.sparseTable = (Type[][]) Array.newInstance(allElements.getClass().getComponentType(), levelCount, 0);
+        for (int level = 0; level < levelCount; level++) {
+            sparseTable[level] = (Type[]) Array.newInstance(allElements.getClass().getComponentType(), size - (1 << level) + 1);
+        }
+        if (levelCount != 0) {
+            System.arraycopy(allElements, 0, sparseTable[0], 0, size);
+            buildSparseTable();
+        }
+    }
+
+    /**
+     * Build all levels of the sparse table from level 0.
+     */
+    private void buildSparseTable() {
+        for (int level = 1; level < sparseTable.length; level++) {
+            Type[] lastLevel = sparseTable[level - 1];
+            Type[] currentLevel = sparseTable[level];
+            int halfLength = 1 << (level - 1);
+            for (int i = 0; i < currentLevel.length; i++) {
+                currentLevel[i] = operator.apply(lastLevel[i], lastLevel[i + halfLength]);
+            }
+        }
+        stale = false;
+        staleQueryCount = 0;
+    }
+
+    /**
+     * Rebuild the sparse table from the segment tree.
+     */
+    protected void rebuildSparseTable() {
+        pushAllLazyTags();
+        for (int i = 0; i < size; i++) {
+            sparseTable[0][i] = elements[realIndexIndex[i]];
+        }
+        buildSparseTable();
+    }
+
+    @Override
+    public Type setValueAndGetCombination(int index, @Nonnull Type value) {
+        stale = true;
+        return super.setValueAndGetCombination(index, value);
+    }
+
+    @Override
+    public Type setValues(int[] indexes, Type[] values) {
+        stale = true;
+        return super.setValues(indexes, values);
+    }
+
+    @Override
+    public Type setRange(int segmentLeftBorder, int segmentRightBorder, @Nonnull Type value) {
+        stale = true;
+        return super.setRange(segmentLeftBorder, segmentRightBorder, value);
+    }
+
+    @Override
+    public Type getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        if (stale) {
+            if (++staleQueryCount < size) {
+                return super.getCombination(segmentLeftBorder, segmentRightBorder);
+            }
+            rebuildSparseTable();
+        }
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        int level = 31 - Integer.numberOfLeadingZeros(segmentRightBorder - segmentLeftBorder);
+        Type[] currentLevel = sparseTable[level];
+        return operator.apply(currentLevel[segmentLeftBorder], currentLevel[segmentRightBorder - (1 << level)]);
+    }
+
+    @Override
+    public String toString() {
+        return "sparse table " + super.toString();
+    }
+}
@@ -0,0 +1,399 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.function.BinaryOperator;
+
+/**
+ * An implement of segment tree which allows adding and removing elements, the dynamic sibling of {@link FixedSizeSegmentTree}.
+ * Like {@link FixedSizeSegmentTree}, elements must be associative but not necessary be commutative, and segments are always left closed right open.
+ * It is an implicit treap: a binary search tree ordered by index whose nodes also form a heap by a random priority, so it is balanced in expectation.
+ * Every node keeps the combination of its subtree in index order, so getting the combination of any segment, setting an element,
+ * adding or removing an element at any index takes O(log(n)) in expectation.
+ * This tree can also be split into two trees or merged with another tree in O(log(n)).
+ * @param <Type> type of elements
+ */
+public class GrowableSegmentTree<Type> extends AbstractList<Type> implements RandomAccess {
+
+    /**
+     * The operator to combine elements.
+     */
+    protected final BinaryOperator<Type> operator;
+
+    /**
+     * The root node of this tree. It is null if this tree is empty.
+     */
+    protected Node<Type> root;
+
+    /**
+     * The state of the generator of priorities of nodes.
+     */
+    private long seed;
+
+    /**
+     * Initialize an empty segment tree and set its operator.
+     * @param operator the operator to combine elements
+     */
+    public GrowableSegmentTree(BinaryOperator<Type> operator) {
+        this.operator = operator;
+        this.seed = System.nanoTime() | 1;
+    }
+
+    /**
+     * Initialize a segment tree and set its operator and all element's value in O(n).
+     * @param operator the operator to combine elements
+     * @param allElements all elements which will be put in this tree
+     */
+    public GrowableSegmentTree(BinaryOperator<Type> operator, Type[] allElements) {
+        this(operator);
+        root = build(allElements);
+    }
+
+    /**
+     * Build a treap of elements in O(n) by keeping the right spine of the treap in a stack.
+     * @param allElements elements to build the treap
+     * @return root of the treap
+     */
+    private Node<Type> build(Type[] allElements) {
+        @SuppressWarnings("unchecked")
+        Node<Type>[] rightSpine = (Node<Type>[]) new Node<?>[allElements.length];
+        int spineSize = 0;
+        for (Type element : allElements) {
+            Node<Type> node = new Node<>(Objects.requireNonNull(element), nextPriority());
+            Node<Type> lastPopped = null;
+            while (spineSize > 0 && rightSpine[spineSize - 1].priority < node.priority) {
+                lastPopped = rightSpine[--spineSize];
+                update(lastPopped);
+            }
+            node.left = lastPopped;
+            if (spineSize > 0) {
+                rightSpine[spineSize - 1].right = node;
+            }
+            rightSpine[spineSize++] = node;
+        }
+        while (spineSize > 0) {
+            update(rightSpine[--spineSize]);
+        }
+        return allElements.length == 0 ? null : rightSpine[0];
+    }
+
+    /**
+     * Set the element at index and get combination of all elements (elements in segment [0, size) ).
+     * @param index index of the element to set
+     * @param value new value of the element
+     * @return combination of all elements
+     */
+    public Type setValueAndGetCombination(int index, @Nonnull Type value) {
+        checkIndex(index, size());
+        Objects.requireNonNull(value);
+        set(root, index, value);
+        return root.combination;
+    }
+
+    private Type set(Node<Type> node, int index, Type value) {
+        int leftSize = sizeOf(node.left);
+        Type lastValue;
+        if (index < leftSize) {
+            lastValue = set(node.left, index, value);
+        } else if (index == leftSize) {
+            lastValue = node.value;
+            node.value = value;
+        } else {
+            lastValue = set(node.right, index - leftSize - 1, value);
+        }
+        update(node);
+        return lastValue;
+    }
+
+    /**
+     * Replace the element at the index.
+     * @param index index of the element to replace
+     * @param element element to be stored at the specified position
+     * @return the last value at the index.
+     */
+    @Override
+    public Type set(int index, Type element) {
+        checkIndex(index, size());
+        return set(root, index, Objects.requireNonNull(element));
+    }
+
+    /**
+     * Get the element at the index.
+     * @param index index of the element to return
+     * @return the element at the index
+     */
+    @Override
+    public Type get(int index) {
+        checkIndex(index, size());
+        Node<Type> node = root;
+        while (true) {
+            int leftSize = sizeOf(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.value;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Insert an element at the index. Elements at and after the index are shifted to the right.
+     * @param index index at which the specified element is to be inserted
+     * @param element element to be inserted
+     */
+    @Override
+    public void add(int index, Type element) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<Type> node = new Node<>(Objects.requireNonNull(element), nextPriority());
+        update(node);
+        Node<Type>[] parts = split(root, index);
+        root = merge(merge(parts[0], node), parts[1]);
+        modCount++;
+    }
+
+    /**
+     * Remove the element at the index. Elements after the index are shifted to the left.
+     * @param index the index of the element to be removed
+     * @return the removed element
+     */
+    @Override
+    public Type remove(int index) {
+        checkIndex(index, size());
+        Node<Type>[] parts = split(root, index);
+        Node<Type>[] rightParts = split(parts[1], 1);
+        root = merge(parts[0], rightParts[1]);
+        modCount++;
+        return rightParts[0].value;
+    }
+
+    /**
+     * Remove all elements.
+     */
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    /**
+     * Remove all elements in segment [index, size) from this tree and return them as a new tree with the same operator.
+     * @param index index of the first element to move to the new tree
+     * @return a tree of elements in segment [index, size) of this tree
+     */
+    public GrowableSegmentTree<Type> split(int index) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<Type>[] parts = split(root, index);
+        root = parts[0];
+        modCount++;
+        GrowableSegmentTree<Type> tree = new GrowableSegmentTree<>(operator);
+        tree.root = parts[1];
+        return tree;
+    }
+
+    /**
+     * Move all elements of another tree to the end of this tree. The other tree will be empty.
+     * @param other the tree whose elements will be appended. It must have the same operator as this tree.
+     */
+    public void merge(GrowableSegmentTree<Type> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("A tree can't be merged with itself.");
+        }
+        if (other.operator != operator) {
+            throw new IllegalArgumentException("Trees with different operators can't be merged.");
+        }
+        root = merge(root, other.root);
+        other.root = null;
+        modCount++;
+        other.modCount++;
+    }
+
+    /**
+     * Split a treap into elements in [0, index) and elements in [index, size).
+     * @param node root of the treap
+     * @param index index of the first element of the right part
+     * @return an array of roots of the left part and the right part
+     */
+    private Node<Type>[] split(Node<Type> node, int index) {
+        if (node == null) {
+            @SuppressWarnings("unchecked")
+            Node<Type>[] parts = (Node<Type>[]) new Node<?>[2];
+            return parts;
+        }
+        int leftSize = sizeOf(node.left);
+        Node<Type>[] parts;
+        if (index <= leftSize) {
+            parts = split(node.left, index);
+            node.left = parts[1];
+            parts[1] = node;
+        } else {
+            parts = split(node.right, index - leftSize - 1);
+            node.right = parts[0];
+            parts[0] = node;
+        }
+        update(node);
+        return parts;
+    }
+
+    /**
+     * Merge two treaps and keep all elements of the left one before the right one.
+     * @param left root of the left treap
+     * @param right root of the right treap
+     * @return root of the merged treap
+     */
+    private Node<Type> merge(Node<Type> left, Node<Type> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    /**
+     * Get combination of all elements (elements in segment [0, size) ).
+     * @return combination of all elements, or null if this tree is empty
+     */
+    public Type getCombination() {
+        return root == null ? null : root.combination;
+    }
+
+    /**
+     * Get combination of all elements (elements in segment [segmentLeftBorder, segmentRightBorder) ).
+     * @param segmentLeftBorder left border of the segment of element's combination
+     * @param segmentRightBorder right border of the segment of element's combination
+     * @return combination of all elements (elements in segment [segmentLeftBorder, segmentRightBorder) )
+     */
+    public Type getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size()) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        return getCombination(root, segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * Get combination of elements in segment [segmentLeftBorder, segmentRightBorder) of a subtree. The segment must not be empty.
+     */
+    private Type getCombination(Node<Type> node, int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder == 0 && segmentRightBorder == node.size) {
+            return node.combination;
+        }
+        int leftSize = sizeOf(node.left);
+        Type combination = null;
+        if (segmentLeftBorder < leftSize) {
+            combination = getCombination(node.left, segmentLeftBorder, Math.min(segmentRightBorder, leftSize));
+        }
+        if (segmentLeftBorder <= leftSize && leftSize < segmentRightBorder) {
+            combination = combination == null ? node.value : operator.apply(combination, node.value);
+        }
+        if (segmentRightBorder > leftSize + 1) {
+            Type rightCombination = getCombination(node.right, Math.max(segmentLeftBorder - leftSize - 1, 0), segmentRightBorder - leftSize - 1);
+            combination = combination == null ? rightCombination : operator.apply(combination, rightCombination);
+        }
+        return combination;
+    }
+
+    /**
+     * Get size of this tree.
+     * @return how many elements in this tree
+     */
+    @Override
+    public int size() {
+        return sizeOf(root);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size()];
+        fill(root, array, 0);
+        return array;
+    }
+
+    private int fill(Node<Type> node, Object[] array, int index) {
+        while (node != null) {
+            index = fill(node.left, array, index);
+            array[index++] = node.value;
+            node = node.right;
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "growable: " + Arrays.toString(toArray());
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Recalculate the size and the combination of a node from its children.
+     * @param node the node to update
+     */
+    private void update(Node<Type> node) {
+        Type combination = node.value;
+        int size = 1;
+        if (node.left != null) {
+            combination = operator.apply(node.left.combination, combination);
+            size += node.left.size;
+        }
+        if (node.right != null) {
+            combination = operator.apply(combination, node.right.combination);
+            size += node.right.size;
+        }
+        node.combination = combination;
+        node.size = size;
+    }
+
+    /**
+     * Generate a priority for a new node by xorshift.
+     * @return a pseudo random priority
+     */
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) (seed >>> 32);
+    }
+
+    /**
+     * A node of the treap. It is an element of the tree and the root of a subtree at the same time.
+     * @param <Type> type of elements
+     */
+    protected static class Node<Type> {
+        protected Type value;
+        protected Type combination;
+        protected final int priority;
+        protected int size = 1;
+        protected Node<Type> left;
+        protected Node<Type> right;
+
+        protected Node(Type value, int priority) {
+            this.value = value;
+            this.combination = value;
+            this.priority = priority;
+        }
+    }
+}
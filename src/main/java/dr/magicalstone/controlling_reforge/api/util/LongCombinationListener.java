@@ -0,0 +1,16 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+/**
+ * Listener of a watched segment of a {@link WatchedIntegerSegmentTree}, called only when the combination of the segment really changes.
+ */
+@FunctionalInterface
+public interface LongCombinationListener {
+
+    /**
+     * Called after the combination of the watched segment changed.
+     * @param watch id of the watched segment, returned by {@link WatchedIntegerSegmentTree#watch(int, int, LongCombinationListener)}
+     * @param lastCombination the combination of the segment before the change
+     * @param combination the new combination of the segment, never equal to lastCombination
+     */
+    void onCombinationChanged(int watch, long lastCombination, long combination);
+}
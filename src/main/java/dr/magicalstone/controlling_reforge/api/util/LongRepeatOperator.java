@@ -0,0 +1,58 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Functional repeat operator for long. Primitive version of {@link RepeatOperator}.
+ */
+@FunctionalInterface
+public interface LongRepeatOperator {
+
+    /**
+     * The repeat operator of sum.
+     */
+    LongRepeatOperator SUM = (value, count) -> value * count;
+
+    /**
+     * The repeat operator of an idempotent operator such as and, or, min, max.
+     */
+    LongRepeatOperator IDEMPOTENT = (value, count) -> value;
+
+    /**
+     * The repeat operator of xor.
+     */
+    LongRepeatOperator XOR = (value, count) -> (count & 1) == 0 ? 0 : value;
+
+    /**
+     * See {@link RepeatOperator#repeat(Object, int)}.
+     * @param value the value to combine
+     * @param count how many values are combined, always at least 1
+     * @return the combination of count values
+     */
+    long repeatAsLong(long value, int count);
+
+    /**
+     * See {@link RepeatOperator#byDoubling(java.util.function.BinaryOperator)}.
+     * @param operator the operator to combine values
+     * @return a repeat operator of the operator
+     */
+    static LongRepeatOperator byDoubling(LongBinaryOperator operator) {
+        return (value, count) -> {
+            long combination = value;
+            long power = value;
+            boolean empty = true;
+            while (true) {
+                if ((count & 1) != 0) {
+                    combination = empty ? power : operator.applyAsLong(combination, power);
+                    empty = false;
+                }
+                count >>>= 1;
+                if (count == 0) {
+                    return combination;
+                }
+                power = operator.applyAsLong(power, power);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,184 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import javax.annotation.Nonnull;
+import java.util.function.BinaryOperator;
+
+/**
+ * The template of segment trees {@link FixedSizeSegmentTree} specialized for an operator by {@link SegmentTreeSpecializer}.
+ * {@link SegmentTreeSpecializer} copies this class under a new name for each operator, and each copy keeps its operator in its own static final field
+ * {@link OperatorInlinedSegmentTree#OPERATOR}, so the JIT compiler sees a constant operator and its own call sites in the copy and inlines the operator
+ * into updating and querying, while all {@link FixedSizeSegmentTree}s share the same call sites which become megamorphic when they see several operators.
+ * Only copies made by {@link SegmentTreeSpecializer} can be instantiated.
+ * This class is loaded by another class loader when it is copied, so it must not use package private members of this package.
+ * All methods work in the same way as {@link FixedSizeSegmentTree}.
+ * @param <Type> type of elements
+ */
+public class OperatorInlinedSegmentTree<Type> extends FixedSizeSegmentTree<Type> {
+
+    /**
+     * The operator of all trees of this class, given by {@link SegmentTreeSpecializer} when the copy is loaded.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final BinaryOperator OPERATOR = SegmentTreeSpecializer.operatorOf(OperatorInlinedSegmentTree.class);
+
+    @SuppressWarnings("unchecked")
+    public OperatorInlinedSegmentTree(Type[] allElements) {
+        super(checkedOperator(), allElements);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static BinaryOperator checkedOperator() {
+        if (OPERATOR == null) {
+            throw new IllegalStateException("Only copies of the template made by SegmentTreeSpecializer can be instantiated.");
+        }
+        return OPERATOR;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Type setValueAndGetCombination(int index, @Nonnull Type value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (lazyTagCount != 0) {
+            pushLazyTagsTo(index);
+        }
+        int elementRealIndex = realIndexIndex[index];
+        elements[elementRealIndex] = value;
+        Type leftChild;
+        Type rightChild;
+        if ((elementRealIndex & 1) == 0) {
+            leftChild = value;
+            rightChild = elements[elementRealIndex + 1];
+        } else {
+            rightChild = value;
+            leftChild = elements[elementRealIndex - 1];
+        }
+        while (elementRealIndex > 1) {
+            elementRealIndex /= 2;
+            if ((elementRealIndex & 1) == 0) {
+                leftChild = elements[elementRealIndex] = (Type) OPERATOR.apply(leftChild, rightChild);
+                rightChild = elements[elementRealIndex + 1];
+            } else {
+                rightChild = elements[elementRealIndex] = (Type) OPERATOR.apply(leftChild, rightChild);
+                leftChild = elements[elementRealIndex - 1];
+            }
+        }
+        return rightChild;
+    }
+
+    @Override
+    public Type getCombination(int segmentLeftBorder, int segmentRightBorder) {
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > size) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        if (segmentLeftBorder == 0) {
+            if (segmentRightBorder == size) {
+                return elements[1];
+            } else {
+                return getCombinationLOutRIn(segmentRightBorder, 0, size, 1);
+            }
+        } else {
+            if (segmentRightBorder == size) {
+                return getCombinationLInROut(segmentLeftBorder, 0, size, 1);
+            } else {
+                return getCombinationLInRIn(segmentLeftBorder, segmentRightBorder);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Type getCombinationLOutRIn(int segmentRightBorder, int leftBorder, int rightBorder, int elementRealIndex) {
+        int currentLeftBorder = leftBorder;
+        int currentRightBorder = rightBorder;
+        int currentElementRealIndex = elementRealIndex;
+        Type combination = null;
+        while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
+            int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
+            if (segmentRightBorder < currentChildElementMiddleBorder) {
+                currentRightBorder = currentChildElementMiddleBorder;
+                currentElementRealIndex = 2 * currentElementRealIndex;
+                continue;
+            }
+            if (currentLeftBorder == leftBorder) {
+                combination = elements[2 * currentElementRealIndex];
+            } else {
+                combination = (Type) OPERATOR.apply(combination, elements[2 * currentElementRealIndex]);
+            }
+            if (segmentRightBorder == currentChildElementMiddleBorder) {
+                return combination;
+            }
+            currentLeftBorder = currentChildElementMiddleBorder;
+            currentElementRealIndex = 2 * currentElementRealIndex + 1;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Type getCombinationLInROut(int segmentLeftBorder, int leftBorder, int rightBorder, int elementRealIndex) {
+        int currentLeftBorder = leftBorder;
+        int currentRightBorder = rightBorder;
+        int currentElementRealIndex = elementRealIndex;
+        Type combination = null;
+        while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
+            int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
+            if (segmentLeftBorder > currentChildElementMiddleBorder) {
+                currentLeftBorder = currentChildElementMiddleBorder;
+                currentElementRealIndex = 2 * currentElementRealIndex + 1;
+                continue;
+            }
+            if (currentRightBorder == rightBorder) {
+                combination = elements[2 * currentElementRealIndex + 1];
+            } else {
+                combination = (Type) OPERATOR.apply(elements[2 * currentElementRealIndex + 1], combination);
+            }
+            if (segmentLeftBorder >= currentChildElementMiddleBorder) {
+                return combination;
+            }
+            currentRightBorder = currentChildElementMiddleBorder;
+            currentElementRealIndex = 2 * currentElementRealIndex;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Type getCombinationLInRIn(int segmentLeftBorder, int segmentRightBorder) {
+        int currentLeftBorder = 0;
+        int currentRightBorder = size;
+        int currentElementRealIndex = 1;
+        while (true) {
+            if (lazyTagCount != 0) {
+                pushLazyTag(currentElementRealIndex, currentLeftBorder, currentRightBorder);
+            }
+            int currentChildElementMiddleBorder = (currentLeftBorder + currentRightBorder) / 2;
+            if (segmentRightBorder == currentChildElementMiddleBorder) {
+                return getCombinationLInROut(segmentLeftBorder, currentLeftBorder, currentChildElementMiddleBorder, currentElementRealIndex * 2);
+            }
+            if (segmentRightBorder < currentChildElementMiddleBorder) {
+                currentRightBorder = currentChildElementMiddleBorder;
+                currentElementRealIndex = currentElementRealIndex * 2;
+                continue;
+            }
+            if (segmentLeftBorder == currentChildElementMiddleBorder) {
+                return getCombinationLOutRIn(segmentRightBorder, currentChildElementMiddleBorder, currentRightBorder, currentElementRealIndex * 2 + 1);
+            }
+            if (segmentLeftBorder > currentChildElementMiddleBorder) {
+                currentLeftBorder = currentChildElementMiddleBorder;
+                currentElementRealIndex = currentElementRealIndex * 2 + 1;
+                continue;
+            }
+            Type leftChild = getCombinationLInROut(segmentLeftBorder, currentLeftBorder, currentChildElementMiddleBorder, currentElementRealIndex * 2);
+            Type rightChild = getCombinationLOutRIn(segmentRightBorder, currentChildElementMiddleBorder, currentRightBorder, currentElementRealIndex * 2 + 1);
+            return (Type) OPERATOR.apply(leftChild, rightChild);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "inlined " + super.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * Functional operator to combine a value with itself several times: value op value op ... op value (count values).
+ * Segment trees use it to get the combination of a segment whose elements are all set to the same value.
+ * @param <Type> type of the value
+ */
+@FunctionalInterface
+public interface RepeatOperator<Type> {
+
+    /**
+     * Combine a value with itself.
+     * @param value the value to combine
+     * @param count how many values are combined, always at least 1
+     * @return the combination of count values
+     */
+    Type repeat(Type value, int count);
+
+    /**
+     * Get the repeat operator of an idempotent operator (value op value == value), such as and, or, min, max.
+     * @param <Type> type of the value
+     * @return a repeat operator which always returns the value itself
+     */
+    static <Type> RepeatOperator<Type> idempotent() {
+        return (value, count) -> value;
+    }
+
+    /**
+     * Get a repeat operator which works for any associative operator by combining the value with itself by doubling.
+     * It needs O(log(count)) times of the operator.
+     * @param operator the operator to combine values
+     * @param <Type> type of the value
+     * @return a repeat operator of the operator
+     */
+    static <Type> RepeatOperator<Type> byDoubling(BinaryOperator<Type> operator) {
+        return (value, count) -> {
+            Type combination = null;
+            Type power = value;
+            while (true) {
+                if ((count & 1) != 0) {
+                    combination = combination == null ? power : operator.apply(combination, power);
+                }
+                count >>>= 1;
+                if (count == 0) {
+                    return combination;
+                }
+                power = operator.apply(power, power);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,350 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.Arrays;
+
+/**
+ * Many small boolean segment trees packed in shared primitive arrays, for many key bindings each with its own small tree.
+ * Separate {@link FixedSizeBooleanSegmentTree}s need several arrays and object headers each and scatter them across the heap,
+ * while all trees of a forest are stored one after another in one array, so trees touched by the same key event are close in memory.
+ * Each tree has the bottom-up layout of {@link FixedSizeBottomUpBooleanSegmentTree}: the node at real index i of a tree is at
+ * {@link SegmentTreeForest#offsets}[tree] + i of {@link SegmentTreeForest#nodes}, and leaves after the last element are the identity of its operator.
+ * Operators are stored as truth tables (see {@link BooleanBinaryOperator#truthTableOf(BooleanBinaryOperator)}), so combining never calls an operator.
+ * Trees are identified by the int returned by {@link SegmentTreeForest#add(BooleanBinaryOperator, boolean, boolean[])},
+ * and every method of a tree is available both by that id and by a handle {@link SegmentTreeForest.Tree}.
+ */
+public class SegmentTreeForest {
+
+    /**
+     * Nodes of all trees.
+     */
+    protected boolean[] nodes = new boolean[64];
+
+    /**
+     * How many elements of {@link SegmentTreeForest#nodes} are used.
+     */
+    protected int nodeCount;
+
+    /**
+     * offsets[tree] + i is the position of the node at real index i of the tree in {@link SegmentTreeForest#nodes}. Real index 0 isn't stored.
+     */
+    protected int[] offsets = new int[8];
+
+    /**
+     * How many leaves each tree has, the smallest power of two which is not less than its size.
+     */
+    protected int[] leafCapacities = new int[8];
+
+    /**
+     * Size of each tree.
+     */
+    protected int[] sizes = new int[8];
+
+    /**
+     * Truth table of the operator of each tree.
+     */
+    protected byte[] truthTables = new byte[8];
+
+    /**
+     * Identity of the operator of each tree.
+     */
+    protected boolean[] identities = new boolean[8];
+
+    /**
+     * How many trees are in this forest.
+     */
+    protected int treeCount;
+
+    private Tree[] handles = new Tree[8];
+
+    /**
+     * Add a tree to this forest in O(n).
+     * @param operator the operator to combine elements of the tree, it must be associative
+     * @param identity the identity of the operator (identity op x == x op identity == x)
+     * @param allElements all elements which will be put in the tree
+     * @return the id of the tree
+     * @throws IllegalArgumentException if the operator isn't associative or identity isn't its identity
+     */
+    public int add(BooleanBinaryOperator operator, boolean identity, boolean[] allElements) {
+        int truthTable = BooleanBinaryOperator.truthTableOf(operator);
+        if (!BooleanBinaryOperator.isAssociative(truthTable)) {
+            throw new IllegalArgumentException("The operator of a segment tree should be associative.");
+        }
+        if (!BooleanBinaryOperator.isIdentity(truthTable, identity)) {
+            throw new IllegalArgumentException(identity + " is not the identity of the operator of the segment tree.");
+        }
+        int size = allElements.length;
+        int leafCapacity = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        if (treeCount == offsets.length) {
+            int capacity = Math.max(treeCount * 2, 8);
+            offsets = Arrays.copyOf(offsets, capacity);
+            leafCapacities = Arrays.copyOf(leafCapacities, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            truthTables = Arrays.copyOf(truthTables, capacity);
+            identities = Arrays.copyOf(identities, capacity);
+            handles = Arrays.copyOf(handles, capacity);
+        }
+        if (nodeCount + leafCapacity * 2 - 1 > nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, nodeCount + leafCapacity * 2 - 1));
+        }
+        int tree = treeCount++;
+        int offset = nodeCount - 1;
+        offsets[tree] = offset;
+        leafCapacities[tree] = leafCapacity;
+        sizes[tree] = size;
+        truthTables[tree] = (byte) truthTable;
+        identities[tree] = identity;
+        nodeCount += leafCapacity * 2 - 1;
+        System.arraycopy(allElements, 0, nodes, offset + leafCapacity, size);
+        Arrays.fill(nodes, offset + leafCapacity + size, offset + leafCapacity * 2, identity);
+        for (int elementRealIndex = leafCapacity - 1; elementRealIndex >= 1; elementRealIndex--) {
+            combineChildren(offset, truthTable, elementRealIndex);
+        }
+        return tree;
+    }
+
+    /**
+     * Get the handle of a tree.
+     * @param tree id of the tree
+     * @return the handle of the tree, the same object for the same tree
+     */
+    public Tree tree(int tree) {
+        checkTree(tree);
+        Tree handle = handles[tree];
+        if (handle == null) {
+            handle = handles[tree] = new Tree(tree);
+        }
+        return handle;
+    }
+
+    /**
+     * Get how many trees are in this forest.
+     * @return how many trees are in this forest
+     */
+    public int treeCount() {
+        return treeCount;
+    }
+
+    /**
+     * Shrink all arrays of this forest to the space really used, usually after all trees are added.
+     */
+    public void trimToSize() {
+        nodes = Arrays.copyOf(nodes, nodeCount);
+        offsets = Arrays.copyOf(offsets, treeCount);
+        leafCapacities = Arrays.copyOf(leafCapacities, treeCount);
+        sizes = Arrays.copyOf(sizes, treeCount);
+        truthTables = Arrays.copyOf(truthTables, treeCount);
+        identities = Arrays.copyOf(identities, treeCount);
+        handles = Arrays.copyOf(handles, treeCount);
+    }
+
+    private void combineChildren(int offset, int truthTable, int elementRealIndex) {
+        nodes[offset + elementRealIndex] = BooleanBinaryOperator.applyTruthTable(truthTable, nodes[offset + elementRealIndex * 2], nodes[offset + elementRealIndex * 2 + 1]);
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#setValueAndGetCombination(int, boolean)}.
+     * @param tree id of the tree
+     */
+    public boolean setValueAndGetCombination(int tree, int index, boolean value) {
+        checkIndex(tree, index);
+        int offset = offsets[tree];
+        int truthTable = truthTables[tree];
+        int elementRealIndex = leafCapacities[tree] + index;
+        nodes[offset + elementRealIndex] = value;
+        for (elementRealIndex >>>= 1; elementRealIndex >= 1; elementRealIndex >>>= 1) {
+            combineChildren(offset, truthTable, elementRealIndex);
+        }
+        return nodes[offset + 1];
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#setValues(int[], boolean[])}.
+     * @param tree id of the tree
+     */
+    public boolean setValues(int tree, int[] indexes, boolean[] values) {
+        if (indexes.length != values.length) {
+            throw new IllegalArgumentException("Indexes and values should have the same length. Indexes: " + indexes.length + ", Values: " + values.length);
+        }
+        for (int index : indexes) {
+            checkIndex(tree, index);
+        }
+        int offset = offsets[tree];
+        int truthTable = truthTables[tree];
+        int leafCapacity = leafCapacities[tree];
+        int[] leafRealIndexes = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            nodes[offset + leafCapacity + indexes[i]] = values[i];
+            leafRealIndexes[i] = leafCapacity + indexes[i];
+        }
+        int[] dirtyRealIndexes = FixedSizeSegmentTree.collectDirtyRealIndexes(leafRealIndexes, leafCapacity);
+        for (int i = 0, elementRealIndex; i < dirtyRealIndexes.length && (elementRealIndex = dirtyRealIndexes[i]) != 0; i++) {
+            combineChildren(offset, truthTable, elementRealIndex);
+        }
+        return nodes[offset + 1];
+    }
+
+    /**
+     * Set all elements in segment [segmentLeftBorder, segmentRightBorder) of a tree to the same value,
+     * then recalculate their ancestors level by level in O(segmentRightBorder - segmentLeftBorder + log(n)).
+     * Trees of a forest are small, so elements are set eagerly instead of by lazy tags.
+     * @param tree id of the tree
+     */
+    public boolean setRange(int tree, int segmentLeftBorder, int segmentRightBorder, boolean value) {
+        checkSegment(tree, segmentLeftBorder, segmentRightBorder);
+        int offset = offsets[tree];
+        int truthTable = truthTables[tree];
+        int left = leafCapacities[tree] + segmentLeftBorder;
+        int right = leafCapacities[tree] + segmentRightBorder - 1;
+        Arrays.fill(nodes, offset + left, offset + right + 1, value);
+        for (left >>>= 1, right >>>= 1; left >= 1; left >>>= 1, right >>>= 1) {
+            for (int elementRealIndex = left; elementRealIndex <= right; elementRealIndex++) {
+                combineChildren(offset, truthTable, elementRealIndex);
+            }
+        }
+        return nodes[offset + 1];
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getAsBoolean(int)}.
+     * @param tree id of the tree
+     */
+    public boolean getAsBoolean(int tree, int index) {
+        checkIndex(tree, index);
+        return nodes[offsets[tree] + leafCapacities[tree] + index];
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getCombinationAsBoolean()}.
+     * @param tree id of the tree
+     */
+    public boolean getCombinationAsBoolean(int tree) {
+        checkTree(tree);
+        return nodes[offsets[tree] + 1];
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getCombinationAsBoolean(int, int)}.
+     * @param tree id of the tree
+     */
+    public boolean getCombinationAsBoolean(int tree, int segmentLeftBorder, int segmentRightBorder) {
+        checkSegment(tree, segmentLeftBorder, segmentRightBorder);
+        int offset = offsets[tree];
+        int truthTable = truthTables[tree];
+        boolean leftCombination = identities[tree];
+        boolean rightCombination = leftCombination;
+        for (int left = segmentLeftBorder + leafCapacities[tree], right = segmentRightBorder + leafCapacities[tree]; left < right; left >>>= 1, right >>>= 1) {
+            if ((left & 1) != 0) {
+                leftCombination = BooleanBinaryOperator.applyTruthTable(truthTable, leftCombination, nodes[offset + left++]);
+            }
+            if ((right & 1) != 0) {
+                rightCombination = BooleanBinaryOperator.applyTruthTable(truthTable, nodes[offset + --right], rightCombination);
+            }
+        }
+        return BooleanBinaryOperator.applyTruthTable(truthTable, leftCombination, rightCombination);
+    }
+
+    /**
+     * Get size of a tree.
+     * @param tree id of the tree
+     * @return how many elements in the tree
+     */
+    public int size(int tree) {
+        checkTree(tree);
+        return sizes[tree];
+    }
+
+    /**
+     * Copy all elements of a tree to an array.
+     * @param tree id of the tree
+     * @param container the array to copy to if it is large enough
+     * @return the array of elements
+     */
+    public boolean[] toArray(int tree, boolean[] container) {
+        checkTree(tree);
+        boolean[] array = container.length < sizes[tree] ? new boolean[sizes[tree]] : container;
+        System.arraycopy(nodes, offsets[tree] + leafCapacities[tree], array, 0, sizes[tree]);
+        return array;
+    }
+
+    private void checkTree(int tree) {
+        if (tree < 0 || tree >= treeCount) {
+            throw new IndexOutOfBoundsException("Tree: " + tree + ", Tree count: " + treeCount);
+        }
+    }
+
+    private void checkIndex(int tree, int index) {
+        checkTree(tree);
+        if (index < 0 || index >= sizes[tree]) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + sizes[tree]);
+        }
+    }
+
+    private void checkSegment(int tree, int segmentLeftBorder, int segmentRightBorder) {
+        checkTree(tree);
+        if (segmentLeftBorder < 0 || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > sizes[tree]) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should larger than 0 and less than the tree's size and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "forest: {trees = " + treeCount + ", nodes = " + nodeCount + "}";
+    }
+
+    /**
+     * A handle of a tree in the forest, all methods work in the same way as methods of the forest with the id of the tree.
+     */
+    public class Tree {
+
+        protected final int id;
+
+        protected Tree(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Get the id of this tree in the forest.
+         * @return the id of this tree
+         */
+        public int id() {
+            return id;
+        }
+
+        public boolean setValueAndGetCombination(int index, boolean value) {
+            return SegmentTreeForest.this.setValueAndGetCombination(id, index, value);
+        }
+
+        public boolean setValues(int[] indexes, boolean[] values) {
+            return SegmentTreeForest.this.setValues(id, indexes, values);
+        }
+
+        public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+            return SegmentTreeForest.this.setRange(id, segmentLeftBorder, segmentRightBorder, value);
+        }
+
+        public boolean getAsBoolean(int index) {
+            return SegmentTreeForest.this.getAsBoolean(id, index);
+        }
+
+        public boolean getCombinationAsBoolean() {
+            return SegmentTreeForest.this.getCombinationAsBoolean(id);
+        }
+
+        public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
+            return SegmentTreeForest.this.getCombinationAsBoolean(id, segmentLeftBorder, segmentRightBorder);
+        }
+
+        public int size() {
+            return SegmentTreeForest.this.size(id);
+        }
+
+        public boolean[] toArray(boolean[] container) {
+            return SegmentTreeForest.this.toArray(id, container);
+        }
+
+        @Override
+        public String toString() {
+            return "forest tree " + id + ": " + Arrays.toString(toArray(new boolean[0]));
+        }
+    }
+}
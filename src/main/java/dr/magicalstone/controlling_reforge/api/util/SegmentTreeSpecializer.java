@@ -0,0 +1,188 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+
+/**
+ * Creates segment trees {@link FixedSizeSegmentTree} specialized for their operators at runtime.
+ * In a {@link FixedSizeSegmentTree}, the operator is called through {@link BinaryOperator#apply(Object, Object)} at call sites shared by all trees,
+ * so the JIT compiler stops inlining operators once the call sites see several of them.
+ * For each operator, this class copies the bytecode of the template {@link OperatorInlinedSegmentTree} under a new name by ASM
+ * and loads the copy by its own class loader which gives the copy the operator as a constant, so the operator is inlined into the copy's updating and querying.
+ * Only operators whose classes have no instance fields, like non-capturing lambdas, are specialized, because all objects of such a class behave the same.
+ * Copies are cached by the classes of their operators in a {@link ClassValue}, so all trees with operators of the same class share a copy,
+ * and a copy can be unloaded with the class of its operator. Operators with state, like capturing lambdas, would need a copy for each object
+ * and leak a class for each of them, so their trees are created as normal {@link FixedSizeSegmentTree}s.
+ * Because of erasure, trees of different element types with the same operator share a class too.
+ * If a copy can't be generated, for example ASM isn't present, trees are created as normal {@link FixedSizeSegmentTree}s too.
+ */
+public class SegmentTreeSpecializer {
+
+    /**
+     * Constructors of the copies by classes of their operators, empty if the operators can't be specialized or the copy failed to be generated.
+     * The value of a class is computed by the first operator of the class, which the copy holds.
+     * Only {@link SegmentTreeSpecializer#constructorOf(BinaryOperator)} should get values, so the first operator is the one being computed.
+     */
+    private static final ClassValue<Optional<Constructor<?>>> CONSTRUCTORS = new ClassValue<Optional<Constructor<?>>>() {
+        @Override
+        protected Optional<Constructor<?>> computeValue(Class<?> type) {
+            BinaryOperator<?> operator = COMPUTING_OPERATOR.get();
+            return operator == null || operator.getClass() != type || !isStateless(type) ? Optional.empty() : specialize(operator);
+        }
+    };
+
+    /**
+     * The operator whose class is being looked up in {@link SegmentTreeSpecializer#CONSTRUCTORS} by this thread.
+     */
+    private static final ThreadLocal<BinaryOperator<?>> COMPUTING_OPERATOR = new ThreadLocal<>();
+
+    private static final AtomicInteger COPY_COUNT = new AtomicInteger();
+
+    private static final String TEMPLATE_NAME = OperatorInlinedSegmentTree.class.getName().replace('.', '/');
+
+    /**
+     * Create a segment tree specialized for its operator, or a normal {@link FixedSizeSegmentTree} if it can't be specialized.
+     * The first tree of an operator class takes time to generate and load its class.
+     * @param operator the operator to combine elements, its class should have no instance fields to be specialized
+     * @param allElements all elements which will be put in the tree
+     * @param <Type> type of elements
+     * @return the tree
+     */
+    @SuppressWarnings("unchecked")
+    public static <Type> FixedSizeSegmentTree<Type> create(BinaryOperator<Type> operator, Type[] allElements) {
+        Optional<Constructor<?>> constructor = constructorOf(operator);
+        if (constructor.isPresent()) {
+            try {
+                return (FixedSizeSegmentTree<Type>) constructor.get().newInstance((Object) allElements);
+            } catch (ReflectiveOperationException e) {
+                // The copy is loaded and verified, so this doesn't happen; fall back anyway.
+            }
+        }
+        return new FixedSizeSegmentTree<>(operator, allElements);
+    }
+
+    /**
+     * Check if trees of an operator are specialized. The copy is generated if it hasn't been.
+     * @param operator the operator to combine elements
+     * @return true if {@link SegmentTreeSpecializer#create(BinaryOperator, Object[])} creates specialized trees for the operator
+     */
+    public static boolean isSpecialized(BinaryOperator<?> operator) {
+        return constructorOf(operator).isPresent();
+    }
+
+    private static Optional<Constructor<?>> constructorOf(BinaryOperator<?> operator) {
+        COMPUTING_OPERATOR.set(operator);
+        try {
+            return CONSTRUCTORS.get(operator.getClass());
+        } finally {
+            COMPUTING_OPERATOR.remove();
+        }
+    }
+
+    /**
+     * Check if all objects of a class behave the same, which is that the class and its super classes have no instance fields.
+     * @param type the class
+     * @return true if the class has no instance fields
+     */
+    private static boolean isStateless(Class<?> type) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the operator of a copy of {@link OperatorInlinedSegmentTree}, called by the copy when it is loaded.
+     * @param copy the copy
+     * @return the operator of the copy, or null if the class isn't a copy
+     */
+    public static BinaryOperator<?> operatorOf(Class<?> copy) {
+        ClassLoader classLoader = copy.getClassLoader();
+        return classLoader instanceof CopyLoader ? ((CopyLoader) classLoader).operator : null;
+    }
+
+    /**
+     * Generate and load a copy of {@link OperatorInlinedSegmentTree} for an operator.
+     * @param operator the operator to combine elements
+     * @return the constructor of the copy, or empty if the copy can't be generated
+     */
+    private static Optional<Constructor<?>> specialize(BinaryOperator<?> operator) {
+        try {
+            String copyName = TEMPLATE_NAME + "$$Inlined$" + COPY_COUNT.incrementAndGet();
+            byte[] bytecode = Renamer.rename(readTemplate(), TEMPLATE_NAME, copyName);
+            CopyLoader copyLoader = new CopyLoader(OperatorInlinedSegmentTree.class.getClassLoader(), operator);
+            Class<?> copy = copyLoader.define(copyName.replace('/', '.'), bytecode);
+            return Optional.of(copy.getConstructor(Object[].class));
+        } catch (Throwable e) {
+            // ASM missing (NoClassDefFoundError), the template unreadable, or the copy rejected by the JVM: fall back to the interpreted tree.
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] readTemplate() throws IOException {
+        try (InputStream inputStream = OperatorInlinedSegmentTree.class.getResourceAsStream(OperatorInlinedSegmentTree.class.getSimpleName() + ".class")) {
+            if (inputStream == null) {
+                throw new IOException("Can't find the bytecode of " + OperatorInlinedSegmentTree.class.getName());
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int length; (length = inputStream.read(buffer)) >= 0; ) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    /**
+     * All uses of ASM are kept in this class, so {@link SegmentTreeSpecializer} itself still loads without ASM.
+     */
+    private static class Renamer {
+
+        /**
+         * Rename a class and all references to it in its bytecode.
+         * @param bytecode bytecode of the class
+         * @param name internal name of the class
+         * @param newName new internal name of the class
+         * @return bytecode of the renamed class
+         */
+        static byte[] rename(byte[] bytecode, String name, String newName) {
+            ClassReader classReader = new ClassReader(bytecode);
+            ClassWriter classWriter = new ClassWriter(0);
+            classReader.accept(new ClassRemapper(classWriter, new SimpleRemapper(name, newName)), 0);
+            return classWriter.toByteArray();
+        }
+    }
+
+    /**
+     * The class loader of a copy, which holds the operator of the copy.
+     */
+    private static class CopyLoader extends ClassLoader {
+
+        private final BinaryOperator<?> operator;
+
+        CopyLoader(ClassLoader parent, BinaryOperator<?> operator) {
+            super(parent);
+            this.operator = operator;
+        }
+
+        Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.Arrays;
+
+/**
+ * A boolean segment tree indexed directly by sparse keys such as key codes, which only creates nodes for keys which have been set.
+ * Keyboard codes, mouse buttons (key codes from -100) and keys added by mods are spread in a wide range of ints,
+ * so a {@link FixedSizeBooleanSegmentTree} over the whole range wastes memory and mapping keys to dense indexes costs a lookup per key event.
+ * This tree covers all keys in [keyLeftBorder, keyRightBorder) given to its constructor, and a subtree which has never been set is not created:
+ * its combination is the identity of the operator. So setting a key and getting the combination of a segment of keys take O(log(K)),
+ * where K = keyRightBorder - keyLeftBorder, and memory is O(m * log(K)) for m keys ever set.
+ * Nodes are stored in parallel primitive arrays indexed by node id instead of objects. Node 0 stands for all subtrees which are not created.
+ * Like {@link SegmentTreeForest}, the operator is stored as its truth table, and it must be associative but not necessary be commutative.
+ */
+public class SparseBooleanSegmentTree {
+
+    /**
+     * The deepest path of a tree, for a tree over all ints.
+     */
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * The truth table of the operator. See {@link BooleanBinaryOperator#truthTableOf(BooleanBinaryOperator)}.
+     */
+    protected final int truthTable;
+
+    /**
+     * The identity of the operator (identity op x == x op identity == x), the value of keys which have never been set.
+     */
+    protected final boolean identity;
+
+    /**
+     * The smallest key of this tree.
+     */
+    protected final int keyLeftBorder;
+
+    /**
+     * One larger than the largest key of this tree.
+     */
+    protected final long keyRightBorder;
+
+    /**
+     * The tree covers 1 &lt;&lt; height keys from keyLeftBorder, the keys after keyRightBorder are never set.
+     * A node at depth d chooses its child by bit (height - 1 - d) of key - keyLeftBorder.
+     */
+    protected final int height;
+
+    /**
+     * children[node * 2] and children[node * 2 + 1] are ids of the left child and the right child of each node, 0 if it is not created.
+     */
+    protected int[] children = new int[128];
+
+    /**
+     * Combination of each node, which is the element itself for a leaf.
+     */
+    protected boolean[] combinations = new boolean[64];
+
+    /**
+     * How many nodes are created, including node 0.
+     */
+    protected int nodeCount;
+
+    /**
+     * Id of the root, 0 if no key has been set.
+     */
+    protected int root;
+
+    private final int[] path = new int[MAX_DEPTH];
+
+    /**
+     * Initialize a tree whose keys are all identity.
+     * @param operator the operator to combine elements, it must be associative
+     * @param identity the identity of the operator
+     * @param keyLeftBorder the smallest key
+     * @param keyRightBorder one larger than the largest key, it can be {@link Integer#MAX_VALUE} + 1L to cover all ints from keyLeftBorder
+     */
+    public SparseBooleanSegmentTree(BooleanBinaryOperator operator, boolean identity, int keyLeftBorder, long keyRightBorder) {
+        if (keyRightBorder <= keyLeftBorder || keyRightBorder > Integer.MAX_VALUE + 1L) {
+            throw new IllegalArgumentException("keyRightBorder should be larger than keyLeftBorder and not larger than Integer.MAX_VALUE + 1.");
+        }
+        this.truthTable = BooleanBinaryOperator.truthTableOf(operator);
+        if (!BooleanBinaryOperator.isAssociative(truthTable)) {
+            throw new IllegalArgumentException("The operator of a segment tree should be associative.");
+        }
+        this.identity = identity;
+        this.keyLeftBorder = keyLeftBorder;
+        this.keyRightBorder = keyRightBorder;
+        this.height = 64 - Long.numberOfLeadingZeros(keyRightBorder - keyLeftBorder - 1);
+        clear();
+    }
+
+    /**
+     * Set all keys to identity in O(1). Memory of nodes is kept for later keys.
+     */
+    public void clear() {
+        root = 0;
+        nodeCount = 1;
+        combinations[0] = identity;
+    }
+
+    private int newNode() {
+        if (nodeCount == combinations.length) {
+            int capacity = nodeCount * 2;
+            children = Arrays.copyOf(children, capacity * 2);
+            combinations = Arrays.copyOf(combinations, capacity);
+        }
+        int node = nodeCount++;
+        children[node * 2] = 0;
+        children[node * 2 + 1] = 0;
+        combinations[node] = identity;
+        return node;
+    }
+
+    /**
+     * Set the element of a key and get combination of all keys.
+     * A subtree is not created if the key is set to identity and it isn't created yet.
+     * @param key the key to set
+     * @param value new value of the key
+     * @return combination of all keys
+     */
+    public boolean setValueAndGetCombination(int key, boolean value) {
+        checkKey(key);
+        if (root == 0) {
+            if (value == identity) {
+                return identity;
+            }
+            root = newNode();
+        }
+        long offset = (long) key - keyLeftBorder;
+        int node = root;
+        for (int depth = 0; depth < height; depth++) {
+            path[depth] = node;
+            int childSlot = node * 2 + (int) ((offset >>> (height - 1 - depth)) & 1);
+            int child = children[childSlot];
+            if (child == 0) {
+                if (value == identity) {
+                    return combinations[root];
+                }
+                child = newNode();
+                children[childSlot] = child;
+            }
+            node = child;
+        }
+        combinations[node] = value;
+        // Ancestors of a node whose combination doesn't change don't change either.
+        for (int depth = height - 1; depth >= 0; depth--) {
+            node = path[depth];
+            boolean combination = BooleanBinaryOperator.applyTruthTable(truthTable, combinations[children[node * 2]], combinations[children[node * 2 + 1]]);
+            if (combination == combinations[node]) {
+                break;
+            }
+            combinations[node] = combination;
+        }
+        return combinations[root];
+    }
+
+    /**
+     * Get the element of a key.
+     * @param key the key
+     * @return the element of the key, identity if it has never been set
+     */
+    public boolean getAsBoolean(int key) {
+        checkKey(key);
+        long offset = (long) key - keyLeftBorder;
+        int node = root;
+        for (int bit = height - 1; node != 0 && bit >= 0; bit--) {
+            node = children[node * 2 + (int) ((offset >>> bit) & 1)];
+        }
+        return combinations[node];
+    }
+
+    /**
+     * Get combination of all keys in O(1).
+     * @return combination of all keys
+     */
+    public boolean getCombinationAsBoolean() {
+        return combinations[root];
+    }
+
+    /**
+     * Get combination of keys in segment [segmentLeftBorder, segmentRightBorder) in O(log(K)), like "any mouse button is held".
+     * @param segmentLeftBorder the smallest key of the segment
+     * @param segmentRightBorder one larger than the largest key of the segment
+     * @return combination of keys in the segment
+     */
+    public boolean getCombinationAsBoolean(int segmentLeftBorder, long segmentRightBorder) {
+        if (segmentLeftBorder < keyLeftBorder || segmentRightBorder <= segmentLeftBorder || segmentRightBorder > keyRightBorder) {
+            throw new IllegalArgumentException("segmentLeftBorder and segmentRightBorder should be in the keys of the tree and segmentRightBorder should larger than segmentLeftBorder.");
+        }
+        return getCombination(root, height, 0, segmentLeftBorder - (long) keyLeftBorder, segmentRightBorder - keyLeftBorder);
+    }
+
+    /**
+     * Get combination of a subtree in segment [segmentLeftBorder, segmentRightBorder) of offsets from keyLeftBorder. The segment must intersect the subtree.
+     * @param node id of the root of the subtree
+     * @param level the subtree covers 1 &lt;&lt; level keys
+     * @param leftBorder offset of the first key of the subtree
+     */
+    private boolean getCombination(int node, int level, long leftBorder, long segmentLeftBorder, long segmentRightBorder) {
+        if (node == 0 || (segmentLeftBorder <= leftBorder && leftBorder + (1L << level) <= segmentRightBorder)) {
+            return combinations[node];
+        }
+        long middleBorder = leftBorder + (1L << (level - 1));
+        if (segmentRightBorder <= middleBorder) {
+            return getCombination(children[node * 2], level - 1, leftBorder, segmentLeftBorder, segmentRightBorder);
+        }
+        if (segmentLeftBorder >= middleBorder) {
+            return getCombination(children[node * 2 + 1], level - 1, middleBorder, segmentLeftBorder, segmentRightBorder);
+        }
+        return BooleanBinaryOperator.applyTruthTable(truthTable,
+                getCombination(children[node * 2], level - 1, leftBorder, segmentLeftBorder, segmentRightBorder),
+                getCombination(children[node * 2 + 1], level - 1, middleBorder, segmentLeftBorder, segmentRightBorder));
+    }
+
+    /**
+     * Get how many nodes are created.
+     * @return how many nodes are created, not including node 0
+     */
+    public int nodeCount() {
+        return nodeCount - 1;
+    }
+
+    private void checkKey(int key) {
+        if (key < keyLeftBorder || key >= keyRightBorder) {
+            throw new IndexOutOfBoundsException("Key: " + key + ", Keys: [" + keyLeftBorder + ", " + keyRightBorder + ")");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "sparse boolean: {" + combinations[root] + ", keys = [" + keyLeftBorder + ", " + keyRightBorder + "), nodes = " + nodeCount() + "}";
+    }
+}
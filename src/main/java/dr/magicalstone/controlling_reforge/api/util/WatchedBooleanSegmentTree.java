@@ -0,0 +1,208 @@
+package dr.magicalstone.controlling_reforge.api.util;
+
+import java.util.Arrays;
+
+/**
+ * A view of a segment tree {@link FixedSizeBooleanSegmentTree} which detects edges of combinations, so users don't need to poll combinations every tick.
+ * Every modification reports whether the combination of all elements changed (see {@link WatchedBooleanSegmentTree#isCombinationChanged()}),
+ * and segments can be watched by {@link WatchedBooleanSegmentTree#watch(int, int, BooleanCombinationListener)}:
+ * after a modification, the combination of each watched segment which intersects the modified elements is recalculated,
+ * and its listener is called only if the combination really changed (false to true or true to false).
+ * Nothing is allocated by modifications or by notifying listeners.
+ * Modifications take O(W * log(n)) more for W watched segments intersecting them, the combination of all elements is watched in O(1).
+ * The tree should only be modified by this view after the view is created, and listeners should not modify the tree.
+ */
+public class WatchedBooleanSegmentTree {
+
+    /**
+     * The tree to read and modify.
+     */
+    protected final FixedSizeBooleanSegmentTree tree;
+
+    /**
+     * Left borders of watched segments by watch id.
+     */
+    protected int[] watchLeftBorders = new int[4];
+
+    /**
+     * Right borders of watched segments by watch id.
+     */
+    protected int[] watchRightBorders = new int[4];
+
+    /**
+     * Last known combinations of watched segments by watch id.
+     */
+    protected boolean[] watchCombinations = new boolean[4];
+
+    /**
+     * Listeners of watched segments by watch id.
+     */
+    protected BooleanCombinationListener[] listeners = new BooleanCombinationListener[4];
+
+    /**
+     * How many segments are watched.
+     */
+    protected int watchCount;
+
+    /**
+     * Combination of all elements after the last modification.
+     */
+    private boolean combination;
+
+    private boolean combinationChanged;
+
+    public WatchedBooleanSegmentTree(FixedSizeBooleanSegmentTree tree) {
+        this.tree = tree;
+        if (tree.size() != 0) {
+            this.combination = tree.getCombinationAsBoolean();
+        }
+    }
+
+    /**
+     * Watch a segment [segmentLeftBorder, segmentRightBorder) of elements.
+     * @param segmentLeftBorder left border of the segment
+     * @param segmentRightBorder right border of the segment
+     * @param listener the listener called when the combination of the segment changes
+     * @return id of the watched segment
+     */
+    public int watch(int segmentLeftBorder, int segmentRightBorder, BooleanCombinationListener listener) {
+        boolean segmentCombination = tree.getCombinationAsBoolean(segmentLeftBorder, segmentRightBorder);
+        if (watchCount == listeners.length) {
+            int capacity = watchCount * 2;
+            watchLeftBorders = Arrays.copyOf(watchLeftBorders, capacity);
+            watchRightBorders = Arrays.copyOf(watchRightBorders, capacity);
+            watchCombinations = Arrays.copyOf(watchCombinations, capacity);
+            listeners = Arrays.copyOf(listeners, capacity);
+        }
+        int watch = watchCount++;
+        watchLeftBorders[watch] = segmentLeftBorder;
+        watchRightBorders[watch] = segmentRightBorder;
+        watchCombinations[watch] = segmentCombination;
+        listeners[watch] = listener;
+        return watch;
+    }
+
+    /**
+     * Watch the combination of all elements.
+     * @param listener the listener called when the combination of all elements changes
+     * @return id of the watched segment
+     */
+    public int watch(BooleanCombinationListener listener) {
+        return watch(0, tree.size(), listener);
+    }
+
+    /**
+     * Get the combination of a watched segment as of the last modification, in O(1).
+     * @param watch id of the watched segment
+     * @return the combination of the watched segment
+     */
+    public boolean getWatchedCombination(int watch) {
+        if (watch < 0 || watch >= watchCount) {
+            throw new IndexOutOfBoundsException("Watch: " + watch + ", Watch count: " + watchCount);
+        }
+        return watchCombinations[watch];
+    }
+
+    /**
+     * Check if the last modification changed the combination of all elements.
+     * @return true if the combination of all elements changed
+     */
+    public boolean isCombinationChanged() {
+        return combinationChanged;
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#setValueAndGetCombination(int, boolean)}.
+     */
+    public boolean setValueAndGetCombination(int index, boolean value) {
+        onModified(tree.setValueAndGetCombination(index, value), index, index + 1);
+        return combination;
+    }
+
+    /**
+     * Set the element at index and check if the combination of all elements changed.
+     * @param index index of the element to set
+     * @param value new value of the element
+     * @return true if the combination of all elements changed
+     */
+    public boolean setValueAndGetChanged(int index, boolean value) {
+        onModified(tree.setValueAndGetCombination(index, value), index, index + 1);
+        return combinationChanged;
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#setValues(int[], boolean[])}.
+     * Watched segments intersecting [the smallest index, the largest index] are recalculated.
+     */
+    public boolean setValues(int[] indexes, boolean[] values) {
+        boolean newCombination = tree.setValues(indexes, values);
+        int leftBorder = Integer.MAX_VALUE;
+        int rightBorder = Integer.MIN_VALUE;
+        for (int index : indexes) {
+            leftBorder = Math.min(leftBorder, index);
+            rightBorder = Math.max(rightBorder, index + 1);
+        }
+        onModified(newCombination, leftBorder, rightBorder);
+        return combination;
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#setRange(int, int, boolean)}.
+     */
+    public boolean setRange(int segmentLeftBorder, int segmentRightBorder, boolean value) {
+        onModified(tree.setRange(segmentLeftBorder, segmentRightBorder, value), segmentLeftBorder, segmentRightBorder);
+        return combination;
+    }
+
+    /**
+     * Detect changes after elements in segment [segmentLeftBorder, segmentRightBorder) are modified and notify listeners.
+     * @param newCombination the combination of all elements after the modification
+     */
+    private void onModified(boolean newCombination, int segmentLeftBorder, int segmentRightBorder) {
+        combinationChanged = newCombination != combination;
+        combination = newCombination;
+        int size = tree.size();
+        for (int watch = 0; watch < watchCount; watch++) {
+            int watchLeftBorder = watchLeftBorders[watch];
+            int watchRightBorder = watchRightBorders[watch];
+            if (watchLeftBorder < segmentRightBorder && segmentLeftBorder < watchRightBorder) {
+                boolean segmentCombination = watchLeftBorder == 0 && watchRightBorder == size
+                        ? newCombination
+                        : tree.getCombinationAsBoolean(watchLeftBorder, watchRightBorder);
+                if (segmentCombination != watchCombinations[watch]) {
+                    watchCombinations[watch] = segmentCombination;
+                    listeners[watch].onCombinationChanged(watch, segmentCombination);
+                }
+            }
+        }
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getAsBoolean(int)}.
+     */
+    public boolean getAsBoolean(int index) {
+        return tree.getAsBoolean(index);
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getCombinationAsBoolean()}.
+     */
+    public boolean getCombinationAsBoolean() {
+        return tree.getCombinationAsBoolean();
+    }
+
+    /**
+     * See {@link FixedSizeBooleanSegmentTree#getCombinationAsBoolean(int, int)}.
+     */
+    public boolean getCombinationAsBoolean(int segmentLeftBorder, int segmentRightBorder) {
+        return tree.getCombinationAsBoolean(segmentLeftBorder, segmentRightBorder);
+    }
+
+    /**
+     * Get {@link FixedSizeSegmentTree#size} of the tree.
+     * @return {@link FixedSizeSegmentTree#size}
+     */
+    public int size() {
+        return tree.size();
+    }
+}
@@ -0,0 +1,298 @@
+package dr.magicalstone.controlling_reforge.core;
+
+import dr.magicalstone.controlling_reforge.ModMainClass;
+import dr.magicalstone.controlling_reforge.core.binding.BindingEngine;
+import dr.magicalstone.controlling_reforge.core.binding.BindingListener;
+import dr.magicalstone.controlling_reforge.core.binding.InputFrameCache;
+import dr.magicalstone.controlling_reforge.core.binding.InputSnapshot;
+import dr.magicalstone.controlling_reforge.core.binding.KeyCountCondition;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpression;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpressionCompiler;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpressionProfile;
+import dr.magicalstone.controlling_reforge.core.mixin.KeyBindingAccessor;
+import net.minecraft.client.settings.KeyBinding;
+import net.minecraftforge.client.settings.IKeyConflictContext;
+import org.lwjgl.input.Keyboard;
+import org.apache.logging.log4j.Logger;
+import org.lwjgl.input.Mouse;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * Handles key events of vanilla {@link KeyBinding} by a {@link BindingEngine} instead of {@code KeyBinding.HASH}
+ * which finds only one binding for a key code in {@code onTick}.
+ * The engine holds a binding for each {@link KeyBinding} whose id is its index in {@link KeyBindingDispatcher#keyBindings},
+ * and a binding uses its key code, or its key combination expression if it has one (see {@link KeyExpressionCompiler}).
+ * Expressions are loaded from a profile in the config directory (see {@link KeyExpressionProfile}).
+ * The engine is rebuilt after key codes of bindings are changed ({@code KeyBinding.resetKeyBindingArrayAndHash}) or bindings are registered.
+ * Bindings which may have press times are tracked in {@link KeyBindingDispatcher#tickedBindings}, so releasing all bindings
+ * ({@code KeyBinding.unPressAllKeys}) only touches pressed or ticked bindings instead of all bindings.
+ * Only used in the client thread.
+ */
+public class KeyBindingDispatcher implements BindingListener {
+
+    /**
+     * The system property to verify cached input states, for debugging. See {@link InputFrameCache#setVerifying(boolean)}.
+     */
+    public static final String VERIFY_INPUT_CACHE_PROPERTY = "controlling_reforge.verifyInputCache";
+
+    public static final KeyBindingDispatcher INSTANCE = new KeyBindingDispatcher();
+
+    private final BindingEngine engine = new BindingEngine(this);
+
+    /**
+     * Bindings by their ids in the engine.
+     */
+    private KeyBinding[] keyBindings = new KeyBinding[0];
+
+    private boolean stale = true;
+
+    /**
+     * Ids of bindings whose press times may be positive, the first {@link KeyBindingDispatcher#tickedCount} are valid.
+     */
+    private int[] tickedBindings = new int[0];
+
+    /**
+     * Whether each binding is in {@link KeyBindingDispatcher#tickedBindings}.
+     */
+    private boolean[] ticked = new boolean[0];
+
+    private int tickedCount;
+
+    /**
+     * Input states polled from LWJGL in the current frame, verified against LWJGL if system property
+     * {@link KeyBindingDispatcher#VERIFY_INPUT_CACHE_PROPERTY} is true.
+     */
+    private final InputFrameCache inputCache = new InputFrameCache(KeyBindingDispatcher::pollLive);
+
+    private long reportedMismatchCount;
+
+    /**
+     * Key combination expressions of bindings by their descriptions.
+     */
+    private final KeyExpressionProfile profile = new KeyExpressionProfile(new KeyExpressionCompiler(KeyBindingDispatcher::keyCodeOf));
+
+    private KeyBindingDispatcher() {
+        inputCache.setVerifying(Boolean.getBoolean(VERIFY_INPUT_CACHE_PROPERTY));
+    }
+
+    /**
+     * Resolve a key name of LWJGL to its key code, like "LSHIFT" for keys and "BUTTON0" to "BUTTON99" for mouse buttons (key codes from -100).
+     * Names of mouse buttons are parsed here because {@link Mouse#getButtonIndex(String)} only knows them after {@code Mouse.create()}.
+     * @param name the key name
+     * @return the key code, 0 if the key is unknown
+     */
+    private static int keyCodeOf(String name) {
+        if (name.startsWith("BUTTON") && name.length() > 6) {
+            int button = 0;
+            for (int i = 6; i < name.length(); i++) {
+                char digit = name.charAt(i);
+                if (digit < '0' || digit > '9' || i > 7) {
+                    return 0;
+                }
+                button = button * 10 + (digit - '0');
+            }
+            return button + InputSnapshot.MOUSE_KEY_CODE_OFFSET;
+        }
+        return Keyboard.getKeyIndex(name);
+    }
+
+    /**
+     * Set the key combination expression of a binding, which replaces its key code.
+     * @param keyBinding the binding
+     * @param expression the expression, or null to use the key code of the binding again
+     * @throws IllegalArgumentException if the expression can't be compiled
+     */
+    public void setExpression(KeyBinding keyBinding, @Nullable String expression) {
+        profile.setExpression(keyBinding.getKeyDescription(), expression);
+        stale = true;
+    }
+
+    /**
+     * Get the key combination expression of a binding.
+     * @param keyBinding the binding
+     * @return the expression, or null if the binding uses its key code
+     */
+    @Nullable
+    public String getExpression(KeyBinding keyBinding) {
+        return profile.getExpression(keyBinding.getKeyDescription());
+    }
+
+    /**
+     * Load key combination expressions of bindings from a profile, replacing all expressions, and rebuild the engine before the next key event.
+     * A missing profile has no expression. Called again to reload the profile.
+     * @param file the profile, see {@link KeyExpressionProfile#load(Reader)}
+     * @return messages of invalid expressions by descriptions of their bindings, which use their key codes
+     * @throws IOException if the profile can't be read, then no expression is changed
+     */
+    public Map<String, String> loadProfile(File file) throws IOException {
+        Map<String, String> errors;
+        try (Reader reader = file.isFile() ? Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8) : new StringReader("")) {
+            errors = profile.load(reader);
+        }
+        stale = true;
+        return errors;
+    }
+
+    /**
+     * Mark the engine to be rebuilt before the next key event, called when key codes of bindings are changed.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Rebuild the engine if it is marked stale or bindings are registered since it was built.
+     */
+    private void ensureBuilt() {
+        Map<String, KeyBinding> allKeyBindings = KeyBindingAccessor.getKeybindArray();
+        if (!stale && allKeyBindings.size() == keyBindings.length) {
+            return;
+        }
+        // Bindings pressed in the old engine would never be released by the new engine.
+        for (int binding = 0; binding < engine.bindingCount(); binding++) {
+            if (engine.isPressed(binding)) {
+                ((KeyBindingAccessor) keyBindings[binding]).setPressed(false);
+            }
+        }
+        engine.clear();
+        keyBindings = allKeyBindings.values().toArray(new KeyBinding[0]);
+        for (KeyBinding keyBinding : keyBindings) {
+            int keyCode = keyBinding.getKeyCode();
+            KeyExpression expression = profile.compile(keyBinding.getKeyDescription());
+            if (expression != null) {
+                engine.addBinding(expression);
+            } else if (keyCode == 0) {
+                engine.addBinding(KeyCountCondition.anyOf(0), new int[0]);
+            } else {
+                engine.addBinding(KeyCountCondition.anyOf(1), new int[]{keyCode});
+            }
+        }
+        // Presses bindings which are satisfied while no key is held, like !X.
+        engine.build();
+        tickedBindings = new int[keyBindings.length];
+        ticked = new boolean[keyBindings.length];
+        tickedCount = 0;
+        for (int binding = 0; binding < keyBindings.length; binding++) {
+            if (((KeyBindingAccessor) keyBindings[binding]).getPressTime() > 0) {
+                markTicked(binding);
+            }
+        }
+        stale = false;
+        // The new engine thinks all keys released, so press bindings of the keys which are held now.
+        engine.resync(inputCache.capture());
+    }
+
+    /**
+     * Poll whether a key is held from LWJGL, like {@code GameSettings.isKeyDown}.
+     * @param keyCode the key code, mouse button b is b - 100
+     * @return true if the key is held
+     */
+    private static boolean pollLive(int keyCode) {
+        if (keyCode < 0) {
+            return Mouse.isCreated() && Mouse.isButtonDown(keyCode - InputSnapshot.MOUSE_KEY_CODE_OFFSET);
+        }
+        return Keyboard.isCreated() && keyCode < Keyboard.KEYBOARD_SIZE && Keyboard.isKeyDown(keyCode);
+    }
+
+    /**
+     * Get the cache of input states polled from LWJGL in the current frame.
+     * @return the cache
+     */
+    public InputFrameCache getInputCache() {
+        return inputCache;
+    }
+
+    /**
+     * Called after LWJGL updates input states ({@code Minecraft.updateDisplay}), so states polled in the last frame are polled again.
+     */
+    public void onNewFrame() {
+        if (inputCache.isVerifying() && inputCache.getMismatchCount() != reportedMismatchCount) {
+            reportedMismatchCount = inputCache.getMismatchCount();
+            Logger logger = ModMainClass.getLogger();
+            if (logger != null) {
+                logger.warn("Cached input states differed from LWJGL in the last frame, " + inputCache);
+            }
+        }
+        inputCache.newFrame();
+    }
+
+    /**
+     * Replaces {@code KeyBinding.setKeyBindState}.
+     * @param keyCode the key code, 0 for no key
+     * @param pressed true if the key is pressed
+     */
+    public void onKeyEvent(int keyCode, boolean pressed) {
+        if (keyCode != 0) {
+            ensureBuilt();
+            engine.setKeyState(keyCode, pressed);
+        }
+    }
+
+    /**
+     * Replaces {@code KeyBinding.onTick}.
+     * @param keyCode the key code, 0 for no key
+     */
+    public void onTick(int keyCode) {
+        if (keyCode != 0) {
+            ensureBuilt();
+            engine.tick(keyCode);
+        }
+    }
+
+    /**
+     * Replaces {@code KeyBinding.updateKeyBindState}, which sets the state of every binding by polling its key.
+     * All input states are taken from {@link KeyBindingDispatcher#inputCache} at once, and only keys which changed since the last key events are dispatched.
+     */
+    public void onUpdateKeyBindState() {
+        ensureBuilt();
+        engine.resync(inputCache.capture());
+    }
+
+    /**
+     * Replaces {@code KeyBinding.unPressAllKeys}, which releases every binding and clears its press time.
+     * Only bindings with held keys, bindings pressed while no key is held (like {@code !X}) and bindings which have been ticked are touched.
+     * Like vanilla, every binding is released, and bindings are pressed again by later key events or {@link KeyBindingDispatcher#onUpdateKeyBindState()}.
+     */
+    public void onUnPressAllKeys() {
+        ensureBuilt();
+        engine.releaseAll();
+        for (int i = 0; i < tickedCount; i++) {
+            int binding = tickedBindings[i];
+            ticked[binding] = false;
+            ((KeyBindingAccessor) keyBindings[binding]).setPressTime(0);
+        }
+        tickedCount = 0;
+    }
+
+    private void markTicked(int binding) {
+        if (!ticked[binding]) {
+            ticked[binding] = true;
+            tickedBindings[tickedCount++] = binding;
+        }
+    }
+
+    @Override
+    public void onBindingStateChanged(int binding, boolean pressed) {
+        ((KeyBindingAccessor) keyBindings[binding]).setPressed(pressed);
+    }
+
+    @Override
+    public void onBindingTicked(int binding) {
+        KeyBinding keyBinding = keyBindings[binding];
+        IKeyConflictContext conflictContext = keyBinding.getKeyConflictContext();
+        // Like KeyBindingMap.lookupActive, but every active binding of the key is ticked instead of the first one.
+        if (conflictContext.isActive() && keyBinding.getKeyModifier().isActive(conflictContext)) {
+            KeyBindingAccessor accessor = (KeyBindingAccessor) keyBinding;
+            accessor.setPressTime(accessor.getPressTime() + 1);
+            markTicked(binding);
+        }
+    }
+}
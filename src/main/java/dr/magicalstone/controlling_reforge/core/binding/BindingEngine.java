@@ -0,0 +1,321 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import java.util.Arrays;
+
+/**
+ * Dispatches key events to bindings whose conditions reference the keys, without knowing anything of Minecraft.
+ * Each binding is a {@link KeyCondition} whose term slots reference key codes, and bindings are numbered by ids from 0 in the order they are added.
+ * A key event finds the (binding, term slot) pairs of its key code in a {@link KeyCodeIndex}, so it only touches the bindings which reference the key
+ * and takes O(p) for p such pairs, no matter how many bindings there are. The listener is told when a binding becomes pressed or released.
+ * The index is rebuilt lazily by the first key event after bindings are added, and then the listener is told about each added binding
+ * which is pressed while no key is held, like {@code !X}, so the listener never misses a pressed binding.
+ * The engine also remembers which keys it has seen held, so it can be resynchronized with a sampled {@link InputSnapshot}
+ * by dispatching only the keys which changed, see {@link BindingEngine#resync(InputSnapshot)}.
+ * Bindings whose conditions have held terms are kept in an intrusive list {@link BindingEngine#activeBindings},
+ * and bindings pressed while no key is held in {@link BindingEngine#restingBindings},
+ * so releasing all keys only touches those bindings, see {@link BindingEngine#releaseAll()}.
+ * An engine is not thread safe, it should be used in the client thread which handles key events.
+ */
+public class BindingEngine {
+
+    /**
+     * Conditions of bindings by binding id.
+     */
+    protected KeyCondition[] conditions = new KeyCondition[16];
+
+    /**
+     * Whether each binding is pressed, which is whether its condition was satisfied after the last key event it saw.
+     * Bindings which haven't been built are not pressed until {@link BindingEngine#build()},
+     * and bindings released by {@link BindingEngine#releaseAll()} are not pressed until their conditions are evaluated again.
+     */
+    protected boolean[] pressed = new boolean[16];
+
+    /**
+     * How many bindings are added.
+     */
+    protected int bindingCount;
+
+    /**
+     * How many bindings have been built, bindings from this id are added after the last {@link BindingEngine#build()}.
+     */
+    protected int builtCount;
+
+    /**
+     * Ids of bindings whose conditions have held terms, the first {@link BindingEngine#activeCount} are valid.
+     */
+    protected int[] activeBindings = new int[16];
+
+    /**
+     * Position of each binding in {@link BindingEngine#activeBindings} plus 1, 0 if the binding is not active.
+     */
+    protected int[] activePositions = new int[16];
+
+    protected int activeCount;
+
+    /**
+     * Ids of bindings whose conditions are satisfied while no key is held, like {@code !X}, the first {@link BindingEngine#restingCount} are valid.
+     */
+    protected int[] restingBindings = new int[16];
+
+    protected int restingCount;
+
+    /**
+     * Whether {@link BindingEngine#restingBindings} have been released by {@link BindingEngine#releaseAll()} and not evaluated since.
+     */
+    protected boolean restingReleased;
+
+    protected final BindingListener listener;
+
+    private KeyCodeIndex.Builder indexBuilder = new KeyCodeIndex.Builder();
+
+    /**
+     * The index of all bindings, stale until {@link BindingEngine#build()} if {@link BindingEngine#indexStale} is true.
+     */
+    protected KeyCodeIndex index = KeyCodeIndex.EMPTY;
+
+    private boolean indexStale;
+
+    /**
+     * States of keys as of the last key events the engine saw.
+     */
+    protected final InputSnapshot keyStates = new InputSnapshot();
+
+    public BindingEngine(BindingListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Add a binding. It is pressed by {@link BindingEngine#build()} if its condition is satisfied.
+     * @param condition the condition of the binding, with no held terms
+     * @param termKeyCodes key code of each term slot of the condition, its length should be {@link KeyCondition#termCount()}
+     * @return id of the binding
+     */
+    public int addBinding(KeyCondition condition, int[] termKeyCodes) {
+        if (termKeyCodes.length != condition.termCount()) {
+            throw new IllegalArgumentException("There should be a key code for each term of the condition.");
+        }
+        if (bindingCount == conditions.length) {
+            int capacity = bindingCount * 2;
+            conditions = Arrays.copyOf(conditions, capacity);
+            pressed = Arrays.copyOf(pressed, capacity);
+            activeBindings = Arrays.copyOf(activeBindings, capacity);
+            activePositions = Arrays.copyOf(activePositions, capacity);
+            restingBindings = Arrays.copyOf(restingBindings, capacity);
+        }
+        int binding = bindingCount++;
+        conditions[binding] = condition;
+        for (int slot = 0; slot < termKeyCodes.length; slot++) {
+            indexBuilder.add(termKeyCodes[slot], binding, slot);
+        }
+        indexStale = true;
+        return binding;
+    }
+
+    /**
+     * Add a binding using a compiled expression.
+     * @param expression the expression
+     * @return id of the binding
+     */
+    public int addBinding(KeyExpression expression) {
+        return addBinding(expression.newCondition(), expression.termKeyCodes);
+    }
+
+    /**
+     * Build the index of all added bindings now instead of at the next key event,
+     * and tell the listener about each added binding whose condition is satisfied while no key is held.
+     */
+    public void build() {
+        if (indexStale) {
+            index = indexBuilder.build();
+            indexStale = false;
+            for (int binding = builtCount; binding < bindingCount; binding++) {
+                if (conditions[binding].isSatisfied()) {
+                    restingBindings[restingCount++] = binding;
+                    pressed[binding] = true;
+                    listener.onBindingStateChanged(binding, true);
+                }
+            }
+            builtCount = bindingCount;
+        }
+    }
+
+    /**
+     * Remove all bindings. Ids start from 0 again, and all keys are thought released.
+     */
+    public void clear() {
+        keyStates.clear();
+        Arrays.fill(conditions, 0, bindingCount, null);
+        Arrays.fill(pressed, 0, bindingCount, false);
+        Arrays.fill(activePositions, 0, bindingCount, 0);
+        activeCount = 0;
+        restingCount = 0;
+        restingReleased = false;
+        bindingCount = 0;
+        builtCount = 0;
+        indexBuilder = new KeyCodeIndex.Builder();
+        index = KeyCodeIndex.EMPTY;
+        indexStale = false;
+    }
+
+    /**
+     * Dispatch a key event to all bindings which reference the key.
+     * @param keyCode the key code
+     * @param keyPressed true if the key is pressed, false if it is released
+     */
+    public void setKeyState(int keyCode, boolean keyPressed) {
+        keyStates.setKeyDown(keyCode, keyPressed);
+        build();
+        KeyCodeIndex index = this.index;
+        int row = index.rowOf(keyCode);
+        if (row < 0) {
+            return;
+        }
+        for (int pair = index.rowStart(row), end = index.rowEnd(row); pair < end; pair++) {
+            int binding = index.bindingAt(pair);
+            KeyCondition condition = conditions[binding];
+            boolean satisfied = condition.setTerm(index.slotAt(pair), keyPressed);
+            if (keyPressed) {
+                if (activePositions[binding] == 0) {
+                    activeBindings[activeCount] = binding;
+                    activePositions[binding] = ++activeCount;
+                }
+            } else if (activePositions[binding] != 0 && !condition.hasHeldTerms()) {
+                // Move the last active binding into the position of the binding.
+                int position = activePositions[binding] - 1;
+                int last = activeBindings[--activeCount];
+                activeBindings[position] = last;
+                activePositions[last] = position + 1;
+                activePositions[binding] = 0;
+            }
+            if (satisfied != pressed[binding]) {
+                pressed[binding] = satisfied;
+                listener.onBindingStateChanged(binding, satisfied);
+            }
+        }
+    }
+
+    /**
+     * Tell the listener that a key is pressed once more for all pressed bindings which reference the key.
+     * A binding which references the key by several term slots is ticked once for each slot.
+     * @param keyCode the key code
+     */
+    public void tick(int keyCode) {
+        build();
+        KeyCodeIndex index = this.index;
+        int row = index.rowOf(keyCode);
+        if (row < 0) {
+            return;
+        }
+        for (int pair = index.rowStart(row), end = index.rowEnd(row); pair < end; pair++) {
+            int binding = index.bindingAt(pair);
+            if (pressed[binding]) {
+                listener.onBindingTicked(binding);
+            }
+        }
+    }
+
+    /**
+     * Dispatch the keys whose states in a sampled snapshot differ from the states the engine saw, like all keys were dispatched again.
+     * It takes O(SIZE / 64 + c * p) for c changed keys referenced by p pairs each, no matter how many bindings there are.
+     * After {@link BindingEngine#releaseAll()}, bindings pressed while no key is held are evaluated again too, which takes O(r) for r such bindings.
+     * @param sample states of all keys which can be sampled
+     */
+    public void resync(InputSnapshot sample) {
+        long[] sampleWords = sample.words;
+        long[] knownWords = keyStates.words;
+        for (int word = 0; word < sampleWords.length; word++) {
+            long changed = sampleWords[word] ^ knownWords[word];
+            while (changed != 0) {
+                long lowestBit = changed & -changed;
+                changed ^= lowestBit;
+                int bit = word * 64 + Long.numberOfTrailingZeros(lowestBit);
+                setKeyState(InputSnapshot.keyCodeOf(bit), (sampleWords[word] & lowestBit) != 0);
+            }
+        }
+        if (restingReleased) {
+            restingReleased = false;
+            for (int position = 0; position < restingCount; position++) {
+                int binding = restingBindings[position];
+                boolean satisfied = conditions[binding].isSatisfied();
+                if (satisfied != pressed[binding]) {
+                    pressed[binding] = satisfied;
+                    listener.onBindingStateChanged(binding, satisfied);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the states of keys as of the last key events the engine saw.
+     * @return the states, which should not be modified
+     */
+    public InputSnapshot getKeyStates() {
+        return keyStates;
+    }
+
+    /**
+     * Release all terms of all bindings, release all bindings and think all keys released, like vanilla {@code KeyBinding.unPressAllKeys}.
+     * The listener is told about each binding which is released by it.
+     * Bindings pressed while no key is held, like {@code !X}, are released too, and they are pressed again by the next
+     * {@link BindingEngine#resync(InputSnapshot)}, or by a key event of their keys.
+     * Only active bindings and those bindings are touched, so it takes O(a + r) for a bindings with held terms and r bindings pressed while no key is held,
+     * no matter how many bindings there are.
+     */
+    public void releaseAll() {
+        build();
+        keyStates.clear();
+        int activeCount = this.activeCount;
+        this.activeCount = 0;
+        for (int position = 0; position < activeCount; position++) {
+            int binding = activeBindings[position];
+            activePositions[binding] = 0;
+            conditions[binding].reset();
+            release(binding);
+        }
+        for (int position = 0; position < restingCount; position++) {
+            release(restingBindings[position]);
+        }
+        restingReleased = restingCount != 0;
+    }
+
+    private void release(int binding) {
+        if (pressed[binding]) {
+            pressed[binding] = false;
+            listener.onBindingStateChanged(binding, false);
+        }
+    }
+
+    /**
+     * Get how many bindings have held terms.
+     * @return how many bindings have held terms
+     */
+    public int activeBindingCount() {
+        return activeCount;
+    }
+
+    /**
+     * Check if a binding is pressed.
+     * @param binding id of the binding
+     * @return true if the condition of the binding is satisfied
+     */
+    public boolean isPressed(int binding) {
+        if (binding < 0 || binding >= bindingCount) {
+            throw new IndexOutOfBoundsException("Binding: " + binding + ", Binding count: " + bindingCount);
+        }
+        return pressed[binding];
+    }
+
+    /**
+     * Get how many bindings are added.
+     * @return how many bindings are added
+     */
+    public int bindingCount() {
+        return bindingCount;
+    }
+
+    @Override
+    public String toString() {
+        build();
+        return "binding engine: {bindings = " + bindingCount + ", " + index + "}";
+    }
+}
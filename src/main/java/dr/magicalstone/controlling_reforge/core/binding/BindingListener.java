@@ -0,0 +1,20 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+/**
+ * A listener of bindings in a {@link BindingEngine}, called synchronously in the thread which dispatches key events.
+ */
+public interface BindingListener {
+
+    /**
+     * Called when the condition of a binding becomes satisfied or stops being satisfied.
+     * @param binding id of the binding
+     * @param pressed true if the binding becomes pressed
+     */
+    void onBindingStateChanged(int binding, boolean pressed);
+
+    /**
+     * Called when a key referenced by a pressed binding is pressed, like vanilla {@code KeyBinding.onTick} which counts presses of a binding.
+     * @param binding id of the binding
+     */
+    void onBindingTicked(int binding);
+}
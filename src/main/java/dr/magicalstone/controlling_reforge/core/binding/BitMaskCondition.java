@@ -0,0 +1,75 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+/**
+ * A condition of at most 64 terms which are keys or negated keys, satisfied when at least a number of terms are true,
+ * which covers "all of" (the number is the term count), "any of" (the number is 1) and "N of" small groups of keys.
+ * Terms are bits of a long, so setting a term and checking the condition take O(1) without touching any array.
+ */
+public class BitMaskCondition implements KeyCondition {
+
+    /**
+     * The largest number of terms.
+     */
+    public static final int MAX_TERM_COUNT = 64;
+
+    private final int termCount;
+
+    /**
+     * Bits of negated terms, which are true while their keys are not held.
+     */
+    private final long negatedMask;
+
+    private final int requiredCount;
+
+    /**
+     * Bits of true terms.
+     */
+    private long terms;
+
+    /**
+     * @param termCount how many terms the condition has, at most {@link BitMaskCondition#MAX_TERM_COUNT}
+     * @param negatedMask bit i is set if term i is negated
+     * @param requiredCount how many terms should be true to satisfy the condition
+     */
+    public BitMaskCondition(int termCount, long negatedMask, int requiredCount) {
+        if (termCount < 0 || termCount > MAX_TERM_COUNT || requiredCount < 0) {
+            throw new IllegalArgumentException("termCount should be in [0, 64] and requiredCount should not be negative.");
+        }
+        this.termCount = termCount;
+        this.negatedMask = negatedMask;
+        this.requiredCount = requiredCount;
+        this.terms = negatedMask;
+    }
+
+    @Override
+    public int termCount() {
+        return termCount;
+    }
+
+    @Override
+    public boolean setTerm(int slot, boolean pressed) {
+        long bit = 1L << slot;
+        terms = pressed != ((negatedMask & bit) != 0) ? terms | bit : terms & ~bit;
+        return Long.bitCount(terms) >= requiredCount;
+    }
+
+    @Override
+    public boolean isSatisfied() {
+        return Long.bitCount(terms) >= requiredCount;
+    }
+
+    @Override
+    public boolean hasHeldTerms() {
+        return terms != negatedMask;
+    }
+
+    @Override
+    public void reset() {
+        terms = negatedMask;
+    }
+
+    @Override
+    public String toString() {
+        return "bit mask: {" + Long.bitCount(terms) + " of " + termCount + " true, " + requiredCount + " required}";
+    }
+}
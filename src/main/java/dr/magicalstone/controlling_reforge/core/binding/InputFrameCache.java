@@ -0,0 +1,146 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Caches states of keys polled from the input library for a frame, so polling the same key again in the frame doesn't call the library.
+ * Input libraries like LWJGL 2 only update key states once per frame (when the display is updated), so a state polled in a frame stays valid
+ * until {@link InputFrameCache#newFrame()} is called after the update, and the cache returns exactly what the library would.
+ * States are kept in an {@link InputSnapshot}, and another snapshot marks which keys have been polled in the frame:
+ * each key is polled at most once per frame, and {@link InputFrameCache#capture()} fills the rest to get the whole input state.
+ * Key codes which can't be in a snapshot are always polled.
+ * For debugging, a verifying cache polls the library for each cached state too, returns the polled state and counts mismatches.
+ */
+public class InputFrameCache {
+
+    private final IntPredicate livePoller;
+
+    /**
+     * States of polled keys in this frame.
+     */
+    private final InputSnapshot states = new InputSnapshot();
+
+    /**
+     * Keys which have been polled in this frame are held in this snapshot.
+     */
+    private final InputSnapshot polled = new InputSnapshot();
+
+    private boolean verifying;
+
+    private long livePollCount;
+
+    private long cachedCount;
+
+    private long mismatchCount;
+
+    /**
+     * @param livePoller polls whether a key code is held from the input library
+     */
+    public InputFrameCache(IntPredicate livePoller) {
+        this.livePoller = livePoller;
+    }
+
+    /**
+     * Forget all states, called after the input library updates key states.
+     */
+    public void newFrame() {
+        polled.clear();
+    }
+
+    /**
+     * Check if a key is held, polling the library only if the key hasn't been polled in this frame.
+     * @param keyCode the key code
+     * @return true if the key is held
+     */
+    public boolean isKeyDown(int keyCode) {
+        int bit = InputSnapshot.bitOf(keyCode);
+        if (bit < 0) {
+            livePollCount++;
+            return livePoller.test(keyCode);
+        }
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        if ((polled.words[word] & mask) == 0) {
+            return poll(keyCode, word, mask);
+        }
+        cachedCount++;
+        boolean down = (states.words[word] & mask) != 0;
+        if (verifying && livePoller.test(keyCode) != down) {
+            mismatchCount++;
+            states.words[word] ^= mask;
+            return !down;
+        }
+        return down;
+    }
+
+    private boolean poll(int keyCode, int word, long mask) {
+        livePollCount++;
+        boolean down = livePoller.test(keyCode);
+        polled.words[word] |= mask;
+        if (down) {
+            states.words[word] |= mask;
+        } else {
+            states.words[word] &= ~mask;
+        }
+        return down;
+    }
+
+    /**
+     * Get states of all keys which can be in a snapshot, polling the keys which haven't been polled in this frame.
+     * @return the states, which are valid until {@link InputFrameCache#newFrame()} and should not be modified
+     */
+    public InputSnapshot capture() {
+        long[] polledWords = polled.words;
+        for (int word = 0; word < polledWords.length; word++) {
+            int bitCount = Math.min(InputSnapshot.SIZE - word * 64, 64);
+            long unpolled = ~polledWords[word] & (bitCount == 64 ? -1L : (1L << bitCount) - 1);
+            while (unpolled != 0) {
+                long mask = unpolled & -unpolled;
+                unpolled ^= mask;
+                poll(InputSnapshot.keyCodeOf(word * 64 + Long.numberOfTrailingZeros(mask)), word, mask);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Make the cache verify each cached state by polling the library, for debugging.
+     * @param verifying true to verify cached states
+     */
+    public void setVerifying(boolean verifying) {
+        this.verifying = verifying;
+    }
+
+    public boolean isVerifying() {
+        return verifying;
+    }
+
+    /**
+     * Get how many times the library has been polled, not including polls for verifying.
+     * @return how many times the library has been polled
+     */
+    public long getLivePollCount() {
+        return livePollCount;
+    }
+
+    /**
+     * Get how many states have been returned from the cache, which is how many polls of the library are avoided.
+     * @return how many states have been returned from the cache
+     */
+    public long getCachedCount() {
+        return cachedCount;
+    }
+
+    /**
+     * Get how many cached states differ from the library while verifying.
+     * @return how many cached states differ from the library
+     */
+    public long getMismatchCount() {
+        return mismatchCount;
+    }
+
+    @Override
+    public String toString() {
+        return "input frame cache: {polled = " + livePollCount + ", cached = " + cachedCount + ", mismatches = " + mismatchCount + "}";
+    }
+}
@@ -0,0 +1,133 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import java.util.Arrays;
+
+/**
+ * States of all keyboard keys and mouse buttons as a bitset of {@link InputSnapshot#SIZE} bits in a few longs.
+ * Bit k is keyboard key code k for k in [0, 256), and bit 256 + b is mouse button b, which is key code b - 100 in Minecraft.
+ * Other key codes, like those of inputs added by mods, can't be sampled and are never held in a snapshot.
+ * Comparing two snapshots takes O(SIZE / 64) and finds changed keys by their bits, see {@link BindingEngine#resync(InputSnapshot)}.
+ */
+public class InputSnapshot {
+
+    /**
+     * How many keyboard key codes are sampled, like LWJGL {@code Keyboard.KEYBOARD_SIZE}.
+     */
+    public static final int KEYBOARD_SIZE = 256;
+
+    /**
+     * How many mouse buttons are sampled.
+     */
+    public static final int MOUSE_SIZE = 16;
+
+    /**
+     * Key code of mouse button 0 in Minecraft.
+     */
+    public static final int MOUSE_KEY_CODE_OFFSET = -100;
+
+    /**
+     * How many bits a snapshot has.
+     */
+    public static final int SIZE = KEYBOARD_SIZE + MOUSE_SIZE;
+
+    /**
+     * The bits of the snapshot.
+     */
+    final long[] words = new long[(SIZE + 63) / 64];
+
+    /**
+     * Get the bit of a key code.
+     * @param keyCode the key code
+     * @return the bit of the key code, or -1 if it can't be sampled
+     */
+    public static int bitOf(int keyCode) {
+        if (keyCode >= 0 && keyCode < KEYBOARD_SIZE) {
+            return keyCode;
+        }
+        int button = keyCode - MOUSE_KEY_CODE_OFFSET;
+        return button >= 0 && button < MOUSE_SIZE ? KEYBOARD_SIZE + button : -1;
+    }
+
+    /**
+     * Get the key code of a bit.
+     * @param bit the bit in [0, SIZE)
+     * @return the key code
+     */
+    public static int keyCodeOf(int bit) {
+        return bit < KEYBOARD_SIZE ? bit : bit - KEYBOARD_SIZE + MOUSE_KEY_CODE_OFFSET;
+    }
+
+    /**
+     * Check if a key is held in the snapshot.
+     * @param keyCode the key code
+     * @return true if the key is held, false if it isn't or it can't be sampled
+     */
+    public boolean isKeyDown(int keyCode) {
+        int bit = bitOf(keyCode);
+        return bit >= 0 && (words[bit >>> 6] & 1L << bit) != 0;
+    }
+
+    /**
+     * Set whether a key is held in the snapshot. Key codes which can't be sampled are ignored.
+     * @param keyCode the key code
+     * @param down true if the key is held
+     */
+    public void setKeyDown(int keyCode, boolean down) {
+        int bit = bitOf(keyCode);
+        if (bit >= 0) {
+            if (down) {
+                words[bit >>> 6] |= 1L << bit;
+            } else {
+                words[bit >>> 6] &= ~(1L << bit);
+            }
+        }
+    }
+
+    /**
+     * Release all keys in the snapshot.
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    /**
+     * Copy another snapshot into this snapshot.
+     * @param snapshot the other snapshot
+     */
+    public void copyFrom(InputSnapshot snapshot) {
+        System.arraycopy(snapshot.words, 0, words, 0, words.length);
+    }
+
+    /**
+     * Count held keys in the snapshot.
+     * @return how many keys are held
+     */
+    public int countKeysDown() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof InputSnapshot && Arrays.equals(words, ((InputSnapshot) obj).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("input snapshot: {");
+        for (int bit = 0; bit < SIZE; bit++) {
+            if ((words[bit >>> 6] & 1L << bit) != 0) {
+                builder.append(builder.charAt(builder.length() - 1) == '{' ? "" : ", ").append(keyCodeOf(bit));
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,196 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import java.util.Arrays;
+
+/**
+ * An inverted index from key codes to the bindings which reference them, so a key event only touches those bindings.
+ * Vanilla {@code KeyBinding.HASH} maps a key code to one binding, while a key code can be a term of many bindings here.
+ * For each key code, its (binding, term slot) pairs are stored one after another in a packed int array {@link KeyCodeIndex#pairs},
+ * and key codes are found by an open addressing hash table of primitive ints, so looking a key code up allocates nothing.
+ * An index is immutable, build it by {@link KeyCodeIndex.Builder}.
+ */
+public class KeyCodeIndex {
+
+    /**
+     * An index without any key code.
+     */
+    public static final KeyCodeIndex EMPTY = new Builder().build();
+
+    /**
+     * Key codes in the hash table, valid where {@link KeyCodeIndex#tableRows} is not -1.
+     */
+    private final int[] tableKeyCodes;
+
+    /**
+     * Row of each key code in the hash table, -1 for an empty slot.
+     */
+    private final int[] tableRows;
+
+    /**
+     * Pairs of row r are pairs[rowOffsets[r] * 2] to pairs[rowOffsets[r + 1] * 2 - 1].
+     */
+    private final int[] rowOffsets;
+
+    /**
+     * Binding and term slot of all pairs, pair p is (pairs[p * 2], pairs[p * 2 + 1]).
+     */
+    private final int[] pairs;
+
+    private KeyCodeIndex(int[] tableKeyCodes, int[] tableRows, int[] rowOffsets, int[] pairs) {
+        this.tableKeyCodes = tableKeyCodes;
+        this.tableRows = tableRows;
+        this.rowOffsets = rowOffsets;
+        this.pairs = pairs;
+    }
+
+    private static int slotOf(int keyCode, int mask) {
+        return (keyCode * 0x9E3779B9 >>> 16) & mask;
+    }
+
+    /**
+     * Find the row of a key code.
+     * @param keyCode the key code
+     * @return the row of the key code, or -1 if no binding references it
+     */
+    public int rowOf(int keyCode) {
+        int mask = tableRows.length - 1;
+        for (int slot = slotOf(keyCode, mask); ; slot = (slot + 1) & mask) {
+            int row = tableRows[slot];
+            if (row < 0 || tableKeyCodes[slot] == keyCode) {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * Get the first pair of a row.
+     * @param row the row of a key code
+     * @return the first pair of the row
+     */
+    public int rowStart(int row) {
+        return rowOffsets[row];
+    }
+
+    /**
+     * Get one after the last pair of a row.
+     * @param row the row of a key code
+     * @return one after the last pair of the row
+     */
+    public int rowEnd(int row) {
+        return rowOffsets[row + 1];
+    }
+
+    /**
+     * Get the binding of a pair.
+     * @param pair the pair
+     * @return id of the binding
+     */
+    public int bindingAt(int pair) {
+        return pairs[pair * 2];
+    }
+
+    /**
+     * Get the term slot of a pair.
+     * @param pair the pair
+     * @return the term slot in the binding which is the key code
+     */
+    public int slotAt(int pair) {
+        return pairs[pair * 2 + 1];
+    }
+
+    /**
+     * Get how many key codes are referenced.
+     * @return how many key codes are referenced
+     */
+    public int keyCodeCount() {
+        return rowOffsets.length - 1;
+    }
+
+    /**
+     * Get all referenced key codes in ascending order.
+     * @return all referenced key codes
+     */
+    public int[] keyCodes() {
+        int[] keyCodes = new int[keyCodeCount()];
+        for (int slot = 0; slot < tableRows.length; slot++) {
+            if (tableRows[slot] >= 0) {
+                keyCodes[tableRows[slot]] = tableKeyCodes[slot];
+            }
+        }
+        return keyCodes;
+    }
+
+    @Override
+    public String toString() {
+        return "key code index: {key codes = " + keyCodeCount() + ", pairs = " + pairs.length / 2 + "}";
+    }
+
+    /**
+     * Collects (key code, binding, term slot) triples and builds a {@link KeyCodeIndex} in O(m * log(m)) for m triples.
+     */
+    public static class Builder {
+
+        private int[] triples = new int[48];
+
+        private int tripleCount;
+
+        /**
+         * Make a term slot of a binding reference a key code.
+         * @param keyCode the key code
+         * @param binding id of the binding
+         * @param slot the term slot in the binding
+         * @return this builder
+         */
+        public Builder add(int keyCode, int binding, int slot) {
+            if (tripleCount * 3 == triples.length) {
+                triples = Arrays.copyOf(triples, triples.length * 2);
+            }
+            triples[tripleCount * 3] = keyCode;
+            triples[tripleCount * 3 + 1] = binding;
+            triples[tripleCount * 3 + 2] = slot;
+            tripleCount++;
+            return this;
+        }
+
+        /**
+         * Build the index of all added triples. Pairs of a key code are in the order they were added.
+         * @return the index
+         */
+        public KeyCodeIndex build() {
+            // Sort triples by key code (as unsigned after flipping the sign bit) and then by the order they were added.
+            long[] order = new long[tripleCount];
+            for (int i = 0; i < tripleCount; i++) {
+                order[i] = ((triples[i * 3] ^ 0x80000000L) & 0xFFFFFFFFL) << 32 | i;
+            }
+            Arrays.sort(order);
+            int[] pairs = new int[tripleCount * 2];
+            int[] rowOffsets = new int[tripleCount + 1];
+            int[] rowKeyCodes = new int[tripleCount];
+            int rowCount = 0;
+            for (int pair = 0; pair < tripleCount; pair++) {
+                int triple = (int) order[pair];
+                int keyCode = triples[triple * 3];
+                if (rowCount == 0 || rowKeyCodes[rowCount - 1] != keyCode) {
+                    rowKeyCodes[rowCount] = keyCode;
+                    rowOffsets[rowCount++] = pair;
+                }
+                pairs[pair * 2] = triples[triple * 3 + 1];
+                pairs[pair * 2 + 1] = triples[triple * 3 + 2];
+            }
+            rowOffsets[rowCount] = tripleCount;
+            int capacity = Integer.highestOneBit(Math.max(rowCount * 2, 2) - 1) << 1;
+            int[] tableKeyCodes = new int[capacity];
+            int[] tableRows = new int[capacity];
+            Arrays.fill(tableRows, -1);
+            for (int row = 0; row < rowCount; row++) {
+                int slot = slotOf(rowKeyCodes[row], capacity - 1);
+                while (tableRows[slot] >= 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                tableKeyCodes[slot] = rowKeyCodes[row];
+                tableRows[slot] = row;
+            }
+            return new KeyCodeIndex(tableKeyCodes, tableRows, Arrays.copyOf(rowOffsets, rowCount + 1), pairs);
+        }
+    }
+}
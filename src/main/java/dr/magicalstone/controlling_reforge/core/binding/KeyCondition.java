@@ -0,0 +1,41 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+/**
+ * The condition of a binding on its terms, each term is whether a key referenced by the binding is held.
+ * Terms are numbered by slots from 0 to {@link KeyCondition#termCount()} - 1, and the same key code can be referenced by several slots.
+ * A condition is only told about changes of its own terms by {@link BindingEngine}, so it should keep whatever state it needs
+ * to tell whether it is satisfied without looking at other keys.
+ */
+public interface KeyCondition {
+
+    /**
+     * Get how many terms the condition has.
+     * @return how many terms the condition has
+     */
+    int termCount();
+
+    /**
+     * Set a term and check if the condition is satisfied.
+     * @param slot slot of the term
+     * @param pressed whether the key of the term is held
+     * @return true if the condition is satisfied after the term is set
+     */
+    boolean setTerm(int slot, boolean pressed);
+
+    /**
+     * Check if the condition is satisfied.
+     * @return true if the condition is satisfied
+     */
+    boolean isSatisfied();
+
+    /**
+     * Check if any term is held, so {@link BindingEngine} only resets conditions which have held terms.
+     * @return true if the key of any term is held
+     */
+    boolean hasHeldTerms();
+
+    /**
+     * Release all terms.
+     */
+    void reset();
+}
@@ -0,0 +1,81 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import java.util.Arrays;
+
+/**
+ * A condition satisfied when at least a number of its terms are held, like a vanilla binding (any one of one key),
+ * "all of these keys" or "any 2 of these keys". Setting a term takes O(1).
+ */
+public class KeyCountCondition implements KeyCondition {
+
+    private final boolean[] terms;
+
+    private final int requiredCount;
+
+    private int pressedCount;
+
+    /**
+     * @param termCount how many terms the condition has
+     * @param requiredCount how many terms should be held to satisfy the condition, a condition which requires more terms than it has is never satisfied
+     */
+    public KeyCountCondition(int termCount, int requiredCount) {
+        if (termCount < 0 || requiredCount < 0) {
+            throw new IllegalArgumentException("termCount and requiredCount should not be negative.");
+        }
+        this.terms = new boolean[termCount];
+        this.requiredCount = requiredCount;
+    }
+
+    /**
+     * Create a condition satisfied when any of its terms is held.
+     * @param termCount how many terms the condition has
+     * @return the condition
+     */
+    public static KeyCountCondition anyOf(int termCount) {
+        return new KeyCountCondition(termCount, 1);
+    }
+
+    /**
+     * Create a condition satisfied when all of its terms are held. A condition without terms is never satisfied.
+     * @param termCount how many terms the condition has
+     * @return the condition
+     */
+    public static KeyCountCondition allOf(int termCount) {
+        return new KeyCountCondition(termCount, Math.max(termCount, 1));
+    }
+
+    @Override
+    public int termCount() {
+        return terms.length;
+    }
+
+    @Override
+    public boolean setTerm(int slot, boolean pressed) {
+        if (terms[slot] != pressed) {
+            terms[slot] = pressed;
+            pressedCount += pressed ? 1 : -1;
+        }
+        return pressedCount >= requiredCount;
+    }
+
+    @Override
+    public boolean isSatisfied() {
+        return pressedCount >= requiredCount;
+    }
+
+    @Override
+    public boolean hasHeldTerms() {
+        return pressedCount != 0;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(terms, false);
+        pressedCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "key count: {" + pressedCount + " of " + terms.length + " held, " + requiredCount + " required}";
+    }
+}
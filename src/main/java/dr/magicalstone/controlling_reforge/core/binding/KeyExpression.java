@@ -0,0 +1,83 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import java.util.function.Supplier;
+
+/**
+ * A key combination expression compiled by {@link KeyExpressionCompiler}, which creates conditions of bindings using the expression.
+ * An expression is immutable and shared by all bindings using it, while each binding gets its own condition by {@link KeyExpression#newCondition()}.
+ */
+public final class KeyExpression {
+
+    /**
+     * Engines which evaluate expressions, from the cheapest.
+     */
+    public enum Engine {
+        /**
+         * "All of", "any of" or "N of" at most 64 keys or negated keys, see {@link BitMaskCondition}.
+         */
+        BIT_MASK,
+        /**
+         * "All of" or "any of" more than 64 keys or negated keys, see {@link SegmentTreeCondition}.
+         */
+        SEGMENT_TREE,
+        /**
+         * Any other expression, see {@link PostfixCondition}.
+         */
+        POSTFIX
+    }
+
+    private final String source;
+
+    /**
+     * Key code of each term slot, shared with {@link BindingEngine#addBinding(KeyExpression)}, never modified.
+     */
+    final int[] termKeyCodes;
+
+    private final Engine engine;
+
+    private final Supplier<KeyCondition> conditionFactory;
+
+    KeyExpression(String source, int[] termKeyCodes, Engine engine, Supplier<KeyCondition> conditionFactory) {
+        this.source = source;
+        this.termKeyCodes = termKeyCodes;
+        this.engine = engine;
+        this.conditionFactory = conditionFactory;
+    }
+
+    /**
+     * Create a condition of the expression with all keys released.
+     * @return the condition
+     */
+    public KeyCondition newCondition() {
+        return conditionFactory.get();
+    }
+
+    /**
+     * Get key codes of terms of the expression.
+     * @return key code of each term slot of conditions of the expression
+     */
+    public int[] termKeyCodes() {
+        return termKeyCodes.clone();
+    }
+
+    /**
+     * Get the engine which evaluates the expression.
+     * @return the engine
+     */
+    public Engine engine() {
+        return engine;
+    }
+
+    /**
+     * Get the source of the expression.
+     * @return the source
+     */
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return "key expression: {" + source + ", engine = " + engine + ", terms = " + termKeyCodes.length + "}";
+    }
+}
@@ -0,0 +1,377 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import dr.magicalstone.controlling_reforge.api.util.BooleanBinaryOperator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compiles key combination expressions into {@link KeyExpression}s, choosing the cheapest engine for each expression (see {@link KeyExpression.Engine}).
+ * The grammar, from the lowest precedence:
+ * <pre>
+ * expression := and ('|' and)*                          any of the operands
+ * and        := unary ('&amp;' unary)*                    all of the operands
+ * unary      := '!' unary | primary                     not
+ * primary    := '(' expression ')'
+ *             | count 'of' '(' expression (',' expression)* ')'   at least count of the expressions
+ *             | key
+ * key        := a key name given to the resolver, like LCONTROL or 1 of the number row, or '#' and an integer key code, like #42 or #-100
+ * </pre>
+ * For example {@code LCONTROL & (C | 2 of (LSHIFT, LMENU, BUTTON0)) & !TAB}.
+ * Nested groups of the same kind are flattened, and a negated group of keys is turned into a group of negated keys.
+ * Compiled expressions are cached by their sources, so compiling the expressions of a profile again costs a hash lookup each.
+ */
+public class KeyExpressionCompiler {
+
+    private final ToIntFunction<String> keyNames;
+
+    /**
+     * Compiled expressions by their sources.
+     */
+    private final Map<String, KeyExpression> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param keyNames resolves a key name to its key code, 0 if the key is unknown
+     */
+    public KeyExpressionCompiler(ToIntFunction<String> keyNames) {
+        this.keyNames = keyNames;
+    }
+
+    /**
+     * Compile an expression, or get it from the cache if it has been compiled.
+     * @param source the expression
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the expression has a syntax error or an unknown key
+     */
+    public KeyExpression compile(String source) {
+        KeyExpression expression = cache.get(source);
+        if (expression == null) {
+            expression = cache.computeIfAbsent(source, this::compileUncached);
+        }
+        return expression;
+    }
+
+    /**
+     * Get how many compiled expressions are cached.
+     * @return how many compiled expressions are cached
+     */
+    public int cacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all compiled expressions from the cache, for example after key names are changed.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private KeyExpression compileUncached(String source) {
+        Node root = new Parser(source).parseAll();
+        if (root.children == null) {
+            Node group = new Node(0);
+            group.children = new ArrayList<>();
+            group.children.add(root);
+            group.requiredCount = 1;
+            root = group;
+        }
+        if (root.negated && root.isGroupOfTerms()) {
+            // not (at least k of n terms) == at least (n - k + 1) of the n negated terms
+            root.negated = false;
+            root.requiredCount = Math.max(root.children.size() - root.requiredCount + 1, 0);
+            for (Node child : root.children) {
+                child.negated = !child.negated;
+            }
+        }
+        if (!root.negated && root.isGroupOfTerms()) {
+            int termCount = root.children.size();
+            int[] termKeyCodes = new int[termCount];
+            boolean[] negated = new boolean[termCount];
+            long negatedMask = 0;
+            for (int slot = 0; slot < termCount; slot++) {
+                Node term = root.children.get(slot);
+                termKeyCodes[slot] = term.keyCode;
+                negated[slot] = term.negated;
+                negatedMask |= term.negated ? 1L << slot : 0;
+            }
+            int requiredCount = root.requiredCount;
+            if (termCount <= BitMaskCondition.MAX_TERM_COUNT) {
+                long finalNegatedMask = negatedMask;
+                return new KeyExpression(source, termKeyCodes, KeyExpression.Engine.BIT_MASK,
+                        () -> new BitMaskCondition(termCount, finalNegatedMask, requiredCount));
+            }
+            if (requiredCount == termCount || requiredCount == 1) {
+                BooleanBinaryOperator operator = requiredCount == 1 ? (left, right) -> left || right : (left, right) -> left && right;
+                return new KeyExpression(source, termKeyCodes, KeyExpression.Engine.SEGMENT_TREE,
+                        () -> new SegmentTreeCondition(operator, negated));
+            }
+        }
+        List<Integer> termKeyCodes = new ArrayList<>();
+        List<Integer> termNodes = new ArrayList<>();
+        int[] program = new int[root.countNodes() * 3];
+        emit(root, program, new int[1], termKeyCodes, termNodes);
+        int[] termKeyCodeArray = termKeyCodes.stream().mapToInt(Integer::intValue).toArray();
+        PostfixCondition prototype = new PostfixCondition(program, termNodes.stream().mapToInt(Integer::intValue).toArray());
+        return new KeyExpression(source, termKeyCodeArray, KeyExpression.Engine.POSTFIX, () -> new PostfixCondition(prototype));
+    }
+
+    /**
+     * Write a node and its descendants into the program in postfix order.
+     * @param nodeCount how many nodes have been written, updated by this method
+     * @return index of the node
+     */
+    private static int emit(Node node, int[] program, int[] nodeCount, List<Integer> termKeyCodes, List<Integer> termNodes) {
+        int flags = node.negated ? PostfixCondition.NEGATED : 0;
+        if (node.children == null) {
+            int index = nodeCount[0]++;
+            termKeyCodes.add(node.keyCode);
+            termNodes.add(index);
+            program[index * 3] = -1;
+            program[index * 3 + 2] = flags | PostfixCondition.TERM;
+            return index;
+        }
+        int[] children = new int[node.children.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = emit(node.children.get(i), program, nodeCount, termKeyCodes, termNodes);
+        }
+        int index = nodeCount[0]++;
+        for (int child : children) {
+            program[child * 3] = index;
+        }
+        program[index * 3] = -1;
+        program[index * 3 + 1] = node.requiredCount;
+        program[index * 3 + 2] = flags;
+        return index;
+    }
+
+    /**
+     * A node of a parsed expression, a key term or a group which is true when at least {@link Node#requiredCount} children are true.
+     */
+    private static class Node {
+
+        final int keyCode;
+
+        /**
+         * Children of a group, null for a term.
+         */
+        List<Node> children;
+
+        int requiredCount;
+
+        boolean negated;
+
+        Node(int keyCode) {
+            this.keyCode = keyCode;
+        }
+
+        /**
+         * Create a group which requires all of its children (and) or any of its children (or) to be true.
+         * Operands which are groups of the same kind are flattened into the group.
+         */
+        static Node group(List<Node> operands, boolean all) {
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            Node group = new Node(0);
+            group.children = new ArrayList<>();
+            for (Node operand : operands) {
+                if (operand.children != null && !operand.negated && !operand.children.isEmpty()
+                        && operand.requiredCount == (all ? operand.children.size() : 1)) {
+                    group.children.addAll(operand.children);
+                } else {
+                    group.children.add(operand);
+                }
+            }
+            group.requiredCount = all ? group.children.size() : 1;
+            return group;
+        }
+
+        boolean isGroupOfTerms() {
+            if (children == null) {
+                return false;
+            }
+            for (Node child : children) {
+                if (child.children != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int countNodes() {
+            int count = 1;
+            if (children != null) {
+                for (Node child : children) {
+                    count += child.countNodes();
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A recursive descent parser of the grammar in {@link KeyExpressionCompiler}.
+     */
+    private class Parser {
+
+        private final String source;
+
+        private int position;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        Node parseAll() {
+            Node node = parseOr();
+            skipSpaces();
+            if (position != source.length()) {
+                throw error("Unexpected '" + source.charAt(position) + "'");
+            }
+            return node;
+        }
+
+        private Node parseOr() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (accept('|')) {
+                operands.add(parseAnd());
+            }
+            return Node.group(operands, false);
+        }
+
+        private Node parseAnd() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (accept('&')) {
+                operands.add(parseUnary());
+            }
+            return Node.group(operands, true);
+        }
+
+        private Node parseUnary() {
+            if (accept('!')) {
+                Node node = parseUnary();
+                node.negated = !node.negated;
+                return node;
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            if (accept('(')) {
+                Node node = parseOr();
+                expect(')');
+                return node;
+            }
+            skipSpaces();
+            int start = position;
+            if (accept('#')) {
+                int codeStart = position;
+                if (position < source.length() && source.charAt(position) == '-') {
+                    position++;
+                }
+                skipDigits();
+                return term(parseNumber(codeStart, "Invalid key code"), start);
+            }
+            if (position < source.length() && Character.isDigit(source.charAt(position))) {
+                skipDigits();
+                String digits = source.substring(start, position);
+                if ("of".equalsIgnoreCase(parseName())) {
+                    return parseCount(parseNumber(start, digits, "Invalid count"));
+                }
+                position = start + digits.length();
+                return term(keyNames.applyAsInt(digits), start);
+            }
+            String name = parseName();
+            if (name == null) {
+                throw error(position == source.length() ? "Unexpected end" : "Unexpected '" + source.charAt(position) + "'");
+            }
+            return term(keyNames.applyAsInt(name), start);
+        }
+
+        private void skipDigits() {
+            while (position < source.length() && Character.isDigit(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        private int parseNumber(int start, String message) {
+            return parseNumber(start, source.substring(start, position), message);
+        }
+
+        private int parseNumber(int start, String number, String message) {
+            try {
+                return Integer.parseInt(number);
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error(message);
+            }
+        }
+
+        private Node parseCount(int requiredCount) {
+            expect('(');
+            Node group = new Node(0);
+            group.children = new ArrayList<>();
+            do {
+                group.children.add(parseOr());
+            } while (accept(','));
+            expect(')');
+            group.requiredCount = requiredCount;
+            return group;
+        }
+
+        private Node term(int keyCode, int start) {
+            if (keyCode == 0) {
+                position = start;
+                throw error("Unknown key");
+            }
+            return new Node(keyCode);
+        }
+
+        /**
+         * Parse a name of letters, digits and '_' starting with a letter or '_'.
+         * @return the name, or null if there isn't a name
+         */
+        private String parseName() {
+            skipSpaces();
+            int start = position;
+            if (position < source.length() && (Character.isLetter(source.charAt(position)) || source.charAt(position) == '_')) {
+                position++;
+                while (position < source.length() && (Character.isLetterOrDigit(source.charAt(position)) || source.charAt(position) == '_')) {
+                    position++;
+                }
+                return source.substring(start, position);
+            }
+            return null;
+        }
+
+        private boolean accept(char token) {
+            skipSpaces();
+            if (position < source.length() && source.charAt(position) == token) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char token) {
+            if (!accept(token)) {
+                throw error("Expected '" + token + "'");
+            }
+        }
+
+        private void skipSpaces() {
+            while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + position + " in key expression: " + source);
+        }
+    }
+}
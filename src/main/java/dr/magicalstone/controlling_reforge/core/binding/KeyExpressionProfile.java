@@ -0,0 +1,102 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Key combination expressions of bindings by their descriptions (like {@code key.forward}), which replace the key codes of the bindings.
+ * A profile is loaded from a file in the format of {@link Properties}, a line {@code key.attack=LCONTROL & BUTTON0} for each binding.
+ * Expressions are compiled by a {@link KeyExpressionCompiler} whose cache is kept while profiles are reloaded,
+ * so reloading a profile only compiles the expressions which changed.
+ */
+public class KeyExpressionProfile {
+
+    private final KeyExpressionCompiler compiler;
+
+    /**
+     * Sources of expressions by descriptions of their bindings.
+     */
+    private final Map<String, String> expressions = new HashMap<>();
+
+    /**
+     * @param compiler the compiler to compile and check expressions
+     */
+    public KeyExpressionProfile(KeyExpressionCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * Set the expression of a binding.
+     * @param description description of the binding
+     * @param expression the expression, or null to use the key code of the binding again
+     * @throws IllegalArgumentException if the expression can't be compiled, then the expression of the binding isn't changed
+     */
+    public void setExpression(String description, @Nullable String expression) {
+        if (expression == null) {
+            expressions.remove(description);
+        } else {
+            compiler.compile(expression);
+            expressions.put(description, expression);
+        }
+    }
+
+    /**
+     * Get the expression of a binding.
+     * @param description description of the binding
+     * @return the expression, or null if the binding uses its key code
+     */
+    @Nullable
+    public String getExpression(String description) {
+        return expressions.get(description);
+    }
+
+    /**
+     * Get the compiled expression of a binding.
+     * @param description description of the binding
+     * @return the compiled expression, or null if the binding uses its key code
+     */
+    @Nullable
+    public KeyExpression compile(String description) {
+        String expression = expressions.get(description);
+        return expression == null ? null : compiler.compile(expression);
+    }
+
+    /**
+     * Get how many bindings have expressions.
+     * @return how many bindings have expressions
+     */
+    public int size() {
+        return expressions.size();
+    }
+
+    /**
+     * Replace all expressions by the expressions of a profile. Bindings with empty expressions use their key codes.
+     * An invalid expression doesn't stop loading, its binding uses its key code and the error is returned.
+     * @param reader reads the profile in the format of {@link Properties}
+     * @return messages of invalid expressions by descriptions of their bindings
+     * @throws IOException if the profile can't be read, then no expression is changed
+     */
+    public Map<String, String> load(Reader reader) throws IOException {
+        Properties profile = new Properties();
+        profile.load(reader);
+        expressions.clear();
+        Map<String, String> errors = new TreeMap<>();
+        for (String description : profile.stringPropertyNames()) {
+            String expression = profile.getProperty(description).trim();
+            if (expression.isEmpty()) {
+                continue;
+            }
+            try {
+                setExpression(description, expression);
+            } catch (IllegalArgumentException e) {
+                errors.put(description, e.getMessage());
+            }
+        }
+        return errors;
+    }
+}
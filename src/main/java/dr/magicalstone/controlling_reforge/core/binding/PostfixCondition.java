@@ -0,0 +1,137 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import java.util.Arrays;
+
+/**
+ * A condition of any expression compiled by {@link KeyExpressionCompiler}, as a flat array of nodes in postfix order (children before parents, the root last).
+ * A node is a key term or a group which is true when at least a number of its children are true, and any node can be negated,
+ * so "all of", "any of", "N of" and "not" are all groups. Each group counts its true children,
+ * so a key event walks from its term up to the root, updating one count per group, and stops at the first node whose value doesn't change:
+ * only the affected sub-expression is re-evaluated, in O(d) for the depth d of the term.
+ */
+public class PostfixCondition implements KeyCondition {
+
+    /**
+     * Node is a key term.
+     */
+    static final int TERM = 1;
+
+    /**
+     * Node is negated.
+     */
+    static final int NEGATED = 2;
+
+    /**
+     * Three ints for each node: its parent (-1 for the root), how many children should be true for a group, and flags {@link PostfixCondition#TERM} and {@link PostfixCondition#NEGATED}.
+     */
+    private final int[] program;
+
+    /**
+     * The node of each term slot.
+     */
+    private final int[] termNodes;
+
+    private final int[] initialTrueCounts;
+
+    private final boolean[] initialValues;
+
+    /**
+     * How many children of each group are true.
+     */
+    private final int[] trueCounts;
+
+    /**
+     * The value of each node.
+     */
+    private final boolean[] values;
+
+    private final int root;
+
+    private int heldTermCount;
+
+    /**
+     * Create a condition with all keys released.
+     * @param program three ints for each node, see {@link PostfixCondition#program}, it is not copied
+     * @param termNodes the node of each term slot, it is not copied
+     */
+    PostfixCondition(int[] program, int[] termNodes) {
+        this.program = program;
+        this.termNodes = termNodes;
+        int nodeCount = program.length / 3;
+        this.root = nodeCount - 1;
+        this.trueCounts = new int[nodeCount];
+        this.values = new boolean[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            int flags = program[node * 3 + 2];
+            boolean value = (flags & TERM) != 0 ? false : trueCounts[node] >= program[node * 3 + 1];
+            value ^= (flags & NEGATED) != 0;
+            values[node] = value;
+            int parent = program[node * 3];
+            if (value && parent >= 0) {
+                trueCounts[parent]++;
+            }
+        }
+        this.initialTrueCounts = trueCounts.clone();
+        this.initialValues = values.clone();
+    }
+
+    /**
+     * Create a condition with all keys released, sharing the program of another condition.
+     */
+    PostfixCondition(PostfixCondition prototype) {
+        this.program = prototype.program;
+        this.termNodes = prototype.termNodes;
+        this.root = prototype.root;
+        this.initialTrueCounts = prototype.initialTrueCounts;
+        this.initialValues = prototype.initialValues;
+        this.trueCounts = initialTrueCounts.clone();
+        this.values = initialValues.clone();
+    }
+
+    @Override
+    public int termCount() {
+        return termNodes.length;
+    }
+
+    @Override
+    public boolean setTerm(int slot, boolean pressed) {
+        int node = termNodes[slot];
+        boolean value = pressed != ((program[node * 3 + 2] & NEGATED) != 0);
+        if (values[node] != value) {
+            heldTermCount += pressed ? 1 : -1;
+        }
+        while (values[node] != value) {
+            values[node] = value;
+            int parent = program[node * 3];
+            if (parent < 0) {
+                break;
+            }
+            trueCounts[parent] += value ? 1 : -1;
+            value = trueCounts[parent] >= program[parent * 3 + 1] != ((program[parent * 3 + 2] & NEGATED) != 0);
+            node = parent;
+        }
+        return values[root];
+    }
+
+    @Override
+    public boolean isSatisfied() {
+        return values[root];
+    }
+
+    @Override
+    public boolean hasHeldTerms() {
+        return heldTermCount != 0;
+    }
+
+    @Override
+    public void reset() {
+        heldTermCount = 0;
+        System.arraycopy(initialTrueCounts, 0, trueCounts, 0, trueCounts.length);
+        System.arraycopy(initialValues, 0, values, 0, values.length);
+    }
+
+    @Override
+    public String toString() {
+        return "postfix: {" + values[root] + ", nodes = " + values.length + ", terms = " + Arrays.toString(termNodes) + "}";
+    }
+}
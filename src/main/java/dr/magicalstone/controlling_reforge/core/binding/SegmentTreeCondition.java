@@ -0,0 +1,91 @@
+package dr.magicalstone.controlling_reforge.core.binding;
+
+import dr.magicalstone.controlling_reforge.api.util.BooleanBinaryOperator;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBooleanSegmentTree;
+
+import java.util.Arrays;
+
+/**
+ * A condition combining many terms which are keys or negated keys by an associative operator, like "all of" or "any of" a large group of keys.
+ * Terms are elements of a {@link FixedSizeBooleanSegmentTree} chosen by {@link FixedSizeBooleanSegmentTree#of(BooleanBinaryOperator, boolean[])},
+ * which counts true terms for "and" and "or", so setting a term takes at most O(log(n)) for n terms and checking the condition takes O(1).
+ * Resetting sets all terms by a range and then the negated terms, instead of term by term.
+ */
+public class SegmentTreeCondition implements KeyCondition {
+
+    private final FixedSizeBooleanSegmentTree tree;
+
+    /**
+     * Whether each term is negated, which is the value of each term while no key is held.
+     */
+    private final boolean[] negated;
+
+    /**
+     * Negated term slots and their values while no key is held (all true), for resetting.
+     */
+    private final int[] negatedSlots;
+
+    private final boolean[] negatedValues;
+
+    private int heldTermCount;
+
+    /**
+     * @param operator the operator to combine terms, it must be associative
+     * @param negated whether each term is negated, its length is the term count which should be positive
+     */
+    public SegmentTreeCondition(BooleanBinaryOperator operator, boolean[] negated) {
+        this.negated = negated.clone();
+        this.tree = FixedSizeBooleanSegmentTree.of(operator, negated);
+        int negatedCount = 0;
+        for (boolean termNegated : negated) {
+            negatedCount += termNegated ? 1 : 0;
+        }
+        this.negatedSlots = new int[negatedCount];
+        for (int slot = 0, i = 0; slot < negated.length; slot++) {
+            if (negated[slot]) {
+                negatedSlots[i++] = slot;
+            }
+        }
+        this.negatedValues = new boolean[negatedCount];
+        Arrays.fill(negatedValues, true);
+    }
+
+    @Override
+    public int termCount() {
+        return negated.length;
+    }
+
+    @Override
+    public boolean setTerm(int slot, boolean pressed) {
+        boolean value = pressed != negated[slot];
+        if (tree.getAsBoolean(slot) == value) {
+            return tree.getCombinationAsBoolean();
+        }
+        heldTermCount += pressed ? 1 : -1;
+        return tree.setValueAndGetCombination(slot, value);
+    }
+
+    @Override
+    public boolean isSatisfied() {
+        return tree.getCombinationAsBoolean();
+    }
+
+    @Override
+    public boolean hasHeldTerms() {
+        return heldTermCount != 0;
+    }
+
+    @Override
+    public void reset() {
+        tree.setRange(0, negated.length, false);
+        if (negatedSlots.length != 0) {
+            tree.setValues(negatedSlots, negatedValues);
+        }
+        heldTermCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "segment tree: {" + tree.getCombinationAsBoolean() + ", terms = " + Arrays.toString(tree.toArrayPrimary()) + "}";
+    }
+}
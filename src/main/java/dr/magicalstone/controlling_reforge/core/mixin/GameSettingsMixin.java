@@ -0,0 +1,23 @@
+package dr.magicalstone.controlling_reforge.core.mixin;
+
+import dr.magicalstone.controlling_reforge.core.KeyBindingDispatcher;
+import net.minecraft.client.settings.GameSettings;
+import net.minecraft.client.settings.KeyBinding;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(GameSettings.class)
+public abstract class GameSettingsMixin {
+
+    /**
+     * Polls the key of a binding from the cached input states of the frame instead of LWJGL.
+     */
+    @Inject(method = "isKeyDown", at = @At("HEAD"), cancellable = true)
+    private static void onIsKeyDown(KeyBinding key, CallbackInfoReturnable<Boolean> info) {
+        int keyCode = key.getKeyCode();
+        info.setReturnValue(keyCode != 0 && keyCode < 256 && KeyBindingDispatcher.INSTANCE.getInputCache().isKeyDown(keyCode));
+    }
+
+}
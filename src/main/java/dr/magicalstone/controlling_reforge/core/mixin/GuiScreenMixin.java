@@ -0,0 +1,42 @@
+package dr.magicalstone.controlling_reforge.core.mixin;
+
+import dr.magicalstone.controlling_reforge.core.KeyBindingDispatcher;
+import dr.magicalstone.controlling_reforge.core.binding.InputFrameCache;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.GuiScreen;
+import org.lwjgl.input.Keyboard;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Modifier keys are polled from the cached input states of the frame instead of LWJGL.
+ * Forge's {@code KeyModifier} checks modifiers by these methods, so every {@code KeyBinding.isKeyDown} polls them.
+ */
+@Mixin(GuiScreen.class)
+public abstract class GuiScreenMixin {
+
+    @Inject(method = "isCtrlKeyDown", at = @At("HEAD"), cancellable = true)
+    private static void onIsCtrlKeyDown(CallbackInfoReturnable<Boolean> info) {
+        InputFrameCache inputCache = KeyBindingDispatcher.INSTANCE.getInputCache();
+        if (Minecraft.IS_RUNNING_ON_MAC) {
+            info.setReturnValue(inputCache.isKeyDown(Keyboard.KEY_LMETA) || inputCache.isKeyDown(Keyboard.KEY_RMETA));
+        } else {
+            info.setReturnValue(inputCache.isKeyDown(Keyboard.KEY_LCONTROL) || inputCache.isKeyDown(Keyboard.KEY_RCONTROL));
+        }
+    }
+
+    @Inject(method = "isShiftKeyDown", at = @At("HEAD"), cancellable = true)
+    private static void onIsShiftKeyDown(CallbackInfoReturnable<Boolean> info) {
+        InputFrameCache inputCache = KeyBindingDispatcher.INSTANCE.getInputCache();
+        info.setReturnValue(inputCache.isKeyDown(Keyboard.KEY_LSHIFT) || inputCache.isKeyDown(Keyboard.KEY_RSHIFT));
+    }
+
+    @Inject(method = "isAltKeyDown", at = @At("HEAD"), cancellable = true)
+    private static void onIsAltKeyDown(CallbackInfoReturnable<Boolean> info) {
+        InputFrameCache inputCache = KeyBindingDispatcher.INSTANCE.getInputCache();
+        info.setReturnValue(inputCache.isKeyDown(Keyboard.KEY_LMENU) || inputCache.isKeyDown(Keyboard.KEY_RMENU));
+    }
+
+}
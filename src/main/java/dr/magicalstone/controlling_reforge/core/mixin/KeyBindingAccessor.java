@@ -0,0 +1,29 @@
+package dr.magicalstone.controlling_reforge.core.mixin;
+
+import net.minecraft.client.settings.KeyBinding;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import java.util.Map;
+
+/**
+ * Accessors of private fields of {@link KeyBinding}, so {@link dr.magicalstone.controlling_reforge.core.KeyBindingDispatcher}
+ * can set states of bindings instead of vanilla.
+ */
+@Mixin(KeyBinding.class)
+public interface KeyBindingAccessor {
+
+    @Accessor("KEYBIND_ARRAY")
+    static Map<String, KeyBinding> getKeybindArray() {
+        throw new AssertionError();
+    }
+
+    @Accessor("pressed")
+    void setPressed(boolean pressed);
+
+    @Accessor("pressTime")
+    int getPressTime();
+
+    @Accessor("pressTime")
+    void setPressTime(int pressTime);
+}
@@ -1,5 +1,6 @@
 package dr.magicalstone.controlling_reforge.core.mixin;
 
+import dr.magicalstone.controlling_reforge.core.KeyBindingDispatcher;
 import net.minecraft.client.settings.KeyBinding;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -12,22 +13,31 @@ public abstract class KeyBindingMixin {
 
     @Inject(method = "onTick", at = @At(value = "HEAD"), cancellable = true)
     private static void onOnTick(int keyCode, CallbackInfo info) {
-        //TODO: Patch Vanilla KeyBinding features and implement a more free KeyBinding system.
+        KeyBindingDispatcher.INSTANCE.onTick(keyCode);
+        info.cancel();
     }
 
     @Inject(method = "setKeyBindState", at = @At(value = "HEAD"), cancellable = true)
     private static void onSetKeyBindState(int keyCode, boolean pressed, CallbackInfo info) {
-        //TODO: Patch Vanilla KeyBinding features and implement a more free KeyBinding system.
+        KeyBindingDispatcher.INSTANCE.onKeyEvent(keyCode, pressed);
+        info.cancel();
     }
 
     @Inject(method = "updateKeyBindState", at = @At("HEAD"), cancellable = true)
     private static void onUpdateKeyBindingState(CallbackInfo info) {
-        //TODO: Patch Vanilla KeyBinding features and implement a more free KeyBinding system.
+        KeyBindingDispatcher.INSTANCE.onUpdateKeyBindState();
+        info.cancel();
     }
 
     @Inject(method = "unPressAllKeys", at = @At("HEAD"), cancellable = true)
     private static void onUnPressAllKeys(CallbackInfo info) {
-        //TODO: Patch Vanilla KeyBinding features and implement a more free KeyBinding system.
+        KeyBindingDispatcher.INSTANCE.onUnPressAllKeys();
+        info.cancel();
+    }
+
+    @Inject(method = "resetKeyBindingArrayAndHash", at = @At("TAIL"))
+    private static void onResetKeyBindingArrayAndHash(CallbackInfo info) {
+        KeyBindingDispatcher.INSTANCE.invalidate();
     }
 
 }
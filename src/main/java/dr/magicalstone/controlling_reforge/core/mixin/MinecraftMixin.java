@@ -0,0 +1,21 @@
+package dr.magicalstone.controlling_reforge.core.mixin;
+
+import dr.magicalstone.controlling_reforge.core.KeyBindingDispatcher;
+import net.minecraft.client.Minecraft;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(Minecraft.class)
+public abstract class MinecraftMixin {
+
+    /**
+     * LWJGL updates input states in {@code Display.update}, so cached input states are only valid until then.
+     */
+    @Inject(method = "updateDisplay", at = @At("TAIL"))
+    private void onUpdateDisplay(CallbackInfo info) {
+        KeyBindingDispatcher.INSTANCE.onNewFrame();
+    }
+
+}
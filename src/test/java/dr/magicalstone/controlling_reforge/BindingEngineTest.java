@@ -0,0 +1,197 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.BindingEngine;
+import dr.magicalstone.controlling_reforge.core.binding.BindingListener;
+import dr.magicalstone.controlling_reforge.core.binding.InputSnapshot;
+import dr.magicalstone.controlling_reforge.core.binding.KeyCountCondition;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpressionCompiler;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Compares {@link BindingEngine} with bindings evaluated from scratch after each key event,
+ * and checks the listener is told exactly the bindings whose states changed.
+ * Key events are single keys, resynchronizations with random snapshots and releasing all keys.
+ * Bindings include conditions satisfied while no key is held, like 0 of n keys and negated expressions,
+ * which are released by releasing all keys until they are evaluated again by a resynchronization or a key event of their keys.
+ */
+public class BindingEngineTest {
+
+    /**
+     * Key code of each of 40 keys, mouse buttons and keyboard keys.
+     */
+    private static int keyCodeOf(int key) {
+        return key < 16 ? key + InputSnapshot.MOUSE_KEY_CODE_OFFSET : key - 15;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        for (int bindingCount : new int[]{1, 5, 50, 500}) {
+            int[][] bindingKeyCodes = new int[bindingCount][];
+            int[] requiredCounts = new int[bindingCount];
+            boolean[] listenedStates = new boolean[bindingCount];
+            int[] ticks = new int[bindingCount];
+            BindingEngine engine = new BindingEngine(new BindingListener() {
+                @Override
+                public void onBindingStateChanged(int binding, boolean pressed) {
+                    if (listenedStates[binding] == pressed) {
+                        throw new AssertionError("Binding " + binding + " is told " + pressed + " twice.");
+                    }
+                    listenedStates[binding] = pressed;
+                }
+
+                @Override
+                public void onBindingTicked(int binding) {
+                    ticks[binding]++;
+                }
+            });
+            for (int binding = 0; binding < bindingCount; binding++) {
+                int[] keyCodes = new int[random.nextInt(4)];
+                for (int slot = 0; slot < keyCodes.length; slot++) {
+                    keyCodes[slot] = keyCodeOf(random.nextInt(40));
+                }
+                bindingKeyCodes[binding] = keyCodes;
+                requiredCounts[binding] = random.nextInt(keyCodes.length + 1);
+                engine.addBinding(new KeyCountCondition(keyCodes.length, requiredCounts[binding]), keyCodes);
+            }
+            boolean[] keys = new boolean[40];
+            boolean[] released = new boolean[bindingCount];
+            for (int round = 0; round < 5000; round++) {
+                int key = random.nextInt(40);
+                boolean keyPressed = random.nextBoolean();
+                boolean ticked = false;
+                if (round % 1000 == 999) {
+                    engine.releaseAll();
+                    Arrays.fill(keys, false);
+                    Arrays.fill(released, true);
+                } else if (round % 10 == 9) {
+                    Arrays.fill(released, false);
+                    InputSnapshot sample = new InputSnapshot();
+                    for (int changedKey = 0; changedKey < keys.length; changedKey++) {
+                        if (random.nextInt(8) == 0) {
+                            keys[changedKey] = !keys[changedKey];
+                        }
+                        sample.setKeyDown(keyCodeOf(changedKey), keys[changedKey]);
+                    }
+                    engine.resync(sample);
+                    if (!engine.getKeyStates().equals(sample)) {
+                        throw new AssertionError("Key states should be the sample after resync.");
+                    }
+                } else {
+                    keys[key] = keyPressed;
+                    engine.setKeyState(keyCodeOf(key), keyPressed);
+                    ticked = keyPressed;
+                    for (int binding = 0; binding < bindingCount; binding++) {
+                        for (int keyCode : bindingKeyCodes[binding]) {
+                            released[binding] &= keyCode != keyCodeOf(key);
+                        }
+                    }
+                }
+                int[] expectedTicks = ticks.clone();
+                if (ticked) {
+                    engine.tick(keyCodeOf(key));
+                }
+                int expectedActiveCount = 0;
+                for (int binding = 0; binding < bindingCount; binding++) {
+                    int pressedCount = 0;
+                    int keySlots = 0;
+                    for (int keyCode : bindingKeyCodes[binding]) {
+                        pressedCount += keys[keyCode < 0 ? keyCode - InputSnapshot.MOUSE_KEY_CODE_OFFSET : keyCode + 15] ? 1 : 0;
+                        keySlots += keyCode == keyCodeOf(key) ? 1 : 0;
+                    }
+                    expectedActiveCount += pressedCount != 0 ? 1 : 0;
+                    boolean expected = pressedCount >= requiredCounts[binding] && !released[binding];
+                    if (expected && ticked) {
+                        expectedTicks[binding] += keySlots;
+                    }
+                    if (engine.isPressed(binding) != expected || listenedStates[binding] != expected
+                            || ticks[binding] != expectedTicks[binding]) {
+                        throw new AssertionError("Binding " + binding + " of " + bindingCount + " at round " + round
+                                + ": expected " + expected + ", got " + engine.isPressed(binding));
+                    }
+                }
+                if (engine.activeBindingCount() != expectedActiveCount) {
+                    throw new AssertionError("Expected " + expectedActiveCount + " active bindings of " + bindingCount + " at round " + round
+                            + ", got " + engine.activeBindingCount());
+                }
+            }
+        }
+        checkNegatedExpressions(random);
+        System.out.println("BindingEngineTest passed.");
+    }
+
+    /**
+     * Compares bindings of expressions with negations, most of which are satisfied while no key is held, with the expressions evaluated in Java.
+     * Keys K0 to K5 are key codes 1 to 6.
+     */
+    private static void checkNegatedExpressions(Random random) {
+        String[] sources = {"!K0", "0 of (K0, K1)", "K0 | !K0", "!(K0 & K1)", "K2 & !K3", "!K1 | K4", "(K0 | K1) & !(K2 | K5)", "K3"};
+        List<Predicate<boolean[]>> expressions = Arrays.asList(
+                keys -> !keys[0],
+                keys -> true,
+                keys -> true,
+                keys -> !(keys[0] && keys[1]),
+                keys -> keys[2] && !keys[3],
+                keys -> !keys[1] || keys[4],
+                keys -> (keys[0] || keys[1]) && !(keys[2] || keys[5]),
+                keys -> keys[3]
+        );
+        KeyExpressionCompiler compiler = new KeyExpressionCompiler(name -> Integer.parseInt(name.substring(1)) + 1);
+        boolean[] listenedStates = new boolean[sources.length];
+        BindingEngine engine = new BindingEngine(new BindingListener() {
+            @Override
+            public void onBindingStateChanged(int binding, boolean pressed) {
+                if (listenedStates[binding] == pressed) {
+                    throw new AssertionError("Binding " + sources[binding] + " is told " + pressed + " twice.");
+                }
+                listenedStates[binding] = pressed;
+            }
+
+            @Override
+            public void onBindingTicked(int binding) {
+            }
+        });
+        for (String source : sources) {
+            engine.addBinding(compiler.compile(source));
+        }
+        engine.build();
+        boolean[] keys = new boolean[6];
+        boolean[] released = new boolean[sources.length];
+        for (int round = 0; round < 2000; round++) {
+            if (round != 0) {
+                if (round % 100 == 99 || round % 100 == 33) {
+                    engine.releaseAll();
+                    Arrays.fill(keys, false);
+                    Arrays.fill(released, true);
+                } else if (round % 10 == 9) {
+                    Arrays.fill(released, false);
+                    InputSnapshot sample = new InputSnapshot();
+                    for (int key = 0; key < keys.length; key++) {
+                        keys[key] = random.nextBoolean();
+                        sample.setKeyDown(key + 1, keys[key]);
+                    }
+                    engine.resync(sample);
+                } else {
+                    int key = random.nextInt(keys.length);
+                    keys[key] = random.nextBoolean();
+                    engine.setKeyState(key + 1, keys[key]);
+                    for (int binding = 0; binding < sources.length; binding++) {
+                        for (int keyCode : compiler.compile(sources[binding]).termKeyCodes()) {
+                            released[binding] &= keyCode != key + 1;
+                        }
+                    }
+                }
+            }
+            for (int binding = 0; binding < sources.length; binding++) {
+                boolean expected = expressions.get(binding).test(keys) && !released[binding];
+                if (engine.isPressed(binding) != expected || listenedStates[binding] != expected) {
+                    throw new AssertionError(sources[binding] + " at round " + round + ": expected " + expected
+                            + ", got " + engine.isPressed(binding) + " and told " + listenedStates[binding]);
+                }
+            }
+        }
+    }
+}
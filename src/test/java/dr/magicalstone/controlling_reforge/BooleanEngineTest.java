@@ -0,0 +1,117 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.BooleanBinaryOperator;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBitPackedBooleanSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBooleanSegmentTree;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Compares the engine chosen by {@link FixedSizeBooleanSegmentTree#of(BooleanBinaryOperator, boolean[])} and the bit-packed engine with the generic engine
+ * for all associative operators which {@link TruthTest} prints.
+ * maxRight and minLeft are compared with a linear scan whenever the predicate happens to be monotone for the scanned segments,
+ * also for sub lists of bit-packed engines which search only their own bits.
+ */
+public class BooleanEngineTest {
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        for (int truthTable = 0; truthTable < 16; truthTable++) {
+            if (!BooleanBinaryOperator.isAssociative(truthTable)) {
+                continue;
+            }
+            int finalTruthTable = truthTable;
+            BooleanBinaryOperator operator = (left, right) -> BooleanBinaryOperator.applyTruthTable(finalTruthTable, left, right);
+            for (int size : new int[]{1, 2, 3, 63, 64, 65, 200, 1000}) {
+                boolean[] allElements = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    allElements[i] = random.nextBoolean();
+                }
+                compare(random, truthTable, FixedSizeBooleanSegmentTree.of(operator, allElements), new FixedSizeBooleanSegmentTree(operator, allElements));
+                compare(random, truthTable, new FixedSizeBitPackedBooleanSegmentTree(operator, allElements), new FixedSizeBooleanSegmentTree(operator, allElements));
+            }
+            System.out.println(Integer.toBinaryString(truthTable + 0b10000).substring(1) + ": ok");
+        }
+    }
+
+    private static void compare(Random random, int truthTable, FixedSizeBooleanSegmentTree tree, FixedSizeBooleanSegmentTree expectedTree) {
+        int size = tree.size();
+        for (int round = 0; round < 2000; round++) {
+            boolean combination;
+            boolean expectedCombination;
+            switch (random.nextInt(3)) {
+                case 0: {
+                    int index = random.nextInt(size);
+                    boolean value = random.nextBoolean();
+                    combination = tree.setValueAndGetCombination(index, value);
+                    expectedCombination = expectedTree.setValueAndGetCombination(index, value);
+                    break;
+                }
+                case 1: {
+                    int[] indexes = {random.nextInt(size), random.nextInt(size), random.nextInt(size)};
+                    boolean[] values = {random.nextBoolean(), random.nextBoolean(), random.nextBoolean()};
+                    combination = tree.setValues(indexes, values);
+                    expectedCombination = expectedTree.setValues(indexes, values);
+                    break;
+                }
+                default: {
+                    int leftBorder = random.nextInt(size);
+                    int rightBorder = leftBorder + 1 + random.nextInt(size - leftBorder);
+                    boolean value = random.nextBoolean();
+                    combination = tree.setRange(leftBorder, rightBorder, value);
+                    expectedCombination = expectedTree.setRange(leftBorder, rightBorder, value);
+                }
+            }
+            int leftBorder = random.nextInt(size);
+            int rightBorder = leftBorder + 1 + random.nextInt(size - leftBorder);
+            if (combination != expectedCombination
+                    || !tree.getCombination().equals(expectedTree.getCombination())
+                    || !tree.getCombination(leftBorder, rightBorder).equals(expectedTree.getCombination(leftBorder, rightBorder))
+                    || !Arrays.equals(tree.toArrayPrimary(), expectedTree.toArrayPrimary())
+                    || !searchesMatch(random, tree, expectedTree)
+                    || tree instanceof FixedSizeBitPackedBooleanSegmentTree
+                    && !searchesMatch(random, tree.subList(leftBorder, rightBorder), expectedTree.subList(leftBorder, rightBorder))) {
+                throw new AssertionError("Engines differ for truth table " + Integer.toBinaryString(truthTable + 0b10000).substring(1) + " of size " + size + ": " + tree + ", expected " + expectedTree);
+            }
+        }
+    }
+
+    /**
+     * Compare maxRight and minLeft from a random border with a linear scan of the expected tree, unless the predicate isn't monotone there.
+     */
+    private static boolean searchesMatch(Random random, FixedSizeBooleanSegmentTree tree, FixedSizeBooleanSegmentTree expectedTree) {
+        int size = tree.size();
+        Predicate<Boolean> predicate = random.nextBoolean() ? combination -> combination : combination -> !combination;
+        int border = random.nextInt(size + 1);
+        int expectedMaxRight = border;
+        boolean unsatisfied = false;
+        boolean monotone = true;
+        for (int rightBorder = border + 1; rightBorder <= size; rightBorder++) {
+            if (!predicate.test(expectedTree.getCombination(border, rightBorder))) {
+                unsatisfied = true;
+            } else if (unsatisfied) {
+                monotone = false;
+            } else {
+                expectedMaxRight = rightBorder;
+            }
+        }
+        if (monotone && tree.maxRight(border, predicate) != expectedMaxRight) {
+            return false;
+        }
+        int expectedMinLeft = border;
+        unsatisfied = false;
+        monotone = true;
+        for (int leftBorder = border - 1; leftBorder >= 0; leftBorder--) {
+            if (!predicate.test(expectedTree.getCombination(leftBorder, border))) {
+                unsatisfied = true;
+            } else if (unsatisfied) {
+                monotone = false;
+            } else {
+                expectedMinLeft = leftBorder;
+            }
+        }
+        return !monotone || tree.minLeft(border, predicate) == expectedMinLeft;
+    }
+
+}
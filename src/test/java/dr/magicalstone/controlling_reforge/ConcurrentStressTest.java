@@ -0,0 +1,84 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.ConcurrentIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeBottomUpIntegerSegmentTree;
+import dr.magicalstone.controlling_reforge.api.util.FixedSizeIntegerSegmentTree;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One writer moves amounts between two elements by {@link ConcurrentIntegerSegmentTree#setValues(int[], long[])},
+ * so the sum of all elements never changes. Readers check the sum of the whole tree and of both halves of it.
+ * Run with the count of readers and the seconds to run as arguments.
+ */
+public class ConcurrentStressTest {
+    private static final int SIZE = 1000;
+    private static final long TOTAL = SIZE * 100L;
+
+    public static void main(String[] args) throws InterruptedException {
+        int readerCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        for (boolean bottomUp : new boolean[]{false, true}) {
+            long[] allElements = new long[SIZE];
+            Arrays.fill(allElements, 100);
+            FixedSizeIntegerSegmentTree tree = bottomUp ? new FixedSizeBottomUpIntegerSegmentTree(Long::sum, 0, allElements) : new FixedSizeIntegerSegmentTree(Long::sum, allElements);
+            ConcurrentIntegerSegmentTree concurrentTree = new ConcurrentIntegerSegmentTree(tree);
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong failures = new AtomicLong();
+            AtomicLong reads = new AtomicLong();
+            Thread[] readers = new Thread[readerCount];
+            for (int i = 0; i < readerCount; i++) {
+                long seed = i;
+                readers[i] = new Thread(() -> {
+                    Random random = new Random(seed);
+                    long count = 0;
+                    while (running.get()) {
+                        int middle = 1 + random.nextInt(SIZE - 1);
+                        long left = concurrentTree.getCombination(0, middle);
+                        long right = concurrentTree.getCombination(middle, SIZE);
+                        // The two halves are read separately, so only each read itself is consistent.
+                        if (concurrentTree.getCombination() != TOTAL || left < 0 || right < 0 || concurrentTree.get(random.nextInt(SIZE)) < 0) {
+                            failures.incrementAndGet();
+                        }
+                        count++;
+                    }
+                    reads.addAndGet(count);
+                });
+                readers[i].start();
+            }
+            Random random = new Random(-1);
+            long[] values = new long[2];
+            int[] indexes = new int[2];
+            long[] mirror = allElements.clone();
+            long writes = 0;
+            long end = System.nanoTime() + seconds * 1_000_000_000L;
+            while (System.nanoTime() < end) {
+                indexes[0] = random.nextInt(SIZE);
+                do {
+                    indexes[1] = random.nextInt(SIZE);
+                } while (indexes[1] == indexes[0]);
+                long amount = mirror[indexes[0]] == 0 ? 0 : 1 + random.nextInt((int) mirror[indexes[0]]);
+                values[0] = mirror[indexes[0]] -= amount;
+                values[1] = mirror[indexes[1]] += amount;
+                concurrentTree.setValues(indexes, values);
+                writes++;
+            }
+            running.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            for (int i = 0; i < SIZE; i++) {
+                if (concurrentTree.get(i) != mirror[i]) {
+                    failures.incrementAndGet();
+                }
+            }
+            System.out.println(tree.getClass().getSimpleName() + ": " + writes + " writes, " + reads.get() + " reads, " + failures.get() + " failures");
+            if (failures.get() != 0) {
+                throw new AssertionError("Readers saw inconsistent values.");
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.InputFrameCache;
+import dr.magicalstone.controlling_reforge.core.binding.InputSnapshot;
+
+import java.util.Random;
+
+/**
+ * Checks {@link InputFrameCache} returns the live states when they only change between frames, polls each key at most once per frame,
+ * and finds states changed in a frame while verifying.
+ */
+public class InputFrameCacheTest {
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        boolean[] live = new boolean[InputSnapshot.SIZE];
+        InputFrameCache cache = new InputFrameCache(keyCode -> {
+            int bit = InputSnapshot.bitOf(keyCode);
+            return bit >= 0 && live[bit];
+        });
+        for (int frame = 0; frame < 2000; frame++) {
+            for (int i = 0; i < 8; i++) {
+                int bit = random.nextInt(InputSnapshot.SIZE);
+                live[bit] = !live[bit];
+            }
+            cache.newFrame();
+            long livePollCount = cache.getLivePollCount();
+            boolean[] polled = new boolean[InputSnapshot.SIZE];
+            int distinctCount = 0;
+            for (int query = 0; query < 300; query++) {
+                int bit = random.nextInt(40) * 7 % InputSnapshot.SIZE;
+                distinctCount += polled[bit] ? 0 : 1;
+                polled[bit] = true;
+                if (cache.isKeyDown(InputSnapshot.keyCodeOf(bit)) != live[bit]) {
+                    throw new AssertionError("Key " + InputSnapshot.keyCodeOf(bit) + " at frame " + frame + " should be " + live[bit]);
+                }
+            }
+            if (cache.getLivePollCount() - livePollCount != distinctCount) {
+                throw new AssertionError("Each key should be polled once at frame " + frame);
+            }
+            if (frame % 100 == 0) {
+                InputSnapshot snapshot = cache.capture();
+                for (int bit = 0; bit < InputSnapshot.SIZE; bit++) {
+                    if (snapshot.isKeyDown(InputSnapshot.keyCodeOf(bit)) != live[bit]) {
+                        throw new AssertionError("Captured key " + InputSnapshot.keyCodeOf(bit) + " at frame " + frame + " should be " + live[bit]);
+                    }
+                }
+                if (cache.getLivePollCount() - livePollCount != InputSnapshot.SIZE) {
+                    throw new AssertionError("Capturing should poll each key once at frame " + frame);
+                }
+            }
+        }
+        if (cache.isKeyDown(InputSnapshot.KEYBOARD_SIZE) || cache.isKeyDown(-101)) {
+            throw new AssertionError("Keys out of snapshots should be polled live.");
+        }
+        cache.setVerifying(true);
+        cache.isKeyDown(30);
+        live[30] = !live[30];
+        if (cache.isKeyDown(30) != live[30] || cache.getMismatchCount() != 1) {
+            throw new AssertionError("A verifying cache should return and count a state changed in the frame.");
+        }
+        System.out.println("InputFrameCacheTest passed.");
+    }
+}
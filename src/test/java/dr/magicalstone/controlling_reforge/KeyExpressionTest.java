@@ -0,0 +1,175 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.KeyCondition;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpression;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpressionCompiler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares conditions of random expressions compiled by {@link KeyExpressionCompiler} with the expressions evaluated from scratch after each key event
+ * (including whether they have held terms),
+ * and checks the engines chosen for some expressions.
+ */
+public class KeyExpressionTest {
+
+    private static final int KEY_COUNT = 12;
+
+    public static void main(String[] args) {
+        KeyExpressionCompiler compiler = new KeyExpressionCompiler(name -> name.startsWith("K") ? Integer.parseInt(name.substring(1)) + 1 : 0);
+        checkEngine(compiler, "K1", KeyExpression.Engine.BIT_MASK);
+        checkEngine(compiler, "K1 & (K2 & !K3)", KeyExpression.Engine.BIT_MASK);
+        checkEngine(compiler, "!(K1 | K2 | K3)", KeyExpression.Engine.BIT_MASK);
+        checkEngine(compiler, "2 of (K1, K2, #-100)", KeyExpression.Engine.BIT_MASK);
+        checkEngine(compiler, "K1 & (K2 | K3)", KeyExpression.Engine.POSTFIX);
+        StringBuilder wideAnd = new StringBuilder("K0");
+        for (int i = 1; i < 100; i++) {
+            wideAnd.append(" & K").append(i);
+        }
+        checkEngine(compiler, wideAnd.toString(), KeyExpression.Engine.SEGMENT_TREE);
+        KeyCondition wideCondition = compiler.compile(wideAnd.toString()).newCondition();
+        for (int slot = 0; slot < 100; slot++) {
+            if (wideCondition.setTerm(slot, true) != (slot == 99)) {
+                throw new AssertionError("All of 100 keys should be satisfied only after the last key.");
+            }
+        }
+        wideCondition.reset();
+        if (wideCondition.isSatisfied() || wideCondition.setTerm(0, true)) {
+            throw new AssertionError("All of 100 keys should not be satisfied after reset.");
+        }
+        KeyCondition noneCondition = compiler.compile("!(" + wideAnd.toString().replace('&', '|') + ")").newCondition();
+        if (!noneCondition.isSatisfied() || noneCondition.setTerm(5, true) || !noneCondition.hasHeldTerms()) {
+            throw new AssertionError("None of 100 keys should be satisfied only while no key is held.");
+        }
+        noneCondition.reset();
+        if (!noneCondition.isSatisfied() || noneCondition.hasHeldTerms()) {
+            throw new AssertionError("None of 100 keys should be satisfied after reset.");
+        }
+        checkEngine(compiler, "50 of (" + wideAnd.toString().replace('&', ',') + ")", KeyExpression.Engine.POSTFIX);
+        for (String invalid : new String[]{"", "K1 &", "(K1", "K1 K2", "X", "0", "2 of K1", "-", "-100", "-1 of (K1)", "#", "#K1", "#0", "K1 | )"}) {
+            try {
+                compiler.compile(invalid);
+                throw new AssertionError("\"" + invalid + "\" should not compile.");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        checkNumberRow();
+        if (compiler.compile("K1 & K2") != compiler.compile("K1 & K2")) {
+            throw new AssertionError("Compiled expressions should be cached.");
+        }
+
+        Random random = new Random(0);
+        for (int round = 0; round < 3000; round++) {
+            StringBuilder source = new StringBuilder();
+            Expression expression = randomExpression(random, random.nextInt(4), source);
+            KeyExpression compiled = compiler.compile(source.toString());
+            KeyCondition condition = compiled.newCondition();
+            int[] termKeyCodes = compiled.termKeyCodes();
+            boolean[] keys = new boolean[KEY_COUNT];
+            for (int event = 0; event < 200; event++) {
+                boolean satisfied;
+                if (event % 50 == 49) {
+                    condition.reset();
+                    keys = new boolean[KEY_COUNT];
+                    satisfied = condition.isSatisfied();
+                } else {
+                    int key = random.nextInt(KEY_COUNT);
+                    boolean pressed = random.nextBoolean();
+                    keys[key] = pressed;
+                    satisfied = condition.isSatisfied();
+                    for (int slot = 0; slot < termKeyCodes.length; slot++) {
+                        if (termKeyCodes[slot] == key + 1) {
+                            satisfied = condition.setTerm(slot, pressed);
+                        }
+                    }
+                }
+                boolean anyTermHeld = false;
+                for (int keyCode : termKeyCodes) {
+                    anyTermHeld |= keys[keyCode - 1];
+                }
+                if (condition.hasHeldTerms() != anyTermHeld) {
+                    throw new AssertionError(compiled + " at event " + event + ": held terms should be " + anyTermHeld);
+                }
+                if (satisfied != expression.evaluate(keys) || condition.isSatisfied() != satisfied) {
+                    throw new AssertionError(compiled + " at event " + event + ": expected " + expression.evaluate(keys) + ", got " + satisfied);
+                }
+            }
+        }
+        System.out.println("KeyExpressionTest passed.");
+    }
+
+    /**
+     * Keys of the number row are named "1" to "0" like LWJGL does, with key codes 2 to 11, so a leading digit is a key name unless it is a count
+     * and raw key codes need '#'.
+     */
+    private static void checkNumberRow() {
+        KeyExpressionCompiler compiler = new KeyExpressionCompiler(name -> name.length() == 1 && Character.isDigit(name.charAt(0)) ? (name.charAt(0) - '0' + 9) % 10 + 2 : 0);
+        checkTerms(compiler, "1 & 2", 2, 3);
+        checkTerms(compiler, "0 | #2", 11, 2);
+        checkTerms(compiler, "2 of (1, 2, #-100)", 2, 3, -100);
+        checkTerms(compiler, "1 of (0)", 11);
+    }
+
+    private static void checkTerms(KeyExpressionCompiler compiler, String source, int... keyCodes) {
+        int[] termKeyCodes = compiler.compile(source).termKeyCodes().clone();
+        int[] expectedKeyCodes = keyCodes.clone();
+        Arrays.sort(termKeyCodes);
+        Arrays.sort(expectedKeyCodes);
+        if (!Arrays.equals(termKeyCodes, expectedKeyCodes)) {
+            throw new AssertionError("\"" + source + "\" should have key codes " + Arrays.toString(keyCodes) + ", got " + Arrays.toString(compiler.compile(source).termKeyCodes()));
+        }
+    }
+
+    private static void checkEngine(KeyExpressionCompiler compiler, String source, KeyExpression.Engine engine) {
+        KeyExpression expression = compiler.compile(source);
+        if (expression.engine() != engine) {
+            throw new AssertionError(expression + " should use " + engine);
+        }
+    }
+
+    private interface Expression {
+        boolean evaluate(boolean[] keys);
+    }
+
+    private static Expression randomExpression(Random random, int depth, StringBuilder source) {
+        int kind = depth == 0 ? 0 : random.nextInt(5);
+        switch (kind) {
+            case 0: {
+                int key = random.nextInt(KEY_COUNT);
+                source.append('K').append(key);
+                return keys -> keys[key];
+            }
+            case 1: {
+                source.append('!');
+                source.append('(');
+                Expression operand = randomExpression(random, depth - 1, source);
+                source.append(')');
+                return keys -> !operand.evaluate(keys);
+            }
+            default: {
+                int operandCount = 1 + random.nextInt(4);
+                Expression[] operands = new Expression[operandCount];
+                int requiredCount = kind == 2 ? operandCount : kind == 3 ? 1 : random.nextInt(operandCount + 2);
+                if (kind == 4) {
+                    source.append(requiredCount).append(" of ");
+                }
+                source.append('(');
+                for (int i = 0; i < operandCount; i++) {
+                    if (i > 0) {
+                        source.append(kind == 2 ? " & " : kind == 3 ? " | " : ", ");
+                    }
+                    operands[i] = randomExpression(random, depth - 1, source);
+                }
+                source.append(')');
+                return keys -> {
+                    int trueCount = 0;
+                    for (Expression operand : operands) {
+                        trueCount += operand.evaluate(keys) ? 1 : 0;
+                    }
+                    return trueCount >= requiredCount;
+                };
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+/**
+ * Checks that the primitive accessors and iterators of primitive segment trees allocate nothing per query once they are compiled.
+ * Values are out of the cache of {@link Long#valueOf(long)}, so any boxing on the hot path would allocate.
+ */
+public class PrimitiveAllocationTest {
+
+    private static final int SIZE = 4096;
+
+    private static final int ROUNDS = 1_000_000;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        long[] longElements = new long[SIZE];
+        double[] doubleElements = new double[SIZE];
+        boolean[] booleanElements = new boolean[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            longElements[i] = 1_000_000 + random.nextInt(1_000_000);
+            doubleElements[i] = random.nextDouble();
+            booleanElements[i] = random.nextBoolean();
+        }
+        int[] leftBorders = new int[SIZE];
+        int[] rightBorders = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            leftBorders[i] = random.nextInt(SIZE);
+            rightBorders[i] = leftBorders[i] + 1 + random.nextInt(SIZE - leftBorders[i]);
+        }
+        FixedSizeIntegerSegmentTree[] longTrees = {
+                new FixedSizeIntegerSegmentTree(Long::sum, LongRepeatOperator.SUM, longElements),
+                new FixedSizeBottomUpIntegerSegmentTree(Long::sum, LongRepeatOperator.SUM, 0, longElements),
+                FixedSizeFenwickIntegerSegmentTree.sum(longElements),
+                new FixedSizeSparseTableIntegerSegmentTree(Math::max, longElements),
+                new FixedSizeIntegerSegmentTree(Long::sum, LongRepeatOperator.SUM, longElements).subList(1, SIZE)
+        };
+        FixedSizeBooleanSegmentTree[] booleanTrees = {
+                new FixedSizeBooleanSegmentTree((left, right) -> left ^ right, booleanElements),
+                new FixedSizeBottomUpBooleanSegmentTree((left, right) -> left ^ right, false, booleanElements),
+                new FixedSizeBitPackedBooleanSegmentTree((left, right) -> left ^ right, booleanElements),
+                FixedSizeBooleanSegmentTree.of((left, right) -> left ^ right, booleanElements)
+        };
+        FixedSizeDoubleSegmentTree doubleTree = FixedSizeDoubleSegmentTree.sum(doubleElements);
+        WatchedBooleanSegmentTree watchedBooleanTree = new WatchedBooleanSegmentTree(new FixedSizeBooleanSegmentTree((left, right) -> left || right, new boolean[SIZE]));
+        WatchedIntegerSegmentTree watchedLongTree = new WatchedIntegerSegmentTree(new FixedSizeIntegerSegmentTree(Math::max, longElements));
+        for (int i = 0; i < 8; i++) {
+            watchedBooleanTree.watch(i * SIZE / 8, (i + 1) * SIZE / 8, (watch, combination) -> sink += watch);
+            watchedLongTree.watch(i * SIZE / 8, (i + 1) * SIZE / 8, (watch, lastCombination, combination) -> sink += combination - lastCombination);
+        }
+        watchedBooleanTree.watch((watch, combination) -> sink++);
+        watchedLongTree.watch((watch, lastCombination, combination) -> sink++);
+        boolean failed = false;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            boolean last = attempt == 2;
+            for (FixedSizeIntegerSegmentTree tree : longTrees) {
+                failed |= check(last, tree.getClass().getSimpleName() + " primitive", measure(() -> {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        int i = round & (SIZE - 1);
+                        int right = Math.min(rightBorders[i], tree.size());
+                        int left = Math.min(leftBorders[i], right - 1);
+                        sink += tree.setValueAndGetCombination(left, 1_000_000L + round);
+                        sink += tree.getCombinationAsLong(left, right);
+                        sink += tree.getAsLong(left);
+                        sink += tree.getCombinationAsLong();
+                    }
+                }));
+                failed |= check(last, tree.getClass().getSimpleName() + " iterator", measure(() -> {
+                    int traversals = ROUNDS / tree.size() + 1;
+                    for (int traversal = 0; traversal < traversals; traversal++) {
+                        PrimitiveIterator.OfLong iterator = tree.longIterator();
+                        while (iterator.hasNext()) {
+                            sink += iterator.nextLong();
+                        }
+                    }
+                }));
+            }
+            for (FixedSizeBooleanSegmentTree tree : booleanTrees) {
+                failed |= check(last, tree.getClass().getSimpleName() + " primitive", measure(() -> {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        int i = round & (SIZE - 1);
+                        sink += tree.setValueAndGetCombination(leftBorders[i], (round & 1) != 0) ? 1 : 0;
+                        sink += tree.getCombinationAsBoolean(leftBorders[i], rightBorders[i]) ? 1 : 0;
+                        sink += tree.getAsBoolean(leftBorders[i]) ? 1 : 0;
+                        sink += tree.getCombinationAsBoolean() ? 1 : 0;
+                    }
+                }));
+            }
+            failed |= check(last, "double primitive", measure(() -> {
+                for (int round = 0; round < ROUNDS; round++) {
+                    int i = round & (SIZE - 1);
+                    doubleTree.setValueAndGetCombination(leftBorders[i], round * 0.5);
+                    sink += (long) doubleTree.getCombinationAsDouble(leftBorders[i], rightBorders[i]);
+                    sink += (long) doubleTree.getAsDouble(leftBorders[i]);
+                    sink += (long) doubleTree.getCombinationAsDouble();
+                }
+            }));
+            failed |= check(last, "watched primitive", measure(() -> {
+                for (int round = 0; round < ROUNDS; round++) {
+                    int i = round & (SIZE - 1);
+                    sink += watchedBooleanTree.setValueAndGetChanged(leftBorders[i], (round & 1) != 0) ? 1 : 0;
+                    sink += watchedLongTree.setValueAndGetCombination(leftBorders[i], 1_000_000L + round);
+                }
+            }));
+        }
+        System.out.println(failed ? "FAILED" : "PASSED");
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static long measure(Runnable hotPath) {
+        long allocatedBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        hotPath.run();
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBytes;
+    }
+
+    /**
+     * Print how many bytes a hot path allocated per round in the last attempt.
+     * @return true if the hot path allocated at least one byte per round
+     */
+    private static boolean check(boolean last, String name, long allocatedBytes) {
+        if (!last) {
+            return false;
+        }
+        long bytesPerRound = allocatedBytes / ROUNDS;
+        System.out.println(name + ": " + bytesPerRound + " bytes per round (" + allocatedBytes + " bytes in total)");
+        return bytesPerRound != 0;
+    }
+}
@@ -0,0 +1,188 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.core.binding.BindingEngine;
+import dr.magicalstone.controlling_reforge.core.binding.BindingListener;
+import dr.magicalstone.controlling_reforge.core.binding.KeyCondition;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpression;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpressionCompiler;
+import dr.magicalstone.controlling_reforge.core.binding.KeyExpressionProfile;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Loads a {@link KeyExpressionProfile} of many bindings and reloads it with some expressions changed, removed and broken,
+ * checks the expressions and errors of the profile, that reloading an unchanged profile compiles nothing,
+ * and that an engine built from the profile presses the bindings whose expressions are satisfied.
+ */
+public class ProfileReloadTest {
+
+    private static final int BINDING_COUNT = 600;
+
+    private static final int KEY_COUNT = 32;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(0);
+        int[] resolvedCount = new int[1];
+        KeyExpressionCompiler compiler = new KeyExpressionCompiler(name -> {
+            resolvedCount[0]++;
+            return name.startsWith("K") ? Integer.parseInt(name.substring(1)) + 1 : 0;
+        });
+        KeyExpressionProfile profile = new KeyExpressionProfile(compiler);
+        String[] expressions = new String[BINDING_COUNT];
+        for (int binding = 0; binding < BINDING_COUNT; binding++) {
+            expressions[binding] = randomExpression(random);
+        }
+        expressions[7] = "& K1";
+        expressions[8] = "";
+        check(profile, compiler, expressions, random);
+
+        resolvedCount[0] = 0;
+        profile.load(new StringReader(write(expressions)));
+        if (resolvedCount[0] != 0) {
+            throw new AssertionError("Reloading an unchanged profile should compile nothing, but " + resolvedCount[0] + " key names are resolved.");
+        }
+
+        for (int binding = 0; binding < BINDING_COUNT; binding++) {
+            switch (binding % 10) {
+                case 0:
+                    expressions[binding] = randomExpression(random);
+                    break;
+                case 1:
+                    expressions[binding] = null;
+                    break;
+                case 2:
+                    expressions[binding] = "X" + binding;
+                    break;
+                default:
+            }
+        }
+        expressions[7] = "K1 & K2";
+        check(profile, compiler, expressions, random);
+
+        Reader brokenReader = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("Broken profile");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        int size = profile.size();
+        try {
+            profile.load(brokenReader);
+            throw new AssertionError("Loading a broken profile should fail.");
+        } catch (IOException expected) {
+        }
+        if (profile.size() != size) {
+            throw new AssertionError("Expressions should be kept after failing to load a profile.");
+        }
+        System.out.println("ProfileReloadTest passed.");
+    }
+
+    /**
+     * Load expressions as a profile, where binding i is described as key.binding.i, and compare the profile and an engine built from it with the expressions.
+     * @param expressions expressions of bindings, null for a binding which isn't in the profile
+     */
+    private static void check(KeyExpressionProfile profile, KeyExpressionCompiler compiler, String[] expressions, Random random) throws IOException {
+        Map<String, String> errors = profile.load(new StringReader(write(expressions)));
+        int expressionCount = 0;
+        for (int binding = 0; binding < expressions.length; binding++) {
+            String description = "key.binding." + binding;
+            boolean valid = isValid(compiler, expressions[binding]);
+            if (errors.containsKey(description) != (expressions[binding] != null && !expressions[binding].isEmpty() && !valid)) {
+                throw new AssertionError(description + " = " + expressions[binding] + " should " + (valid ? "not " : "") + "be an error: " + errors);
+            }
+            String expected = valid ? expressions[binding] : null;
+            if (expected == null ? profile.getExpression(description) != null : !expected.equals(profile.getExpression(description))) {
+                throw new AssertionError(description + " should be " + expected + ", got " + profile.getExpression(description));
+            }
+            if (expected != null) {
+                expressionCount++;
+            }
+        }
+        if (profile.size() != expressionCount) {
+            throw new AssertionError("The profile should have " + expressionCount + " expressions, got " + profile.size());
+        }
+
+        BindingEngine engine = new BindingEngine(new BindingListener() {
+            @Override
+            public void onBindingStateChanged(int binding, boolean pressed) {
+            }
+
+            @Override
+            public void onBindingTicked(int binding) {
+            }
+        });
+        KeyExpression[] compiled = new KeyExpression[expressions.length];
+        for (int binding = 0; binding < expressions.length; binding++) {
+            compiled[binding] = profile.compile("key.binding." + binding);
+            if (compiled[binding] == null) {
+                engine.addBinding(compiler.compile("K0"));
+            } else {
+                engine.addBinding(compiled[binding]);
+            }
+        }
+        engine.build();
+        boolean[] keys = new boolean[KEY_COUNT];
+        for (int event = 0; event < 200; event++) {
+            int key = random.nextInt(KEY_COUNT);
+            keys[key] = random.nextBoolean();
+            engine.setKeyState(key + 1, keys[key]);
+        }
+        for (int binding = 0; binding < expressions.length; binding++) {
+            KeyExpression expression = compiled[binding] == null ? compiler.compile("K0") : compiled[binding];
+            KeyCondition condition = expression.newCondition();
+            int[] termKeyCodes = expression.termKeyCodes();
+            boolean satisfied = condition.isSatisfied();
+            for (int slot = 0; slot < termKeyCodes.length; slot++) {
+                if (keys[termKeyCodes[slot] - 1]) {
+                    satisfied = condition.setTerm(slot, true);
+                }
+            }
+            if (engine.isPressed(binding) != satisfied) {
+                throw new AssertionError("Binding " + expression + " should be " + (satisfied ? "pressed" : "released"));
+            }
+        }
+    }
+
+    private static String write(String[] expressions) {
+        StringBuilder profile = new StringBuilder("# Key combination expressions\n");
+        for (int binding = 0; binding < expressions.length; binding++) {
+            if (expressions[binding] != null) {
+                profile.append("key.binding.").append(binding).append(" = ").append(expressions[binding]).append('\n');
+            }
+        }
+        return profile.toString();
+    }
+
+    private static boolean isValid(KeyExpressionCompiler compiler, String expression) {
+        if (expression == null || expression.isEmpty()) {
+            return false;
+        }
+        try {
+            compiler.compile(expression);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String randomExpression(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return "K" + random.nextInt(KEY_COUNT);
+            case 1:
+                return "K" + random.nextInt(KEY_COUNT) + " & K" + random.nextInt(KEY_COUNT);
+            case 2:
+                return "K" + random.nextInt(KEY_COUNT) + " & !K" + random.nextInt(KEY_COUNT);
+            default:
+                return "2 of (K" + random.nextInt(KEY_COUNT) + ", K" + random.nextInt(KEY_COUNT) + ", K" + random.nextInt(KEY_COUNT) + ")";
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package dr.magicalstone.controlling_reforge;
+
+import dr.magicalstone.controlling_reforge.api.util.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares non-empty sub lists of all layouts of primitive segment trees and of the generic segment tree with slices of arrays,
+ * by their elements, combinations and primitive toArray. Elements are set to themselves, so the combination returned by a setter is the slice's.
+ */
+public class SubListTest {
+
+    private static final int SIZE = 100;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(0);
+        long[] longElements = new long[SIZE];
+        boolean[] booleanElements = new boolean[SIZE];
+        double[] doubleElements = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            longElements[i] = random.nextInt(1000);
+            booleanElements[i] = random.nextBoolean();
+            // Small multiples of 0.5 keep sums exact in any order.
+            doubleElements[i] = random.nextInt(1000) * 0.5;
+        }
+        Path file = Files.createTempFile("sub-list-test", ".tree");
+        file.toFile().deleteOnExit();
+        try (FixedSizeMappedIntegerSegmentTree mappedTree = FixedSizeMappedIntegerSegmentTree.create(file, Long::sum, 0, SIZE, index -> longElements[index])) {
+            FixedSizeIntegerSegmentTree[] longTrees = {
+                    new FixedSizeIntegerSegmentTree(Long::sum, LongRepeatOperator.SUM, longElements),
+                    new FixedSizeBottomUpIntegerSegmentTree(Long::sum, LongRepeatOperator.SUM, 0, longElements),
+                    FixedSizeFenwickIntegerSegmentTree.sum(longElements),
+                    mappedTree
+            };
+            FixedSizeBooleanSegmentTree[] booleanTrees = {
+                    new FixedSizeBooleanSegmentTree((left, right) -> left ^ right, booleanElements),
+                    new FixedSizeBottomUpBooleanSegmentTree((left, right) -> left ^ right, false, booleanElements),
+                    new FixedSizeBitPackedBooleanSegmentTree((left, right) -> left ^ right, booleanElements),
+                    FixedSizeBooleanSegmentTree.of((left, right) -> left ^ right, booleanElements)
+            };
+            FixedSizeDoubleSegmentTree doubleTree = FixedSizeDoubleSegmentTree.sum(doubleElements);
+            FixedSizeSegmentTree<Long> genericTree = new FixedSizeSegmentTree<>(Long::sum, Arrays.stream(longElements).boxed().toArray(Long[]::new));
+            boolean failed = false;
+            for (int round = 0; round < 200; round++) {
+                int fromIndex = random.nextInt(SIZE);
+                int toIndex = fromIndex + 1 + random.nextInt(SIZE - fromIndex);
+                long[] expectedLongs = Arrays.copyOfRange(longElements, fromIndex, toIndex);
+                long expectedSum = Arrays.stream(expectedLongs).sum();
+                for (FixedSizeIntegerSegmentTree tree : longTrees) {
+                    FixedSizeIntegerSegmentTree subList = tree.subList(fromIndex, toIndex);
+                    failed |= check(tree, fromIndex, toIndex, Arrays.equals(subList.toArray(new long[0]), expectedLongs)
+                            && Arrays.equals(subList.toArrayPrimary(), expectedLongs)
+                            && subList.getCombinationAsLong() == expectedSum
+                            && subList.setValueAndGetCombination(0, expectedLongs[0]) == expectedSum);
+                }
+                FixedSizeSegmentTree<Long> genericSubList = genericTree.subList(fromIndex, toIndex);
+                failed |= check(genericTree, fromIndex, toIndex, genericSubList.getCombination() == expectedSum
+                        && genericSubList.setValueAndGetCombination(0, expectedLongs[0]) == expectedSum
+                        && genericSubList.setValues(new int[]{0}, new Long[]{expectedLongs[0]}) == expectedSum
+                        && genericSubList.setRange(0, 1, expectedLongs[0]) == expectedSum);
+                boolean[] expectedBooleans = Arrays.copyOfRange(booleanElements, fromIndex, toIndex);
+                boolean expectedXor = false;
+                for (boolean element : expectedBooleans) {
+                    expectedXor ^= element;
+                }
+                for (FixedSizeBooleanSegmentTree tree : booleanTrees) {
+                    FixedSizeBooleanSegmentTree subList = tree.subList(fromIndex, toIndex);
+                    failed |= check(tree, fromIndex, toIndex, Arrays.equals(subList.toArray(new boolean[0]), expectedBooleans)
+                            && Arrays.equals(subList.toArrayPrimary(), expectedBooleans)
+                            && subList.getCombinationAsBoolean() == expectedXor
+                            && subList.setValueAndGetCombination(0, expectedBooleans[0]) == expectedXor);
+                }
+                double[] expectedDoubles = Arrays.copyOfRange(doubleElements, fromIndex, toIndex);
+                FixedSizeDoubleSegmentTree doubleSubList = doubleTree.subList(fromIndex, toIndex);
+                failed |= check(doubleTree, fromIndex, toIndex, Arrays.equals(doubleSubList.toArray(new double[0]), expectedDoubles)
+                        && Arrays.equals(doubleSubList.toArrayPrimary(), expectedDoubles)
+                        && doubleSubList.getCombinationAsDouble() == Arrays.stream(expectedDoubles).sum()
+                        && doubleSubList.setValueAndGetCombination(0, expectedDoubles[0]) == Arrays.stream(expectedDoubles).sum());
+            }
+            System.out.println(failed ? "FAILED" : "PASSED");
+            if (failed) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Print a sub list which differs from the slice.
+     * @return true if it differs
+     */
+    private static boolean check(Object tree, int fromIndex, int toIndex, boolean matched) {
+        if (!matched) {
+            System.out.println(tree.getClass().getSimpleName() + ".subList(" + fromIndex + ", " + toIndex + ") differs from the slice");
+        }
+        return !matched;
+    }
+}